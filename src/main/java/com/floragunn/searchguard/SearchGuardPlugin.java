@@ -112,14 +112,21 @@ import org.elasticsearch.watcher.ResourceWatcherService;
 
 import com.floragunn.searchguard.action.configupdate.ConfigUpdateAction;
 import com.floragunn.searchguard.action.configupdate.TransportConfigUpdateAction;
+import com.floragunn.searchguard.action.evictcache.EvictCacheAction;
+import com.floragunn.searchguard.action.evictcache.TransportEvictCacheAction;
 import com.floragunn.searchguard.action.licenseinfo.LicenseInfoAction;
 import com.floragunn.searchguard.action.licenseinfo.TransportLicenseInfoAction;
+import com.floragunn.searchguard.action.stats.StatsAction;
+import com.floragunn.searchguard.action.stats.TransportStatsAction;
+import com.floragunn.searchguard.action.trace.TraceAction;
+import com.floragunn.searchguard.action.trace.TransportTraceAction;
 import com.floragunn.searchguard.action.whoami.TransportWhoAmIAction;
 import com.floragunn.searchguard.action.whoami.WhoAmIAction;
 import com.floragunn.searchguard.auditlog.AuditLog;
 import com.floragunn.searchguard.auditlog.AuditLog.Origin;
 import com.floragunn.searchguard.auditlog.AuditLogSslExceptionHandler;
 import com.floragunn.searchguard.auditlog.NullAuditLog;
+import com.floragunn.searchguard.auditlog.PipelinedAuditLog;
 import com.floragunn.searchguard.auth.BackendRegistry;
 import com.floragunn.searchguard.auth.internal.InternalAuthenticationBackend;
 import com.floragunn.searchguard.compliance.ComplianceConfig;
@@ -129,6 +136,7 @@ import com.floragunn.searchguard.configuration.AdminDNs;
 import com.floragunn.searchguard.configuration.ClusterInfoHolder;
 import com.floragunn.searchguard.configuration.CompatConfig;
 import com.floragunn.searchguard.configuration.ConfigurationChangeListener;
+import com.floragunn.searchguard.configuration.ConfigurationShards;
 import com.floragunn.searchguard.configuration.DlsFlsRequestValve;
 import com.floragunn.searchguard.configuration.IndexBaseConfigurationRepository;
 import com.floragunn.searchguard.configuration.SearchGuardIndexSearcherWrapper;
@@ -139,21 +147,28 @@ import com.floragunn.searchguard.http.SearchGuardNonSslHttpServerTransport;
 import com.floragunn.searchguard.http.XFFResolver;
 import com.floragunn.searchguard.privileges.PrivilegesEvaluator;
 import com.floragunn.searchguard.privileges.PrivilegesInterceptor;
+import com.floragunn.searchguard.privileges.TenantIndexRegistry;
 import com.floragunn.searchguard.resolver.IndexResolverReplacer;
 import com.floragunn.searchguard.rest.KibanaInfoAction;
 import com.floragunn.searchguard.rest.SearchGuardHealthAction;
 import com.floragunn.searchguard.rest.SearchGuardInfoAction;
+import com.floragunn.searchguard.rest.SearchGuardCacheAction;
 import com.floragunn.searchguard.rest.SearchGuardLicenseAction;
+import com.floragunn.searchguard.rest.SearchGuardPrometheusAction;
+import com.floragunn.searchguard.rest.SearchGuardStatsAction;
+import com.floragunn.searchguard.rest.SearchGuardTraceAction;
 import com.floragunn.searchguard.rest.TenantInfoAction;
 import com.floragunn.searchguard.ssl.SearchGuardSSLPlugin;
 import com.floragunn.searchguard.ssl.SslExceptionHandler;
 import com.floragunn.searchguard.ssl.http.netty.ValidatingDispatcher;
 import com.floragunn.searchguard.ssl.transport.SearchGuardSSLNettyTransport;
 import com.floragunn.searchguard.ssl.util.SSLConfigConstants;
+import com.floragunn.searchguard.support.ActionTrace;
 import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.HeaderHelper;
 import com.floragunn.searchguard.support.ModuleInfo;
 import com.floragunn.searchguard.support.ReflectionHelper;
+import com.floragunn.searchguard.support.RequestLatencyStats;
 import com.floragunn.searchguard.support.SgUtils;
 import com.floragunn.searchguard.support.WildcardMatcher;
 import com.floragunn.searchguard.transport.DefaultInterClusterRequestEvaluator;
@@ -186,10 +201,14 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
     private volatile SearchGuardFilter sgf;
     private volatile ComplianceConfig complianceConfig;
     private volatile IndexResolverReplacer irr;
+    private volatile TenantIndexRegistry tenantIndexRegistry;
 
     @Override
     public void close() throws IOException {
         //TODO implement close
+        if (backendRegistry != null) {
+            backendRegistry.close();
+        }
         super.close();
     }
 
@@ -443,9 +462,15 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
                         new SearchGuardInfoAction(settings, restController, Objects.requireNonNull(evaluator), Objects.requireNonNull(threadPool)));
                 handlers.add(new KibanaInfoAction(settings, restController, Objects.requireNonNull(evaluator), Objects.requireNonNull(threadPool)));
                 handlers.add(new SearchGuardLicenseAction(settings, restController));
+                handlers.add(new SearchGuardCacheAction(settings, restController));
+                handlers.add(new SearchGuardStatsAction(settings, restController));
+                handlers.add(new SearchGuardTraceAction(settings, restController));
+                if (settings.getAsBoolean(ConfigConstants.SEARCHGUARD_STATS_PROMETHEUS_ENABLED, false)) {
+                    handlers.add(new SearchGuardPrometheusAction(settings, restController));
+                }
                 handlers.add(new SearchGuardHealthAction(settings, restController, Objects.requireNonNull(backendRegistry)));
                 handlers.add(new TenantInfoAction(settings, restController, Objects.requireNonNull(evaluator), Objects.requireNonNull(threadPool),
-                        Objects.requireNonNull(cs), Objects.requireNonNull(adminDns)));
+                        Objects.requireNonNull(tenantIndexRegistry), Objects.requireNonNull(adminDns)));
 
                 Collection<RestHandler> apiHandler = ReflectionHelper.instantiateMngtRestApiHandler(settings, configPath, restController, localClient,
                         adminDns, cr, cs, Objects.requireNonNull(principalExtractor), evaluator, threadPool, Objects.requireNonNull(auditLog));
@@ -474,6 +499,9 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
             actions.add(new ActionHandler<>(ConfigUpdateAction.INSTANCE, TransportConfigUpdateAction.class));
             actions.add(new ActionHandler<>(LicenseInfoAction.INSTANCE, TransportLicenseInfoAction.class));
             actions.add(new ActionHandler<>(WhoAmIAction.INSTANCE, TransportWhoAmIAction.class));
+            actions.add(new ActionHandler<>(EvictCacheAction.INSTANCE, TransportEvictCacheAction.class));
+            actions.add(new ActionHandler<>(StatsAction.INSTANCE, TransportStatsAction.class));
+            actions.add(new ActionHandler<>(TraceAction.INSTANCE, TransportTraceAction.class));
         }
         return actions;
     }
@@ -736,8 +764,13 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
         DlsFlsRequestValve dlsFlsValve = ReflectionHelper.instantiateDlsFlsValve();
 
         final IndexNameExpressionResolver resolver = new IndexNameExpressionResolver(settings);
-        irr = new IndexResolverReplacer(resolver, clusterService, cih);
+        irr = new IndexResolverReplacer(resolver, clusterService, cih, settings);
         auditLog = ReflectionHelper.instantiateAuditLog(settings, configPath, localClient, threadPool, resolver, clusterService);
+
+        if (settings.getAsBoolean(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_ENABLED, false)) {
+            auditLog = PipelinedAuditLog.wrap(auditLog, settings, threadPool);
+        }
+
         complianceConfig = (dlsFlsAvailable && (auditLog.getClass() != NullAuditLog.class))
                 ? new ComplianceConfig(environment, Objects.requireNonNull(irr), auditLog)
                 : null;
@@ -758,26 +791,33 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
 
         final PrivilegesInterceptor privilegesInterceptor = ReflectionHelper.instantiatePrivilegesInterceptorImpl(resolver, clusterService,
                 localClient, threadPool);
+        tenantIndexRegistry = new TenantIndexRegistry(clusterService);
+        this.cs.addListener(tenantIndexRegistry);
+        privilegesInterceptor.setTenantIndexRegistry(tenantIndexRegistry);
 
         adminDns = new AdminDNs(settings);
+        final RequestLatencyStats latencyStats = RequestLatencyStats.create(settings);
+        final ActionTrace actionTrace = new ActionTrace(settings);
         //final PrincipalExtractor pe = new DefaultPrincipalExtractor();
         cr = (IndexBaseConfigurationRepository) IndexBaseConfigurationRepository.create(settings, this.configPath, threadPool, localClient,
-                clusterService, auditLog, complianceConfig);
+                clusterService, auditLog, complianceConfig, nodeEnvironment.hasNodeFile() ? nodeEnvironment.nodeDataPaths()[0] : null);
         cr.subscribeOnLicenseChange(complianceConfig);
         cr.subscribeOnChange(ConfigConstants.CONFIGNAME_CONFIG, irr);
-        final InternalAuthenticationBackend iab = new InternalAuthenticationBackend(cr);
+        final ActionGroupHolder ah = new ActionGroupHolder(cr);
+        evaluator = new PrivilegesEvaluator(clusterService, threadPool, cr, resolver, auditLog, settings, privilegesInterceptor, cih, irr,
+                enterpriseModulesEnabled, latencyStats);
+        final InternalAuthenticationBackend iab = new InternalAuthenticationBackend(evaluator::getInternalUsers);
         final XFFResolver xffResolver = new XFFResolver(threadPool);
         cr.subscribeOnChange(ConfigConstants.CONFIGNAME_CONFIG, xffResolver);
-        backendRegistry = new BackendRegistry(settings, configPath, adminDns, xffResolver, iab, auditLog, threadPool);
+        backendRegistry = new BackendRegistry(settings, configPath, adminDns, xffResolver, iab, auditLog, threadPool, latencyStats);
         cr.subscribeOnChange(ConfigConstants.CONFIGNAME_CONFIG, backendRegistry);
-        final ActionGroupHolder ah = new ActionGroupHolder(cr);
-        evaluator = new PrivilegesEvaluator(clusterService, threadPool, cr, ah, resolver, auditLog, settings, privilegesInterceptor, cih, irr,
-                enterpriseModulesEnabled);
+        //after the privileges evaluator which publishes the internal users
+        cr.subscribeOnReload(backendRegistry.internalUsersReloadListener);
 
         final CompatConfig compatConfig = new CompatConfig(environment);
         cr.subscribeOnChange(ConfigConstants.CONFIGNAME_CONFIG, compatConfig);
 
-        sgf = new SearchGuardFilter(evaluator, adminDns, dlsFlsValve, auditLog, threadPool, cs, complianceConfig, compatConfig);
+        sgf = new SearchGuardFilter(evaluator, adminDns, dlsFlsValve, auditLog, threadPool, cs, complianceConfig, compatConfig, actionTrace);
 
         final String principalExtractorClass = settings.get(SSLConfigConstants.SEARCHGUARD_SSL_TRANSPORT_PRINCIPAL_EXTRACTOR_CLASS, null);
 
@@ -788,7 +828,7 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
         }
 
         sgi = new SearchGuardInterceptor(settings, threadPool, backendRegistry, auditLog, principalExtractor, interClusterRequestEvaluator, cs,
-                Objects.requireNonNull(sslExceptionHandler), Objects.requireNonNull(cih));
+                Objects.requireNonNull(sslExceptionHandler), Objects.requireNonNull(cih), latencyStats, actionTrace);
         components.add(principalExtractor);
 
         cr.subscribeOnChange(ConfigConstants.CONFIGNAME_CONFIG, new ConfigurationChangeListener() {
@@ -808,8 +848,10 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
         components.add(ah);
         components.add(evaluator);
         components.add(sgi);
+        components.add(latencyStats);
+        components.add(actionTrace);
 
-        sgRestHandler = new SearchGuardRestFilter(backendRegistry, auditLog, threadPool, principalExtractor, settings, configPath, compatConfig);
+        sgRestHandler = new SearchGuardRestFilter(backendRegistry, auditLog, threadPool, principalExtractor, settings, configPath, compatConfig, latencyStats);
 
         return components;
 
@@ -829,6 +871,7 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
         if (!sslOnly) {
             builder.put(NetworkModule.TRANSPORT_TYPE_KEY, "com.floragunn.searchguard.ssl.http.netty.SearchGuardSSLNettyTransport");
             builder.put(NetworkModule.HTTP_TYPE_KEY, "com.floragunn.searchguard.http.SearchGuardHttpServerTransport");
+            builder.put("node.attr." + ConfigurationShards.NODE_ATTRIBUTE, true);
         }
         return builder.build();
     }
@@ -861,6 +904,17 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
             settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_DISABLED, false, Property.NodeScope, Property.Filtered));
 
             settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_CACHE_TTL_MINUTES, 60, 0, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_CACHE_OFFHEAP_ENABLED, false, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.longSetting(ConfigConstants.SEARCHGUARD_CACHE_OFFHEAP_MAX_SIZE_MB, 256, 1, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_CACHE_OFFHEAP_HEAP_MAX_ENTRIES, 10000, 0, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_AUTHC_PARALLEL_THREAD_POOL_SIZE, 4, 1, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_AUTHC_PARALLEL_QUEUE_SIZE, 100, 0, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_CONFIG_SNAPSHOT_ENABLED, false, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_CONFIG_UPDATE_SHIP_CONFIGURATION, false, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_STATS_LATENCY_ENABLED, true, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_STATS_PROMETHEUS_ENABLED, false, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.doubleSetting(ConfigConstants.SEARCHGUARD_ACTION_TRACE_SAMPLE_RATE, 0d, 0d, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_ACTION_TRACE_BUFFER_SIZE, 1024, 16, Property.NodeScope, Property.Filtered));
 
             //SG6
             settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_ENTERPRISE_MODULES_ENABLED, true, Property.NodeScope, Property.Filtered));
@@ -874,7 +928,7 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
             settings.add(Setting.simpleString(ConfigConstants.SEARCHGUARD_ROLES_MAPPING_RESOLUTION, Property.NodeScope, Property.Filtered));
             settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_DISABLE_ENVVAR_REPLACEMENT, false, Property.NodeScope, Property.Filtered));
 
-            //settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_DISABLE_TYPE_SECURITY, false, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_DISABLE_TYPE_SECURITY, false, Property.NodeScope, Property.Filtered));
 
             //TODO remove searchguard.tribe.clustername?
             //settings.add(Setting.simpleString(ConfigConstants.SEARCHGUARD_TRIBE_CLUSTERNAME, Property.NodeScope, Property.Filtered));
@@ -887,6 +941,12 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
             settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_AUDIT_THREADPOOL_MAX_QUEUE_LEN, 100 * 1000, Property.NodeScope,
                     Property.Filtered));
             settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_AUDIT_LOG_REQUEST_BODY, true, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_ENABLED, false, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_BUFFER_SIZE, 8192, 2, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_BATCH_SIZE, 500, 1, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.longSetting(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_FLUSH_INTERVAL_MS, 1000L, 0L, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.simpleString(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_OVERFLOW_POLICY, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.longSetting(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_BLOCK_TIMEOUT_MS, 100L, 0L, Property.NodeScope, Property.Filtered));
             settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_AUDIT_RESOLVE_INDICES, true, Property.NodeScope, Property.Filtered));
             settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_AUDIT_ENABLE_REST, true, Property.NodeScope, Property.Filtered));
             settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_AUDIT_ENABLE_TRANSPORT, true, Property.NodeScope, Property.Filtered));
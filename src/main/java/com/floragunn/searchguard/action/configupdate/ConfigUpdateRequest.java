@@ -24,9 +24,13 @@ import org.elasticsearch.action.support.nodes.BaseNodesRequest;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
+import com.floragunn.searchguard.configuration.ConfigurationPayload;
+
 public class ConfigUpdateRequest extends BaseNodesRequest<ConfigUpdateRequest> {
 
     private String[] configTypes;
+    //configuration loaded from the index by the node which handles the update, never serialized with this request
+    private ConfigurationPayload configuration;
 
     public ConfigUpdateRequest() {
         super();
@@ -57,6 +61,14 @@ public class ConfigUpdateRequest extends BaseNodesRequest<ConfigUpdateRequest> {
         this.configTypes = configTypes;
     }
 
+    ConfigurationPayload getConfiguration() {
+        return configuration;
+    }
+
+    void setConfiguration(final ConfigurationPayload configuration) {
+        this.configuration = configuration;
+    }
+
     @Override
     public ActionRequestValidationException validate() {
         if (configTypes == null || configTypes.length == 0) {
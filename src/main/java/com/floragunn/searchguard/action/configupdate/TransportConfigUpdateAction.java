@@ -22,59 +22,105 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.FailedNodeException;
 import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.action.support.nodes.BaseNodeRequest;
 import org.elasticsearch.action.support.nodes.TransportNodesAction;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.inject.Inject;
-import org.elasticsearch.common.inject.Provider;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.tasks.Task;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportService;
 
-import com.floragunn.searchguard.auth.BackendRegistry;
-import com.floragunn.searchguard.configuration.ConfigurationRepository;
+import com.floragunn.searchguard.configuration.ConfigurationPayload;
 import com.floragunn.searchguard.configuration.IndexBaseConfigurationRepository;
+import com.floragunn.searchguard.configuration.InvalidConfigException;
 import com.floragunn.searchguard.configuration.SearchGuardLicense;
+import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.LicenseHelper;
 
 public class TransportConfigUpdateAction
 extends
 TransportNodesAction<ConfigUpdateRequest, ConfigUpdateResponse, TransportConfigUpdateAction.NodeConfigUpdateRequest, ConfigUpdateNodeResponse> {
 
-    private final Provider<BackendRegistry> backendRegistry;
-    private final ConfigurationRepository configurationRepository;
+    private final IndexBaseConfigurationRepository configurationRepository;
+    private final boolean shipConfiguration;
     
     @Inject
     public TransportConfigUpdateAction(final Settings settings,
             final ThreadPool threadPool, final ClusterService clusterService, final TransportService transportService,
-            final IndexBaseConfigurationRepository configurationRepository, final ActionFilters actionFilters, final IndexNameExpressionResolver indexNameExpressionResolver,
-            Provider<BackendRegistry> backendRegistry) {
+            final IndexBaseConfigurationRepository configurationRepository, final ActionFilters actionFilters, final IndexNameExpressionResolver indexNameExpressionResolver) {
         
         super(settings, ConfigUpdateAction.NAME, threadPool, clusterService, transportService, actionFilters,
-                indexNameExpressionResolver, ConfigUpdateRequest::new, TransportConfigUpdateAction.NodeConfigUpdateRequest::new,
+                indexNameExpressionResolver, ConfigUpdateRequest::new, () -> new NodeConfigUpdateRequest(isShipConfiguration(settings)),
                 ThreadPool.Names.MANAGEMENT, ConfigUpdateNodeResponse.class);
 
         this.configurationRepository = configurationRepository;
-        this.backendRegistry = backendRegistry;
+        this.shipConfiguration = isShipConfiguration(settings);
     }
 
+    private static boolean isShipConfiguration(final Settings settings) {
+        return settings.getAsBoolean(ConfigConstants.SEARCHGUARD_CONFIG_UPDATE_SHIP_CONFIGURATION, false);
+    }
+
+    @Override
+    protected void doExecute(final Task task, final ConfigUpdateRequest request, final ActionListener<ConfigUpdateResponse> listener) {
+
+        //only a configuration which this node loaded from the index by itself is ever shipped
+        request.setConfiguration(null);
+
+        if (!shipConfiguration) {
+            super.doExecute(task, request, listener);
+            return;
+        }
+
+        //load the configuration only once (instead of on every node) and send it along with the request
+        threadPool.executor(ThreadPool.Names.MANAGEMENT).execute(() -> {
+            try {
+                final Map<String, Tuple<Long, Settings>> loaded = configurationRepository
+                        .loadConfigurations(Arrays.asList(request.getConfigTypes()), false);
+                request.setConfiguration(ConfigurationPayload.of(loaded));
+                logger.debug("Ship configuration {} ({} bytes) to nodes", loaded.keySet(), request.getConfiguration().length());
+            } catch (Exception e) {
+                logger.warn("Unable to load configuration {}, every node will load it by itself: {}", Arrays.toString(request.getConfigTypes()),
+                        e.toString());
+            }
+            super.doExecute(task, request, listener);
+        });
+    }
+
+    /**
+     * Node level requests can only be sent by server nodes. The shipped configuration is only part of the
+     * wire format if {@link ConfigConstants#SEARCHGUARD_CONFIG_UPDATE_SHIP_CONFIGURATION} is enabled, so this setting
+     * needs to be the same on all nodes of the cluster.
+     */
     public static class NodeConfigUpdateRequest extends BaseNodeRequest {
 
         ConfigUpdateRequest request;
+        ConfigurationPayload configuration;
+        private final boolean shipConfiguration;
 
         public NodeConfigUpdateRequest() {
+            this(false);
+        }
+
+        NodeConfigUpdateRequest(final boolean shipConfiguration) {
+            this.shipConfiguration = shipConfiguration;
         }
 
-        public NodeConfigUpdateRequest(final String nodeId, final ConfigUpdateRequest request) {
+        public NodeConfigUpdateRequest(final String nodeId, final ConfigUpdateRequest request, final boolean shipConfiguration) {
             super(nodeId);
             this.request = request;
+            this.shipConfiguration = shipConfiguration;
+            this.configuration = shipConfiguration ? request.getConfiguration() : null;
         }
 
         @Override
@@ -82,17 +128,25 @@ TransportNodesAction<ConfigUpdateRequest, ConfigUpdateResponse, TransportConfigU
             super.readFrom(in);
             request = new ConfigUpdateRequest();
             request.readFrom(in);
+
+            if (shipConfiguration) {
+                configuration = in.readOptionalWriteable(ConfigurationPayload::new);
+            }
         }
 
         @Override
         public void writeTo(final StreamOutput out) throws IOException {
             super.writeTo(out);
             request.writeTo(out);
+
+            if (shipConfiguration) {
+                out.writeOptionalWriteable(configuration);
+            }
         }
     }
 
     protected NodeConfigUpdateRequest newNodeRequest(final String nodeId, final ConfigUpdateRequest request) {
-        return new NodeConfigUpdateRequest(nodeId, request);
+        return new NodeConfigUpdateRequest(nodeId, request, shipConfiguration);
     }
 
     @Override
@@ -108,9 +162,30 @@ TransportNodesAction<ConfigUpdateRequest, ConfigUpdateResponse, TransportConfigU
 
     }
 	
+    private Map<String, Settings> applyOrReload(final NodeConfigUpdateRequest nodeRequest) {
+        final ConfigUpdateRequest request = nodeRequest.request;
+        final ConfigurationPayload payload = shipConfiguration ? nodeRequest.configuration : null;
+
+        if (payload != null) {
+            try {
+                final Map<String, Tuple<Long, Settings>> configuration = payload.getConfiguration();
+
+                if (configuration.keySet().containsAll(Arrays.asList(request.getConfigTypes()))) {
+                    return configurationRepository.applyConfiguration(configuration);
+                }
+
+                logger.warn("Shipped configuration {} is incomplete, will load it from index", configuration.keySet());
+            } catch (IOException | InvalidConfigException e) {
+                logger.warn("Unable to read shipped configuration, will load it from index: {}", e.toString());
+            }
+        }
+
+        return configurationRepository.reloadConfiguration(Arrays.asList(request.getConfigTypes()));
+    }
+
     @Override
     protected ConfigUpdateNodeResponse nodeOperation(final NodeConfigUpdateRequest request) {
-        final Map<String, Settings> setn = configurationRepository.reloadConfiguration(Arrays.asList(request.request.getConfigTypes()));
+        final Map<String, Settings> setn = applyOrReload(request);
         String licenseText = null;
         
         if(setn.get("config") != null) {
@@ -131,7 +206,7 @@ TransportNodesAction<ConfigUpdateRequest, ConfigUpdateResponse, TransportConfigU
             }
         }
 
-        backendRegistry.get().invalidateCache();
+        //stale cache entries are evicted by the configuration change listeners of the backend registry
         return new ConfigUpdateNodeResponse(clusterService.localNode(), setn.keySet().toArray(new String[0]), null); 
     }
 }
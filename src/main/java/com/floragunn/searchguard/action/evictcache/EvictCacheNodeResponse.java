@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.action.evictcache;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+public class EvictCacheNodeResponse extends BaseNodeResponse {
+
+    private int evicted;
+    private String message;
+
+    EvictCacheNodeResponse() {
+    }
+
+    public EvictCacheNodeResponse(final DiscoveryNode node, int evicted, String message) {
+        super(node);
+        this.evicted = evicted;
+        this.message = message;
+    }
+
+    public static EvictCacheNodeResponse readNodeResponse(StreamInput in) throws IOException {
+        EvictCacheNodeResponse nodeResponse = new EvictCacheNodeResponse();
+        nodeResponse.readFrom(in);
+        return nodeResponse;
+    }
+
+    /**
+     * @return The number of evicted cache entries or -1 if the caches were flushed completely
+     */
+    public int getEvicted() {
+        return evicted;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeInt(evicted);
+        out.writeOptionalString(message);
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        evicted = in.readInt();
+        message = in.readOptionalString();
+    }
+
+    @Override
+    public String toString() {
+        return "EvictCacheNodeResponse [evicted=" + evicted + ", message=" + message + "]";
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.action.evictcache;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+/**
+ * Evict users from the authentication caches on all nodes.
+ * If neither users nor backend roles are given the caches are flushed completely.
+ */
+public class EvictCacheRequest extends BaseNodesRequest<EvictCacheRequest> {
+
+    private String[] users = new String[0];
+    private String[] backendRoles = new String[0];
+
+    public EvictCacheRequest() {
+        super();
+    }
+
+    public EvictCacheRequest(final String[] users, final String[] backendRoles) {
+        super();
+        setUsers(users);
+        setBackendRoles(backendRoles);
+    }
+
+    public String[] getUsers() {
+        return users;
+    }
+
+    public void setUsers(final String[] users) {
+        this.users = users == null ? new String[0] : users;
+    }
+
+    public String[] getBackendRoles() {
+        return backendRoles;
+    }
+
+    public void setBackendRoles(final String[] backendRoles) {
+        this.backendRoles = backendRoles == null ? new String[0] : backendRoles;
+    }
+
+    public boolean isEvictAll() {
+        return users.length == 0 && backendRoles.length == 0;
+    }
+
+    @Override
+    public void readFrom(final StreamInput in) throws IOException {
+        super.readFrom(in);
+        users = in.readStringArray();
+        backendRoles = in.readStringArray();
+    }
+
+    @Override
+    public void writeTo(final StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeStringArray(users);
+        out.writeStringArray(backendRoles);
+    }
+}
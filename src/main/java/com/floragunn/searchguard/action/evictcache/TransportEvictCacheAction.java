@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.action.evictcache;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Provider;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import com.floragunn.searchguard.auth.BackendRegistry;
+
+public class TransportEvictCacheAction
+extends
+TransportNodesAction<EvictCacheRequest, EvictCacheResponse, TransportEvictCacheAction.NodeEvictCacheRequest, EvictCacheNodeResponse> {
+
+    private final Provider<BackendRegistry> backendRegistry;
+
+    @Inject
+    public TransportEvictCacheAction(final Settings settings,
+            final ThreadPool threadPool, final ClusterService clusterService, final TransportService transportService,
+            final ActionFilters actionFilters, final IndexNameExpressionResolver indexNameExpressionResolver,
+            Provider<BackendRegistry> backendRegistry) {
+
+        super(settings, EvictCacheAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                indexNameExpressionResolver, EvictCacheRequest::new, TransportEvictCacheAction.NodeEvictCacheRequest::new,
+                ThreadPool.Names.MANAGEMENT, EvictCacheNodeResponse.class);
+
+        this.backendRegistry = backendRegistry;
+    }
+
+    public static class NodeEvictCacheRequest extends BaseNodeRequest {
+
+        EvictCacheRequest request;
+
+        public NodeEvictCacheRequest() {
+        }
+
+        public NodeEvictCacheRequest(final String nodeId, final EvictCacheRequest request) {
+            super(nodeId);
+            this.request = request;
+        }
+
+        @Override
+        public void readFrom(final StreamInput in) throws IOException {
+            super.readFrom(in);
+            request = new EvictCacheRequest();
+            request.readFrom(in);
+        }
+
+        @Override
+        public void writeTo(final StreamOutput out) throws IOException {
+            super.writeTo(out);
+            request.writeTo(out);
+        }
+    }
+
+    protected NodeEvictCacheRequest newNodeRequest(final String nodeId, final EvictCacheRequest request) {
+        return new NodeEvictCacheRequest(nodeId, request);
+    }
+
+    @Override
+    protected EvictCacheNodeResponse newNodeResponse() {
+        return new EvictCacheNodeResponse(clusterService.localNode(), 0, null);
+    }
+
+    @Override
+    protected EvictCacheResponse newResponse(EvictCacheRequest request, List<EvictCacheNodeResponse> responses,
+            List<FailedNodeException> failures) {
+        return new EvictCacheResponse(this.clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected EvictCacheNodeResponse nodeOperation(final NodeEvictCacheRequest request) {
+        final EvictCacheRequest evictRequest = request.request;
+
+        if (evictRequest.isEvictAll()) {
+            backendRegistry.get().invalidateCache();
+            return new EvictCacheNodeResponse(clusterService.localNode(), -1, null);
+        }
+
+        int evicted = backendRegistry.get().evictUsers(Arrays.asList(evictRequest.getUsers()));
+        evicted += backendRegistry.get().evictBackendRoles(Arrays.asList(evictRequest.getBackendRoles()));
+        return new EvictCacheNodeResponse(clusterService.localNode(), evicted, null);
+    }
+}
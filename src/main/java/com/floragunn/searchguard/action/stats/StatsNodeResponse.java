@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.action.stats;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import com.floragunn.searchguard.configuration.ConfigurationStats;
+import com.floragunn.searchguard.support.RequestLatencyStats;
+
+public class StatsNodeResponse extends BaseNodeResponse {
+
+    private ConfigurationStats configurationStats;
+    private RequestLatencyStats.Snapshot latencyStats;
+
+    StatsNodeResponse() {
+    }
+
+    public StatsNodeResponse(final DiscoveryNode node, ConfigurationStats configurationStats, RequestLatencyStats.Snapshot latencyStats) {
+        super(node);
+        this.configurationStats = configurationStats;
+        this.latencyStats = latencyStats;
+    }
+
+    public static StatsNodeResponse readNodeResponse(StreamInput in) throws IOException {
+        StatsNodeResponse nodeResponse = new StatsNodeResponse();
+        nodeResponse.readFrom(in);
+        return nodeResponse;
+    }
+
+    public ConfigurationStats getConfigurationStats() {
+        return configurationStats;
+    }
+
+    public RequestLatencyStats.Snapshot getLatencyStats() {
+        return latencyStats;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeOptionalWriteable(configurationStats);
+        out.writeOptionalWriteable(latencyStats);
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        configurationStats = in.readOptionalWriteable(ConfigurationStats::new);
+        latencyStats = in.readOptionalWriteable(RequestLatencyStats.Snapshot::new);
+    }
+}
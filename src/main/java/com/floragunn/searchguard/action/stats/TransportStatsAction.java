@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.action.stats;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import com.floragunn.searchguard.configuration.IndexBaseConfigurationRepository;
+import com.floragunn.searchguard.support.RequestLatencyStats;
+
+public class TransportStatsAction
+extends
+TransportNodesAction<StatsRequest, StatsResponse, TransportStatsAction.NodeStatsRequest, StatsNodeResponse> {
+
+    private final IndexBaseConfigurationRepository configurationRepository;
+    private final RequestLatencyStats latencyStats;
+
+    @Inject
+    public TransportStatsAction(final Settings settings,
+            final ThreadPool threadPool, final ClusterService clusterService, final TransportService transportService,
+            final IndexBaseConfigurationRepository configurationRepository, final RequestLatencyStats latencyStats, final ActionFilters actionFilters, final IndexNameExpressionResolver indexNameExpressionResolver) {
+
+        super(settings, StatsAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                indexNameExpressionResolver, StatsRequest::new, TransportStatsAction.NodeStatsRequest::new,
+                ThreadPool.Names.MANAGEMENT, StatsNodeResponse.class);
+
+        this.configurationRepository = configurationRepository;
+        this.latencyStats = latencyStats;
+    }
+
+    public static class NodeStatsRequest extends BaseNodeRequest {
+
+        StatsRequest request;
+
+        public NodeStatsRequest() {
+        }
+
+        public NodeStatsRequest(final String nodeId, final StatsRequest request) {
+            super(nodeId);
+            this.request = request;
+        }
+
+        @Override
+        public void readFrom(final StreamInput in) throws IOException {
+            super.readFrom(in);
+            request = new StatsRequest();
+            request.readFrom(in);
+        }
+
+        @Override
+        public void writeTo(final StreamOutput out) throws IOException {
+            super.writeTo(out);
+            request.writeTo(out);
+        }
+    }
+
+    protected NodeStatsRequest newNodeRequest(final String nodeId, final StatsRequest request) {
+        return new NodeStatsRequest(nodeId, request);
+    }
+
+    @Override
+    protected StatsNodeResponse newNodeResponse() {
+        return new StatsNodeResponse(clusterService.localNode(), null, null);
+    }
+
+    @Override
+    protected StatsResponse newResponse(StatsRequest request, List<StatsNodeResponse> responses,
+            List<FailedNodeException> failures) {
+        return new StatsResponse(this.clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected StatsNodeResponse nodeOperation(final NodeStatsRequest request) {
+        return new StatsNodeResponse(clusterService.localNode(), configurationRepository.getStats(), latencyStats.snapshot());
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.action.trace;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import com.floragunn.searchguard.support.ActionTrace;
+
+public class TraceNodeResponse extends BaseNodeResponse {
+
+    private List<ActionTrace.Event> events = Collections.emptyList();
+
+    TraceNodeResponse() {
+    }
+
+    public TraceNodeResponse(final DiscoveryNode node, List<ActionTrace.Event> events) {
+        super(node);
+        this.events = events;
+    }
+
+    public static TraceNodeResponse readNodeResponse(StreamInput in) throws IOException {
+        TraceNodeResponse nodeResponse = new TraceNodeResponse();
+        nodeResponse.readFrom(in);
+        return nodeResponse;
+    }
+
+    public List<ActionTrace.Event> getEvents() {
+        return events;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeList(events);
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        events = in.readList(ActionTrace.Event::new);
+    }
+}
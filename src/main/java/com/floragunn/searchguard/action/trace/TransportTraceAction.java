@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.action.trace;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import com.floragunn.searchguard.support.ActionTrace;
+
+public class TransportTraceAction
+extends
+TransportNodesAction<TraceRequest, TraceResponse, TransportTraceAction.NodeTraceRequest, TraceNodeResponse> {
+
+    private final ActionTrace trace;
+
+    @Inject
+    public TransportTraceAction(final Settings settings,
+            final ThreadPool threadPool, final ClusterService clusterService, final TransportService transportService,
+            final ActionTrace trace, final ActionFilters actionFilters, final IndexNameExpressionResolver indexNameExpressionResolver) {
+
+        super(settings, TraceAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                indexNameExpressionResolver, TraceRequest::new, TransportTraceAction.NodeTraceRequest::new,
+                ThreadPool.Names.MANAGEMENT, TraceNodeResponse.class);
+
+        this.trace = trace;
+    }
+
+    public static class NodeTraceRequest extends BaseNodeRequest {
+
+        TraceRequest request;
+
+        public NodeTraceRequest() {
+        }
+
+        public NodeTraceRequest(final String nodeId, final TraceRequest request) {
+            super(nodeId);
+            this.request = request;
+        }
+
+        @Override
+        public void readFrom(final StreamInput in) throws IOException {
+            super.readFrom(in);
+            request = new TraceRequest();
+            request.readFrom(in);
+        }
+
+        @Override
+        public void writeTo(final StreamOutput out) throws IOException {
+            super.writeTo(out);
+            request.writeTo(out);
+        }
+    }
+
+    protected NodeTraceRequest newNodeRequest(final String nodeId, final TraceRequest request) {
+        return new NodeTraceRequest(nodeId, request);
+    }
+
+    @Override
+    protected TraceNodeResponse newNodeResponse() {
+        return new TraceNodeResponse(clusterService.localNode(), null);
+    }
+
+    @Override
+    protected TraceResponse newResponse(TraceRequest request, List<TraceNodeResponse> responses,
+            List<FailedNodeException> failures) {
+        return new TraceResponse(this.clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected TraceNodeResponse nodeOperation(final NodeTraceRequest request) {
+        return new TraceNodeResponse(clusterService.localNode(), trace.getEvents(request.request.getTraceId()));
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.auditlog;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import org.elasticsearch.common.transport.TransportAddress;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import com.floragunn.searchguard.auditlog.AuditLog.Origin;
+
+/**
+ * Compact, immutable audit record of what is extracted on the request thread. It does not reference the request,
+ * task or thread context it was created for, so queued events only keep these few strings alive.
+ */
+public final class AuditEvent implements ToXContentObject {
+
+    public enum Category {
+        FAILED_LOGIN(false),
+        AUTHENTICATED(true),
+        MISSING_PRIVILEGES(false),
+        GRANTED_PRIVILEGES(true),
+        BAD_HEADERS(false),
+        SG_INDEX_ATTEMPT(false),
+        SSL_EXCEPTION(false),
+        COMPLIANCE_DOC_READ(true),
+        COMPLIANCE_DOC_WRITE(false),
+        COMPLIANCE_EXTERNAL_CONFIG(false);
+
+        private final boolean sampleable;
+
+        Category(boolean sampleable) {
+            this.sampleable = sampleable;
+        }
+
+        /**
+         * @return true if events of this category may be sampled out under load
+         */
+        public boolean isSampleable() {
+            return sampleable;
+        }
+    }
+
+    private final long timestamp;
+    private final Category category;
+    private final Origin origin;
+    private final boolean sgadmin;
+    private final String effectiveUser;
+    private final String initiatingUser;
+    private final String action;
+    private final String requestClass;
+    private final String remoteAddress;
+    private final long taskId;
+    private final String detail;
+    private final String[] indices;
+
+    AuditEvent(final Category category, final Origin origin, final boolean sgadmin, final String effectiveUser, final String initiatingUser,
+            final String action, final String requestClass, final String remoteAddress, final long taskId, final String detail) {
+        this(category, origin, sgadmin, effectiveUser, initiatingUser, action, requestClass, remoteAddress, taskId, detail, null);
+    }
+
+    AuditEvent(final Category category, final Origin origin, final boolean sgadmin, final String effectiveUser, final String initiatingUser,
+            final String action, final String requestClass, final String remoteAddress, final long taskId, final String detail,
+            final String[] indices) {
+        this.indices = indices;
+        this.timestamp = System.currentTimeMillis();
+        this.category = category;
+        this.origin = origin;
+        this.sgadmin = sgadmin;
+        this.effectiveUser = effectiveUser;
+        this.initiatingUser = initiatingUser;
+        this.action = action;
+        this.requestClass = requestClass;
+        this.remoteAddress = remoteAddress;
+        this.taskId = taskId;
+        this.detail = detail;
+    }
+
+    static String address(final TransportAddress address) {
+        return address == null ? null : address.getAddress();
+    }
+
+    static String address(final SocketAddress address) {
+        if (address instanceof InetSocketAddress && ((InetSocketAddress) address).getAddress() != null) {
+            return ((InetSocketAddress) address).getAddress().getHostAddress();
+        }
+        return address == null ? null : address.toString();
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        builder.field("timestamp", timestamp);
+        builder.field("category", category.name());
+        if (origin != null) {
+            builder.field("origin", origin.name());
+        }
+        if (sgadmin) {
+            builder.field("sgadmin", true);
+        }
+        field(builder, "effective_user", effectiveUser);
+        field(builder, "initiating_user", initiatingUser);
+        field(builder, "action", action);
+        field(builder, "request_class", requestClass);
+        field(builder, "remote_address", remoteAddress);
+        if (taskId >= 0) {
+            builder.field("task_id", taskId);
+        }
+        field(builder, "detail", detail);
+        if (indices != null && indices.length > 0) {
+            builder.array("indices", indices);
+        }
+        builder.endObject();
+        return builder;
+    }
+
+    private static void field(final XContentBuilder builder, final String name, final String value) throws IOException {
+        if (value != null) {
+            builder.field(name, value);
+        }
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    public Origin getOrigin() {
+        return origin;
+    }
+
+    public String getEffectiveUser() {
+        return effectiveUser;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public boolean isSgadmin() {
+        return sgadmin;
+    }
+
+    public String getInitiatingUser() {
+        return initiatingUser;
+    }
+
+    public String getRequestClass() {
+        return requestClass;
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public long getTaskId() {
+        return taskId;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public String[] getIndices() {
+        return indices == null ? null : indices.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "AuditEvent [category=" + category + ", origin=" + origin + ", effectiveUser=" + effectiveUser + ", action=" + action + "]";
+    }
+}
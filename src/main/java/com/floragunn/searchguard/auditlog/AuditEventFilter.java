@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.auditlog;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.settings.Settings;
+
+import com.floragunn.searchguard.auditlog.AuditEvent.Category;
+import com.floragunn.searchguard.auditlog.AuditLog.Origin;
+import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.support.WildcardMatcher;
+
+/**
+ * The category, user and request filters of the audit log settings, applied on the request thread
+ * so that events which would be discarded anyway are never enqueued.
+ */
+final class AuditEventFilter {
+
+    private static final Logger log = LogManager.getLogger(AuditEventFilter.class);
+    private final boolean restEnabled;
+    private final boolean transportEnabled;
+    private final EnumSet<Category> disabledRestCategories;
+    private final EnumSet<Category> disabledTransportCategories;
+    private final List<String> ignoredUsers;
+    private final List<String> ignoredRequests;
+
+    AuditEventFilter(final Settings settings) {
+        this.restEnabled = settings.getAsBoolean(ConfigConstants.SEARCHGUARD_AUDIT_ENABLE_REST, true);
+        this.transportEnabled = settings.getAsBoolean(ConfigConstants.SEARCHGUARD_AUDIT_ENABLE_TRANSPORT, true);
+        this.disabledRestCategories = categories(settings.getAsList(ConfigConstants.SEARCHGUARD_AUDIT_CONFIG_DISABLED_REST_CATEGORIES,
+                defaultDisabledCategories()));
+        this.disabledTransportCategories = categories(settings.getAsList(ConfigConstants.SEARCHGUARD_AUDIT_CONFIG_DISABLED_TRANSPORT_CATEGORIES,
+                defaultDisabledCategories()));
+        this.ignoredUsers = settings.getAsList(ConfigConstants.SEARCHGUARD_AUDIT_IGNORE_USERS, Collections.singletonList("kibanaserver"));
+        this.ignoredRequests = settings.getAsList(ConfigConstants.SEARCHGUARD_AUDIT_IGNORE_REQUESTS, Collections.emptyList());
+    }
+
+    /**
+     * @return true if an event with these properties is to be audited
+     */
+    boolean accept(final Category category, final Origin origin, final String effectiveUser, final String request) {
+
+        if (category == Category.COMPLIANCE_DOC_READ || category == Category.COMPLIANCE_DOC_WRITE
+                || category == Category.COMPLIANCE_EXTERNAL_CONFIG) {
+            //governed by the compliance config
+            return true;
+        }
+
+        if (origin == Origin.REST) {
+            if (!restEnabled || disabledRestCategories.contains(category)) {
+                return false;
+            }
+        } else if (!transportEnabled || disabledTransportCategories.contains(category)) {
+            return false;
+        }
+
+        if (effectiveUser != null && !ignoredUsers.isEmpty() && WildcardMatcher.matchAny(ignoredUsers, effectiveUser)) {
+            return false;
+        }
+
+        if (request != null && !ignoredRequests.isEmpty() && WildcardMatcher.matchAny(ignoredRequests, request)) {
+            return false;
+        }
+
+        return true;
+    }
+
+    private static List<String> defaultDisabledCategories() {
+        return Arrays.asList(Category.AUTHENTICATED.name(), Category.GRANTED_PRIVILEGES.name());
+    }
+
+    private static EnumSet<Category> categories(final List<String> names) {
+        final EnumSet<Category> categories = EnumSet.noneOf(Category.class);
+
+        for (final String name : names) {
+            final String normalized = name.trim().toUpperCase(Locale.ROOT);
+
+            if (normalized.isEmpty() || normalized.equals("NONE")) {
+                continue;
+            }
+
+            try {
+                categories.add(Category.valueOf(normalized));
+            } catch (IllegalArgumentException e) {
+                log.warn("Unknown audit category {}", name);
+            }
+        }
+
+        return categories;
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.auditlog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+
+import com.floragunn.searchguard.support.ConfigConstants;
+
+/**
+ * Moves audit events off the request thread. Producers put events into a bounded lock-free ring buffer,
+ * a single consumer thread drains it and hands batches to the sink once either
+ * {@link ConfigConstants#SEARCHGUARD_AUDIT_PIPELINE_BATCH_SIZE} events are collected or
+ * {@link ConfigConstants#SEARCHGUARD_AUDIT_PIPELINE_FLUSH_INTERVAL_MS} elapsed since the first event of the batch.
+ * <p>
+ * If the buffer is full the {@link OverflowPolicy} decides what happens to new events.
+ */
+public class AuditEventPipeline implements Closeable {
+
+    public enum OverflowPolicy {
+        /** drop new events if the buffer is full */
+        DROP,
+        /** make the producing thread wait for space, at most {@link ConfigConstants#SEARCHGUARD_AUDIT_PIPELINE_BLOCK_TIMEOUT_MS}, then drop */
+        BLOCK,
+        /** above half of the capacity keep sampleable events with decreasing probability, drop if full */
+        SAMPLE
+    }
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    protected final Logger log = LogManager.getLogger(this.getClass());
+    private final RingBuffer buffer;
+    private final AuditEventSink sink;
+    private final OverflowPolicy policy;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long blockTimeoutNanos;
+    private final Thread consumer;
+    private volatile boolean running = true;
+    //true while the consumer is (about to get) parked, producers only unpark it then
+    private final AtomicBoolean consumerParked = new AtomicBoolean();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder sinkFailures = new LongAdder();
+    private long reportedDrops;
+
+    public AuditEventPipeline(final Settings settings, final AuditEventSink sink) {
+        this.sink = sink;
+        this.buffer = new RingBuffer(settings.getAsInt(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_BUFFER_SIZE, 8192));
+        this.policy = OverflowPolicy.valueOf(
+                settings.get(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_OVERFLOW_POLICY, OverflowPolicy.DROP.name()).toUpperCase(Locale.ROOT));
+        this.batchSize = Math.max(1, settings.getAsInt(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_BATCH_SIZE, 500));
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.getAsLong(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_FLUSH_INTERVAL_MS, 1000L));
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(settings.getAsLong(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_BLOCK_TIMEOUT_MS, 100L));
+        this.consumer = EsExecutors.daemonThreadFactory(settings, "searchguard_audit_pipeline").newThread(this::drain);
+        this.consumer.start();
+    }
+
+    /**
+     * @return false if the event was dropped or sampled out
+     */
+    public boolean submit(final AuditEvent event) {
+        submitted.increment();
+
+        if (!running) {
+            dropped.increment();
+            return false;
+        }
+
+        if (policy == OverflowPolicy.SAMPLE && event.getCategory().isSampleable() && !keepSample()) {
+            sampledOut.increment();
+            return false;
+        }
+
+        if (buffer.offer(event)) {
+            wakeConsumer();
+            return true;
+        }
+
+        if (policy == OverflowPolicy.BLOCK) {
+            //transport and network threads must not wait forever for a slow sink
+            final long deadline = System.nanoTime() + blockTimeoutNanos;
+
+            while (running && System.nanoTime() - deadline < 0) {
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                if (buffer.offer(event)) {
+                    wakeConsumer();
+                    return true;
+                }
+            }
+        }
+
+        dropped.increment();
+        return false;
+    }
+
+    private boolean keepSample() {
+        final int half = buffer.capacity() / 2;
+        final int size = buffer.size();
+
+        if (size < half) {
+            return true;
+        }
+
+        return ThreadLocalRandom.current().nextInt(half) >= size - half;
+    }
+
+    private void drain() {
+        final List<AuditEvent> batch = new ArrayList<>(Math.min(batchSize, buffer.capacity()));
+        long batchStart = 0;
+
+        while (true) {
+            final AuditEvent event = buffer.poll();
+
+            if (event != null) {
+                if (batch.isEmpty()) {
+                    batchStart = System.nanoTime();
+                }
+
+                batch.add(event);
+
+                if (batch.size() >= batchSize) {
+                    flush(batch);
+                }
+                continue;
+            }
+
+            if (!batch.isEmpty() && (!running || System.nanoTime() - batchStart >= flushIntervalNanos)) {
+                flush(batch);
+            } else if (!running) {
+                return;
+            } else if (batch.isEmpty()) {
+                //nothing to flush, sleep until a producer submits an event
+                parkConsumer(false, 0);
+            } else {
+                parkConsumer(true, flushIntervalNanos - (System.nanoTime() - batchStart));
+            }
+        }
+    }
+
+    private void parkConsumer(final boolean timed, final long nanos) {
+        consumerParked.set(true);
+
+        //re-check after publishing the flag, a producer which enqueued before that would not unpark us
+        if (running && buffer.size() == 0) {
+            if (!timed) {
+                LockSupport.park(this);
+            } else if (nanos > 0) {
+                LockSupport.parkNanos(this, nanos);
+            }
+        }
+
+        consumerParked.set(false);
+    }
+
+    private void wakeConsumer() {
+        if (consumerParked.get() && consumerParked.compareAndSet(true, false)) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private void flush(final List<AuditEvent> batch) {
+        try {
+            sink.store(batch);
+            written.add(batch.size());
+        } catch (Exception e) {
+            sinkFailures.increment();
+            log.error("Unable to store {} audit events", batch.size(), e);
+        } finally {
+            batches.increment();
+            batch.clear();
+        }
+
+        final long drops = dropped.sum();
+
+        if (drops > reportedDrops) {
+            log.warn("{} audit events dropped so far because the pipeline was full (policy {})", drops, policy);
+            reportedDrops = drops;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(consumer);
+
+        try {
+            consumer.join(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) + 10000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        sink.close();
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getSampledOut() {
+        return sampledOut.sum();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getSinkFailures() {
+        return sinkFailures.sum();
+    }
+
+    public int getQueued() {
+        return buffer.size();
+    }
+
+    /**
+     * Bounded multi producer/multi consumer queue (D. Vyukov), every slot carries a sequence number
+     * which tells producers and consumers whether it is free or filled for their lap.
+     */
+    static final class RingBuffer {
+
+        private final int mask;
+        private final AtomicReferenceArray<AuditEvent> events;
+        private final AtomicLongArray sequences;
+        private final AtomicLong enqueuePosition = new AtomicLong();
+        private final AtomicLong dequeuePosition = new AtomicLong();
+
+        RingBuffer(final int requestedCapacity) {
+            final int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+            this.mask = capacity - 1;
+            this.events = new AtomicReferenceArray<>(capacity);
+            this.sequences = new AtomicLongArray(capacity);
+
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        boolean offer(final AuditEvent event) {
+            long position = enqueuePosition.get();
+
+            while (true) {
+                final int index = (int) (position & mask);
+                final long diff = sequences.get(index) - position;
+
+                if (diff == 0) {
+                    if (enqueuePosition.compareAndSet(position, position + 1)) {
+                        events.lazySet(index, event);
+                        sequences.set(index, position + 1);
+                        return true;
+                    }
+                    position = enqueuePosition.get();
+                } else if (diff < 0) {
+                    return false;
+                } else {
+                    position = enqueuePosition.get();
+                }
+            }
+        }
+
+        AuditEvent poll() {
+            long position = dequeuePosition.get();
+
+            while (true) {
+                final int index = (int) (position & mask);
+                final long diff = sequences.get(index) - (position + 1);
+
+                if (diff == 0) {
+                    if (dequeuePosition.compareAndSet(position, position + 1)) {
+                        final AuditEvent event = events.get(index);
+                        events.lazySet(index, null);
+                        sequences.set(index, position + mask + 1);
+                        return event;
+                    }
+                    position = dequeuePosition.get();
+                } else if (diff < 0) {
+                    return null;
+                } else {
+                    position = dequeuePosition.get();
+                }
+            }
+        }
+
+        int size() {
+            return (int) Math.max(0, enqueuePosition.get() - dequeuePosition.get());
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.auditlog;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Destination of the audit event pipeline. Batches are delivered from a single thread, in order.
+ */
+public interface AuditEventSink extends Closeable {
+
+    /**
+     * Stores a batch of events. The list must not be retained after the call returns.
+     * A thrown exception is counted as a sink failure, the batch is not retried.
+     */
+    void store(List<AuditEvent> events) throws Exception;
+}
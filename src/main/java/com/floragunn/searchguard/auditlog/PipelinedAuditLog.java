@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.auditlog;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.IndicesRequest;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.engine.Engine.Delete;
+import org.elasticsearch.index.engine.Engine.DeleteResult;
+import org.elasticsearch.index.engine.Engine.Index;
+import org.elasticsearch.index.engine.Engine.IndexResult;
+import org.elasticsearch.index.get.GetResult;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportRequest;
+
+import com.floragunn.searchguard.auditlog.AuditEvent.Category;
+import com.floragunn.searchguard.compliance.ComplianceConfig;
+import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.user.User;
+
+/**
+ * Audit log which sits in front of an audit log module that also is an {@link AuditEventSink}. Calls which pass
+ * the audit filters are turned into compact {@link AuditEvent}s on the request thread and handed to an
+ * {@link AuditEventPipeline}, which delivers them to the module in batches. The request thread only pays for
+ * the extraction, the filter check and one enqueue.
+ * <p>
+ * Compliance events need the document contents, which are not kept in the compact events, so they are passed
+ * to the module directly.
+ */
+public class PipelinedAuditLog implements AuditLog {
+
+    private static final Logger log = LogManager.getLogger(PipelinedAuditLog.class);
+    private final AuditEventPipeline pipeline;
+    private final AuditLog delegate;
+    private final AuditEventFilter filter;
+    private final ThreadContext threadContext;
+
+    PipelinedAuditLog(final AuditEventPipeline pipeline, final AuditLog delegate, final AuditEventFilter filter, final ThreadContext threadContext) {
+        this.pipeline = pipeline;
+        this.delegate = delegate;
+        this.filter = filter;
+        this.threadContext = threadContext;
+    }
+
+    /**
+     * Puts a pipeline in front of the given audit log module. The module is returned as it is if it is a
+     * {@link NullAuditLog} or if it can not store batches of events (does not implement {@link AuditEventSink}).
+     */
+    public static AuditLog wrap(final AuditLog delegate, final Settings settings, final ThreadPool threadPool) {
+        if (delegate instanceof NullAuditLog) {
+            return delegate;
+        }
+
+        if (!(delegate instanceof AuditEventSink)) {
+            log.warn("Audit log module {} does not implement {}, audit events are not pipelined", delegate.getClass().getName(),
+                    AuditEventSink.class.getSimpleName());
+            return delegate;
+        }
+
+        return new PipelinedAuditLog(new AuditEventPipeline(settings, (AuditEventSink) delegate), delegate, new AuditEventFilter(settings),
+                threadPool.getThreadContext());
+    }
+
+    public AuditEventPipeline getPipeline() {
+        return pipeline;
+    }
+
+    @Override
+    public void close() throws IOException {
+        //closes the module (the sink) once the remaining events are drained
+        pipeline.close();
+    }
+
+    @Override
+    public void logFailedLogin(String effectiveUser, boolean sgadmin, String initiatingUser, TransportRequest request, Task task) {
+        submit(Category.FAILED_LOGIN, sgadmin, effectiveUser, initiatingUser, null, request, task, null);
+    }
+
+    @Override
+    public void logFailedLogin(String effectiveUser, boolean sgadmin, String initiatingUser, RestRequest request) {
+        submit(Category.FAILED_LOGIN, sgadmin, effectiveUser, initiatingUser, request, null);
+    }
+
+    @Override
+    public void logSucceededLogin(String effectiveUser, boolean sgadmin, String initiatingUser, TransportRequest request, String action, Task task) {
+        submit(Category.AUTHENTICATED, sgadmin, effectiveUser, initiatingUser, action, request, task, null);
+    }
+
+    @Override
+    public void logSucceededLogin(String effectiveUser, boolean sgadmin, String initiatingUser, RestRequest request) {
+        submit(Category.AUTHENTICATED, sgadmin, effectiveUser, initiatingUser, request, null);
+    }
+
+    @Override
+    public void logMissingPrivileges(String privilege, String effectiveUser, RestRequest request) {
+        submit(Category.MISSING_PRIVILEGES, false, effectiveUser, null, request, privilege);
+    }
+
+    @Override
+    public void logMissingPrivileges(String privilege, TransportRequest request, Task task) {
+        submit(Category.MISSING_PRIVILEGES, false, null, null, privilege, request, task, null);
+    }
+
+    @Override
+    public void logGrantedPrivileges(String privilege, TransportRequest request, Task task) {
+        submit(Category.GRANTED_PRIVILEGES, false, null, null, privilege, request, task, null);
+    }
+
+    @Override
+    public void logBadHeaders(TransportRequest request, String action, Task task) {
+        submit(Category.BAD_HEADERS, false, null, null, action, request, task, null);
+    }
+
+    @Override
+    public void logBadHeaders(RestRequest request) {
+        submit(Category.BAD_HEADERS, false, null, null, request, null);
+    }
+
+    @Override
+    public void logSgIndexAttempt(TransportRequest request, String action, Task task) {
+        submit(Category.SG_INDEX_ATTEMPT, false, null, null, action, request, task, null);
+    }
+
+    @Override
+    public void logSSLException(TransportRequest request, Throwable t, String action, Task task) {
+        submit(Category.SSL_EXCEPTION, false, null, null, action, request, task, t == null ? null : t.toString());
+    }
+
+    @Override
+    public void logSSLException(RestRequest request, Throwable t) {
+        submit(Category.SSL_EXCEPTION, false, null, null, request, t == null ? null : t.toString());
+    }
+
+    @Override
+    public void logDocumentRead(String index, String id, ShardId shardId, Map<String, String> fieldNameValues, ComplianceConfig complianceConfig) {
+        delegate.logDocumentRead(index, id, shardId, fieldNameValues, complianceConfig);
+    }
+
+    @Override
+    public void logDocumentWritten(ShardId shardId, GetResult originalIndex, Index currentIndex, IndexResult result,
+            ComplianceConfig complianceConfig) {
+        delegate.logDocumentWritten(shardId, originalIndex, currentIndex, result, complianceConfig);
+    }
+
+    @Override
+    public void logDocumentDeleted(ShardId shardId, Delete delete, DeleteResult result) {
+        delegate.logDocumentDeleted(shardId, delete, result);
+    }
+
+    @Override
+    public void logExternalConfig(Settings settings, Environment environment) {
+        delegate.logExternalConfig(settings, environment);
+    }
+
+    @Override
+    public void setComplianceConfig(ComplianceConfig complianceConfig) {
+        delegate.setComplianceConfig(complianceConfig);
+    }
+
+    private void submit(final Category category, final boolean sgadmin, final String effectiveUser, final String initiatingUser,
+            final String action, final TransportRequest request, final Task task, final String detail) {
+        final String origin0 = threadContext.getTransient(ConfigConstants.SG_ORIGIN);
+        final Origin origin = origin0 == null ? Origin.TRANSPORT : Origin.valueOf(origin0);
+        final User user = effectiveUser == null ? threadContext.getTransient(ConfigConstants.SG_USER) : null;
+        final String userName = effectiveUser != null ? effectiveUser : user == null ? null : user.getName();
+
+        if (!filter.accept(category, origin, userName, action)) {
+            return;
+        }
+
+        final String[] indices = request instanceof IndicesRequest ? ((IndicesRequest) request).indices() : null;
+
+        pipeline.submit(new AuditEvent(category, origin, sgadmin, userName, initiatingUser, action,
+                request == null ? null : request.getClass().getSimpleName(), request == null ? null : AuditEvent.address(request.remoteAddress()),
+                task == null ? -1 : task.getId(), detail, indices == null ? null : indices.clone()));
+    }
+
+    private void submit(final Category category, final boolean sgadmin, final String effectiveUser, final String initiatingUser,
+            final RestRequest request, final String detail) {
+        final String path = request == null ? null : request.path();
+
+        if (!filter.accept(category, Origin.REST, effectiveUser, path)) {
+            return;
+        }
+
+        pipeline.submit(new AuditEvent(category, Origin.REST, sgadmin, effectiveUser, initiatingUser, path, null,
+                request == null ? null : AuditEvent.address(request.getRemoteAddress()), -1, detail));
+    }
+}
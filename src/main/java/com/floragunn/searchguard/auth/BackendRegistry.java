@@ -17,6 +17,7 @@
 
 package com.floragunn.searchguard.auth;
 
+import java.io.Closeable;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.file.Path;
@@ -25,16 +26,23 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
 
-import javax.naming.InvalidNameException;
 import javax.naming.ldap.LdapName;
 import javax.naming.ldap.Rdn;
 
@@ -43,6 +51,7 @@ import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ElasticsearchSecurityException;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.TransportAddress;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.rest.BytesRestResponse;
 import org.elasticsearch.rest.RestChannel;
@@ -61,6 +70,10 @@ import com.floragunn.searchguard.auth.limiting.AddressBasedRateLimiter;
 import com.floragunn.searchguard.auth.limiting.UserNameBasedRateLimiter;
 import com.floragunn.searchguard.configuration.AdminDNs;
 import com.floragunn.searchguard.configuration.ConfigurationChangeListener;
+import com.floragunn.searchguard.configuration.ConfigurationDiff;
+import com.floragunn.searchguard.configuration.ConfigurationReloadListener;
+import com.floragunn.searchguard.configuration.InternalUserConfig;
+import com.floragunn.searchguard.configuration.TypedConfiguration;
 import com.floragunn.searchguard.http.HTTPBasicAuthenticator;
 import com.floragunn.searchguard.http.HTTPClientCertAuthenticator;
 import com.floragunn.searchguard.http.HTTPProxyAuthenticator;
@@ -68,7 +81,10 @@ import com.floragunn.searchguard.http.XFFResolver;
 import com.floragunn.searchguard.ssl.util.Utils;
 import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.HTTPHelper;
+import com.floragunn.searchguard.support.LdapNames;
 import com.floragunn.searchguard.support.ReflectionHelper;
+import com.floragunn.searchguard.support.RequestLatencyStats;
+import com.floragunn.searchguard.support.RequestLatencyStats.Stage;
 import com.floragunn.searchguard.user.AuthCredentials;
 import com.floragunn.searchguard.user.User;
 import com.google.common.base.Strings;
@@ -80,7 +96,7 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 
-public class BackendRegistry implements ConfigurationChangeListener {
+public class BackendRegistry implements ConfigurationChangeListener, Closeable {
 
     protected final Logger log = LogManager.getLogger(this.getClass());
     private final Map<String, String> authImplMap = new HashMap<>();
@@ -97,12 +113,15 @@ public class BackendRegistry implements ConfigurationChangeListener {
     private final AdminDNs adminDns;
     private final XFFResolver xffResolver;
     private volatile boolean anonymousAuthEnabled = false;
+    private volatile boolean parallelAuthenticationEnabled = false;
+    private final ThreadPoolExecutor authExecutor;
     private final Settings esSettings;
     private final Path configPath;
     private final InternalAuthenticationBackend iab;
     private final AuditLog auditLog;
     private final ThreadPool threadPool;
     private final UserInjector userInjector;
+    private final RequestLatencyStats latencyStats;
     private final int ttlInMin;
     private Cache<AuthCredentials, User> userCache; //rest standard
     private Cache<String, User> restImpersonationCache; //used for rest impersonation
@@ -112,11 +131,27 @@ public class BackendRegistry implements ConfigurationChangeListener {
     private Cache<User, Set<String>> transportRoleCache; //
     private Cache<User, Set<String>> restRoleCache; //
     private Cache<String, User> transportImpersonationCache; //used for transport impersonation
+    private Cache<String, AuthDomain> lastSuccessfulRestAuthDomain; //rest auth domain which authenticated a user the last time
+    private OffHeapUserCache<AuthCredentials> userCacheOffHeap; //second level of userCache, null if disabled
+    private OffHeapUserCache<AuthCredentials> authenticatedUserCacheTransportOffHeap; //second level of authenticatedUserCacheTransport, null if disabled
 
     private volatile String transportUsernameAttribute = null;
+    private volatile Settings authczSettings = null;
+    private volatile Map<String, InternalUserConfig> internalUsers = null;
+
+    private CacheBuilder<Object, Object> newHeapTierBuilder() {
+        final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES);
+
+        if (esSettings.getAsBoolean(ConfigConstants.SEARCHGUARD_CACHE_OFFHEAP_ENABLED, false)) {
+            //most users are kept off-heap, the heap only holds the hot ones
+            builder.maximumSize(esSettings.getAsInt(ConfigConstants.SEARCHGUARD_CACHE_OFFHEAP_HEAP_MAX_ENTRIES, 10000));
+        }
+
+        return builder;
+    }
 
     private void createCaches() {
-        userCache = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES)
+        userCache = newHeapTierBuilder()
                 .removalListener(new RemovalListener<AuthCredentials, User>() {
                     @Override
                     public void onRemoval(RemovalNotification<AuthCredentials, User> notification) {
@@ -132,7 +167,7 @@ public class BackendRegistry implements ConfigurationChangeListener {
                     }
                 }).build();
 
-        authenticatedUserCacheTransport = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES)
+        authenticatedUserCacheTransport = newHeapTierBuilder()
                 .removalListener(new RemovalListener<AuthCredentials, User>() {
                     @Override
                     public void onRemoval(RemovalNotification<AuthCredentials, User> notification) {
@@ -172,10 +207,18 @@ public class BackendRegistry implements ConfigurationChangeListener {
                     }
                 }).build();
 
+        if (esSettings.getAsBoolean(ConfigConstants.SEARCHGUARD_CACHE_OFFHEAP_ENABLED, false)) {
+            final long offHeapBytes = esSettings.getAsLong(ConfigConstants.SEARCHGUARD_CACHE_OFFHEAP_MAX_SIZE_MB, 256L) * 1024L * 1024L;
+            userCacheOffHeap = new OffHeapUserCache<>(offHeapBytes / 2, ttlInMin, TimeUnit.MINUTES);
+            authenticatedUserCacheTransportOffHeap = new OffHeapUserCache<>(offHeapBytes / 2, ttlInMin, TimeUnit.MINUTES);
+            log.info("Off-heap user cache enabled with {} bytes", offHeapBytes);
+        }
+
+        lastSuccessfulRestAuthDomain = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES).maximumSize(10000).build();
     }
 
     public BackendRegistry(final Settings settings, final Path configPath, final AdminDNs adminDns, final XFFResolver xffResolver,
-            final InternalAuthenticationBackend iab, final AuditLog auditLog, final ThreadPool threadPool) {
+            final InternalAuthenticationBackend iab, final AuditLog auditLog, final ThreadPool threadPool, final RequestLatencyStats latencyStats) {
         this.adminDns = adminDns;
         this.esSettings = settings;
         this.configPath = configPath;
@@ -183,6 +226,7 @@ public class BackendRegistry implements ConfigurationChangeListener {
         this.iab = iab;
         this.auditLog = auditLog;
         this.threadPool = threadPool;
+        this.latencyStats = latencyStats;
         this.userInjector = new UserInjector(settings, threadPool, auditLog, xffResolver);
 
         authImplMap.put("intern_c", InternalAuthenticationBackend.class.getName());
@@ -210,6 +254,12 @@ public class BackendRegistry implements ConfigurationChangeListener {
 
         this.ttlInMin = settings.getAsInt(ConfigConstants.SEARCHGUARD_CACHE_TTL_MINUTES, 60);
 
+        final int authThreads = settings.getAsInt(ConfigConstants.SEARCHGUARD_AUTHC_PARALLEL_THREAD_POOL_SIZE, 4);
+        this.authExecutor = new ThreadPoolExecutor(authThreads, authThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, settings.getAsInt(ConfigConstants.SEARCHGUARD_AUTHC_PARALLEL_QUEUE_SIZE, 100))),
+                EsExecutors.daemonThreadFactory(settings, "searchguard_parallel_authc"));
+        this.authExecutor.allowCoreThreadTimeOut(true);
+
         createCaches();
     }
 
@@ -217,6 +267,11 @@ public class BackendRegistry implements ConfigurationChangeListener {
         return initialized;
     }
 
+    @Override
+    public void close() {
+        authExecutor.shutdownNow();
+    }
+
     public void invalidateCache() {
         userCache.invalidateAll();
         userCacheTransport.invalidateAll();
@@ -225,8 +280,142 @@ public class BackendRegistry implements ConfigurationChangeListener {
         restRoleCache.invalidateAll();
         transportRoleCache.invalidateAll();
         transportImpersonationCache.invalidateAll();
+        lastSuccessfulRestAuthDomain.invalidateAll();
+
+        if (userCacheOffHeap != null) {
+            userCacheOffHeap.invalidateAll();
+            authenticatedUserCacheTransportOffHeap.invalidateAll();
+        }
+    }
+
+    /**
+     * Remove all cached authentication and authorization results for the given users
+     * 
+     * @param usernames The names of the users to evict
+     * @return The number of evicted cache entries
+     */
+    public int evictUsers(final Collection<String> usernames) {
+        if (usernames == null || usernames.isEmpty()) {
+            return 0;
+        }
+
+        int evicted = 0;
+        evicted += evict(userCache, (k, v) -> usernames.contains(k.getUsername()) || usernames.contains(v.getName()));
+        evicted += evict(authenticatedUserCacheTransport, (k, v) -> usernames.contains(k.getUsername()) || usernames.contains(v.getName()));
+        evicted += evict(userCacheTransport, (k, v) -> usernames.contains(k) || usernames.contains(v.getName()));
+        evicted += evict(restImpersonationCache, (k, v) -> usernames.contains(k) || usernames.contains(v.getName()));
+        evicted += evict(transportImpersonationCache, (k, v) -> usernames.contains(k) || usernames.contains(v.getName()));
+        evicted += evict(restRoleCache, (k, v) -> usernames.contains(k.getName()));
+        evicted += evict(transportRoleCache, (k, v) -> usernames.contains(k.getName()));
+
+        if (userCacheOffHeap != null) {
+            evicted += userCacheOffHeap.evict((k, v) -> usernames.contains(k.getUsername()) || usernames.contains(v.getName()));
+            evicted += authenticatedUserCacheTransportOffHeap.evict((k, v) -> usernames.contains(k.getUsername()) || usernames.contains(v.getName()));
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Evicted {} cache entries for users {}", evicted, usernames);
+        }
+
+        return evicted;
     }
 
+    /**
+     * Remove all cached authentication and authorization results for users which are member of at least one of the given backend roles
+     * 
+     * @param backendRoles The backend roles
+     * @return The number of evicted cache entries
+     */
+    public int evictBackendRoles(final Collection<String> backendRoles) {
+        if (backendRoles == null || backendRoles.isEmpty()) {
+            return 0;
+        }
+
+        int evicted = 0;
+        evicted += evict(userCache, (k, v) -> !Collections.disjoint(v.getRoles(), backendRoles));
+        evicted += evict(authenticatedUserCacheTransport, (k, v) -> !Collections.disjoint(v.getRoles(), backendRoles));
+        evicted += evict(userCacheTransport, (k, v) -> !Collections.disjoint(v.getRoles(), backendRoles));
+        evicted += evict(restImpersonationCache, (k, v) -> !Collections.disjoint(v.getRoles(), backendRoles));
+        evicted += evict(transportImpersonationCache, (k, v) -> !Collections.disjoint(v.getRoles(), backendRoles));
+        evicted += evict(restRoleCache, (k, v) -> !Collections.disjoint(v, backendRoles));
+        evicted += evict(transportRoleCache, (k, v) -> !Collections.disjoint(v, backendRoles));
+
+        if (userCacheOffHeap != null) {
+            evicted += userCacheOffHeap.evict((k, v) -> !Collections.disjoint(v.getRoles(), backendRoles));
+            evicted += authenticatedUserCacheTransportOffHeap.evict((k, v) -> !Collections.disjoint(v.getRoles(), backendRoles));
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Evicted {} cache entries for backend roles {}", evicted, backendRoles);
+        }
+
+        return evicted;
+    }
+
+    private static <K, V> int evict(final Cache<K, V> cache, final BiPredicate<K, V> predicate) {
+        int evicted = 0;
+        for (final Iterator<Map.Entry<K, V>> it = cache.asMap().entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<K, V> entry = it.next();
+            if (predicate.test(entry.getKey(), entry.getValue())) {
+                it.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Listener for the internal users configuration. Only the users whose entries were added, changed or removed
+     * are evicted from the caches, all other cached users (including users from other backends) are retained.
+     * It needs to be subscribed after the listener which publishes the internal users to the internal authentication
+     * backend, otherwise users could be cached again from the old configuration after they were evicted.
+     */
+    public final ConfigurationReloadListener internalUsersReloadListener = new ConfigurationReloadListener() {
+
+        @Override
+        public void onReloadCompleted(final Map<String, Settings> configuration, final Map<String, ConfigurationDiff> diffs) {
+
+            if (!diffs.containsKey(ConfigConstants.CONFIGNAME_INTERNAL_USERS)) {
+                return;
+            }
+
+            final Map<String, InternalUserConfig> previous = internalUsers;
+            final Map<String, InternalUserConfig> current = TypedConfiguration
+                    .internalUsers(configuration.get(ConfigConstants.CONFIGNAME_INTERNAL_USERS));
+            internalUsers = current;
+
+            if (previous == null) {
+                invalidateCache();
+                return;
+            }
+
+            final Set<String> changed = new HashSet<>();
+            final Set<String> names = new HashSet<>(previous.keySet());
+            names.addAll(current.keySet());
+
+            for (final String name : names) {
+                final InternalUserConfig before = previous.get(name);
+                final InternalUserConfig after = current.get(name);
+
+                if (!Objects.equals(before, after)) {
+                    changed.add(name);
+
+                    if (before != null && before.getUsername() != null) {
+                        changed.add(before.getUsername());
+                    }
+
+                    if (after != null && after.getUsername() != null) {
+                        changed.add(after.getUsername());
+                    }
+                }
+            }
+
+            if (!changed.isEmpty()) {
+                evictUsers(changed);
+            }
+        }
+    };
+
     @Override
     public void onChange(final Settings settings) {
 
@@ -335,11 +524,20 @@ public class BackendRegistry implements ConfigurationChangeListener {
         createAuthFailureListeners(settings.getGroups("searchguard.dynamic.auth_failure_listeners"), ipAuthFailureListeners0,
                 authBackendFailureListeners0, ipClientBlockRegistries0, authBackendClientBlockRegistries0, destroyableComponents0);
 
-        invalidateCache();
+        //cached users only become stale if the authentication/authorization setup itself changed
+        final Settings authczSettings0 = settings.filter(k -> k.startsWith("searchguard.dynamic.authc.")
+                || k.startsWith("searchguard.dynamic.authz.") || k.equals("searchguard.dynamic.transport_userrname_attribute"));
+
+        if (!authczSettings0.equals(authczSettings)) {
+            invalidateCache();
+        }
+
+        authczSettings = authczSettings0;
 
         transportUsernameAttribute = settings.get("searchguard.dynamic.transport_userrname_attribute", null);
         anonymousAuthEnabled = settings.getAsBoolean("searchguard.dynamic.http.anonymous_auth_enabled", false)
                 && !esSettings.getAsBoolean(ConfigConstants.SEARCHGUARD_COMPLIANCE_DISABLE_ANONYMOUS_AUTHENTICATION, false);
+        parallelAuthenticationEnabled = settings.getAsBoolean("searchguard.dynamic.http.parallel_authentication_enabled", false);
 
         List<Destroyable> originalDestroyableComponents = destroyableComponents;
 
@@ -417,6 +615,15 @@ public class BackendRegistry implements ConfigurationChangeListener {
     }
 
     public User authenticate(final TransportRequest request, final String sslPrincipal, final Task task, final String action) {
+        final long start = latencyStats.start();
+        try {
+            return authenticateTransport(request, sslPrincipal, task, action);
+        } finally {
+            latencyStats.record(Stage.AUTHENTICATION, action, start);
+        }
+    }
+
+    private User authenticateTransport(final TransportRequest request, final String sslPrincipal, final Task task, final String action) {
 
         if (log.isDebugEnabled() && request.remoteAddress() != null) {
             log.debug("Transport authentication request from {}", request.remoteAddress());
@@ -528,6 +735,15 @@ public class BackendRegistry implements ConfigurationChangeListener {
      * @throws ElasticsearchSecurityException
      */
     public boolean authenticate(final RestRequest request, final RestChannel channel, final ThreadContext threadContext) {
+        final long start = latencyStats.start();
+        try {
+            return authenticateRest(request, channel, threadContext);
+        } finally {
+            latencyStats.record(Stage.AUTHENTICATION, RequestLatencyStats.REST, start);
+        }
+    }
+
+    private boolean authenticateRest(final RestRequest request, final RestChannel channel, final ThreadContext threadContext) {
 
         if (request.getRemoteAddress() instanceof InetSocketAddress && isBlocked(((InetSocketAddress) request.getRemoteAddress()).getAddress())) {
             if (log.isDebugEnabled()) {
@@ -576,6 +792,13 @@ public class BackendRegistry implements ConfigurationChangeListener {
 
         HTTPAuthenticator firstChallengingHttpAuthenticator = null;
 
+        final SortedSet<AuthDomain> restAuthDomains = this.restAuthDomains;
+
+        //evaluate the auth domains concurrently, the loop below still decides in order
+        final Map<AuthDomain, RestAuthAttempt> attempts = parallelAuthenticationEnabled && restAuthDomains.size() > 1
+                ? startRestAuthAttempts(restAuthDomains, request, threadContext)
+                : null;
+
         //loop over all http/rest auth domains
         for (final AuthDomain authDomain : restAuthDomains) {
 
@@ -588,9 +811,10 @@ public class BackendRegistry implements ConfigurationChangeListener {
             if (log.isTraceEnabled()) {
                 log.trace("Try to extract auth creds from {} http authenticator", httpAuthenticator.getType());
             }
+            final RestAuthAttempt attempt = attempts == null ? null : attempts.get(authDomain);
             final AuthCredentials ac;
             try {
-                ac = httpAuthenticator.extractCredentials(request, threadContext);
+                ac = attempt == null ? httpAuthenticator.extractCredentials(request, threadContext) : attempt.getCredentials();
             } catch (Exception e1) {
                 if (log.isDebugEnabled()) {
                     log.debug("'{}' extracting credentials from {} http authenticator", e1.toString(), httpAuthenticator.getType(), e1);
@@ -639,7 +863,8 @@ public class BackendRegistry implements ConfigurationChangeListener {
             }
 
             //http completed       
-            authenticatedUser = authcz(userCache, restRoleCache, ac, authDomain.getBackend(), restAuthorizers);
+            authenticatedUser = attempt == null || attempt.task == null ? authcz(userCache, restRoleCache, ac, authDomain.getBackend(), restAuthorizers)
+                    : attempt.getUser();
 
             if (authenticatedUser == null) {
                 if (log.isDebugEnabled()) {
@@ -673,9 +898,21 @@ public class BackendRegistry implements ConfigurationChangeListener {
 
             authenticatedUser.setRequestedTenant(tenant);
             authenticated = true;
+
+            if (parallelAuthenticationEnabled) {
+                lastSuccessfulRestAuthDomain.put(ac.getUsername(), authDomain);
+            }
+
             break;
         } //end looping auth domains
 
+        if (attempts != null) {
+            //an earlier domain decided, lookups which were submitted but not started are not needed anymore
+            for (final RestAuthAttempt attempt : attempts.values()) {
+                attempt.cancel();
+            }
+        }
+
         if (authenticated) {
             final User impersonatedUser = impersonate(request, authenticatedUser);
             threadContext.putTransient(ConfigConstants.SG_USER, impersonatedUser == null ? authenticatedUser : impersonatedUser);
@@ -792,7 +1029,8 @@ public class BackendRegistry implements ConfigurationChangeListener {
             final Set<String> cachedBackendRoles = roleCache.getIfPresent(authenticatedUser);
 
             if (cachedBackendRoles != null) {
-                authenticatedUser.addRoles(new HashSet<String>(cachedBackendRoles));
+                //cached role sets are immutable and interned, no need to copy them
+                authenticatedUser.addRoles(cachedBackendRoles);
                 return;
             }
         }
@@ -813,7 +1051,7 @@ public class BackendRegistry implements ConfigurationChangeListener {
         }
 
         if (roleCache != null) {
-            roleCache.put(authenticatedUser, new HashSet<String>(authenticatedUser.getRoles()));
+            roleCache.put(authenticatedUser, authenticatedUser.snapshot().getRoles());
         }
     }
 
@@ -839,9 +1077,20 @@ public class BackendRegistry implements ConfigurationChangeListener {
                 return authBackend.authenticate(ac);
             }
 
+            final OffHeapUserCache<AuthCredentials> offHeapCache = cache == userCache ? userCacheOffHeap
+                    : cache == authenticatedUserCacheTransport ? authenticatedUserCacheTransportOffHeap : null;
+
             return cache.get(ac, new Callable<User>() {
                 @Override
                 public User call() throws Exception {
+                    if (offHeapCache != null) {
+                        final User offHeapUser = offHeapCache.getIfPresent(ac);
+
+                        if (offHeapUser != null) {
+                            return offHeapUser;
+                        }
+                    }
+
                     if (log.isTraceEnabled()) {
                         log.trace("Credentials for user " + ac.getUsername() + " not cached, return from " + authBackend.getType()
                                 + " backend directly");
@@ -849,6 +1098,10 @@ public class BackendRegistry implements ConfigurationChangeListener {
                     final User authenticatedUser = authBackend.authenticate(ac);
                     authz(authenticatedUser, roleCache, authorizers);
 
+                    if (offHeapCache != null) {
+                        offHeapCache.put(ac, authenticatedUser);
+                    }
+
                     return authenticatedUser;
                 }
             });
@@ -862,6 +1115,114 @@ public class BackendRegistry implements ConfigurationChangeListener {
         }
     }
 
+    /**
+     * Submits the backend lookups to the parallel auth executor if the user was authenticated by a certain domain before.
+     * Only that domain and the domains ordered before it are touched, domains ordered after it are never evaluated in
+     * advance, so there are no lookups (and failed login side effects) which the sequential evaluation would not do.
+     * Without a remembered domain nothing is submitted. Lookups which are not submitted (or which are rejected by the
+     * executor) are evaluated lazily on the calling thread, domains without an attempt are evaluated as usual.
+     */
+    private Map<AuthDomain, RestAuthAttempt> startRestAuthAttempts(final SortedSet<AuthDomain> restAuthDomains, final RestRequest request,
+            final ThreadContext threadContext) {
+        final Map<AuthDomain, RestAuthAttempt> attempts = new HashMap<>(restAuthDomains.size());
+        final List<RestAuthAttempt> candidates = new ArrayList<>(restAuthDomains.size());
+        AuthDomain rememberedDomain = null;
+        RestAuthAttempt remembered = null;
+
+        for (final AuthDomain authDomain : restAuthDomains) {
+            final RestAuthAttempt attempt = new RestAuthAttempt();
+            attempts.put(authDomain, attempt);
+
+            try {
+                attempt.credentials = authDomain.getHttpAuthenticator().extractCredentials(request, threadContext);
+            } catch (Exception e) {
+                attempt.extractionException = e;
+                continue;
+            }
+
+            final AuthCredentials ac = attempt.credentials;
+
+            if (ac == null || !ac.isComplete() || isBlocked(authDomain.getBackend().getClass().getName(), ac.getUsername())) {
+                continue;
+            }
+
+            if (rememberedDomain == null) {
+                rememberedDomain = lastSuccessfulRestAuthDomain.getIfPresent(ac.getUsername());
+
+                if (rememberedDomain == null) {
+                    //no domain is known to succeed, evaluate sequentially
+                    return attempts;
+                }
+            }
+
+            attempt.task = new FutureTask<User>(() -> authcz(userCache, restRoleCache, ac, authDomain.getBackend(), restAuthorizers));
+            candidates.add(attempt);
+
+            if (authDomain == rememberedDomain) {
+                remembered = attempt;
+                break;
+            }
+        }
+
+        if (remembered == null || candidates.size() < 2) {
+            return attempts;
+        }
+
+        //the first candidate is evaluated by the calling thread anyway
+        final List<RestAuthAttempt> submit = new ArrayList<>(candidates.subList(1, candidates.size() - 1));
+        submit.add(0, remembered);
+
+        for (final RestAuthAttempt attempt : submit) {
+            try {
+                authExecutor.execute(threadContext.preserveContext(attempt.task));
+            } catch (RejectedExecutionException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Parallel authentication rejected, will authenticate sequentially: {}", e.toString());
+                }
+                break;
+            }
+        }
+
+        return attempts;
+    }
+
+    private class RestAuthAttempt {
+        private AuthCredentials credentials;
+        private Exception extractionException;
+        private FutureTask<User> task;
+
+        AuthCredentials getCredentials() throws Exception {
+            if (extractionException != null) {
+                throw extractionException;
+            }
+            return credentials;
+        }
+
+        /**
+         * Prevents the lookup from running if it was not started yet
+         */
+        void cancel() {
+            if (task != null) {
+                task.cancel(false);
+            }
+        }
+
+        User getUser() {
+            //runs the lookup on the calling thread if it was not picked up by the executor yet
+            task.run();
+
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                log.error("Unexpected exception during parallel authentication {} ", e.getCause(), e.getCause());
+                return null;
+            }
+        }
+    }
+
     private User impersonate(final TransportRequest tr, final User origPKIuser) throws ElasticsearchSecurityException {
 
         final String impersonatedUser = threadPool.getThreadContext().getHeader("sg_impersonate_as");
@@ -885,36 +1246,36 @@ public class BackendRegistry implements ConfigurationChangeListener {
                     "'" + origPKIuser.getName() + "' is not allowed to impersonate as an adminuser  '" + impersonatedUser + "'");
         }
 
-        try {
-            if (impersonatedUser != null && !adminDns.isTransportImpersonationAllowed(new LdapName(origPKIuser.getName()), impersonatedUser)) {
-                throw new ElasticsearchSecurityException(
-                        "'" + origPKIuser.getName() + "' is not allowed to impersonate as transport user '" + impersonatedUser + "'");
-            } else if (impersonatedUser != null) {
-                //loop over all transport auth domains
-                for (final AuthDomain authDomain : transportAuthDomains) {
-                    final AuthenticationBackend authenticationBackend = authDomain.getBackend();
-                    final User impersonatedUserObject = checkExistsAndAuthz(transportImpersonationCache, new User(impersonatedUser),
-                            authenticationBackend, transportAuthorizers);
-
-                    if (impersonatedUserObject == null) {
-                        log.debug(
-                                "Unable to impersonate transport user from '{}' to '{}' because the impersonated user does not exists in {}, try next ...",
-                                origPKIuser.getName(), impersonatedUser, authenticationBackend.getType());
-                        continue;
-                    }
+        if (impersonatedUser != null && LdapNames.parse(origPKIuser.getName()) == null) {
+            throw new ElasticsearchSecurityException("PKI does not have a valid name ('" + origPKIuser.getName() + "'), should never happen");
+        }
 
-                    if (log.isDebugEnabled()) {
-                        log.debug("Impersonate transport user from '{}' to '{}'", origPKIuser.getName(), impersonatedUser);
-                    }
-                    return impersonatedUserObject;
+        if (impersonatedUser != null && !adminDns.isTransportImpersonationAllowed(origPKIuser.getName(), impersonatedUser)) {
+            throw new ElasticsearchSecurityException(
+                    "'" + origPKIuser.getName() + "' is not allowed to impersonate as transport user '" + impersonatedUser + "'");
+        } else if (impersonatedUser != null) {
+            //loop over all transport auth domains
+            for (final AuthDomain authDomain : transportAuthDomains) {
+                final AuthenticationBackend authenticationBackend = authDomain.getBackend();
+                final User impersonatedUserObject = checkExistsAndAuthz(transportImpersonationCache, new User(impersonatedUser),
+                        authenticationBackend, transportAuthorizers);
+
+                if (impersonatedUserObject == null) {
+                    log.debug(
+                            "Unable to impersonate transport user from '{}' to '{}' because the impersonated user does not exists in {}, try next ...",
+                            origPKIuser.getName(), impersonatedUser, authenticationBackend.getType());
+                    continue;
                 }
 
-                log.debug("Unable to impersonate transport user from '{}' to '{}' because the impersonated user does not exists",
-                        origPKIuser.getName(), impersonatedUser);
-                throw new ElasticsearchSecurityException("No such transport user: " + impersonatedUser, RestStatus.FORBIDDEN);
+                if (log.isDebugEnabled()) {
+                    log.debug("Impersonate transport user from '{}' to '{}'", origPKIuser.getName(), impersonatedUser);
+                }
+                return impersonatedUserObject;
             }
-        } catch (final InvalidNameException e1) {
-            throw new ElasticsearchSecurityException("PKI does not have a valid name ('" + origPKIuser.getName() + "'), should never happen", e1);
+
+            log.debug("Unable to impersonate transport user from '{}' to '{}' because the impersonated user does not exists",
+                    origPKIuser.getName(), impersonatedUser);
+            throw new ElasticsearchSecurityException("No such transport user: " + impersonatedUser, RestStatus.FORBIDDEN);
         }
 
         return aU;
@@ -1008,15 +1369,13 @@ public class BackendRegistry implements ConfigurationChangeListener {
     private User resolveTransportUsernameAttribute(User pkiUser) {
         //#547
         if (transportUsernameAttribute != null && !transportUsernameAttribute.isEmpty()) {
-            try {
-                final LdapName sslPrincipalAsLdapName = new LdapName(pkiUser.getName());
+            final LdapName sslPrincipalAsLdapName = LdapNames.parse(pkiUser.getName());
+            if (sslPrincipalAsLdapName != null) {
                 for (final Rdn rdn : sslPrincipalAsLdapName.getRdns()) {
                     if (rdn.getType().equals(transportUsernameAttribute)) {
                         return new User((String) rdn.getValue());
                     }
                 }
-            } catch (InvalidNameException e) {
-                //cannot happen
             }
         }
 
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.auth;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+
+import com.floragunn.searchguard.support.Base64Helper;
+import com.floragunn.searchguard.user.User;
+
+/**
+ * Second level user cache which keeps the users in direct (off-heap) memory.
+ * <p/>
+ * The users are appended to a few large direct buffers (slabs), only the key and a small index entry (slab, offset, length)
+ * remain on the heap. Plain users are stored in a compact serialized form (name, backend roles, attributes), subclasses
+ * of {@link User} (like LDAP users) are java serialized. Entries are deserialized lazily when they are requested.
+ * <p/>
+ * Entries expire after the configured ttl. If the memory budget is exhausted the oldest slab is dropped together with
+ * all entries which were written to it, so eviction happens in insertion order. Slabs are never written twice,
+ * readers which still hold an entry of a dropped slab keep reading consistent data.
+ *
+ * @param <K> The cache key
+ */
+public final class OffHeapUserCache<K> {
+
+    private static final int MIN_SLAB_BYTES = 64 * 1024;
+    private static final int MAX_SLAB_BYTES = 4 * 1024 * 1024;
+    private static final byte COMPACT = 0;
+    private static final byte SERIALIZED = 1;
+
+    private final Logger log = LogManager.getLogger(this.getClass());
+    private final ConcurrentHashMap<K, Slot> index = new ConcurrentHashMap<>();
+    //slabs in allocation order, guarded by lock like all other modifications
+    private final ArrayDeque<Slab<K>> slabs = new ArrayDeque<>();
+    private final Object lock = new Object();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final int slabBytes;
+    private final int maxSlabs;
+    private final long ttlNanos;
+
+    public OffHeapUserCache(final long maxBytes, final long ttl, final TimeUnit unit) {
+        this(maxBytes, (int) Math.max(1, Math.min(MAX_SLAB_BYTES, Math.max(maxBytes / 16, Math.min(maxBytes, MIN_SLAB_BYTES)))), ttl, unit);
+    }
+
+    OffHeapUserCache(final long maxBytes, final int slabBytes, final long ttl, final TimeUnit unit) {
+        this.slabBytes = slabBytes;
+        this.maxSlabs = (int) Math.max(1, maxBytes / slabBytes);
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    public User getIfPresent(final K key) {
+        final Slot slot = index.get(key);
+
+        if (slot == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (System.nanoTime() - slot.created > ttlNanos) {
+            remove(key, slot);
+            misses.increment();
+            return null;
+        }
+
+        try {
+            final User user = slot.decode();
+            hits.increment();
+            return user;
+        } catch (IOException | ElasticsearchException e) {
+            log.error("Unable to read off-heap cache entry for {}", slot.name, e);
+            remove(key, slot);
+            misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the user was stored, false if it does not fit into a slab or can not be serialized
+     */
+    public boolean put(final K key, final User user) {
+        if (key == null || user == null) {
+            return false;
+        }
+
+        final byte[] bytes;
+
+        try {
+            bytes = encode(user);
+        } catch (IOException | ElasticsearchException e) {
+            log.error("Unable to write off-heap cache entry for {} ({})", user.getName(), user.getClass().getName(), e);
+            return false;
+        }
+
+        if (bytes.length > slabBytes) {
+            log.debug("Off-heap cache entry for {} with {} bytes does not fit into a slab of {} bytes", user.getName(), bytes.length, slabBytes);
+            return false;
+        }
+
+        synchronized (lock) {
+            Slab<K> slab = slabs.peekLast();
+
+            if (slab == null || slab.remaining() < bytes.length) {
+                if (slabs.size() >= maxSlabs) {
+                    drop(slabs.pollFirst());
+                }
+
+                slab = new Slab<>(slabBytes);
+                slabs.addLast(slab);
+            }
+
+            final Slot slot = slab.append(key, user.getName(), bytes);
+            final Slot previous = index.put(key, slot);
+            usedBytes.addAndGet(slot.length);
+
+            if (previous != null) {
+                usedBytes.addAndGet(-previous.length);
+            }
+        }
+
+        return true;
+    }
+
+    public void invalidate(final K key) {
+        synchronized (lock) {
+            final Slot slot = index.remove(key);
+
+            if (slot != null) {
+                usedBytes.addAndGet(-slot.length);
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (lock) {
+            index.clear();
+            slabs.clear();
+            usedBytes.set(0);
+        }
+    }
+
+    /**
+     * Remove all entries matching the predicate. Matching requires to deserialize the entries.
+     * 
+     * @return The number of removed entries
+     */
+    public int evict(final BiPredicate<K, User> predicate) {
+        int evicted = 0;
+
+        synchronized (lock) {
+            for (final Iterator<Map.Entry<K, Slot>> it = index.entrySet().iterator(); it.hasNext();) {
+                final Map.Entry<K, Slot> entry = it.next();
+                User user;
+
+                try {
+                    user = entry.getValue().decode();
+                } catch (IOException | ElasticsearchException e) {
+                    user = null;
+                }
+
+                if (user == null || predicate.test(entry.getKey(), user)) {
+                    it.remove();
+                    usedBytes.addAndGet(-entry.getValue().length);
+                    evicted++;
+                }
+            }
+        }
+
+        return evicted;
+    }
+
+    public long size() {
+        return index.size();
+    }
+
+    /**
+     * @return The size of the live entries, the allocated slabs can be larger
+     */
+    public long sizeInBytes() {
+        return usedBytes.get();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private void remove(final K key, final Slot slot) {
+        synchronized (lock) {
+            if (index.remove(key, slot)) {
+                usedBytes.addAndGet(-slot.length);
+            }
+        }
+    }
+
+    //must be called with lock held
+    private void drop(final Slab<K> slab) {
+        for (int i = 0; i < slab.keys.size(); i++) {
+            final Slot slot = slab.slots.get(i);
+
+            if (index.remove(slab.keys.get(i), slot)) {
+                usedBytes.addAndGet(-slot.length);
+                evictions.increment();
+            }
+        }
+    }
+
+    private static byte[] encode(final User user) throws IOException {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+
+            if (user.getClass() == User.class) {
+                out.writeByte(COMPACT);
+                out.writeString(user.getName());
+                out.writeStringArray(user.getRoles().toArray(new String[0]));
+                final Map<String, String> attributes = user.getCustomAttributesMap();
+                out.writeVInt(attributes.size());
+                for (final Map.Entry<String, String> attribute : attributes.entrySet()) {
+                    out.writeString(attribute.getKey());
+                    out.writeOptionalString(attribute.getValue());
+                }
+            } else {
+                //subclasses carry backend specific state, keep them exactly as they are shipped between nodes
+                out.writeByte(SERIALIZED);
+                out.writeByteArray(Base64Helper.serializeObjectToBytes(user));
+            }
+
+            return BytesReference.toBytes(out.bytes());
+        }
+    }
+
+    private static final class Slab<K> {
+        private final ByteBuffer buffer;
+        //keys and slots written to this slab, used to drop its entries
+        private final List<K> keys = new ArrayList<>();
+        private final List<Slot> slots = new ArrayList<>();
+        private int position;
+
+        private Slab(final int capacity) {
+            this.buffer = ByteBuffer.allocateDirect(capacity);
+        }
+
+        int remaining() {
+            return buffer.capacity() - position;
+        }
+
+        Slot append(final K key, final String name, final byte[] bytes) {
+            final ByteBuffer view = buffer.duplicate();
+            view.position(position);
+            view.put(bytes);
+            final Slot slot = new Slot(name, buffer, position, bytes.length);
+            position += bytes.length;
+            keys.add(key);
+            slots.add(slot);
+            return slot;
+        }
+    }
+
+    private static final class Slot {
+        private final String name;
+        private final ByteBuffer slab;
+        private final int offset;
+        private final int length;
+        private final long created = System.nanoTime();
+
+        private Slot(final String name, final ByteBuffer slab, final int offset, final int length) {
+            this.name = name;
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        User decode() throws IOException {
+            final ByteBuffer view = slab.duplicate();
+            view.position(offset);
+            final byte[] bytes = new byte[length];
+            view.get(bytes);
+
+            try (StreamInput in = StreamInput.wrap(bytes)) {
+
+                if (in.readByte() == SERIALIZED) {
+                    return (User) Base64Helper.deserializeObject(in.readByteArray());
+                }
+
+                final String name = in.readString();
+                final String[] roles = in.readStringArray();
+                final int attributeCount = in.readVInt();
+                final Map<String, String> attributes = new HashMap<>(attributeCount);
+                for (int i = 0; i < attributeCount; i++) {
+                    attributes.put(in.readString(), in.readOptionalString());
+                }
+
+                final User user = new User(name, Arrays.asList(roles), null);
+                user.addAttributes(attributes);
+                return user;
+            }
+        }
+    }
+}
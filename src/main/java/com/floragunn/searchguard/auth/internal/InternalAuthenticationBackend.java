@@ -25,66 +25,56 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import org.bouncycastle.crypto.generators.OpenBSDBCrypt;
 import org.elasticsearch.ElasticsearchSecurityException;
-import org.elasticsearch.common.settings.Settings;
 
 import com.floragunn.searchguard.auth.AuthenticationBackend;
 import com.floragunn.searchguard.auth.AuthorizationBackend;
-import com.floragunn.searchguard.configuration.ConfigurationRepository;
-import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.configuration.InternalUserConfig;
 import com.floragunn.searchguard.user.AuthCredentials;
 import com.floragunn.searchguard.user.User;
 
 public class InternalAuthenticationBackend implements AuthenticationBackend, AuthorizationBackend {
 
-    private final ConfigurationRepository configurationRepository;
+    private final Supplier<Map<String, InternalUserConfig>> internalUsers;
 
-    public InternalAuthenticationBackend(final ConfigurationRepository configurationRepository) {
+    /**
+     * @param internalUsers supplies the internal users of the current configuration, null if not yet initialized
+     */
+    public InternalAuthenticationBackend(final Supplier<Map<String, InternalUserConfig>> internalUsers) {
         super();
-        this.configurationRepository = configurationRepository;
+        this.internalUsers = internalUsers;
     }
 
     @Override
     public boolean exists(User user) {
 
-        final Settings cfg = getConfigSettings();
+        final Map<String, InternalUserConfig> cfg = getConfig();
         if (cfg == null) {
             return false;
         }
         
-        String hashed = cfg.get(user.getName() + ".hash");
+        final String hashed = getHash(cfg, user.getName());
 
         if (hashed == null) {
-            
-            for(String username:cfg.names()) {
-                String u = cfg.get(username + ".username");
-                if(user.getName().equals(u)) {
-                    hashed = cfg.get(username+ ".hash");
-                    break;
-                }
-            }
-            
-            if(hashed == null) {
-                return false;
-            }
+            return false;
         }
         
-        final List<String> roles = cfg.getAsList(user.getName() + ".roles", Collections.emptyList());
+        final InternalUserConfig userConfig = cfg.get(user.getName());
         
-        if(roles != null) {
-            user.addRoles(roles);
+        if(userConfig != null) {
+            user.addRoles(userConfig.getRoles());
         }
         
         //FIX https://github.com/opendistro-for-elasticsearch/security/pull/23
         //Credits to @turettn
-        final Settings customAttributes = cfg.getAsSettings(user.getName() + ".attributes");
         Map<String, String> attributeMap = new HashMap<>();
 
-        if(customAttributes != null) {
-            for(String attributeName: customAttributes.names()) {
-                attributeMap.put("attr.internal."+attributeName, customAttributes.get(attributeName));
+        if(userConfig != null) {
+            for(Map.Entry<String, String> attribute: userConfig.getAttributes().entrySet()) {
+                attributeMap.put("attr.internal."+attribute.getKey(), attribute.getValue());
             }
         }
 
@@ -96,27 +86,16 @@ public class InternalAuthenticationBackend implements AuthenticationBackend, Aut
     @Override
     public User authenticate(final AuthCredentials credentials) {
         
-        final Settings cfg = getConfigSettings();
+        final Map<String, InternalUserConfig> cfg = getConfig();
         if (cfg == null) {
             throw new ElasticsearchSecurityException("Internal authentication backend not configured. May be Search Guard is not initialized. See http://docs.search-guard.com/v6/sgadmin");
 
         }
 
-        String hashed = cfg.get(credentials.getUsername() + ".hash");
+        final String hashed = getHash(cfg, credentials.getUsername());
 
         if (hashed == null) {
-            
-            for(String username:cfg.names()) {
-                String u = cfg.get(username + ".username");
-                if(credentials.getUsername().equals(u)) {
-                    hashed = cfg.get(username+ ".hash");
-                    break;
-                }
-            }
-            
-            if(hashed == null) {
-                throw new ElasticsearchSecurityException(credentials.getUsername() + " not found");
-            }
+            throw new ElasticsearchSecurityException(credentials.getUsername() + " not found");
         }
         
         final byte[] password = credentials.getPassword();
@@ -134,12 +113,12 @@ public class InternalAuthenticationBackend implements AuthenticationBackend, Aut
        
         try {
             if (OpenBSDBCrypt.checkPassword(hashed, array)) {
-                final List<String> roles = cfg.getAsList(credentials.getUsername() + ".roles", Collections.emptyList());
-                final Settings customAttributes = cfg.getAsSettings(credentials.getUsername() + ".attributes");
+                final InternalUserConfig userConfig = cfg.get(credentials.getUsername());
+                final List<String> roles = userConfig == null ? Collections.emptyList() : userConfig.getRoles();
 
-                if(customAttributes != null) {
-                    for(String attributeName: customAttributes.names()) {
-                        credentials.addAttribute("attr.internal."+attributeName, customAttributes.get(attributeName));
+                if(userConfig != null) {
+                    for(Map.Entry<String, String> attribute: userConfig.getAttributes().entrySet()) {
+                        credentials.addAttribute("attr.internal."+attribute.getKey(), attribute.getValue());
                     }
                 }
 
@@ -159,20 +138,37 @@ public class InternalAuthenticationBackend implements AuthenticationBackend, Aut
         return "internal";
     }
 
-    private Settings getConfigSettings() {
-        return configurationRepository.getConfiguration(ConfigConstants.CONFIGNAME_INTERNAL_USERS);
+    private Map<String, InternalUserConfig> getConfig() {
+        return internalUsers.get();
+    }
+    
+    //the hash of the user with the given name, entries with a different username are matched by that name
+    private static String getHash(Map<String, InternalUserConfig> cfg, String name) {
+        final InternalUserConfig user = cfg.get(name);
+        
+        if (user != null && user.getHash() != null) {
+            return user.getHash();
+        }
+        
+        for(InternalUserConfig u: cfg.values()) {
+            if(name.equals(u.getUsername())) {
+                return u.getHash();
+            }
+        }
+        
+        return null;
     }
 
     @Override
     public void fillRoles(User user, AuthCredentials credentials) throws ElasticsearchSecurityException {
-        final Settings cfg = getConfigSettings();
+        final Map<String, InternalUserConfig> cfg = getConfig();
         if (cfg == null) {
             throw new ElasticsearchSecurityException("Internal authentication backend not configured. May be Search Guard is not initialized. See http://docs.search-guard.com/v6/sgadmin");
 
         }
-        final List<String> roles = cfg.getAsList(credentials.getUsername() + ".roles", Collections.emptyList());
-        if(roles != null && !roles.isEmpty() && user != null) {
-            user.addRoles(roles);
+        final InternalUserConfig userConfig = cfg.get(credentials.getUsername());
+        if(userConfig != null && !userConfig.getRoles().isEmpty() && user != null) {
+            user.addRoles(userConfig.getRoles());
         }
     }
 }
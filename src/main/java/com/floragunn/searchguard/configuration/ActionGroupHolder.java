@@ -29,9 +29,19 @@ import com.floragunn.searchguard.support.ConfigConstants;
 public class ActionGroupHolder {
 
     final ConfigurationRepository configurationRepository;
+    private final Settings actionGroups;
 
     public ActionGroupHolder(final ConfigurationRepository configurationRepository) {
         this.configurationRepository = configurationRepository;
+        this.actionGroups = null;
+    }
+
+    /**
+     * Resolve against the given action groups instead of the current configuration of a repository
+     */
+    public ActionGroupHolder(final Settings actionGroups) {
+        this.configurationRepository = null;
+        this.actionGroups = actionGroups == null ? Settings.EMPTY : actionGroups;
     }
 
     public Set<String> getGroupMembers(final String groupname) {
@@ -79,6 +89,6 @@ public class ActionGroupHolder {
     }
 
     private Settings getSettings() {
-        return configurationRepository.getConfiguration(ConfigConstants.CONFIGNAME_ACTION_GROUPS);
+        return actionGroups != null ? actionGroups : configurationRepository.getConfiguration(ConfigConstants.CONFIGNAME_ACTION_GROUPS);
     }
 }
@@ -30,8 +30,11 @@ import org.apache.logging.log4j.Logger;
 import org.elasticsearch.common.settings.Settings;
 
 import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.support.LdapNames;
 import com.floragunn.searchguard.support.WildcardMatcher;
 import com.floragunn.searchguard.user.User;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
 
@@ -44,6 +47,9 @@ public class AdminDNs {
     private final ListMultimap<String, String> allowedRestImpersonations = ArrayListMultimap.<String, String> create();
     private boolean injectUserEnabled;
     private boolean injectAdminUserEnabled;
+    //the settings above never change, so verdicts for a principal can be cached for the lifetime of this instance
+    private final Cache<String, Boolean> adminVerdicts = CacheBuilder.newBuilder().maximumSize(1000).build();
+    private final Cache<String, Boolean> impersonationVerdicts = CacheBuilder.newBuilder().maximumSize(1000).build();
     
     public AdminDNs(final Settings settings) {
 
@@ -107,12 +113,15 @@ public class AdminDNs {
     public boolean isAdminDN(String dn) {
         
         if(dn == null) return false;
-                
-        try {
-            return isAdminDN(new LdapName(dn));
-        } catch (InvalidNameException e) {
-           return false;
+        
+        Boolean verdict = adminVerdicts.getIfPresent(dn);
+        
+        if(verdict == null) {
+            verdict = isAdminDN(LdapNames.parse(dn));
+            adminVerdicts.put(dn, verdict);
         }
+        
+        return verdict;
     }
 
     private boolean isAdminDN(LdapName dn) {
@@ -127,6 +136,20 @@ public class AdminDNs {
         return isAdmin;
     }
     
+    public boolean isTransportImpersonationAllowed(String dn, String impersonated) {
+        if(dn == null || impersonated == null) return false;
+        
+        final String key = dn + '\u0000' + impersonated;
+        Boolean verdict = impersonationVerdicts.getIfPresent(key);
+        
+        if(verdict == null) {
+            verdict = isTransportImpersonationAllowed(LdapNames.parse(dn), impersonated);
+            impersonationVerdicts.put(key, verdict);
+        }
+        
+        return verdict;
+    }
+    
     public boolean isTransportImpersonationAllowed(LdapName dn, String impersonated) {
         if(dn == null) return false;
         
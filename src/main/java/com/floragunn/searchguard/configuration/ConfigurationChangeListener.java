@@ -29,4 +29,16 @@ public interface ConfigurationChangeListener {
      * @param configuration not null updated configuration on that was subscribe current listener
      */
     void onChange(Settings configuration);
+
+    /**
+     * Called instead of {@link #onChange(Settings)} if the repository knows what changed compared to the last notification.
+     * Listeners which are able to update themselves incrementally can override this method, the default
+     * implementation rebuilds everything.
+     *
+     * @param configuration not null updated configuration on that was subscribe current listener
+     * @param diff not null difference to the configuration of the last notification
+     */
+    default void onChange(Settings configuration, ConfigurationDiff diff) {
+        onChange(configuration);
+    }
 }
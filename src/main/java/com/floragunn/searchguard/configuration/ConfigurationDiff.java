@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.configuration;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.elasticsearch.common.settings.Settings;
+
+/**
+ * Structured difference between two versions of a configuration document on the level of the top level entries
+ * (roles, role mappings, users or action groups).
+ * <p/>
+ * A full diff means that there is no usable previous version (or something the configuration depends on changed)
+ * so that listeners have to rebuild everything.
+ */
+public final class ConfigurationDiff {
+
+    private final Settings previous;
+    private final Set<String> added;
+    private final Set<String> removed;
+    private final Set<String> changed;
+    private final boolean full;
+
+    private ConfigurationDiff(final Settings previous, final Set<String> added, final Set<String> removed, final Set<String> changed,
+            final boolean full) {
+        this.previous = previous;
+        this.added = Collections.unmodifiableSet(added);
+        this.removed = Collections.unmodifiableSet(removed);
+        this.changed = Collections.unmodifiableSet(changed);
+        this.full = full;
+    }
+
+    public static ConfigurationDiff full(final Settings previous) {
+        return new ConfigurationDiff(previous, Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), true);
+    }
+
+    public static ConfigurationDiff compute(final Settings previous, final Settings current) {
+        if (previous == null) {
+            return full(null);
+        }
+
+        final Set<String> added = new HashSet<>();
+        final Set<String> removed = new HashSet<>();
+        final Set<String> changed = new HashSet<>();
+        final Map<String, Settings> previousGroups = ConfigurationParser.groups(previous);
+        final Map<String, Settings> currentGroups = ConfigurationParser.groups(current);
+        final Set<String> previousNames = previousGroups.keySet();
+        final Set<String> currentNames = currentGroups.keySet();
+
+        for (final String name : currentNames) {
+            if (!previousNames.contains(name)) {
+                added.add(name);
+            } else if (!previousGroups.get(name).equals(currentGroups.get(name))) {
+                //also covers plain list values
+                changed.add(name);
+            }
+        }
+
+        for (final String name : previousNames) {
+            if (!currentNames.contains(name)) {
+                removed.add(name);
+            }
+        }
+
+        return new ConfigurationDiff(previous, added, removed, changed, false);
+    }
+
+    /**
+     * @return the configuration of the last notification or null if there was none
+     */
+    public Settings getPrevious() {
+        return previous;
+    }
+
+    public Set<String> getAdded() {
+        return added;
+    }
+
+    public Set<String> getRemoved() {
+        return removed;
+    }
+
+    public Set<String> getChanged() {
+        return changed;
+    }
+
+    /**
+     * @return all added, removed and changed entries
+     */
+    public Set<String> getAffected() {
+        final Set<String> affected = new HashSet<>(added);
+        affected.addAll(removed);
+        affected.addAll(changed);
+        return affected;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public boolean isEmpty() {
+        return !full && added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return full ? "ConfigurationDiff [full]" : "ConfigurationDiff [added=" + added + ", removed=" + removed + ", changed=" + changed + "]";
+    }
+}
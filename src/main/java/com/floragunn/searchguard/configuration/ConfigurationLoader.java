@@ -18,16 +18,25 @@
 package com.floragunn.searchguard.configuration;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.get.MultiGetItemResponse;
@@ -42,11 +51,11 @@ import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.SearchGuardDeprecationHandler;
-import com.floragunn.searchguard.support.SgUtils;
 
 class ConfigurationLoader {
 
@@ -54,11 +63,16 @@ class ConfigurationLoader {
     private final Client client;
     private final Settings settings;
     private final String searchguardIndex;
+    private final ConfigurationStats stats;
+    //shards of sharded config documents from the last load, keyed by document id
+    private final ConcurrentMap<String, Tuple<Long, Settings>> shardCache = new ConcurrentHashMap<>();
+    private static final int SHARD_PAGE_SIZE = 50;
     
-    ConfigurationLoader(final Client client, ThreadPool threadPool, final Settings settings) {
+    ConfigurationLoader(final Client client, ThreadPool threadPool, final Settings settings, final ConfigurationStats stats) {
         super();
         this.client = client;
         this.settings = settings;
+        this.stats = stats;
         this.searchguardIndex = settings.get(ConfigConstants.SEARCHGUARD_CONFIG_INDEX_NAME, ConfigConstants.SG_DEFAULT_CONFIG_INDEX);
         log.debug("Index is: {}", searchguardIndex);
     }
@@ -103,9 +117,108 @@ class ConfigurationLoader {
             throw new TimeoutException("Timeout after "+timeout+""+timeUnit+" while retrieving configuration for "+Arrays.toString(events)+ "(index="+searchguardIndex+")");
         }
         
+        for (final Map.Entry<String, Tuple<Long, Settings>> entry : rs.entrySet()) {
+            final int shards = ConfigurationShards.getShards(entry.getValue().v2());
+            if (shards > 0) {
+                entry.setValue(loadShards(entry.getKey(), entry.getValue(), shards, timeout, timeUnit));
+            } else {
+                pruneShardCache(entry.getKey(), Collections.emptySet());
+            }
+        }
+        
         return rs;
     }
     
+    /**
+     * Merge the shards of a sharded config document. Shards are loaded page wise, first only their versions
+     * and then the source of the shards which changed since the last load.
+     */
+    private Tuple<Long, Settings> loadShards(final String type, final Tuple<Long, Settings> base, final int shards, long timeout, TimeUnit timeUnit) {
+        final Settings.Builder merged = Settings.builder().put(ConfigurationShards.withoutMeta(base.v2()));
+        final Map<String, Object> mergedTyped = TypedConfiguration.isTyped(type) ? new LinkedHashMap<>(TypedConfiguration.of(type, base.v2())) : null;
+        final Set<String> loaded = new HashSet<>();
+        int parsed = 0;
+        
+        for (int from = 0; from < shards; from += SHARD_PAGE_SIZE) {
+            final int to = Math.min(shards, from + SHARD_PAGE_SIZE);
+            final MultiGetRequest versions = new MultiGetRequest();
+            versions.realtime(true);
+            
+            for (int i = from; i < to; i++) {
+                versions.add(new MultiGetRequest.Item(searchguardIndex, "sg", ConfigurationShards.shardId(type, i))
+                        .fetchSourceContext(FetchSourceContext.DO_NOT_FETCH_SOURCE));
+            }
+            
+            final MultiGetRequest sources = new MultiGetRequest();
+            sources.realtime(true);
+            final List<String> page = new ArrayList<>(to - from);
+            
+            for (MultiGetItemResponse item : client.multiGet(versions).actionGet(timeout, timeUnit).getResponses()) {
+                if (item.isFailed()) {
+                    throw new ElasticsearchException("Unable to load " + item.getId() + " due to " + item.getFailure().getMessage());
+                }
+                
+                if (!item.getResponse().isExists()) {
+                    //empty shard
+                    continue;
+                }
+                
+                page.add(item.getId());
+                loaded.add(item.getId());
+                final Tuple<Long, Settings> cached = shardCache.get(item.getId());
+                
+                if (cached == null || cached.v1() != item.getResponse().getVersion()) {
+                    sources.add(searchguardIndex, "sg", item.getId());
+                }
+            }
+            
+            if (!sources.getItems().isEmpty()) {
+                for (MultiGetItemResponse item : client.multiGet(sources).actionGet(timeout, timeUnit).getResponses()) {
+                    if (item.isFailed() || !item.getResponse().isExists() || item.getResponse().isSourceEmpty()) {
+                        throw new ElasticsearchException("Unable to load " + item.getId());
+                    }
+                    
+                    final Tuple<Long, Settings> shard;
+                    
+                    try {
+                        shard = toSettings(item.getResponse());
+                    } catch (Exception e) {
+                        throw ExceptionsHelper.convertToElastic(e);
+                    }
+                    
+                    if (shard == null || shard.v2() == null) {
+                        throw new ElasticsearchException("Cannot parse settings for " + item.getId());
+                    }
+                    
+                    shardCache.put(item.getId(), shard);
+                    parsed++;
+                }
+            }
+            
+            for (String id : page) {
+                final Tuple<Long, Settings> shard = shardCache.get(id);
+                merged.put(shard.v2());
+                
+                if (mergedTyped != null) {
+                    mergedTyped.putAll(TypedConfiguration.of(type, shard.v2()));
+                }
+            }
+        }
+        
+        pruneShardCache(type, loaded);
+        log.debug("Loaded {} shards of {} ({} changed)", shards, type, parsed);
+        //the base document is (re)written after the shards on every update, so its version is the version of the whole type
+        final Settings mergedSettings = merged.build();
+        TypedConfiguration.register(mergedSettings, mergedTyped);
+        return new Tuple<Long, Settings>(base.v1(), mergedSettings);
+    }
+    
+    //drop cached shards of the given type which were not part of the last load (removed shards or not sharded anymore)
+    private void pruneShardCache(final String type, final Set<String> loaded) {
+        final String prefix = ConfigurationShards.shardIdPrefix(type);
+        shardCache.keySet().removeIf(id -> id.startsWith(prefix) && !loaded.contains(id));
+    }
+    
     void loadAsync(final String[] events, final ConfigCallback callback) {
         if(events == null || events.length == 0) {
             log.warn("No config events requested to load");
@@ -189,7 +302,15 @@ class ConfigurationLoader {
             
             final byte[] content = parser.binaryValue();
 
-            return new Tuple<Long, Settings>(version, Settings.builder().loadFromSource(SgUtils.replaceEnvVars(new String(content, StandardCharsets.UTF_8), settings), XContentType.JSON).build());
+            final long start = System.currentTimeMillis();
+            final Settings parsed = ConfigurationParser.parse(content, XContentType.JSON, settings);
+            TypedConfiguration.register(parsed, ConfigurationParser.parseTyped(ConfigurationShards.typeOf(id), content, XContentType.JSON, settings));
+            
+            if (stats != null && ConfigConstants.CONFIG_NAMES.contains(id)) {
+                stats.onParse(id, System.currentTimeMillis() - start);
+            }
+            
+            return new Tuple<Long, Settings>(version, parsed);
         } finally {
             if(parser != null) {
                 try {
@@ -0,0 +1,412 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.configuration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentParser.Token;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.support.SearchGuardDeprecationHandler;
+import com.floragunn.searchguard.support.SgUtils;
+
+/**
+ * Builds the flat {@link Settings} of a configuration document directly from the XContent token stream.
+ * Environment variables are only resolved in the keys and string values which reference one, instead of running
+ * the replacement patterns over the whole (possibly very large) document text.
+ * <p/>
+ * Roles, role mappings and internal users are additionally parsed into their typed model, see {@link TypedConfiguration}.
+ */
+public final class ConfigurationParser {
+
+    private ConfigurationParser() {
+
+    }
+
+    public static Settings parse(byte[] content, XContentType xContentType, Settings nodeSettings) throws IOException {
+
+        if (content == null || content.length == 0) {
+            return Settings.EMPTY;
+        }
+
+        try (XContentParser parser = xContentType.xContent().createParser(NamedXContentRegistry.EMPTY, SearchGuardDeprecationHandler.INSTANCE,
+                content)) {
+
+            final Token token = parser.nextToken();
+
+            if (token == null) {
+                return Settings.EMPTY;
+            }
+
+            if (token != Token.START_OBJECT) {
+                throw new ElasticsearchParseException("malformed, expected settings to start with 'object', instead was [{}]", token);
+            }
+
+            final Settings.Builder builder = Settings.builder();
+            parseObject(parser, new StringBuilder(), builder, new HashSet<>(), envSettings(nodeSettings));
+            return builder.build();
+        }
+    }
+
+    /**
+     * Parse the entries of a roles, role mapping or internal users document into their typed model. Entries without
+     * any field are left out like they are absent from the flat settings.
+     *
+     * @return entry name to its typed model in document order or null if the type has no typed model
+     */
+    public static Map<String, ?> parseTyped(String type, byte[] content, XContentType xContentType, Settings nodeSettings) throws IOException {
+
+        if (!TypedConfiguration.isTyped(type)) {
+            return null;
+        }
+
+        if (content == null || content.length == 0) {
+            return Collections.emptyMap();
+        }
+
+        final Settings envSettings = envSettings(nodeSettings);
+
+        try (XContentParser parser = xContentType.xContent().createParser(NamedXContentRegistry.EMPTY, SearchGuardDeprecationHandler.INSTANCE,
+                content)) {
+
+            Token token = parser.nextToken();
+
+            if (token == null) {
+                return Collections.emptyMap();
+            }
+
+            if (token != Token.START_OBJECT) {
+                throw new ElasticsearchParseException("malformed, expected settings to start with 'object', instead was [{}]", token);
+            }
+
+            final Map<String, Object> entries = new LinkedHashMap<>();
+
+            while ((token = parser.nextToken()) != Token.END_OBJECT) {
+                final String name = resolve(parser.currentName(), envSettings);
+                token = parser.nextToken();
+
+                if (token != Token.START_OBJECT || ConfigurationShards.META.equals(name)) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                final Object entry;
+
+                if (ConfigConstants.CONFIGNAME_ROLES.equals(type)) {
+                    entry = parseRole(parser, envSettings);
+                } else if (ConfigConstants.CONFIGNAME_ROLES_MAPPING.equals(type)) {
+                    entry = parseRoleMapping(parser, envSettings);
+                } else {
+                    entry = parseInternalUser(parser, envSettings);
+                }
+
+                if (entry != null) {
+                    entries.put(name, entry);
+                }
+            }
+
+            return entries;
+        }
+    }
+
+    /**
+     * Split settings by their first key segment (role, mapping or user name) in a single pass over the keys.
+     * The keys of the returned settings are the same as with {@code settings.getByPrefix(name)}, so they start
+     * with a dot, but unlike {@code getByPrefix} this is not a scan over all keys for every name.
+     */
+    public static Map<String, Settings> groups(Settings settings) {
+        final Map<String, Settings.Builder> builders = new HashMap<>();
+
+        for (String key : settings.keySet()) {
+            final int dot = key.indexOf('.');
+            final String name = dot < 0 ? key : key.substring(0, dot);
+            builders.computeIfAbsent(name, k -> Settings.builder()).copy(dot < 0 ? "" : key.substring(dot), key, settings);
+        }
+
+        final Map<String, Settings> groups = new HashMap<>(builders.size());
+
+        for (Map.Entry<String, Settings.Builder> entry : builders.entrySet()) {
+            groups.put(entry.getKey(), entry.getValue().build());
+        }
+
+        return groups;
+    }
+
+    private static RoleConfig parseRole(XContentParser parser, Settings envSettings) throws IOException {
+        List<String> cluster = Collections.emptyList();
+        Map<String, RoleConfig.IndexConfig> indices = Collections.emptyMap();
+        Map<String, String> tenants = Collections.emptyMap();
+        boolean empty = true;
+
+        while (parser.nextToken() != Token.END_OBJECT) {
+            final String field = resolve(parser.currentName(), envSettings);
+            parser.nextToken();
+            empty = false;
+
+            if ("cluster".equals(field)) {
+                cluster = parseList(parser, envSettings);
+            } else if ("indices".equals(field)) {
+                indices = parseIndices(parser, envSettings);
+            } else if ("tenants".equals(field)) {
+                tenants = parseTenants(parser, envSettings);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        return empty ? null : new RoleConfig(cluster, indices, tenants);
+    }
+
+    private static Map<String, RoleConfig.IndexConfig> parseIndices(XContentParser parser, Settings envSettings) throws IOException {
+        final Map<String, RoleConfig.IndexConfig> indices = new LinkedHashMap<>();
+
+        if (parser.currentToken() != Token.START_OBJECT) {
+            parser.skipChildren();
+            return indices;
+        }
+
+        while (parser.nextToken() != Token.END_OBJECT) {
+            final String indexPattern = resolve(parser.currentName(), envSettings);
+
+            if (parser.nextToken() != Token.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            final Map<String, List<String>> typePermissions = new LinkedHashMap<>();
+            String dls = null;
+            List<String> fls = Collections.emptyList();
+            List<String> maskedFields = Collections.emptyList();
+
+            while (parser.nextToken() != Token.END_OBJECT) {
+                final String field = resolve(parser.currentName(), envSettings);
+                parser.nextToken();
+
+                if (RoleConfig.DLS.equals(field)) {
+                    dls = parseValue(parser, envSettings);
+                } else if (RoleConfig.FLS.equals(field)) {
+                    fls = parseList(parser, envSettings);
+                } else if (RoleConfig.MASKED_FIELDS.equals(field)) {
+                    maskedFields = parseList(parser, envSettings);
+                } else {
+                    typePermissions.put(field, parseList(parser, envSettings));
+                }
+            }
+
+            indices.put(indexPattern, new RoleConfig.IndexConfig(typePermissions, dls, fls, maskedFields));
+        }
+
+        return indices;
+    }
+
+    private static Map<String, String> parseTenants(XContentParser parser, Settings envSettings) throws IOException {
+        final Map<String, String> tenants = new LinkedHashMap<>();
+
+        if (parser.currentToken() != Token.START_OBJECT) {
+            parser.skipChildren();
+            return tenants;
+        }
+
+        while (parser.nextToken() != Token.END_OBJECT) {
+            final String tenant = resolve(parser.currentName(), envSettings);
+            parser.nextToken();
+            final String mode = parseValue(parser, envSettings);
+            tenants.put(tenant, mode == null ? "RO" : mode);
+        }
+
+        return tenants;
+    }
+
+    private static RoleMappingConfig parseRoleMapping(XContentParser parser, Settings envSettings) throws IOException {
+        List<String> users = Collections.emptyList();
+        List<String> backendRoles = Collections.emptyList();
+        List<String> andBackendRoles = Collections.emptyList();
+        List<String> hosts = Collections.emptyList();
+        boolean empty = true;
+
+        while (parser.nextToken() != Token.END_OBJECT) {
+            final String field = resolve(parser.currentName(), envSettings);
+            parser.nextToken();
+            empty = false;
+
+            if ("users".equals(field)) {
+                users = parseList(parser, envSettings);
+            } else if ("backendroles".equals(field)) {
+                backendRoles = parseList(parser, envSettings);
+            } else if ("and_backendroles".equals(field)) {
+                andBackendRoles = parseList(parser, envSettings);
+            } else if ("hosts".equals(field)) {
+                hosts = parseList(parser, envSettings);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        return empty ? null : new RoleMappingConfig(users, backendRoles, andBackendRoles, hosts);
+    }
+
+    private static InternalUserConfig parseInternalUser(XContentParser parser, Settings envSettings) throws IOException {
+        String hash = null;
+        String username = null;
+        List<String> roles = Collections.emptyList();
+        final Map<String, String> attributes = new LinkedHashMap<>();
+        boolean empty = true;
+
+        while (parser.nextToken() != Token.END_OBJECT) {
+            final String field = resolve(parser.currentName(), envSettings);
+            parser.nextToken();
+            empty = false;
+
+            if ("hash".equals(field)) {
+                hash = parseValue(parser, envSettings);
+            } else if ("username".equals(field)) {
+                username = parseValue(parser, envSettings);
+            } else if ("roles".equals(field)) {
+                roles = parseList(parser, envSettings);
+            } else if ("attributes".equals(field) && parser.currentToken() == Token.START_OBJECT) {
+                while (parser.nextToken() != Token.END_OBJECT) {
+                    final String attribute = resolve(parser.currentName(), envSettings);
+                    parser.nextToken();
+                    final String value = parseValue(parser, envSettings);
+
+                    if (value != null) {
+                        attributes.put(attribute, value);
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        return empty ? null : new InternalUserConfig(hash, username, roles, attributes);
+    }
+
+    //a single value is treated as a list with one element, like Settings.getAsList does
+    private static List<String> parseList(XContentParser parser, Settings envSettings) throws IOException {
+        Token token = parser.currentToken();
+
+        if (token != Token.START_ARRAY) {
+            final String value = parseValue(parser, envSettings);
+            return value == null ? Collections.emptyList() : Collections.singletonList(value);
+        }
+
+        final List<String> list = new ArrayList<>();
+
+        while ((token = parser.nextToken()) != Token.END_ARRAY) {
+            if (token == Token.VALUE_STRING) {
+                list.add(resolve(parser.text(), envSettings));
+            } else if (token == Token.VALUE_NUMBER || token == Token.VALUE_BOOLEAN) {
+                list.add(parser.text());
+            } else {
+                throw new ElasticsearchParseException("only value lists are allowed in configuration, found [{}] for [{}]", token,
+                        parser.currentName());
+            }
+        }
+
+        return list;
+    }
+
+    //objects and lists are no single value, they are skipped
+    private static String parseValue(XContentParser parser, Settings envSettings) throws IOException {
+        final Token token = parser.currentToken();
+
+        if (token == Token.VALUE_STRING) {
+            return resolve(parser.text(), envSettings);
+        } else if (token == Token.VALUE_NUMBER || token == Token.VALUE_BOOLEAN) {
+            return parser.text();
+        }
+
+        parser.skipChildren();
+        return null;
+    }
+
+    private static void parseObject(XContentParser parser, StringBuilder keyBuilder, Settings.Builder builder, Set<String> keys,
+            Settings envSettings) throws IOException {
+        final int length = keyBuilder.length();
+        Token token;
+
+        while ((token = parser.nextToken()) != Token.END_OBJECT) {
+
+            if (token == Token.FIELD_NAME) {
+                keyBuilder.setLength(length);
+                keyBuilder.append(resolve(parser.currentName(), envSettings));
+            } else if (token == Token.START_OBJECT) {
+                keyBuilder.append('.');
+                parseObject(parser, keyBuilder, builder, keys, envSettings);
+            } else if (token == Token.START_ARRAY) {
+                final List<String> list = new ArrayList<>();
+
+                while ((token = parser.nextToken()) != Token.END_ARRAY) {
+                    if (token == Token.VALUE_STRING) {
+                        list.add(resolve(parser.text(), envSettings));
+                    } else if (token == Token.VALUE_NUMBER || token == Token.VALUE_BOOLEAN) {
+                        list.add(parser.text());
+                    } else {
+                        throw new ElasticsearchParseException("only value lists are allowed in configuration, found [{}] for [{}]", token,
+                                keyBuilder);
+                    }
+                }
+
+                builder.putList(uniqueKey(keyBuilder, keys), list);
+            } else if (token == Token.VALUE_NULL) {
+                builder.putNull(uniqueKey(keyBuilder, keys));
+            } else if (token == Token.VALUE_STRING) {
+                builder.put(uniqueKey(keyBuilder, keys), resolve(parser.text(), envSettings));
+            } else if (token == Token.VALUE_NUMBER || token == Token.VALUE_BOOLEAN) {
+                builder.put(uniqueKey(keyBuilder, keys), parser.text());
+            } else {
+                throw new ElasticsearchParseException("unexpected token [{}] for [{}]", token, keyBuilder);
+            }
+        }
+    }
+
+    private static String uniqueKey(StringBuilder keyBuilder, Set<String> keys) {
+        final String key = keyBuilder.toString();
+
+        if (!keys.add(key)) {
+            throw new ElasticsearchParseException("duplicate configuration key [{}] found", key);
+        }
+
+        return key;
+    }
+
+    private static Settings envSettings(Settings nodeSettings) {
+        return nodeSettings != null && !nodeSettings.getAsBoolean(ConfigConstants.SEARCHGUARD_DISABLE_ENVVAR_REPLACEMENT, false) ? nodeSettings
+                : null;
+    }
+
+    private static String resolve(String value, Settings envSettings) {
+        if (envSettings == null || value.indexOf("${env") < 0) {
+            return value;
+        }
+        return SgUtils.replaceEnvVars(value, envSettings);
+    }
+}
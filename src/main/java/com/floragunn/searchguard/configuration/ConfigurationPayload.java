@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.configuration;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.settings.Settings;
+
+/**
+ * Already loaded configuration documents (document version and content per type) in serialized form together with a checksum,
+ * so that they can be shipped to other nodes and verified there before they are applied.
+ */
+public final class ConfigurationPayload implements Writeable {
+
+    private final BytesReference bytes;
+    private final long checksum;
+
+    private ConfigurationPayload(BytesReference bytes, long checksum) {
+        this.bytes = bytes;
+        this.checksum = checksum;
+    }
+
+    public ConfigurationPayload(StreamInput in) throws IOException {
+        this.bytes = in.readBytesReference();
+        this.checksum = in.readLong();
+    }
+
+    public static ConfigurationPayload of(Map<String, Tuple<Long, Settings>> configuration) throws IOException {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            writeConfiguration(configuration, out);
+            final BytesReference bytes = out.bytes();
+            return new ConfigurationPayload(bytes, checksum(bytes));
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeBytesReference(bytes);
+        out.writeLong(checksum);
+    }
+
+    /**
+     * @return the configuration per type
+     * @throws InvalidConfigException if the checksum does not match
+     */
+    public Map<String, Tuple<Long, Settings>> getConfiguration() throws IOException, InvalidConfigException {
+        if (checksum(bytes) != checksum) {
+            throw new InvalidConfigException("Checksum mismatch for shipped configuration");
+        }
+
+        try (StreamInput in = bytes.streamInput()) {
+            return readConfiguration(in);
+        }
+    }
+
+    public int length() {
+        return bytes.length();
+    }
+
+    static void writeConfiguration(Map<String, Tuple<Long, Settings>> configuration, StreamOutput out) throws IOException {
+        out.writeVInt(configuration.size());
+
+        for (Map.Entry<String, Tuple<Long, Settings>> entry : configuration.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeLong(entry.getValue().v1() == null ? -1L : entry.getValue().v1());
+            Settings.writeSettingsToStream(entry.getValue().v2(), out);
+        }
+    }
+
+    static Map<String, Tuple<Long, Settings>> readConfiguration(StreamInput in) throws IOException {
+        final int types = in.readVInt();
+        final Map<String, Tuple<Long, Settings>> result = new HashMap<>(types);
+
+        for (int i = 0; i < types; i++) {
+            final String type = in.readString();
+            final long version = in.readLong();
+            result.put(type, new Tuple<Long, Settings>(version, Settings.readSettingsFromStream(in)));
+        }
+
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static long checksum(BytesReference bytes) {
+        final CRC32 crc = new CRC32();
+        final byte[] array = BytesReference.toBytes(bytes);
+        crc.update(array, 0, array.length);
+        return crc.getValue();
+    }
+}
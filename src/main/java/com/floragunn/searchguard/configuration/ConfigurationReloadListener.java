@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.configuration;
+
+import java.util.Map;
+
+import org.elasticsearch.common.settings.Settings;
+
+/**
+ * Callback function which is executed after all {@link ConfigurationChangeListener}s of a reload were notified
+ */
+public interface ConfigurationReloadListener {
+
+    /**
+     * @param configuration not null and immutable, all configuration types as applied by the reload
+     * @param diffs not null changes of the configuration types which changed during the reload (maybe empty)
+     */
+    void onReloadCompleted(Map<String, Settings> configuration, Map<String, ConfigurationDiff> diffs);
+}
@@ -21,6 +21,7 @@ package com.floragunn.searchguard.configuration;
 import java.util.Collection;
 import java.util.Map;
 
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.settings.Settings;
 
 /**
@@ -63,6 +64,15 @@ public interface ConfigurationRepository {
      */
     Map<String, Settings> reloadConfiguration(Collection<String> configTypes) throws ConfigUpdateAlreadyInProgressException;
 
+    /**
+     * Apply configuration which was already loaded from the persistence layer by another node. Types for which a newer
+     * version is already applied are loaded from the persistence layer instead.
+     *
+     * @param configuration not null map where key is the configuration type and value the document version and content
+     * @return not null map with the applied configuration per type
+     */
+    Map<String, Settings> applyConfiguration(Map<String, Tuple<Long, Settings>> configuration) throws ConfigUpdateAlreadyInProgressException;
+
     /**
      * Save changed configuration in persistence layer. After save, changes will be available for
      * read via {@link ConfigurationRepository#getConfiguration(String)}
@@ -81,4 +91,12 @@ public interface ConfigurationRepository {
      * @throws NullPointerException if specified configuration type is null or empty, or callback function is null
      */
     void subscribeOnChange(String configurationType, ConfigurationChangeListener listener);
+
+    /**
+     * Subscribe on completed reloads. Listeners which derive state from more than one configuration type can use this
+     * to build their state at once from all types of a reload.
+     *
+     * @param listener not null callback function that will be execute after each reload
+     */
+    void subscribeOnReload(ConfigurationReloadListener listener);
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.settings.Settings;
+
+import com.floragunn.searchguard.support.ConfigConstants;
+
+/**
+ * Optional sharded layout for large configuration documents. The top level entries (roles, role mappings, users)
+ * of a type are distributed by the hash of their name over {@code <type>_shard_<n>} documents, the {@code <type>}
+ * document then only holds {@code _sg_meta.shards}. Unchanged shards keep their document version, so nodes only
+ * need to transfer and parse the shards which were modified. The base document is rewritten after the shards on
+ * every update, its version is reported as the version of the whole type.
+ */
+public final class ConfigurationShards {
+
+    public static final String META = "_sg_meta";
+    public static final String META_SHARDS = META + ".shards";
+    /**
+     * Node attribute by which nodes announce that they load sharded documents. Nodes without it (older versions during a
+     * rolling upgrade) only read the base document which holds no entries, so sharded documents must only be written if
+     * all nodes have this attribute.
+     */
+    public static final String NODE_ATTRIBUTE = "sg_config_shards";
+    public static final List<String> SHARDABLE_TYPES = Collections.unmodifiableList(
+            Arrays.asList(ConfigConstants.CONFIGNAME_ROLES, ConfigConstants.CONFIGNAME_ROLES_MAPPING, ConfigConstants.CONFIGNAME_INTERNAL_USERS));
+
+    private ConfigurationShards() {
+
+    }
+
+    public static String shardId(String type, int shard) {
+        return shardIdPrefix(type) + shard;
+    }
+
+    public static String shardIdPrefix(String type) {
+        return type + "_shard_";
+    }
+
+    /**
+     * @return the configuration type of a config or shard document id
+     */
+    public static String typeOf(String id) {
+        final int shard = id.indexOf("_shard_");
+        return shard < 0 ? id : id.substring(0, shard);
+    }
+
+    public static int shardOf(String name, int shards) {
+        return Math.floorMod(name.hashCode(), shards);
+    }
+
+    /**
+     * @return number of shards or 0 if the document is not sharded
+     */
+    public static int getShards(Settings document) {
+        return document == null ? 0 : document.getAsInt(META_SHARDS, 0);
+    }
+
+    /**
+     * @return the document without the sharding metadata
+     */
+    public static Settings withoutMeta(Settings document) {
+        return document.filter(k -> !k.startsWith(META + "."));
+    }
+
+    public static Map<String, Object> meta(int shards) {
+        final Map<String, Object> meta = new LinkedHashMap<>(1);
+        meta.put(META, Collections.singletonMap("shards", shards));
+        return meta;
+    }
+
+    /**
+     * Distribute the top level entries of a document over the given number of shards, the order of the entries is retained
+     * so that unchanged shards serialize to the same bytes.
+     */
+    public static List<Map<String, Object>> split(Map<String, Object> document, int shards) {
+        final List<Map<String, Object>> result = new ArrayList<>(shards);
+
+        for (int i = 0; i < shards; i++) {
+            result.add(new LinkedHashMap<>());
+        }
+
+        for (Map.Entry<String, Object> entry : document.entrySet()) {
+            if (!META.equals(entry.getKey())) {
+                result.get(shardOf(entry.getKey(), shards)).put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return result;
+    }
+}
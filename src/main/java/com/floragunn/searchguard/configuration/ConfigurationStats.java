@@ -0,0 +1,279 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.configuration;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * Timings and counters of configuration reloads on this node. The repository records into one instance,
+ * {@link #snapshot()} returns a detached copy which can be sent to other nodes.
+ */
+public class ConfigurationStats implements Writeable, ToXContentFragment {
+
+    private long reloads;
+    private long failures;
+    private long lastReloadMillis = -1;
+    private long lastSuccessTimestamp = -1;
+    private long lastFailureTimestamp = -1;
+    private String lastFailure;
+    private String source;
+    private long msSinceLastReload = -1;
+    private final Map<String, TypeStats> types = new TreeMap<>();
+    private final Map<String, ListenerStats> listeners = new TreeMap<>();
+
+    public ConfigurationStats() {
+
+    }
+
+    public ConfigurationStats(StreamInput in) throws IOException {
+        reloads = in.readVLong();
+        failures = in.readVLong();
+        lastReloadMillis = in.readLong();
+        lastSuccessTimestamp = in.readLong();
+        lastFailureTimestamp = in.readLong();
+        lastFailure = in.readOptionalString();
+        source = in.readOptionalString();
+        msSinceLastReload = in.readLong();
+        types.putAll(in.readMap(StreamInput::readString, TypeStats::new));
+        listeners.putAll(in.readMap(StreamInput::readString, ListenerStats::new));
+    }
+
+    @Override
+    public synchronized void writeTo(StreamOutput out) throws IOException {
+        out.writeVLong(reloads);
+        out.writeVLong(failures);
+        out.writeLong(lastReloadMillis);
+        out.writeLong(lastSuccessTimestamp);
+        out.writeLong(lastFailureTimestamp);
+        out.writeOptionalString(lastFailure);
+        out.writeOptionalString(source);
+        out.writeLong(msSinceLastReload);
+        out.writeMap(types, StreamOutput::writeString, (o, v) -> v.writeTo(o));
+        out.writeMap(listeners, StreamOutput::writeString, (o, v) -> v.writeTo(o));
+    }
+
+    public synchronized void onLoad(String type, Long version, long loadMillis) {
+        final TypeStats stats = types.computeIfAbsent(type, k -> new TypeStats());
+        stats.version = version == null ? -1 : version;
+        stats.loadMillis = loadMillis;
+        stats.loads++;
+    }
+
+    public synchronized void onParse(String type, long parseMillis) {
+        types.computeIfAbsent(type, k -> new TypeStats()).parseMillis = parseMillis;
+    }
+
+    public synchronized void onListener(String type, Object listener, long millis) {
+        final ListenerStats stats = listeners.computeIfAbsent(type + "/" + listener.getClass().getSimpleName(), k -> new ListenerStats());
+        stats.lastMillis = millis;
+        stats.totalMillis += millis;
+        stats.maxMillis = Math.max(stats.maxMillis, millis);
+        stats.count++;
+    }
+
+    public synchronized void onListenerFailure(String type, Object listener) {
+        listeners.computeIfAbsent(type + "/" + listener.getClass().getSimpleName(), k -> new ListenerStats()).failures++;
+    }
+
+    /**
+     * @param source where the configuration came from, "index", "shipped" or "local_snapshot"
+     */
+    public synchronized void onReloadSuccess(long millis, String source) {
+        reloads++;
+        lastReloadMillis = millis;
+        lastSuccessTimestamp = System.currentTimeMillis();
+        this.source = source;
+    }
+
+    public synchronized void onReloadFailure(Throwable t) {
+        failures++;
+        lastFailureTimestamp = System.currentTimeMillis();
+        lastFailure = String.valueOf(t);
+    }
+
+    public synchronized ConfigurationStats snapshot() {
+        final ConfigurationStats copy = new ConfigurationStats();
+        copy.reloads = reloads;
+        copy.failures = failures;
+        copy.lastReloadMillis = lastReloadMillis;
+        copy.lastSuccessTimestamp = lastSuccessTimestamp;
+        copy.lastFailureTimestamp = lastFailureTimestamp;
+        copy.lastFailure = lastFailure;
+        copy.source = source;
+        copy.msSinceLastReload = lastSuccessTimestamp < 0 ? -1 : System.currentTimeMillis() - lastSuccessTimestamp;
+        types.forEach((k, v) -> copy.types.put(k, v.copy()));
+        listeners.forEach((k, v) -> copy.listeners.put(k, v.copy()));
+        return copy;
+    }
+
+    public long getReloads() {
+        return reloads;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public long getMsSinceLastReload() {
+        return msSinceLastReload;
+    }
+
+    public Map<String, TypeStats> getTypes() {
+        return types;
+    }
+
+    public Map<String, ListenerStats> getListeners() {
+        return listeners;
+    }
+
+    @Override
+    public synchronized XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject("reload");
+        builder.field("count", reloads);
+        builder.field("failures", failures);
+        builder.field("last_took_ms", lastReloadMillis);
+        builder.field("last_success", lastSuccessTimestamp);
+        builder.field("last_failure", lastFailureTimestamp);
+        builder.field("last_failure_reason", lastFailure);
+        builder.field("source", source);
+        builder.field("ms_since_last_reload", msSinceLastReload);
+        builder.endObject();
+
+        builder.startObject("types");
+        for (Map.Entry<String, TypeStats> entry : types.entrySet()) {
+            builder.startObject(entry.getKey());
+            builder.field("version", entry.getValue().version);
+            builder.field("loads", entry.getValue().loads);
+            builder.field("load_ms", entry.getValue().loadMillis);
+            builder.field("parse_ms", entry.getValue().parseMillis);
+            builder.endObject();
+        }
+        builder.endObject();
+
+        builder.startObject("listeners");
+        for (Map.Entry<String, ListenerStats> entry : listeners.entrySet()) {
+            builder.startObject(entry.getKey());
+            builder.field("count", entry.getValue().count);
+            builder.field("failures", entry.getValue().failures);
+            builder.field("last_ms", entry.getValue().lastMillis);
+            builder.field("max_ms", entry.getValue().maxMillis);
+            builder.field("total_ms", entry.getValue().totalMillis);
+            builder.endObject();
+        }
+        builder.endObject();
+        return builder;
+    }
+
+    public static final class TypeStats implements Writeable {
+        private long version = -1;
+        private long loads;
+        private long loadMillis = -1;
+        private long parseMillis = -1;
+
+        private TypeStats() {
+
+        }
+
+        private TypeStats(StreamInput in) throws IOException {
+            version = in.readLong();
+            loads = in.readVLong();
+            loadMillis = in.readLong();
+            parseMillis = in.readLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeLong(version);
+            out.writeVLong(loads);
+            out.writeLong(loadMillis);
+            out.writeLong(parseMillis);
+        }
+
+        private TypeStats copy() {
+            final TypeStats copy = new TypeStats();
+            copy.version = version;
+            copy.loads = loads;
+            copy.loadMillis = loadMillis;
+            copy.parseMillis = parseMillis;
+            return copy;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getLoadMillis() {
+            return loadMillis;
+        }
+    }
+
+    public static final class ListenerStats implements Writeable {
+        private long count;
+        private long failures;
+        private long lastMillis;
+        private long maxMillis;
+        private long totalMillis;
+
+        private ListenerStats() {
+
+        }
+
+        private ListenerStats(StreamInput in) throws IOException {
+            count = in.readVLong();
+            failures = in.readVLong();
+            lastMillis = in.readVLong();
+            maxMillis = in.readVLong();
+            totalMillis = in.readVLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeVLong(count);
+            out.writeVLong(failures);
+            out.writeVLong(lastMillis);
+            out.writeVLong(maxMillis);
+            out.writeVLong(totalMillis);
+        }
+
+        private ListenerStats copy() {
+            final ListenerStats copy = new ListenerStats();
+            copy.count = count;
+            copy.failures = failures;
+            copy.lastMillis = lastMillis;
+            copy.maxMillis = maxMillis;
+            copy.totalMillis = totalMillis;
+            return copy;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getLastMillis() {
+            return lastMillis;
+        }
+    }
+}
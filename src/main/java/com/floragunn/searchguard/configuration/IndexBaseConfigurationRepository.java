@@ -18,6 +18,7 @@
 package com.floragunn.searchguard.configuration;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -33,6 +34,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -50,6 +52,7 @@ import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.ClusterName;
 import org.elasticsearch.cluster.health.ClusterHealthStatus;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.Strings;
@@ -73,6 +76,7 @@ import com.floragunn.searchguard.support.ConfigHelper;
 import com.floragunn.searchguard.support.LicenseHelper;
 import com.floragunn.searchguard.support.SgUtils;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 
@@ -84,19 +88,24 @@ public class IndexBaseConfigurationRepository implements ConfigurationRepository
     private final String searchguardIndex;
     private final Client client;
     private final ConcurrentMap<String, Settings> typeToConfig;
+    //configuration and document version per type the listeners were notified about the last time
+    private final Map<String, Tuple<Long, Settings>> typeToNotifiedConfig = new HashMap<>();
     private final Multimap<String, ConfigurationChangeListener> configTypeToChancheListener;
     private final List<LicenseChangeListener> licenseChangeListener;
+    private final List<ConfigurationReloadListener> reloadListener = new ArrayList<>();
     private final ConfigurationLoader cl;
     private final LegacyConfigurationLoader legacycl;
     private final Settings settings;
     private final ClusterService clusterService;
     private final AuditLog auditLog;
     private final ComplianceConfig complianceConfig;
+    private final LocalConfigurationSnapshot localSnapshot;
+    private final ConfigurationStats stats = new ConfigurationStats();
     private ThreadPool threadPool;
     private volatile SearchGuardLicense effectiveLicense;
 
     private IndexBaseConfigurationRepository(Settings settings, final Path configPath, ThreadPool threadPool, Client client,
-            ClusterService clusterService, AuditLog auditLog, ComplianceConfig complianceConfig) {
+            ClusterService clusterService, AuditLog auditLog, ComplianceConfig complianceConfig, Path dataPath) {
         this.searchguardIndex = settings.get(ConfigConstants.SEARCHGUARD_CONFIG_INDEX_NAME, ConfigConstants.SG_DEFAULT_CONFIG_INDEX);
         this.settings = settings;
         this.client = client;
@@ -107,9 +116,16 @@ public class IndexBaseConfigurationRepository implements ConfigurationRepository
         this.typeToConfig = Maps.newConcurrentMap();
         this.configTypeToChancheListener = ArrayListMultimap.create();
         this.licenseChangeListener = new ArrayList<LicenseChangeListener>();
-        cl = new ConfigurationLoader(client, threadPool, settings);
+        cl = new ConfigurationLoader(client, threadPool, settings, stats);
         legacycl = new LegacyConfigurationLoader(client, threadPool, settings);
 
+        if (dataPath != null && settings.getAsBoolean(ConfigConstants.SEARCHGUARD_CONFIG_SNAPSHOT_ENABLED, false)) {
+            localSnapshot = new LocalConfigurationSnapshot(dataPath.resolve("searchguard").resolve("sg_config.snapshot"),
+                    ClusterName.CLUSTER_NAME_SETTING.get(settings).value(), searchguardIndex);
+        } else {
+            localSnapshot = null;
+        }
+
         final AtomicBoolean installDefaultConfig = new AtomicBoolean();
 
         clusterService.addLifecycleListener(new LifecycleListener() {
@@ -117,6 +133,11 @@ public class IndexBaseConfigurationRepository implements ConfigurationRepository
             @Override
             public void afterStart() {
 
+                if (localSnapshot != null) {
+                    //serve requests with the last good configuration, the background thread below reconciles it with the index
+                    loadLocalSnapshot();
+                }
+
                 final Thread bgThread = new Thread(new Runnable() {
 
                     @Override
@@ -278,8 +299,16 @@ public class IndexBaseConfigurationRepository implements ConfigurationRepository
 
     public static ConfigurationRepository create(Settings settings, final Path configPath, final ThreadPool threadPool, Client client,
             ClusterService clusterService, AuditLog auditLog, ComplianceConfig complianceConfig) {
+        return create(settings, configPath, threadPool, client, clusterService, auditLog, complianceConfig, null);
+    }
+
+    /**
+     * @param dataPath node data path where the local configuration snapshot is kept, may be null
+     */
+    public static ConfigurationRepository create(Settings settings, final Path configPath, final ThreadPool threadPool, Client client,
+            ClusterService clusterService, AuditLog auditLog, ComplianceConfig complianceConfig, Path dataPath) {
         final IndexBaseConfigurationRepository repository = new IndexBaseConfigurationRepository(settings, configPath, threadPool, client,
-                clusterService, auditLog, complianceConfig);
+                clusterService, auditLog, complianceConfig, dataPath);
         return repository;
     }
 
@@ -312,10 +341,45 @@ public class IndexBaseConfigurationRepository implements ConfigurationRepository
     
     @Override
     public Map<String, Settings> reloadConfiguration(Collection<String> configTypes) throws ConfigUpdateAlreadyInProgressException {
+        return underLock(() -> reloadConfiguration0(loadConfigurations(configTypes, false)), "index");
+    }
+
+    @Override
+    public Map<String, Settings> applyConfiguration(Map<String, Tuple<Long, Settings>> configuration) throws ConfigUpdateAlreadyInProgressException {
+        return underLock(() -> {
+            final Map<String, Tuple<Long, Settings>> loaded = new HashMap<>(configuration);
+            final List<String> stale = new ArrayList<>();
+
+            synchronized (this) {
+                for (Map.Entry<String, Tuple<Long, Settings>> entry : configuration.entrySet()) {
+                    final Tuple<Long, Settings> previous = typeToNotifiedConfig.get(entry.getKey());
+                    if (previous != null && previous.v1() != null && entry.getValue().v1() != null && previous.v1() > entry.getValue().v1()) {
+                        stale.add(entry.getKey());
+                    }
+                }
+            }
+
+            if (!stale.isEmpty()) {
+                //we already applied a newer version, so the update overtook another one
+                LOGGER.info("Shipped configuration for {} is older than the applied one, will load it from index", stale);
+                loaded.putAll(loadConfigurations(stale, false));
+            }
+
+            return reloadConfiguration0(loaded);
+        }, "shipped");
+    }
+
+    private Map<String, Settings> underLock(Supplier<Map<String, Settings>> action, String source) throws ConfigUpdateAlreadyInProgressException {
         try {
             if (LOCK.tryLock(60, TimeUnit.SECONDS)) {
                 try {
-                    return reloadConfiguration0(configTypes);
+                    final long start = System.currentTimeMillis();
+                    final Map<String, Settings> result = action.get();
+                    stats.onReloadSuccess(System.currentTimeMillis() - start, source);
+                    return result;
+                } catch (RuntimeException e) {
+                    stats.onReloadFailure(e);
+                    throw e;
                 } finally {
                     LOCK.unlock();
                 }
@@ -328,12 +392,13 @@ public class IndexBaseConfigurationRepository implements ConfigurationRepository
         }
     }
 
-    private Map<String, Settings> reloadConfiguration0(Collection<String> configTypes) {
-        Map<String, Tuple<Long, Settings>> loaded = loadConfigurations(configTypes, false);
-        Map<String, Settings> loaded0 = loaded.entrySet().stream().collect(Collectors.toMap(x -> x.getKey(), x -> x.getValue().v2()));
-        typeToConfig.keySet().removeAll(loaded0.keySet());
-        typeToConfig.putAll(loaded0);
-        notifyAboutChanges(loaded0);
+    private Map<String, Settings> reloadConfiguration0(Map<String, Tuple<Long, Settings>> loaded) {
+        final Map<String, ConfigurationDiff> diffs = new HashMap<>();
+        Map<String, Settings> loaded0 = publish(loaded, diffs);
+
+        if (localSnapshot != null && (!diffs.isEmpty() || !Files.exists(localSnapshot.getFile()))) {
+            writeLocalSnapshot();
+        }
 
         final SearchGuardLicense sgLicense = getLicense();
 
@@ -361,6 +426,62 @@ public class IndexBaseConfigurationRepository implements ConfigurationRepository
         return loaded0;
     }
 
+    private Map<String, Settings> publish(Map<String, Tuple<Long, Settings>> loaded, Map<String, ConfigurationDiff> diffs) {
+        Map<String, Settings> loaded0 = loaded.entrySet().stream().collect(Collectors.toMap(x -> x.getKey(), x -> x.getValue().v2()));
+        typeToConfig.keySet().removeAll(loaded0.keySet());
+        typeToConfig.putAll(loaded0);
+        diffs.putAll(computeDiffs(loaded));
+        notifyAboutChanges(loaded0, diffs);
+        notifyAboutReload(ImmutableMap.copyOf(typeToConfig), diffs);
+        return loaded0;
+    }
+
+    private void loadLocalSnapshot() {
+        final Map<String, Tuple<Long, Settings>> snapshot = localSnapshot.read();
+
+        if (snapshot == null || !snapshot.keySet().containsAll(ConfigConstants.CONFIG_NAMES)) {
+            return;
+        }
+
+        if (!LOCK.tryLock()) {
+            return;
+        }
+
+        try {
+            if (!typeToNotifiedConfig.isEmpty()) {
+                //already loaded from the index
+                return;
+            }
+
+            final long start = System.currentTimeMillis();
+            publish(snapshot, new HashMap<>());
+            stats.onReloadSuccess(System.currentTimeMillis() - start, "local_snapshot");
+            LOGGER.info("Node '{}' initialized from local configuration snapshot {} in {} ms", clusterService.getNodeName(),
+                    localSnapshot.getFile(), (System.currentTimeMillis() - start));
+        } catch (Exception e) {
+            LOGGER.warn("Unable to initialize from local configuration snapshot {} due to {}", localSnapshot.getFile(), e.toString(), e);
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private void writeLocalSnapshot() {
+        final Map<String, Tuple<Long, Settings>> current;
+
+        synchronized (this) {
+            if (!typeToNotifiedConfig.keySet().containsAll(ConfigConstants.CONFIG_NAMES)) {
+                return;
+            }
+            current = new HashMap<>(typeToNotifiedConfig);
+        }
+
+        localSnapshot.write(current);
+    }
+
+    public ConfigurationStats getStats() {
+        return stats.snapshot();
+    }
+
     @Override
     public void persistConfiguration(String configurationType, Settings settings) {
         //TODO should be use from com.floragunn.searchguard.tools.SearchGuardAdmin
@@ -373,6 +494,28 @@ public class IndexBaseConfigurationRepository implements ConfigurationRepository
         configTypeToChancheListener.put(configurationType, listener);
     }
 
+    @Override
+    public synchronized void subscribeOnReload(ConfigurationReloadListener listener) {
+        LOGGER.debug("Subscribe on reloads with listener {}", listener);
+        reloadListener.add(listener);
+    }
+
+    private synchronized void notifyAboutReload(Map<String, Settings> configuration, Map<String, ConfigurationDiff> diffs) {
+        for (ConfigurationReloadListener listener : reloadListener) {
+            try {
+                final long start = System.currentTimeMillis();
+                listener.onReloadCompleted(configuration, Collections.unmodifiableMap(diffs));
+                stats.onListener("reload", listener, System.currentTimeMillis() - start);
+            } catch (Exception e) {
+                LOGGER.error("{} reload listener errored: " + e, listener, e);
+                stats.onListenerFailure("reload", listener);
+                //make sure the next reload hands the changes to the listeners again
+                typeToNotifiedConfig.keySet().removeAll(diffs.keySet());
+                throw ExceptionsHelper.convertToElastic(e);
+            }
+        }
+    }
+
     //@Override
     public synchronized void subscribeOnLicenseChange(LicenseChangeListener licenseChangeListener) {
         if (licenseChangeListener != null) {
@@ -386,7 +529,48 @@ public class IndexBaseConfigurationRepository implements ConfigurationRepository
         }
     }
 
-    private synchronized void notifyAboutChanges(Map<String, Settings> typeToConfig) {
+    /**
+     * Compare the loaded documents with the ones the listeners were notified about the last time.
+     * Types which are unchanged (same document version and content) are absent in the returned map.
+     */
+    private synchronized Map<String, ConfigurationDiff> computeDiffs(Map<String, Tuple<Long, Settings>> loaded) {
+        final Map<String, ConfigurationDiff> diffs = new HashMap<>(loaded.size());
+
+        for (Map.Entry<String, Tuple<Long, Settings>> entry : loaded.entrySet()) {
+            final String type = entry.getKey();
+            final Tuple<Long, Settings> current = entry.getValue();
+            final Tuple<Long, Settings> previous = typeToNotifiedConfig.get(type);
+
+            if (current.v2() == null) {
+                continue;
+            }
+
+            if (previous != null && current.v1() != null && current.v1() >= 0 && current.v1().equals(previous.v1())
+                    && current.v2().equals(previous.v2())) {
+                LOGGER.debug("Configuration {} is unchanged (version {})", type, current.v1());
+                continue;
+            }
+
+            final ConfigurationDiff diff = ConfigurationDiff.compute(previous == null ? null : previous.v2(), current.v2());
+
+            if (diff.isEmpty()) {
+                LOGGER.debug("Configuration {} has a new version {} but the content is unchanged", type, current.v1());
+            } else {
+                diffs.put(type, diff);
+            }
+
+            typeToNotifiedConfig.put(type, current);
+        }
+
+        //roles are compiled with the action groups resolved
+        if (diffs.containsKey(ConfigConstants.CONFIGNAME_ACTION_GROUPS) && typeToNotifiedConfig.containsKey(ConfigConstants.CONFIGNAME_ROLES)) {
+            diffs.put(ConfigConstants.CONFIGNAME_ROLES, ConfigurationDiff.full(typeToNotifiedConfig.get(ConfigConstants.CONFIGNAME_ROLES).v2()));
+        }
+
+        return diffs;
+    }
+
+    private synchronized void notifyAboutChanges(Map<String, Settings> typeToConfig, Map<String, ConfigurationDiff> diffs) {
         for (Map.Entry<String, ConfigurationChangeListener> entry : configTypeToChancheListener.entries()) {
             String type = entry.getKey();
             ConfigurationChangeListener listener = entry.getValue();
@@ -394,16 +578,27 @@ public class IndexBaseConfigurationRepository implements ConfigurationRepository
             Settings settings = typeToConfig.get(type);
 
             if (settings == null) {
+                settings = getConfiguration(type);
+            }
+
+            final ConfigurationDiff diff = diffs.get(type);
+
+            if (settings == null || diff == null) {
                 continue;
             }
 
             try {
-                LOGGER.debug("Notify {} listener about change configuration with type {}", listener, type);
-                final long start = LOGGER.isDebugEnabled() ? System.currentTimeMillis() : 0L;
-                listener.onChange(settings);
-                LOGGER.debug("listener {} notified about type {} in {} ms", listener, type, (System.currentTimeMillis() - start));
+                LOGGER.debug("Notify {} listener about change configuration with type {}: {}", listener, type, diff);
+                final long start = System.currentTimeMillis();
+                listener.onChange(settings, diff);
+                final long took = System.currentTimeMillis() - start;
+                stats.onListener(type, listener, took);
+                LOGGER.debug("listener {} notified about type {} in {} ms", listener, type, took);
             } catch (Exception e) {
                 LOGGER.error("{} listener errored: " + e, listener, e);
+                stats.onListenerFailure(type, listener);
+                //make sure the next reload notifies the listeners again
+                typeToNotifiedConfig.remove(type);
                 throw ExceptionsHelper.convertToElastic(e);
             }
         }
@@ -413,6 +608,7 @@ public class IndexBaseConfigurationRepository implements ConfigurationRepository
 
         final ThreadContext threadContext = threadPool.getThreadContext();
         final Map<String, Tuple<Long, Settings>> retVal = new HashMap<String, Tuple<Long, Settings>>();
+        final long start = System.currentTimeMillis();
 
         try (StoredContext ctx = threadContext.stashContext()) {
             threadContext.putHeader(ConfigConstants.SG_CONF_REQUEST_HEADER, "true");
@@ -438,6 +634,12 @@ public class IndexBaseConfigurationRepository implements ConfigurationRepository
             throw new ElasticsearchException(e);
         }
 
+        final long took = System.currentTimeMillis() - start;
+
+        for (Map.Entry<String, Tuple<Long, Settings>> entry : retVal.entrySet()) {
+            stats.onLoad(entry.getKey(), entry.getValue().v1(), took);
+        }
+
         if (logComplianceEvent && complianceConfig.isEnabled()) {
             String configurationType = configTypes.iterator().next();
             Map<String, String> fields = new HashMap<String, String>();
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.configuration;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.elasticsearch.common.settings.Settings;
+
+/**
+ * Typed entry of the internal users configuration (sg_internal_users.yml).
+ */
+public final class InternalUserConfig {
+
+    private final String hash;
+    private final String username;
+    private final List<String> roles;
+    private final Map<String, String> attributes;
+
+    InternalUserConfig(String hash, String username, List<String> roles, Map<String, String> attributes) {
+        this.hash = hash;
+        this.username = username;
+        this.roles = Collections.unmodifiableList(roles);
+        this.attributes = Collections.unmodifiableMap(attributes);
+    }
+
+    /**
+     * @return the bcrypt hash of the password or null
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return the user name if it differs from the name of the entry, otherwise null
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    /**
+     * @return the custom attributes of the user
+     */
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(hash, username, roles, attributes);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof InternalUserConfig)) {
+            return false;
+        }
+        final InternalUserConfig other = (InternalUserConfig) obj;
+        return Objects.equals(hash, other.hash) && Objects.equals(username, other.username) && Objects.equals(roles, other.roles)
+                && Objects.equals(attributes, other.attributes);
+    }
+
+    /**
+     * Build a user from its flat settings as returned by {@link ConfigurationParser#groups(Settings)}
+     */
+    static InternalUserConfig fromSettings(Settings user) {
+        final Settings attributeSettings = user.getAsSettings(".attributes");
+        final Map<String, String> attributes = new LinkedHashMap<>();
+
+        for (String attribute : attributeSettings.names()) {
+            final String value = attributeSettings.get(attribute);
+            if (value != null) {
+                attributes.put(attribute, value);
+            }
+        }
+
+        return new InternalUserConfig(user.get(".hash"), user.get(".username"), user.getAsList(".roles", Collections.emptyList()), attributes);
+    }
+}
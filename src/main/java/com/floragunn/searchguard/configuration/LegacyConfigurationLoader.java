@@ -18,7 +18,6 @@
 package com.floragunn.searchguard.configuration;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -47,7 +46,6 @@ import org.elasticsearch.threadpool.ThreadPool;
 
 import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.SearchGuardDeprecationHandler;
-import com.floragunn.searchguard.support.SgUtils;
 
 class LegacyConfigurationLoader {
 
@@ -186,7 +184,9 @@ class LegacyConfigurationLoader {
 
             final byte[] content = parser.binaryValue();
 
-            return new Tuple<Long, Settings>(version, Settings.builder().loadFromSource(SgUtils.replaceEnvVars(new String(content, StandardCharsets.UTF_8), settings), XContentType.JSON).build());
+            final Settings parsed = ConfigurationParser.parse(content, XContentType.JSON, settings);
+            TypedConfiguration.register(parsed, ConfigurationParser.parseTyped(type, content, XContentType.JSON, settings));
+            return new Tuple<Long, Settings>(version, parsed);
         } catch (final IOException e) {
             throw ExceptionsHelper.convertToElastic(e);
         } finally {
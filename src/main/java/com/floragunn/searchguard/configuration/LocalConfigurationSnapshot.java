@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.configuration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.io.stream.ByteBufferStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.settings.Settings;
+
+/**
+ * Binary file on the node data path which holds the last good configuration (document version and content per type).
+ * It is read (memory mapped) during node startup so that the node can authenticate before the searchguard index is available.
+ * <p>
+ * Layout: magic, format version, payload length, payload, CRC32 of the payload.
+ * A file which is truncated, corrupt or was written for another index or cluster is ignored.
+ */
+public final class LocalConfigurationSnapshot {
+
+    private static final Logger log = LogManager.getLogger(LocalConfigurationSnapshot.class);
+    private static final int MAGIC = 0x53474353; //SGCS
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_LENGTH = 12;
+    private static final int TRAILER_LENGTH = 8;
+
+    private final Path file;
+    private final String clusterName;
+    private final String searchguardIndex;
+
+    public LocalConfigurationSnapshot(Path file, String clusterName, String searchguardIndex) {
+        this.file = file;
+        this.clusterName = clusterName;
+        this.searchguardIndex = searchguardIndex;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return the configuration per type or null if there is no usable snapshot
+     */
+    public Map<String, Tuple<Long, Settings>> read() {
+
+        if (!Files.isRegularFile(file)) {
+            log.debug("No local configuration snapshot {}", file);
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+
+            if (size < HEADER_LENGTH + TRAILER_LENGTH) {
+                log.warn("Local configuration snapshot {} is truncated and will be ignored", file);
+                return null;
+            }
+
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buffer.getInt() != MAGIC) {
+                log.warn("{} is not a configuration snapshot and will be ignored", file);
+                return null;
+            }
+
+            final int formatVersion = buffer.getInt();
+
+            if (formatVersion != FORMAT_VERSION) {
+                log.info("Local configuration snapshot {} has format version {} (expected {}) and will be ignored", file, formatVersion,
+                        FORMAT_VERSION);
+                return null;
+            }
+
+            final int payloadLength = buffer.getInt();
+
+            if (payloadLength < 0 || HEADER_LENGTH + (long) payloadLength + TRAILER_LENGTH != size) {
+                log.warn("Local configuration snapshot {} is truncated and will be ignored", file);
+                return null;
+            }
+
+            final CRC32 crc = new CRC32();
+            crc.update(payload(buffer, payloadLength));
+
+            if (crc.getValue() != buffer.getLong(HEADER_LENGTH + payloadLength)) {
+                log.warn("Checksum mismatch for local configuration snapshot {}, it will be ignored", file);
+                return null;
+            }
+
+            final StreamInput in = new ByteBufferStreamInput(payload(buffer, payloadLength));
+            final String snapshotClusterName = in.readString();
+            final String snapshotIndex = in.readString();
+            final long created = in.readLong();
+
+            if (!clusterName.equals(snapshotClusterName) || !searchguardIndex.equals(snapshotIndex)) {
+                log.info("Local configuration snapshot {} was written for {}/{} and will be ignored", file, snapshotClusterName, snapshotIndex);
+                return null;
+            }
+
+            final Map<String, Tuple<Long, Settings>> result = ConfigurationPayload.readConfiguration(in);
+            log.debug("Read local configuration snapshot {} created at {} with types {}", file, created, result.keySet());
+            return result;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to read local configuration snapshot {} due to {}", file, e.toString(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Atomically replace the snapshot file. Failures are logged only because the snapshot is just an optimization.
+     */
+    public boolean write(Map<String, Tuple<Long, Settings>> typeToConfig) {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.writeString(clusterName);
+            out.writeString(searchguardIndex);
+            out.writeLong(System.currentTimeMillis());
+            ConfigurationPayload.writeConfiguration(typeToConfig, out);
+
+            final byte[] payload = BytesReference.toBytes(out.bytes());
+            final CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+
+            final ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + payload.length + TRAILER_LENGTH);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(payload.length).put(payload).putLong(crc.getValue());
+            buffer.flip();
+
+            Files.createDirectories(file.getParent());
+            final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                restrictPermissions(tmp);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            log.debug("Local configuration snapshot {} written ({} bytes)", file, payload.length);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to write local configuration snapshot {} due to {}", file, e.toString(), e);
+            return false;
+        }
+    }
+
+    private static ByteBuffer payload(ByteBuffer buffer, int payloadLength) {
+        final ByteBuffer payload = buffer.duplicate();
+        payload.position(HEADER_LENGTH);
+        payload.limit(HEADER_LENGTH + payloadLength);
+        return payload;
+    }
+
+    private static void restrictPermissions(Path path) {
+        //the snapshot contains password hashes
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException | IOException e) {
+            log.debug("Unable to restrict permissions of {} due to {}", path, e.toString());
+        }
+    }
+}
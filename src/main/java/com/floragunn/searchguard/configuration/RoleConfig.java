@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.configuration;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.elasticsearch.common.settings.Settings;
+
+/**
+ * Typed entry of the roles configuration (sg_roles.yml).
+ */
+public final class RoleConfig {
+
+    public static final String DLS = "_dls_";
+    public static final String FLS = "_fls_";
+    public static final String MASKED_FIELDS = "_masked_fields_";
+
+    private final List<String> cluster;
+    private final Map<String, IndexConfig> indices;
+    private final Map<String, String> tenants;
+
+    RoleConfig(List<String> cluster, Map<String, IndexConfig> indices, Map<String, String> tenants) {
+        this.cluster = Collections.unmodifiableList(cluster);
+        this.indices = Collections.unmodifiableMap(indices);
+        this.tenants = Collections.unmodifiableMap(tenants);
+    }
+
+    /**
+     * @return the cluster permissions and action groups
+     */
+    public List<String> getCluster() {
+        return cluster;
+    }
+
+    /**
+     * @return the index patterns of this role in configuration order
+     */
+    public Map<String, IndexConfig> getIndices() {
+        return indices;
+    }
+
+    /**
+     * @return tenant name to its access mode (RW or RO)
+     */
+    public Map<String, String> getTenants() {
+        return tenants;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(cluster, indices, tenants);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof RoleConfig)) {
+            return false;
+        }
+        final RoleConfig other = (RoleConfig) obj;
+        return Objects.equals(cluster, other.cluster) && Objects.equals(indices, other.indices) && Objects.equals(tenants, other.tenants);
+    }
+
+    /**
+     * Build a role from its flat settings as returned by {@link ConfigurationParser#groups(Settings)}
+     */
+    static RoleConfig fromSettings(Settings role) {
+        final Map<String, IndexConfig> indices = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Settings> indexPattern : role.getGroups(".indices").entrySet()) {
+            final Settings settings = indexPattern.getValue();
+            final Map<String, List<String>> typePerms = new LinkedHashMap<>();
+
+            for (String type : settings.names()) {
+                if (!DLS.equals(type) && !FLS.equals(type) && !MASKED_FIELDS.equals(type)) {
+                    typePerms.put(type, settings.getAsList(type));
+                }
+            }
+
+            indices.put(indexPattern.getKey(),
+                    new IndexConfig(typePerms, settings.get(DLS), settings.getAsList(FLS), settings.getAsList(MASKED_FIELDS)));
+        }
+
+        final Settings tenantSettings = role.getByPrefix(".tenants.");
+        final Map<String, String> tenants = new LinkedHashMap<>();
+
+        for (String tenant : tenantSettings.names()) {
+            tenants.put(tenant, tenantSettings.get(tenant, "RO"));
+        }
+
+        return new RoleConfig(role.getAsList(".cluster", Collections.emptyList()), indices, tenants);
+    }
+
+    /**
+     * Permissions of a role on an index pattern
+     */
+    public static final class IndexConfig {
+
+        private final Map<String, List<String>> typePermissions;
+        private final String dls;
+        private final List<String> fls;
+        private final List<String> maskedFields;
+
+        IndexConfig(Map<String, List<String>> typePermissions, String dls, List<String> fls, List<String> maskedFields) {
+            this.typePermissions = Collections.unmodifiableMap(typePermissions);
+            this.dls = dls;
+            this.fls = Collections.unmodifiableList(fls);
+            this.maskedFields = Collections.unmodifiableList(maskedFields);
+        }
+
+        /**
+         * @return type pattern to its permissions and action groups
+         */
+        public Map<String, List<String>> getTypePermissions() {
+            return typePermissions;
+        }
+
+        /**
+         * @return the document level security query or null
+         */
+        public String getDls() {
+            return dls;
+        }
+
+        public List<String> getFls() {
+            return fls;
+        }
+
+        public List<String> getMaskedFields() {
+            return maskedFields;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(typePermissions, dls, fls, maskedFields);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof IndexConfig)) {
+                return false;
+            }
+            final IndexConfig other = (IndexConfig) obj;
+            return Objects.equals(typePermissions, other.typePermissions) && Objects.equals(dls, other.dls) && Objects.equals(fls, other.fls)
+                    && Objects.equals(maskedFields, other.maskedFields);
+        }
+    }
+}
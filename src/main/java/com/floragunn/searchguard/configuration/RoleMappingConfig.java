@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.configuration;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.elasticsearch.common.settings.Settings;
+
+/**
+ * Typed entry of the role mapping configuration (sg_roles_mapping.yml).
+ */
+public final class RoleMappingConfig {
+
+    private final List<String> users;
+    private final List<String> backendRoles;
+    private final List<String> andBackendRoles;
+    private final List<String> hosts;
+
+    RoleMappingConfig(List<String> users, List<String> backendRoles, List<String> andBackendRoles, List<String> hosts) {
+        this.users = Collections.unmodifiableList(users);
+        this.backendRoles = Collections.unmodifiableList(backendRoles);
+        this.andBackendRoles = Collections.unmodifiableList(andBackendRoles);
+        this.hosts = Collections.unmodifiableList(hosts);
+    }
+
+    public List<String> getUsers() {
+        return users;
+    }
+
+    public List<String> getBackendRoles() {
+        return backendRoles;
+    }
+
+    /**
+     * @return backend roles which all need to match
+     */
+    public List<String> getAndBackendRoles() {
+        return andBackendRoles;
+    }
+
+    public List<String> getHosts() {
+        return hosts;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(users, backendRoles, andBackendRoles, hosts);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof RoleMappingConfig)) {
+            return false;
+        }
+        final RoleMappingConfig other = (RoleMappingConfig) obj;
+        return Objects.equals(users, other.users) && Objects.equals(backendRoles, other.backendRoles)
+                && Objects.equals(andBackendRoles, other.andBackendRoles) && Objects.equals(hosts, other.hosts);
+    }
+
+    /**
+     * Build a role mapping from its flat settings as returned by {@link ConfigurationParser#groups(Settings)}
+     */
+    static RoleMappingConfig fromSettings(Settings mapping) {
+        return new RoleMappingConfig(mapping.getAsList(".users"), mapping.getAsList(".backendroles"), mapping.getAsList(".and_backendroles"),
+                mapping.getAsList(".hosts"));
+    }
+}
@@ -30,6 +30,7 @@ import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.engine.EngineException;
 import org.elasticsearch.index.shard.IndexSearcherWrapper;
 
+import com.floragunn.searchguard.privileges.SecurityDecision;
 import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.HeaderHelper;
 import com.floragunn.searchguard.user.User;
@@ -53,12 +54,14 @@ public class SearchGuardIndexSearcherWrapper extends IndexSearcherWrapper {
     @Override
     public final DirectoryReader wrap(final DirectoryReader reader) throws IOException {
 
-        if (isSearchGuardIndexRequest() && !isAdminAuthenticatedOrInternalRequest()) {
+        final boolean isAdmin = isAdminAuthenticatedOrInternalRequest();
+
+        if (isSearchGuardIndexRequest() && !isAdmin) {
             return new EmptyFilterLeafReader.EmptyDirectoryReader(reader);
         }
 
 
-        return dlsFlsWrap(reader, isAdminAuthenticatedOrInternalRequest());
+        return dlsFlsWrap(reader, isAdmin);
     }
 
     @Override
@@ -74,8 +77,21 @@ public class SearchGuardIndexSearcherWrapper extends IndexSearcherWrapper {
         return reader;
     }
 
+    /**
+     * @return the decision attached by the action filter or the transport layer, null if there is none
+     */
+    protected final SecurityDecision getSecurityDecision() {
+        return SecurityDecision.current(threadContext);
+    }
+
     protected final boolean isAdminAuthenticatedOrInternalRequest() {
 
+        final SecurityDecision decision = getSecurityDecision();
+
+        if (decision != null) {
+            return decision.isAdminOrConfRequest();
+        }
+
         final User user = (User) threadContext.getTransient(ConfigConstants.SG_USER);
 
         if (user != null && adminDns.isAdmin(user)) {
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.configuration;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.common.settings.Settings;
+
+import com.floragunn.searchguard.support.ConfigConstants;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Typed view of the roles, role mapping and internal users configuration.
+ * <p/>
+ * The configuration loaders parse these types straight from the document source and register the typed entries
+ * for the {@link Settings} instance they hand to the repository, so consumers never rebuild the structure from the
+ * flat keys. Configurations which only exist as {@link Settings} (shipped by another node or read from the local
+ * snapshot) are converted once on first access. Entries are bound to the identity of the {@link Settings} instance
+ * and go away with it.
+ */
+public final class TypedConfiguration {
+
+    private static final Cache<Settings, Map<String, ?>> TYPED = CacheBuilder.newBuilder().weakKeys().build();
+
+    private TypedConfiguration() {
+
+    }
+
+    public static boolean isTyped(String type) {
+        return ConfigConstants.CONFIGNAME_ROLES.equals(type) || ConfigConstants.CONFIGNAME_ROLES_MAPPING.equals(type)
+                || ConfigConstants.CONFIGNAME_INTERNAL_USERS.equals(type);
+    }
+
+    public static Map<String, RoleConfig> roles(Settings roles) {
+        return get(roles, RoleConfig::fromSettings);
+    }
+
+    public static Map<String, RoleMappingConfig> rolesMapping(Settings rolesMapping) {
+        return get(rolesMapping, RoleMappingConfig::fromSettings);
+    }
+
+    public static Map<String, InternalUserConfig> internalUsers(Settings internalUsers) {
+        return get(internalUsers, InternalUserConfig::fromSettings);
+    }
+
+    /**
+     * A {@link ConfigurationDiff} is computed on the first segment of the flat keys, so it cannot address entries with
+     * a dot in their name. Consumers rebuild all entries if this returns false.
+     */
+    public static boolean isDiffable(Map<String, ?> typed) {
+        for (String name : typed.keySet()) {
+            if (name.indexOf('.') >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the typed entries of the given configuration type or null if the type has no typed model
+     */
+    static Map<String, ?> of(String type, Settings settings) {
+        if (ConfigConstants.CONFIGNAME_ROLES.equals(type)) {
+            return roles(settings);
+        } else if (ConfigConstants.CONFIGNAME_ROLES_MAPPING.equals(type)) {
+            return rolesMapping(settings);
+        } else if (ConfigConstants.CONFIGNAME_INTERNAL_USERS.equals(type)) {
+            return internalUsers(settings);
+        }
+        return null;
+    }
+
+    static void register(Settings settings, Map<String, ?> typed) {
+        if (settings != null && !settings.isEmpty() && typed != null) {
+            TYPED.put(settings, Collections.unmodifiableMap(typed));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Map<String, T> get(Settings settings, Function<Settings, T> converter) {
+
+        if (settings == null || settings.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        try {
+            return (Map<String, T>) TYPED.get(settings, () -> convert(settings, converter));
+        } catch (ExecutionException e) {
+            throw ExceptionsHelper.convertToElastic(e);
+        }
+    }
+
+    private static <T> Map<String, T> convert(Settings settings, Function<Settings, T> converter) {
+        final Map<String, T> typed = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Settings> group : ConfigurationParser.groups(ConfigurationShards.withoutMeta(settings)).entrySet()) {
+            //a value instead of an object is no valid entry, the parser skips these as well
+            if (!group.getValue().keySet().contains("")) {
+                typed.put(group.getKey(), converter.apply(group.getValue()));
+            }
+        }
+
+        return Collections.unmodifiableMap(typed);
+    }
+}
@@ -17,9 +17,6 @@
 
 package com.floragunn.searchguard.filter;
 
-import java.util.UUID;
-import java.util.stream.Collectors;
-
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ElasticsearchSecurityException;
@@ -62,6 +59,8 @@ import com.floragunn.searchguard.configuration.CompatConfig;
 import com.floragunn.searchguard.configuration.DlsFlsRequestValve;
 import com.floragunn.searchguard.privileges.PrivilegesEvaluator;
 import com.floragunn.searchguard.privileges.PrivilegesEvaluatorResponse;
+import com.floragunn.searchguard.privileges.SecurityDecision;
+import com.floragunn.searchguard.support.ActionTrace;
 import com.floragunn.searchguard.support.Base64Helper;
 import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.HeaderHelper;
@@ -71,7 +70,6 @@ import com.floragunn.searchguard.user.User;
 public class SearchGuardFilter implements ActionFilter {
 
     protected final Logger log = LogManager.getLogger(this.getClass());
-    protected final Logger actionTrace = LogManager.getLogger("sg_action_trace");
     private final PrivilegesEvaluator evalp;
     private final AdminDNs adminDns;
     private DlsFlsRequestValve dlsFlsValve;
@@ -80,10 +78,11 @@ public class SearchGuardFilter implements ActionFilter {
     private final ClusterService cs;
     private final ComplianceConfig complianceConfig;
     private final CompatConfig compatConfig;
+    private final ActionTrace trace;
 
     public SearchGuardFilter(final PrivilegesEvaluator evalp, final AdminDNs adminDns,
             DlsFlsRequestValve dlsFlsValve, AuditLog auditLog, ThreadPool threadPool, ClusterService cs,
-            ComplianceConfig complianceConfig, final CompatConfig compatConfig) {
+            ComplianceConfig complianceConfig, final CompatConfig compatConfig, final ActionTrace trace) {
         this.evalp = evalp;
         this.adminDns = adminDns;
         this.dlsFlsValve = dlsFlsValve;
@@ -92,6 +91,7 @@ public class SearchGuardFilter implements ActionFilter {
         this.cs = cs;
         this.complianceConfig = complianceConfig;
         this.compatConfig = compatConfig;
+        this.trace = trace;
     }
 
     @Override
@@ -140,7 +140,9 @@ public class SearchGuardFilter implements ActionFilter {
                 org.apache.logging.log4j.ThreadContext.put("user", user.getName());    
             }
                         
-            if(actionTrace.isTraceEnabled()) {
+            final String traceId = trace.startOrContinue(threadContext);
+
+            if(traceId != null) {
 
                 String count = "";
                 if(request instanceof BulkRequest) {
@@ -155,14 +157,8 @@ public class SearchGuardFilter implements ActionFilter {
                     count = ""+((MultiSearchRequest) request).requests().size();
                 }
 
-                actionTrace.trace("Node "+cs.localNode().getName()+" -> "+action+" ("+count+"): userIsAdmin="+userIsAdmin+"/conRequest="+confRequest+"/internalRequest="+internalRequest
-                        +"origin="+threadContext.getTransient(ConfigConstants.SG_ORIGIN)+"/directRequest="+HeaderHelper.isDirectRequest(threadContext)+"/remoteAddress="+request.remoteAddress());
-
-
-                threadContext.putHeader("_sg_trace"+System.currentTimeMillis()+"#"+UUID.randomUUID().toString(), Thread.currentThread().getName()+" FILTER -> "+"Node "+cs.localNode().getName()+" -> "+action+" userIsAdmin="+userIsAdmin+"/conRequest="+confRequest+"/internalRequest="+internalRequest
-                        +"origin="+threadContext.getTransient(ConfigConstants.SG_ORIGIN)+"/directRequest="+HeaderHelper.isDirectRequest(threadContext)+"/remoteAddress="+request.remoteAddress()+" "+threadContext.getHeaders().entrySet().stream().filter(p->!p.getKey().startsWith("_sg_trace")).collect(Collectors.toMap(p -> p.getKey(), p -> p.getValue())));
-
-
+                trace.record(traceId, "FILTER", action, "count="+count+"/conRequest="+confRequest+"/internalRequest="+internalRequest
+                        +"/origin="+threadContext.getTransient(ConfigConstants.SG_ORIGIN)+"/directRequest="+HeaderHelper.isDirectRequest(threadContext)+"/remoteAddress="+request.remoteAddress());
             }
 
 
@@ -175,6 +171,12 @@ public class SearchGuardFilter implements ActionFilter {
                     auditLog.logGrantedPrivileges(action, request, task);
                 }
 
+                if(userIsAdmin) {
+                    attachDecision(SecurityDecision.ADMIN_DECISION);
+                } else if(confRequest) {
+                    attachDecision(SecurityDecision.CONF_REQUEST_DECISION);
+                }
+
                 chain.proceed(task, action, request, listener);
                 return;
             }
@@ -250,6 +252,7 @@ public class SearchGuardFilter implements ActionFilter {
                 if(!dlsFlsValve.invoke(request, listener, pres.getAllowedFlsFields(), pres.getMaskedFields(), pres.getQueries())) {
                     return;
                 }
+                attachDecision(SecurityDecision.of(pres));
                 chain.proceed(task, action, request, listener);
                 return;
             } else {
@@ -265,6 +268,19 @@ public class SearchGuardFilter implements ActionFilter {
         }
     }
 
+    /**
+     * The decision is computed once per request, nested actions executed in the same context keep the first one
+     */
+    private void attachDecision(final SecurityDecision decision) {
+        if(threadContext.getTransient(ConfigConstants.SG_DECISION) == null) {
+            threadContext.putTransient(ConfigConstants.SG_DECISION, decision);
+        }
+
+        if(threadContext.getHeader(ConfigConstants.SG_DECISION_HEADER) == null) {
+            threadContext.putHeader(ConfigConstants.SG_DECISION_HEADER, decision.encode());
+        }
+    }
+
     private static boolean isUserAdmin(User user, final AdminDNs adminDns) {
         if (user != null && adminDns.isAdmin(user)) {
             return true;
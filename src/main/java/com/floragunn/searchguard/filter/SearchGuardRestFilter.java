@@ -45,6 +45,8 @@ import com.floragunn.searchguard.ssl.util.SSLRequestHelper;
 import com.floragunn.searchguard.ssl.util.SSLRequestHelper.SSLInfo;
 import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.HTTPHelper;
+import com.floragunn.searchguard.support.RequestLatencyStats;
+import com.floragunn.searchguard.support.RequestLatencyStats.Stage;
 import com.floragunn.searchguard.user.User;
 
 public class SearchGuardRestFilter {
@@ -57,10 +59,11 @@ public class SearchGuardRestFilter {
     private final Settings settings;
     private final Path configPath;
     private final CompatConfig compatConfig;
+    private final RequestLatencyStats latencyStats;
 
     public SearchGuardRestFilter(final BackendRegistry registry, final AuditLog auditLog,
             final ThreadPool threadPool, final PrincipalExtractor principalExtractor,
-            final Settings settings, final Path configPath, final CompatConfig compatConfig) {
+            final Settings settings, final Path configPath, final CompatConfig compatConfig, final RequestLatencyStats latencyStats) {
         super();
         this.registry = registry;
         this.auditLog = auditLog;
@@ -69,6 +72,7 @@ public class SearchGuardRestFilter {
         this.settings = settings;
         this.configPath = configPath;
         this.compatConfig = compatConfig;
+        this.latencyStats = latencyStats;
     }
     
     public RestHandler wrap(RestHandler original) {
@@ -77,7 +81,14 @@ public class SearchGuardRestFilter {
             @Override
             public void handleRequest(RestRequest request, RestChannel channel, NodeClient client) throws Exception {
                 org.apache.logging.log4j.ThreadContext.clearAll();
-                if(!checkAndAuthenticateRequest(request, channel, client)) {
+                final long start = latencyStats.start();
+                final boolean handled;
+                try {
+                    handled = checkAndAuthenticateRequest(request, channel, client);
+                } finally {
+                    latencyStats.record(Stage.REST_FILTER, RequestLatencyStats.REST, start);
+                }
+                if(!handled) {
                     original.handleRequest(request, channel, client);
                 }
             }
@@ -22,7 +22,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import javax.naming.InvalidNameException;
 import javax.naming.ldap.LdapName;
 import javax.naming.ldap.Rdn;
 
@@ -36,6 +35,7 @@ import org.elasticsearch.rest.RestRequest;
 
 import com.floragunn.searchguard.auth.HTTPAuthenticator;
 import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.support.LdapNames;
 import com.floragunn.searchguard.user.AuthCredentials;
 
 public class HTTPClientCertAuthenticator implements HTTPAuthenticator {
@@ -57,8 +57,9 @@ public class HTTPClientCertAuthenticator implements HTTPAuthenticator {
             final String usernameAttribute = settings.get("username_attribute");
             final String rolesAttribute = settings.get("roles_attribute");
             
-            try {
-                final LdapName rfc2253dn = new LdapName(principal);
+            final LdapName rfc2253dn = LdapNames.parse(principal);
+
+            if (rfc2253dn != null) {
                 String username = principal.trim();
                 String[] backendRoles = null;
                 
@@ -77,7 +78,7 @@ public class HTTPClientCertAuthenticator implements HTTPAuthenticator {
                 }
                 
                 return new AuthCredentials(username, backendRoles).markComplete();
-            } catch (InvalidNameException e) {
+            } else {
                 log.error("Client cert had no properly formed DN (was: {})", principal);
                 return null;
             }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.privileges;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Verdicts which only depend on the action name, computed once per action and kept as bit flags.
+ * Action names are a small and mostly fixed set, the table stops growing at {@link #MAX_ACTIONS}
+ * and unknown actions are then computed on every call.
+ */
+final class ActionVerdicts {
+
+    static final int MAX_ACTIONS = 2048;
+
+    private final ConcurrentHashMap<String, Integer> verdicts = new ConcurrentHashMap<>();
+    private final ToIntFunction<String> computation;
+
+    ActionVerdicts(final ToIntFunction<String> computation) {
+        this.computation = computation;
+    }
+
+    int get(final String action) {
+        final Integer verdict = verdicts.get(action);
+
+        if (verdict != null) {
+            return verdict;
+        }
+
+        final int computed = computation.applyAsInt(action);
+
+        if (verdicts.size() < MAX_ACTIONS) {
+            verdicts.putIfAbsent(action, computed);
+        }
+
+        return computed;
+    }
+
+    boolean is(final String action, final int flag) {
+        return (get(action) & flag) != 0;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.privileges;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.common.collect.Tuple;
+
+import com.floragunn.searchguard.support.StringPool;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.SetMultimap;
+
+/**
+ * Tenants of the roles configuration compiled at load time into a role to tenant array index.
+ * Merged tenant maps are cached per effective role set so that lookups only depend on the roles of the user.
+ */
+final class CompiledTenants {
+
+    static final CompiledTenants EMPTY = new CompiledTenants(null);
+
+    private final Map<String, RoleTenants> byRole;
+    private final Set<String> allTenants;
+    private final Cache<Set<String>, Map<String, Boolean>> merged = CacheBuilder.newBuilder().maximumSize(1000).build();
+
+    CompiledTenants(final SetMultimap<String, Tuple<String, Boolean>> tenants) {
+
+        if (tenants == null || tenants.isEmpty()) {
+            this.byRole = Collections.emptyMap();
+            this.allTenants = Collections.emptySet();
+            return;
+        }
+
+        final Map<String, RoleTenants> byRole = new HashMap<>(tenants.keySet().size());
+        final Set<String> allTenants = new HashSet<>();
+
+        for (Entry<String, Collection<Tuple<String, Boolean>>> entry : tenants.asMap().entrySet()) {
+            final RoleTenants roleTenants = new RoleTenants(entry.getValue());
+            byRole.put(StringPool.intern(entry.getKey()), roleTenants);
+            Collections.addAll(allTenants, roleTenants.names);
+        }
+
+        this.byRole = byRole;
+        this.allTenants = Collections.unmodifiableSet(allTenants);
+    }
+
+    Set<String> getAllTenants() {
+        return allTenants;
+    }
+
+    /**
+     * @return tenant name to RW flag, the private tenant of the user is always RW
+     */
+    Map<String, Boolean> mapTenants(final String userName, final Set<String> roles) {
+        final Map<String, Boolean> rolesTenants;
+
+        try {
+            rolesTenants = merged.get(roles, () -> merge(roles));
+        } catch (ExecutionException e) {
+            throw ExceptionsHelper.convertToElastic(e);
+        }
+
+        if (Boolean.TRUE.equals(rolesTenants.get(userName))) {
+            return rolesTenants;
+        }
+
+        final Map<String, Boolean> result = new HashMap<>(rolesTenants);
+        result.put(userName, true);
+        return Collections.unmodifiableMap(result);
+    }
+
+    private Map<String, Boolean> merge(final Set<String> roles) {
+        final Map<String, Boolean> result = new HashMap<>();
+
+        for (String role : roles) {
+            final RoleTenants roleTenants = byRole.get(role);
+
+            if (roleTenants == null) {
+                continue;
+            }
+
+            for (int i = 0; i < roleTenants.names.length; i++) {
+                if (roleTenants.rw[i]) { //RW outperforms RO
+                    result.put(roleTenants.names[i], true);
+                } else {
+                    result.putIfAbsent(roleTenants.names[i], false);
+                }
+            }
+        }
+
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static final class RoleTenants {
+        private final String[] names;
+        private final boolean[] rw;
+
+        private RoleTenants(final Collection<Tuple<String, Boolean>> tenants) {
+            names = new String[tenants.size()];
+            rw = new boolean[tenants.size()];
+
+            int i = 0;
+            for (Tuple<String, Boolean> tenant : tenants) {
+                names[i] = StringPool.intern(tenant.v1());
+                rw[i] = tenant.v2();
+                i++;
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.privileges;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.service.ClusterService;
+
+import com.carrotsearch.hppc.cursors.ObjectCursor;
+
+/**
+ * Indices which have more than one filtered alias, mapped to the names of these aliases.
+ * Updated on cluster metadata changes, only the index metadata which changed is looked at again.
+ */
+final class FilteredAliasIndices implements ClusterStateListener {
+
+    private final ClusterService clusterService;
+    private volatile State state = new State(null, Collections.emptyMap());
+
+    FilteredAliasIndices(final ClusterService clusterService) {
+        this.clusterService = clusterService;
+    }
+
+    @Override
+    public void clusterChanged(final ClusterChangedEvent event) {
+        if (event.metaDataChanged()) {
+            current(event.state().metaData());
+        }
+    }
+
+    /**
+     * @return the names of the filtered aliases if the index has more than one of them, otherwise null
+     */
+    List<String> get(final String index) {
+        return current(clusterService.state().metaData()).indices.get(index);
+    }
+
+    private State current(final MetaData metaData) {
+        final State current = state;
+
+        if (current.metaData == metaData) {
+            return current;
+        }
+
+        final Map<String, List<String>> indices = new HashMap<>();
+
+        for (ObjectCursor<IndexMetaData> cursor : metaData.indices().values()) {
+            final IndexMetaData indexMetaData = cursor.value;
+
+            //index metadata is immutable, unchanged indices keep their instance
+            if (current.metaData != null && current.metaData.index(indexMetaData.getIndex()) == indexMetaData) {
+                final List<String> known = current.indices.get(indexMetaData.getIndex().getName());
+                if (known != null) {
+                    indices.put(indexMetaData.getIndex().getName(), known);
+                }
+                continue;
+            }
+
+            final List<String> filteredAliases = filteredAliases(indexMetaData);
+            if (filteredAliases.size() > 1) {
+                indices.put(indexMetaData.getIndex().getName(), filteredAliases);
+            }
+        }
+
+        final State refreshed = new State(metaData, indices);
+        state = refreshed;
+        return refreshed;
+    }
+
+    private static List<String> filteredAliases(final IndexMetaData indexMetaData) {
+        List<String> filteredAliases = Collections.emptyList();
+
+        for (ObjectCursor<AliasMetaData> cursor : indexMetaData.getAliases().values()) {
+            if (cursor.value.filteringRequired()) {
+                if (filteredAliases.isEmpty()) {
+                    filteredAliases = new ArrayList<>(2);
+                }
+                filteredAliases.add(cursor.value.alias());
+            }
+        }
+
+        return filteredAliases.isEmpty() ? filteredAliases : Collections.unmodifiableList(filteredAliases);
+    }
+
+    private static final class State {
+        private final MetaData metaData;
+        private final Map<String, List<String>> indices;
+
+        private State(MetaData metaData, Map<String, List<String>> indices) {
+            this.metaData = metaData;
+            this.indices = indices;
+        }
+    }
+}
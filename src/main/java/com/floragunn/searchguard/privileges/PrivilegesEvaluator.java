@@ -17,27 +17,19 @@
 
 package com.floragunn.searchguard.privileges;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ElasticsearchSecurityException;
-import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.cluster.shards.ClusterSearchShardsRequest;
 import org.elasticsearch.action.admin.cluster.snapshots.restore.RestoreSnapshotRequest;
@@ -60,11 +52,8 @@ import org.elasticsearch.action.search.SearchScrollAction;
 import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.action.termvectors.MultiTermVectorsAction;
 import org.elasticsearch.action.update.UpdateAction;
-import org.elasticsearch.cluster.metadata.AliasMetaData;
-import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.service.ClusterService;
-import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.TransportAddress;
@@ -76,21 +65,33 @@ import org.elasticsearch.threadpool.ThreadPool;
 import com.floragunn.searchguard.auditlog.AuditLog;
 import com.floragunn.searchguard.configuration.ActionGroupHolder;
 import com.floragunn.searchguard.configuration.ClusterInfoHolder;
-import com.floragunn.searchguard.configuration.ConfigurationChangeListener;
+import com.floragunn.searchguard.configuration.ConfigurationDiff;
+import com.floragunn.searchguard.configuration.ConfigurationReloadListener;
 import com.floragunn.searchguard.configuration.ConfigurationRepository;
+import com.floragunn.searchguard.configuration.InternalUserConfig;
+import com.floragunn.searchguard.configuration.RoleConfig;
+import com.floragunn.searchguard.configuration.RoleMappingConfig;
+import com.floragunn.searchguard.configuration.TypedConfiguration;
 import com.floragunn.searchguard.resolver.IndexResolverReplacer;
 import com.floragunn.searchguard.resolver.IndexResolverReplacer.Resolved;
 import com.floragunn.searchguard.sgconf.ConfigModel;
 import com.floragunn.searchguard.sgconf.ConfigModel.SgRoles;
 import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.support.HostMatcher;
+import com.floragunn.searchguard.support.RequestLatencyStats;
+import com.floragunn.searchguard.support.RequestLatencyStats.Stage;
 import com.floragunn.searchguard.support.WildcardMatcher;
 import com.floragunn.searchguard.user.User;
+import com.floragunn.searchguard.user.UserSnapshot;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.MultimapBuilder.SetMultimapBuilder;
 import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 
-public class PrivilegesEvaluator implements ConfigurationChangeListener {
+public class PrivilegesEvaluator implements ConfigurationReloadListener {
 
     protected final Logger log = LogManager.getLogger(this.getClass());
     protected final Logger actionTrace = LogManager.getLogger("sg_action_trace");
@@ -100,7 +101,6 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
 
     private final AuditLog auditLog;
     private ThreadContext threadContext;
-    private final ConfigurationRepository configurationRepository;
 
     private PrivilegesInterceptor privilegesInterceptor;
 
@@ -116,17 +116,24 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
     private final SearchGuardIndexAccessEvaluator sgIndexAccessEvaluator;
     private final TermsAggregationEvaluator termsAggregationEvaluator;
     private final DlsFlsEvaluator dlsFlsEvaluator;
-    private RoleMappingHolder roleMappingHolder = null;
-    private TenantHolder tenantHolder = null;
+    //the state the request path works with, only replaced as a whole after a reload completed
+    private volatile SecurityConfigSnapshot snapshot = null;
     private final boolean enterpriseModulesEnabled;
+    private final RequestLatencyStats latencyStats;
+    private final FilteredAliasIndices filteredAliasIndices;
+
+    private static final int CLUSTER_PERM = 1;
+    private static final int DNFOF_READ = 1 << 1;
+    private static final int DNFOF_REDUCIBLE = 1 << 2;
+    private static final int SEARCH = 1 << 3;
+    private static final ActionVerdicts ACTION_VERDICTS = new ActionVerdicts(PrivilegesEvaluator::computeActionVerdicts);
 
     public PrivilegesEvaluator(final ClusterService clusterService, final ThreadPool threadPool,
-            final ConfigurationRepository configurationRepository, final ActionGroupHolder ah, final IndexNameExpressionResolver resolver,
+            final ConfigurationRepository configurationRepository, final IndexNameExpressionResolver resolver,
             AuditLog auditLog, final Settings settings, final PrivilegesInterceptor privilegesInterceptor, final ClusterInfoHolder clusterInfoHolder,
-            final IndexResolverReplacer irr, boolean enterpriseModulesEnabled) {
+            final IndexResolverReplacer irr, boolean enterpriseModulesEnabled, final RequestLatencyStats latencyStats) {
 
         super();
-        this.configurationRepository = configurationRepository;
         this.clusterService = clusterService;
         this.resolver = resolver;
         this.auditLog = auditLog;
@@ -148,162 +155,180 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
 
         this.clusterInfoHolder = clusterInfoHolder;
         //this.typeSecurityDisabled = settings.getAsBoolean(ConfigConstants.SEARCHGUARD_DISABLE_TYPE_SECURITY, false);
-        configModel = new ConfigModel(ah);
-        configurationRepository.subscribeOnChange("roles", configModel);
-        configurationRepository.subscribeOnChange("rolesmapping", this);
+        configModel = new ConfigModel();
         this.irr = irr;
         snapshotRestoreEvaluator = new SnapshotRestoreEvaluator(settings, auditLog);
         sgIndexAccessEvaluator = new SearchGuardIndexAccessEvaluator(settings, auditLog, irr);
         dlsFlsEvaluator = new DlsFlsEvaluator(settings, threadPool);
         termsAggregationEvaluator = new TermsAggregationEvaluator();
-        tenantHolder = new TenantHolder();
-        configurationRepository.subscribeOnChange("roles", tenantHolder);
+        configurationRepository.subscribeOnReload(this);
         this.enterpriseModulesEnabled = enterpriseModulesEnabled;
+        this.latencyStats = latencyStats;
+        this.filteredAliasIndices = new FilteredAliasIndices(clusterService);
+        clusterService.addListener(filteredAliasIndices);
     }
 
-    private class TenantHolder implements ConfigurationChangeListener {
+    /**
+     * Tenants per role, built from the roles configuration
+     */
+    private static final class TenantHolder {
 
-        private SetMultimap<String, Tuple<String, Boolean>> tenantsMM = null;
+        private final SetMultimap<String, Tuple<String, Boolean>> tenantsMM;
 
-        public Map<String, Boolean> mapTenants(final User user, Set<String> roles) {
+        private TenantHolder(Map<String, RoleConfig> roles) {
+            tenantsMM = SetMultimapBuilder.hashKeys(roles.size()).hashSetValues(16).build();
 
-            if (user == null || tenantsMM == null) {
-                return Collections.emptyMap();
+            for (Map.Entry<String, RoleConfig> role : roles.entrySet()) {
+                tenantsMM.putAll(role.getKey(), resolveTenants(role.getValue()));
             }
+        }
 
-            final Map<String, Boolean> result = new HashMap<>(roles.size());
-            result.put(user.getName(), true);
+        /**
+         * Copy the tenants of another holder and only update the roles which were added, changed or removed
+         */
+        private TenantHolder(TenantHolder previous, Map<String, RoleConfig> roles, ConfigurationDiff diff) {
+            tenantsMM = SetMultimapBuilder.hashKeys(previous.tenantsMM.keySet().size()).hashSetValues(16).build();
+            tenantsMM.putAll(previous.tenantsMM);
+
+            for (String sgRole : diff.getAffected()) {
+                tenantsMM.removeAll(sgRole);
+            }
 
-            tenantsMM.entries().stream().filter(e -> roles.contains(e.getKey())).filter(e -> !user.getName().equals(e.getValue().v1())).forEach(e -> {
-                final String tenant = e.getValue().v1();
-                final boolean rw = e.getValue().v2();
+            for (String sgRole : Sets.union(diff.getAdded(), diff.getChanged())) {
+                final RoleConfig role = roles.get(sgRole);
 
-                if (rw || !result.containsKey(tenant)) { //RW outperforms RO
-                    result.put(tenant, rw);
+                if (role != null) {
+                    tenantsMM.putAll(sgRole, resolveTenants(role));
                 }
-            });
-            return Collections.unmodifiableMap(result);
+            }
         }
 
-        @Override
-        public void onChange(Settings roles) {
-
-            final Set<Future<Tuple<String, Set<Tuple<String, Boolean>>>>> futures = new HashSet<>(roles.size());
+        private static Set<Tuple<String, Boolean>> resolveTenants(RoleConfig role) {
+            final Set<Tuple<String, Boolean>> tuples = new HashSet<>();
 
-            final ExecutorService execs = Executors.newFixedThreadPool(10);
+            for (Map.Entry<String, String> tenant : role.getTenants().entrySet()) {
 
-            for (String sgRole : roles.names()) {
+                if ("RW".equalsIgnoreCase(tenant.getValue())) {
+                    //RW
+                    tuples.add(new Tuple<String, Boolean>(tenant.getKey(), true));
+                } else {
+                    //RO
+                    //if(!tenantsMM.containsValue(value)) { //RW outperforms RO
+                    tuples.add(new Tuple<String, Boolean>(tenant.getKey(), false));
+                    //}
+                }
+            }
 
-                Future<Tuple<String, Set<Tuple<String, Boolean>>>> future = execs.submit(new Callable<Tuple<String, Set<Tuple<String, Boolean>>>>() {
-                    @Override
-                    public Tuple<String, Set<Tuple<String, Boolean>>> call() throws Exception {
-                        final Set<Tuple<String, Boolean>> tuples = new HashSet<>();
-                        final Settings tenants = getRolesSettings().getByPrefix(sgRole + ".tenants.");
+            return tuples;
+        }
+    }
 
-                        if (tenants != null) {
-                            for (String tenant : tenants.names()) {
+    private class RoleMappingHolder {
 
-                                if ("RW".equalsIgnoreCase(tenants.get(tenant, "RO"))) {
-                                    //RW
-                                    tuples.add(new Tuple<String, Boolean>(tenant, true));
-                                } else {
-                                    //RO
-                                    //if(!tenantsMM.containsValue(value)) { //RW outperforms RO
-                                    tuples.add(new Tuple<String, Boolean>(tenant, false));
-                                    //}
-                                }
-                            }
-                        }
+        private final ListMultimap<String, String> users;
+        private final ListMultimap<Set<String>, String> abars;
+        private final ListMultimap<String, String> bars;
+        private final ListMultimap<String, String> hostPatterns;
+        private final HostMatcher hosts;
+        //mapped roles for users if no host based mappings exist, keys are interned so lookups are cheap
+        private final Cache<UserSnapshot, Set<String>> mappedRoles = CacheBuilder.newBuilder().maximumSize(10000).build();
 
-                        return new Tuple<String, Set<Tuple<String, Boolean>>>(sgRole, tuples);
-                    }
-                });
+        private RoleMappingHolder(Map<String, RoleMappingConfig> rolesMapping) {
 
-                futures.add(future);
+            final ListMultimap<String, String> users_ = ArrayListMultimap.create();
+            final ListMultimap<Set<String>, String> abars_ = ArrayListMultimap.create();
+            final ListMultimap<String, String> bars_ = ArrayListMultimap.create();
+            final ListMultimap<String, String> hosts_ = ArrayListMultimap.create();
 
+            for (final Map.Entry<String, RoleMappingConfig> roleMap : rolesMapping.entrySet()) {
+                addMapping(roleMap.getValue(), roleMap.getKey(), users_, abars_, bars_, hosts_);
             }
 
-            execs.shutdown();
-            try {
-                execs.awaitTermination(30, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.error("Thread interrupted (1) while loading roles");
-                return;
-            }
+            users = users_;
+            abars = abars_;
+            bars = bars_;
+            hostPatterns = hosts_;
+            hosts = new HostMatcher(hosts_);
+        }
 
-            try {
-                final SetMultimap<String, Tuple<String, Boolean>> tenantsMM_ = SetMultimapBuilder.hashKeys(futures.size()).hashSetValues(16).build();
+        /**
+         * Copy the mappings of another holder and only update the mappings which were added, changed or removed
+         */
+        private RoleMappingHolder(RoleMappingHolder previous, Map<String, RoleMappingConfig> rolesMapping, ConfigurationDiff diff) {
+            final Set<String> affected = diff.getAffected();
 
-                for (Future<Tuple<String, Set<Tuple<String, Boolean>>>> future : futures) {
-                    Tuple<String, Set<Tuple<String, Boolean>>> result = future.get();
-                    tenantsMM_.putAll(result.v1(), result.v2());
-                }
+            final ListMultimap<String, String> users_ = ArrayListMultimap.create(previous.users);
+            final ListMultimap<Set<String>, String> abars_ = ArrayListMultimap.create(previous.abars);
+            final ListMultimap<String, String> bars_ = ArrayListMultimap.create(previous.bars);
+            final ListMultimap<String, String> hosts_ = ArrayListMultimap.create(previous.hostPatterns);
 
-                tenantsMM = tenantsMM_;
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.error("Thread interrupted (2) while loading roles");
-                return;
-            } catch (ExecutionException e) {
-                log.error("Error while updating roles: {}", e.getCause(), e.getCause());
-                throw ExceptionsHelper.convertToElastic(e);
-            }
+            users_.values().removeIf(affected::contains);
+            abars_.values().removeIf(affected::contains);
+            bars_.values().removeIf(affected::contains);
+            hosts_.values().removeIf(affected::contains);
 
-        }
-    }
+            for (final String roleMap : Sets.union(diff.getAdded(), diff.getChanged())) {
+                final RoleMappingConfig mapping = rolesMapping.get(roleMap);
 
-    private class RoleMappingHolder {
+                if (mapping != null) {
+                    addMapping(mapping, roleMap, users_, abars_, bars_, hosts_);
+                }
+            }
 
-        private ListMultimap<String, String> users;
-        private ListMultimap<Set<String>, String> abars;
-        private ListMultimap<String, String> bars;
-        private ListMultimap<String, String> hosts;
+            users = users_;
+            abars = abars_;
+            bars = bars_;
+            hostPatterns = hosts_;
+            hosts = new HostMatcher(hosts_);
+        }
 
-        private RoleMappingHolder(Settings rolesMapping) {
+        private void addMapping(RoleMappingConfig mapping, String roleMap, ListMultimap<String, String> users_,
+                ListMultimap<Set<String>, String> abars_, ListMultimap<String, String> bars_, ListMultimap<String, String> hosts_) {
 
-            if (rolesMapping != null) {
+            for (String u : mapping.getUsers()) {
+                users_.put(u, roleMap);
+            }
 
-                final ListMultimap<String, String> users_ = ArrayListMultimap.create();
-                final ListMultimap<Set<String>, String> abars_ = ArrayListMultimap.create();
-                final ListMultimap<String, String> bars_ = ArrayListMultimap.create();
-                final ListMultimap<String, String> hosts_ = ArrayListMultimap.create();
+            final Set<String> abar = new HashSet<String>(mapping.getAndBackendRoles());
 
-                for (final String roleMap : rolesMapping.names()) {
+            if (!abar.isEmpty()) {
+                abars_.put(abar, roleMap);
+            }
 
-                    final Settings roleMapSettings = rolesMapping.getByPrefix(roleMap);
+            for (String bar : mapping.getBackendRoles()) {
+                bars_.put(bar, roleMap);
+            }
 
-                    for (String u : roleMapSettings.getAsList(".users")) {
-                        users_.put(u, roleMap);
-                    }
+            for (String host : mapping.getHosts()) {
+                hosts_.put(host, roleMap);
+            }
+        }
 
-                    final Set<String> abar = new HashSet<String>(roleMapSettings.getAsList(".and_backendroles"));
+        /**
+         * @param hostResolverMode how the caller is matched against host based mappings
+         */
+        private Set<String> map(final User user, final TransportAddress caller, final String hostResolverMode) {
 
-                    if (!abar.isEmpty()) {
-                        abars_.put(abar, roleMap);
-                    }
+            if (user == null) {
+                return Collections.emptySet();
+            }
 
-                    for (String bar : roleMapSettings.getAsList(".backendroles")) {
-                        bars_.put(bar, roleMap);
-                    }
+            if (!hosts.isEmpty()) {
+                return map0(user, caller, hostResolverMode);
+            }
 
-                    for (String host : roleMapSettings.getAsList(".hosts")) {
-                        hosts_.put(host, roleMap);
-                    }
-                }
+            final UserSnapshot snapshot = user.snapshot();
+            Set<String> sgRoles = mappedRoles.getIfPresent(snapshot);
 
-                users = users_;
-                abars = abars_;
-                bars = bars_;
-                hosts = hosts_;
+            if (sgRoles == null) {
+                sgRoles = map0(user, caller, hostResolverMode);
+                mappedRoles.put(snapshot, sgRoles);
             }
-        }
 
-        private Set<String> map(final User user, final TransportAddress caller) {
+            return sgRoles;
+        }
 
-            if (user == null || users == null || abars == null || bars == null || hosts == null) {
-                return Collections.emptySet();
-            }
+        private Set<String> map0(final User user, final TransportAddress caller, final String hostResolverMode) {
 
             final Set<String> sgRoles = new TreeSet<String>();
 
@@ -332,66 +357,168 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
                     }
                 }
 
-                if (caller != null) {
-                    //IPV4 or IPv6 (compressed and without scope identifiers)
-                    final String ipAddress = caller.getAddress();
+                if (caller != null && caller.address() != null) {
+                    //matched on the raw address bytes, no need to format the address
+                    hosts.matchAddress(caller.address().getAddress(), sgRoles);
 
-                    for (String p : WildcardMatcher.getAllMatchingPatterns(hosts.keySet(), ipAddress)) {
-                        sgRoles.addAll(hosts.get(p));
+                    if (hostResolverMode.equalsIgnoreCase("ip-hostname") || hostResolverMode.equalsIgnoreCase("ip-hostname-lookup")) {
+                        hosts.matchHostName(caller.address().getHostString(), sgRoles);
                     }
 
-                    final String hostResolverMode = getConfigSettings().get("searchguard.dynamic.hosts_resolver_mode", "ip-only");
+                    if (hostResolverMode.equalsIgnoreCase("ip-hostname-lookup")) {
+                        hosts.matchHostName(caller.address().getHostName(), sgRoles);
+                    }
+                }
+            }
 
-                    if (caller.address() != null
-                            && (hostResolverMode.equalsIgnoreCase("ip-hostname") || hostResolverMode.equalsIgnoreCase("ip-hostname-lookup"))) {
-                        final String hostName = caller.address().getHostString();
+            return Collections.unmodifiableSet(sgRoles);
 
-                        for (String p : WildcardMatcher.getAllMatchingPatterns(hosts.keySet(), hostName)) {
-                            sgRoles.addAll(hosts.get(p));
-                        }
-                    }
+        }
+    }
 
-                    if (caller.address() != null && hostResolverMode.equalsIgnoreCase("ip-hostname-lookup")) {
+    /**
+     * Immutable view of all the configuration derived state the privileges evaluation and the internal users
+     * authentication need. It is built in one go from the configuration of a completed reload and published with a
+     * single write, the request path only reads from the snapshot.
+     */
+    private static final class SecurityConfigSnapshot {
+        private final SgRoles sgRoles;
+        private final RoleMappingHolder roleMapping;
+        private final TenantHolder tenantHolder;
+        private final CompiledTenants tenants;
+        private final ActionGroupHolder actionGroups;
+        private final Map<String, InternalUserConfig> internalUsers;
+        private final Settings config;
+        private final String hostResolverMode;
+
+        private SecurityConfigSnapshot(SgRoles sgRoles, RoleMappingHolder roleMapping, TenantHolder tenantHolder, ActionGroupHolder actionGroups,
+                Map<String, InternalUserConfig> internalUsers, Settings config) {
+            this.sgRoles = sgRoles;
+            this.roleMapping = roleMapping;
+            this.tenantHolder = tenantHolder;
+            this.tenants = new CompiledTenants(tenantHolder.tenantsMM);
+            this.actionGroups = actionGroups;
+            this.internalUsers = internalUsers;
+            this.config = config;
+            this.hostResolverMode = config.get("searchguard.dynamic.hosts_resolver_mode", "ip-only");
+        }
 
-                        final String resolvedHostName = caller.address().getHostName();
+        private Set<String> mapSgRoles(final User user, final TransportAddress caller) {
+            return roleMapping.map(user, caller, hostResolverMode);
+        }
 
-                        for (String p : WildcardMatcher.getAllMatchingPatterns(hosts.keySet(), resolvedHostName)) {
-                            sgRoles.addAll(hosts.get(p));
-                        }
-                    }
-                }
-            }
+        private Map<String, Boolean> mapTenants(final User user, Set<String> roles) {
 
-            return Collections.unmodifiableSet(sgRoles);
+            if (user == null) {
+                return Collections.emptyMap();
+            }
 
+            return tenants.mapTenants(user.getName(), roles);
         }
     }
 
     @Override
-    public void onChange(Settings rolesMapping) {
-        final RoleMappingHolder tmp = new RoleMappingHolder(rolesMapping);
-        this.roleMappingHolder = tmp;
+    public void onReloadCompleted(Map<String, Settings> configuration, Map<String, ConfigurationDiff> diffs) {
+        final SecurityConfigSnapshot previous = this.snapshot;
+
+        if (previous != null && diffs.isEmpty()) {
+            return;
+        }
+
+        if (!configuration.keySet().containsAll(ConfigConstants.CONFIG_NAMES)) {
+            log.debug("Configuration not yet complete, snapshot not published");
+            return;
+        }
+
+        snapshot = buildSnapshot(previous, configuration, diffs);
     }
 
-    private Settings getRolesSettings() {
-        return configurationRepository.getConfiguration(ConfigConstants.CONFIGNAME_ROLES);
+    /**
+     * Build the snapshot from the configuration of a reload. The parts derived from types which did not change are
+     * taken over from the previous snapshot, roles, role mappings and tenants are updated incrementally.
+     */
+    private SecurityConfigSnapshot buildSnapshot(final SecurityConfigSnapshot previous, final Map<String, Settings> configuration,
+            final Map<String, ConfigurationDiff> diffs) {
+
+        final boolean actionGroupsChanged = previous == null || diffs.containsKey(ConfigConstants.CONFIGNAME_ACTION_GROUPS);
+        final ActionGroupHolder actionGroups = actionGroupsChanged ? new ActionGroupHolder(configuration.get(ConfigConstants.CONFIGNAME_ACTION_GROUPS))
+                : previous.actionGroups;
+
+        final Settings roles = configuration.get(ConfigConstants.CONFIGNAME_ROLES);
+        final ConfigurationDiff rolesDiff = diffs.get(ConfigConstants.CONFIGNAME_ROLES);
+        final SgRoles sgRoles;
+        final TenantHolder tenantHolder;
+
+        if (actionGroupsChanged || rolesDiff != null) {
+            //roles are compiled with the action groups resolved, so changed action groups need all roles to be compiled
+            sgRoles = configModel.compile(roles, actionGroups, previous == null ? null : previous.sgRoles, actionGroupsChanged ? null : rolesDiff);
+
+            if (sgRoles == null) {
+                throw new ElasticsearchException("Interrupted while compiling roles");
+            }
+        } else {
+            sgRoles = previous.sgRoles;
+        }
+
+        final Map<String, RoleConfig> roleConfigs = TypedConfiguration.roles(roles);
+
+        if (previous == null || rolesDiff != null && (rolesDiff.isFull() || !TypedConfiguration.isDiffable(roleConfigs))) {
+            tenantHolder = new TenantHolder(roleConfigs);
+        } else if (rolesDiff != null) {
+            tenantHolder = new TenantHolder(previous.tenantHolder, roleConfigs, rolesDiff);
+        } else {
+            tenantHolder = previous.tenantHolder;
+        }
+
+        final Map<String, RoleMappingConfig> rolesMapping = TypedConfiguration.rolesMapping(configuration.get(ConfigConstants.CONFIGNAME_ROLES_MAPPING));
+        final ConfigurationDiff rolesMappingDiff = diffs.get(ConfigConstants.CONFIGNAME_ROLES_MAPPING);
+        final RoleMappingHolder roleMapping;
+
+        if (previous == null || rolesMappingDiff != null && (rolesMappingDiff.isFull() || !TypedConfiguration.isDiffable(rolesMapping))) {
+            roleMapping = new RoleMappingHolder(rolesMapping);
+        } else if (rolesMappingDiff != null) {
+            roleMapping = new RoleMappingHolder(previous.roleMapping, rolesMapping, rolesMappingDiff);
+        } else {
+            roleMapping = previous.roleMapping;
+        }
+
+        return new SecurityConfigSnapshot(sgRoles, roleMapping, tenantHolder, actionGroups,
+                TypedConfiguration.internalUsers(configuration.get(ConfigConstants.CONFIGNAME_INTERNAL_USERS)),
+                configuration.get(ConfigConstants.CONFIGNAME_CONFIG));
     }
 
     private Settings getConfigSettings() {
-        return configurationRepository.getConfiguration(ConfigConstants.CONFIGNAME_CONFIG);
+        final SecurityConfigSnapshot snapshot = this.snapshot;
+        return snapshot == null ? Settings.EMPTY : snapshot.config;
     }
 
-    private SgRoles getSgRoles(Set<String> roles) {
-        return configModel.getSgRoles().filter(roles);
+    /**
+     * @return the internal users of the current configuration or null if not yet initialized
+     */
+    public Map<String, InternalUserConfig> getInternalUsers() {
+        final SecurityConfigSnapshot snapshot = this.snapshot;
+        return snapshot == null ? null : snapshot.internalUsers;
     }
 
     public boolean isInitialized() {
-        return roleMappingHolder != null && configModel.getSgRoles() != null && getRolesSettings() != null && getConfigSettings() != null;
+        return snapshot != null;
     }
 
-    public PrivilegesEvaluatorResponse evaluate(final User user, String action0, final ActionRequest request, Task task) {
+    public PrivilegesEvaluatorResponse evaluate(final User user, final String action, final ActionRequest request, Task task) {
+        final long start = latencyStats.start();
+        try {
+            return evaluate0(user, action, request, task);
+        } finally {
+            latencyStats.record(Stage.PRIVILEGES_EVALUATION, action, start);
+        }
+    }
+
+    private PrivilegesEvaluatorResponse evaluate0(final User user, String action0, final ActionRequest request, Task task) {
+
+        //read once so that the whole evaluation works on the same configuration
+        final SecurityConfigSnapshot snapshot = this.snapshot;
 
-        if (!isInitialized()) {
+        if (snapshot == null) {
             throw new ElasticsearchSecurityException("Search Guard is not initialized.");
         }
 
@@ -401,8 +528,8 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
 
         final TransportAddress caller = Objects.requireNonNull((TransportAddress) this.threadContext.getTransient(ConfigConstants.SG_REMOTE_ADDRESS));
 
-        final Set<String> mappedRoles = mapSgRoles(user, caller);
-        final SgRoles sgRoles = getSgRoles(mappedRoles);
+        final Set<String> mappedRoles = snapshot.mapSgRoles(user, caller);
+        final SgRoles sgRoles = snapshot.sgRoles.filter(mappedRoles);
 
         final PrivilegesEvaluatorResponse presponse = new PrivilegesEvaluatorResponse();
 
@@ -411,17 +538,25 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
             log.debug("action: " + action0 + " (" + request.getClass().getSimpleName() + ")");
         }
 
+        final long resolveStart = latencyStats.start();
         final Resolved requestedResolved = irr.resolveRequest(request);
+        latencyStats.record(Stage.INDEX_RESOLUTION, action0, resolveStart);
 
         if (log.isDebugEnabled()) {
             log.debug("requestedResolved : {}", requestedResolved);
         }
 
         // check dlsfls 
-        if (enterpriseModulesEnabled
-                //&& (action0.startsWith("indices:data/read") || action0.equals(ClusterSearchShardsAction.NAME))
-                && dlsFlsEvaluator.evaluate(request, clusterService, resolver, requestedResolved, user, sgRoles, presponse).isComplete()) {
-            return presponse;
+        //&& (action0.startsWith("indices:data/read") || action0.equals(ClusterSearchShardsAction.NAME))
+        if (enterpriseModulesEnabled) {
+            final long dlsFlsStart = latencyStats.start();
+            final boolean dlsFlsComplete = dlsFlsEvaluator.evaluate(request, clusterService, resolver, requestedResolved, user, sgRoles, presponse)
+                    .isComplete();
+            latencyStats.record(Stage.DLS_FLS_EVALUATION, action0, dlsFlsStart);
+
+            if (dlsFlsComplete) {
+                return presponse;
+            }
         }
 
         // check snapshot/restore requests 
@@ -434,15 +569,15 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
             return presponse;
         }
 
-        final boolean dnfofEnabled = getConfigSettings().getAsBoolean("searchguard.dynamic.kibana.do_not_fail_on_forbidden", false)
-                || getConfigSettings().getAsBoolean("searchguard.dynamic.do_not_fail_on_forbidden", false);
+        final Settings config = snapshot.config;
+
+        final boolean dnfofEnabled = config.getAsBoolean("searchguard.dynamic.kibana.do_not_fail_on_forbidden", false)
+                || config.getAsBoolean("searchguard.dynamic.do_not_fail_on_forbidden", false);
 
         if (log.isTraceEnabled()) {
             log.trace("dnfof enabled? {}", dnfofEnabled);
         }
 
-        final Settings config = getConfigSettings();
-
         if (isClusterPerm(action0)) {
             if (!sgRoles.impliesClusterPermissionPermission(action0)) {
                 presponse.missingPrivileges.add(action0);
@@ -462,7 +597,7 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
                     if (privilegesInterceptor.getClass() != PrivilegesInterceptor.class) {
 
                         final Boolean replaceResult = privilegesInterceptor.replaceKibanaIndex(request, action0, user, config, requestedResolved,
-                                mapTenants(user, mappedRoles));
+                                snapshot.mapTenants(user, mappedRoles));
 
                         if (log.isDebugEnabled()) {
                             log.debug("Result from privileges interceptor for cluster perm: {}", replaceResult);
@@ -479,7 +614,7 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
                         }
                     }
 
-                    if (dnfofEnabled && (action0.startsWith("indices:data/read/")) && !requestedResolved.getAllIndices().isEmpty()) {
+                    if (dnfofEnabled && ACTION_VERDICTS.is(action0, DNFOF_READ) && !requestedResolved.getAllIndices().isEmpty()) {
 
                         if (requestedResolved.getAllIndices().isEmpty()) {
                             presponse.missingPrivileges.clear();
@@ -494,7 +629,8 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
                             return presponse;
                         }
 
-                        if (irr.replace(request, true, reduced.toArray(new String[0]))) {
+                        if (sgRoles.coversRequest(requestedResolved, reduced, user, new String[] { action0 })
+                                || irr.replace(request, true, reduced.toArray(new String[0]))) {
                             presponse.missingPrivileges.clear();
                             presponse.allowed = true;
                             return presponse;
@@ -539,7 +675,7 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
         if (privilegesInterceptor.getClass() != PrivilegesInterceptor.class) {
 
             final Boolean replaceResult = privilegesInterceptor.replaceKibanaIndex(request, action0, user, config, requestedResolved,
-                    mapTenants(user, mappedRoles));
+                    snapshot.mapTenants(user, mappedRoles));
 
             if (log.isDebugEnabled()) {
                 log.debug("Result from privileges interceptor: {}", replaceResult);
@@ -556,8 +692,7 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
             }
         }
 
-        if (dnfofEnabled && (action0.startsWith("indices:data/read/") || action0.startsWith("indices:admin/mappings/fields/get")
-                || action0.equals("indices:admin/shards/search_shards"))) {
+        if (dnfofEnabled && ACTION_VERDICTS.is(action0, DNFOF_REDUCIBLE)) {
 
             if (requestedResolved.getAllIndices().isEmpty()) {
                 presponse.missingPrivileges.clear();
@@ -569,7 +704,7 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
 
             if (reduced.isEmpty()) {
                 
-                if(getConfigSettings().getAsBoolean("searchguard.dynamic.do_not_fail_on_forbidden_empty", false)) {
+                if(config.getAsBoolean("searchguard.dynamic.do_not_fail_on_forbidden_empty", false)) {
                     //ITT-1886
                     if(request instanceof SearchRequest) {
                         ((SearchRequest) request).indices(new String[0]);
@@ -600,7 +735,9 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
                 return presponse;
             }
 
-            if (irr.replace(request, true, reduced.toArray(new String[0]))) {
+            //nothing to rewrite if all of the requested indices are permitted anyway
+            if (sgRoles.coversRequest(requestedResolved, reduced, user, allIndexPermsRequiredA)
+                    || irr.replace(request, true, reduced.toArray(new String[0]))) {
                 presponse.missingPrivileges.clear();
                 presponse.allowed = true;
                 return presponse;
@@ -623,7 +760,7 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
             log.info("No permissions for {}", presponse.missingPrivileges);
         } else {
 
-            if (checkFilteredAliases(requestedResolved.getAllIndices(), action0)) {
+            if (checkFilteredAliases(requestedResolved.getAllIndices(), action0, config)) {
                 presponse.allowed = false;
                 return presponse;
             }
@@ -639,7 +776,8 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
     }
 
     public Set<String> mapSgRoles(final User user, final TransportAddress caller) {
-        return this.roleMappingHolder.map(user, caller);
+        final SecurityConfigSnapshot snapshot = this.snapshot;
+        return snapshot == null ? Collections.emptySet() : snapshot.mapSgRoles(user, caller);
     }
 
     /*public Set<String> mapSgRoles__old(final User user, final TransportAddress caller) {
@@ -731,7 +869,8 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
     }*/
 
     public Map<String, Boolean> mapTenants(final User user, Set<String> roles) {
-        return this.tenantHolder.mapTenants(user, roles);
+        final SecurityConfigSnapshot snapshot = this.snapshot;
+        return snapshot == null ? Collections.emptyMap() : snapshot.mapTenants(user, roles);
     }
 
     /*public Map<String, Boolean> mapTenants00(final User user, Set<String> roles) {
@@ -771,23 +910,8 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
 
     public Set<String> getAllConfiguredTenantNames() {
 
-        final Settings roles = getRolesSettings();
-
-        if (roles == null || roles.isEmpty()) {
-            return Collections.emptySet();
-        }
-
-        final Set<String> configuredTenants = new HashSet<>();
-        for (String sgRole : roles.names()) {
-            Settings tenants = roles.getByPrefix(sgRole + ".tenants.");
-
-            if (tenants != null) {
-                configuredTenants.addAll(tenants.names());
-            }
-
-        }
-
-        return Collections.unmodifiableSet(configuredTenants);
+        final SecurityConfigSnapshot snapshot = this.snapshot;
+        return snapshot == null ? Collections.emptySet() : snapshot.tenants.getAllTenants();
     }
 
     public boolean multitenancyEnabled() {
@@ -876,90 +1000,72 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
     }
 
     private static boolean isClusterPerm(String action0) {
-        return (action0.startsWith("cluster:") || action0.startsWith("indices:admin/template/")
+        return ACTION_VERDICTS.is(action0, CLUSTER_PERM);
+    }
+
+    private static int computeActionVerdicts(String action0) {
+        int verdicts = 0;
+
+        if (action0.startsWith("cluster:") || action0.startsWith("indices:admin/template/")
 
                 || action0.startsWith(SearchScrollAction.NAME) || (action0.equals(BulkAction.NAME)) || (action0.equals(MultiGetAction.NAME))
                 || (action0.equals(MultiSearchAction.NAME)) || (action0.equals(MultiTermVectorsAction.NAME)) || (action0.equals(ReindexAction.NAME))
 
-        );
-    }
+        ) {
+            verdicts |= CLUSTER_PERM;
+        }
 
-    private boolean checkFilteredAliases(Set<String> requestedResolvedIndices, String action) {
-        //check filtered aliases
-        for (String requestAliasOrIndex : requestedResolvedIndices) {
+        if (action0.startsWith("indices:data/read/")) {
+            verdicts |= DNFOF_READ;
+        }
 
-            final List<AliasMetaData> filteredAliases = new ArrayList<AliasMetaData>();
+        if (action0.startsWith("indices:data/read/") || action0.startsWith("indices:admin/mappings/fields/get")
+                || action0.equals("indices:admin/shards/search_shards")) {
+            verdicts |= DNFOF_REDUCIBLE;
+        }
 
-            final IndexMetaData indexMetaData = clusterService.state().metaData().getIndices().get(requestAliasOrIndex);
+        if (WildcardMatcher.match("indices:data/read/*search*", action0)) {
+            verdicts |= SEARCH;
+        }
 
-            if (indexMetaData == null) {
-                log.debug("{} does not exist in cluster metadata", requestAliasOrIndex);
-                continue;
-            }
+        return verdicts;
+    }
 
-            final ImmutableOpenMap<String, AliasMetaData> aliases = indexMetaData.getAliases();
+    private boolean checkFilteredAliases(Set<String> requestedResolvedIndices, String action, Settings config) {
 
-            if (aliases != null && aliases.size() > 0) {
+        if (!ACTION_VERDICTS.is(action, SEARCH)) {
+            return false;
+        }
 
-                if (log.isDebugEnabled()) {
-                    log.debug("Aliases for {}: {}", requestAliasOrIndex, aliases);
-                }
+        //TODO add queries as dls queries (works only if dls module is installed)
+        final String faMode = config.get("searchguard.dynamic.filtered_alias_mode", "warn");
 
-                final Iterator<String> it = aliases.keysIt();
-                while (it.hasNext()) {
-                    final String alias = it.next();
-                    final AliasMetaData aliasMetaData = aliases.get(alias);
+        if (!faMode.equals("warn") && !faMode.equals("disallow") && !log.isDebugEnabled()) {
+            return false;
+        }
 
-                    if (aliasMetaData != null && aliasMetaData.filteringRequired()) {
-                        filteredAliases.add(aliasMetaData);
-                        if (log.isDebugEnabled()) {
-                            log.debug(alias + " is a filtered alias " + aliasMetaData.getFilter());
-                        }
-                    } else {
-                        if (log.isDebugEnabled()) {
-                            log.debug(alias + " is not an alias or does not have a filter");
-                        }
-                    }
-                }
-            }
+        //check filtered aliases
+        for (String requestAliasOrIndex : requestedResolvedIndices) {
 
-            if (filteredAliases.size() > 1 && WildcardMatcher.match("indices:data/read/*search*", action)) {
-                //TODO add queries as dls queries (works only if dls module is installed)
-                final String faMode = getConfigSettings().get("searchguard.dynamic.filtered_alias_mode", "warn");
+            final List<String> filteredAliases = filteredAliasIndices.get(requestAliasOrIndex);
 
-                if (faMode.equals("warn")) {
-                    log.warn("More than one ({}) filtered alias found for same index ({}). This is currently not recommended. Aliases: {}",
-                            filteredAliases.size(), requestAliasOrIndex, toString(filteredAliases));
-                } else if (faMode.equals("disallow")) {
-                    log.error("More than one ({}) filtered alias found for same index ({}). This is currently not supported. Aliases: {}",
-                            filteredAliases.size(), requestAliasOrIndex, toString(filteredAliases));
-                    return true;
-                } else {
-                    if (log.isDebugEnabled()) {
-                        log.debug("More than one ({}) filtered alias found for same index ({}). Aliases: {}", filteredAliases.size(),
-                                requestAliasOrIndex, toString(filteredAliases));
-                    }
-                }
+            if (filteredAliases == null) {
+                continue;
             }
-        } //end-for
-
-        return false;
-    }
-
-    private List<String> toString(List<AliasMetaData> aliases) {
-        if (aliases == null || aliases.size() == 0) {
-            return Collections.emptyList();
-        }
 
-        final List<String> ret = new ArrayList<>(aliases.size());
-
-        for (final AliasMetaData amd : aliases) {
-            if (amd != null) {
-                ret.add(amd.alias());
+            if (faMode.equals("warn")) {
+                log.warn("More than one ({}) filtered alias found for same index ({}). This is currently not recommended. Aliases: {}",
+                        filteredAliases.size(), requestAliasOrIndex, filteredAliases);
+            } else if (faMode.equals("disallow")) {
+                log.error("More than one ({}) filtered alias found for same index ({}). This is currently not supported. Aliases: {}",
+                        filteredAliases.size(), requestAliasOrIndex, filteredAliases);
+                return true;
+            } else {
+                log.debug("More than one ({}) filtered alias found for same index ({}). Aliases: {}", filteredAliases.size(),
+                        requestAliasOrIndex, filteredAliases);
             }
-        }
+        } //end-for
 
-        return Collections.unmodifiableList(ret);
+        return false;
     }
-
 }
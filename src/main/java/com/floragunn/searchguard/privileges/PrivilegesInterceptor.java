@@ -18,6 +18,7 @@
 package com.floragunn.searchguard.privileges;
 
 import java.util.Map;
+import java.util.Set;
 
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.client.Client;
@@ -36,6 +37,7 @@ public class PrivilegesInterceptor {
     protected final ClusterService clusterService;
     protected final Client client;
     protected final ThreadPool threadPool;
+    private volatile TenantIndexRegistry tenantIndexRegistry;
 
     public PrivilegesInterceptor(final IndexNameExpressionResolver resolver, final ClusterService clusterService, final Client client,
             ThreadPool threadPool) {
@@ -50,6 +52,19 @@ public class PrivilegesInterceptor {
         throw new RuntimeException("not implemented");
     }
 
+    public void setTenantIndexRegistry(final TenantIndexRegistry tenantIndexRegistry) {
+        this.tenantIndexRegistry = tenantIndexRegistry;
+    }
+
+    /**
+     * @return the tenant of a Kibana tenant index or alias, {@link TenantIndexRegistry#PRIVATE_TENANT} for private tenants
+     *  or null if this is not a tenant index
+     */
+    protected final String getTenantForIndex(final String indexOrAlias, final String kibanaIndex, final Set<String> configuredTenants) {
+        final TenantIndexRegistry registry = tenantIndexRegistry;
+        return registry == null ? null : registry.getTenant(indexOrAlias, kibanaIndex, configuredTenants);
+    }
+
     protected final ThreadContext getThreadContext() {
         return threadPool.getThreadContext();
     }
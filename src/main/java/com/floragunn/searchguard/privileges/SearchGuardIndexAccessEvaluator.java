@@ -40,9 +40,11 @@ public class SearchGuardIndexAccessEvaluator {
     
     protected final Logger log = LogManager.getLogger(this.getClass());
     
+    private static final int DENIED = 1;
     private final String searchguardIndex;
     private final AuditLog auditLog;
     private final String[] sgDeniedActionPatterns;
+    private final ActionVerdicts sgDeniedActions;
     private final IndexResolverReplacer irr;
     private final boolean filterSgIndex;
     
@@ -70,13 +72,14 @@ public class SearchGuardIndexAccessEvaluator {
         sgIndexDeniedActionPatternsListNoSnapshot.add("cluster:admin/snapshot/restore*");
 
         sgDeniedActionPatterns = (restoreSgIndexEnabled?sgIndexDeniedActionPatternsList:sgIndexDeniedActionPatternsListNoSnapshot).toArray(new String[0]);
+        sgDeniedActions = new ActionVerdicts(action -> WildcardMatcher.matchAny(sgDeniedActionPatterns, action) ? DENIED : 0);
     }
     
     public PrivilegesEvaluatorResponse evaluate(final ActionRequest request, final Task task, final String action, final Resolved requestedResolved,
             final PrivilegesEvaluatorResponse presponse)  {
                 
         if (requestedResolved.getAllIndices().contains(searchguardIndex)
-                && WildcardMatcher.matchAny(sgDeniedActionPatterns, action)) {
+                && sgDeniedActions.is(action, DENIED)) {
             
             
             if(filterSgIndex) {
@@ -104,7 +107,7 @@ public class SearchGuardIndexAccessEvaluator {
         }
 
         if (requestedResolved.isLocalAll()
-                && WildcardMatcher.matchAny(sgDeniedActionPatterns, action)) {
+                && sgDeniedActions.is(action, DENIED)) {
             
             if(filterSgIndex) {
                 irr.replace(request, false, "*","-"+searchguardIndex);
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.privileges;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+
+import com.floragunn.searchguard.support.ConfigConstants;
+
+/**
+ * Immutable outcome of the security evaluation of a single request.
+ * Computed once by the action filter, kept as a transient and shipped as hex flags
+ * with the shard requests so that downstream checks only need to read fields.
+ */
+public final class SecurityDecision {
+
+    private static final int ADMIN = 1;
+    private static final int CONF_REQUEST = 1 << 1;
+    private static final int DLS = 1 << 2;
+    private static final int FLS = 1 << 3;
+    private static final int MASKING = 1 << 4;
+
+    public static final SecurityDecision ADMIN_DECISION = new SecurityDecision(ADMIN);
+    public static final SecurityDecision CONF_REQUEST_DECISION = new SecurityDecision(CONF_REQUEST);
+
+    private final int flags;
+
+    private SecurityDecision(final int flags) {
+        this.flags = flags;
+    }
+
+    public static SecurityDecision of(final PrivilegesEvaluatorResponse response) {
+        int flags = 0;
+
+        if (notEmpty(response.getQueries())) {
+            flags |= DLS;
+        }
+
+        if (notEmpty(response.getAllowedFlsFields())) {
+            flags |= FLS;
+        }
+
+        if (notEmpty(response.getMaskedFields())) {
+            flags |= MASKING;
+        }
+
+        return new SecurityDecision(flags);
+    }
+
+    public static SecurityDecision current(final ThreadContext threadContext) {
+        return threadContext.getTransient(ConfigConstants.SG_DECISION);
+    }
+
+    public boolean isAdmin() {
+        return (flags & ADMIN) != 0;
+    }
+
+    public boolean isConfRequest() {
+        return (flags & CONF_REQUEST) != 0;
+    }
+
+    public boolean isAdminOrConfRequest() {
+        return (flags & (ADMIN | CONF_REQUEST)) != 0;
+    }
+
+    public boolean hasDls() {
+        return (flags & DLS) != 0;
+    }
+
+    public boolean hasFls() {
+        return (flags & FLS) != 0;
+    }
+
+    public boolean hasMasking() {
+        return (flags & MASKING) != 0;
+    }
+
+    /**
+     * @return true if any document or field level restriction applies
+     */
+    public boolean isRestricted() {
+        return (flags & (DLS | FLS | MASKING)) != 0;
+    }
+
+    /**
+     * Compact header representation: the flags as hex number
+     */
+    public String encode() {
+        return Integer.toHexString(flags);
+    }
+
+    /**
+     * @return the decoded decision or null if the value is malformed
+     */
+    public static SecurityDecision decode(final String value) {
+
+        if (Strings.isNullOrEmpty(value)) {
+            return null;
+        }
+
+        try {
+            return new SecurityDecision(Integer.parseInt(value, 16));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean notEmpty(final Map<String, Set<String>> map) {
+        return map != null && !map.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "SecurityDecision [admin=" + isAdmin() + ", confRequest=" + isConfRequest() + ", dls=" + hasDls() + ", fls=" + hasFls()
+                + ", masking=" + hasMasking() + "]";
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.privileges;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.metadata.AliasOrIndex;
+import org.elasticsearch.cluster.service.ClusterService;
+
+/**
+ * Registry of the Kibana tenant indices and aliases (named kibanaindex_hash_sanitizedtenantname).
+ * Only the names below the Kibana index prefix are looked at, they are taken as a range of the sorted
+ * alias and index lookup and names which are already known are not parsed again when the cluster state changes.
+ */
+public final class TenantIndexRegistry implements ClusterStateListener {
+
+    public static final String PRIVATE_TENANT = "__private__";
+
+    private static final State EMPTY = new State(null, null, Collections.emptySortedMap());
+
+    private final Logger log = LogManager.getLogger(this.getClass());
+    private final ClusterService clusterService;
+    private volatile State state = EMPTY;
+    private volatile TenantLookup tenantLookup = new TenantLookup(Collections.emptySet());
+
+    public TenantIndexRegistry(final ClusterService clusterService) {
+        this.clusterService = clusterService;
+    }
+
+    @Override
+    public void clusterChanged(final ClusterChangedEvent event) {
+        final State current = state;
+
+        if (current.kibanaIndex != null && event.metaDataChanged()) {
+            state = refresh(current, current.kibanaIndex, event.state().metaData().getAliasAndIndexLookup());
+        }
+    }
+
+    /**
+     * @return all tenant indices and aliases mapped to their tenant name, sorted by name
+     */
+    public SortedMap<String, String> getTenantIndices(final String kibanaIndex, final Set<String> configuredTenants) {
+        final State current = current(kibanaIndex);
+        final TenantLookup lookup = tenantLookup(configuredTenants);
+        final SortedMap<String, String> result = new TreeMap<>();
+
+        for (Entry<String, TenantIndexName> entry : current.names.entrySet()) {
+            result.put(entry.getKey(), lookup.tenantOf(entry.getValue()));
+        }
+
+        return Collections.unmodifiableSortedMap(result);
+    }
+
+    /**
+     * @return the tenant the index or alias belongs to, {@link #PRIVATE_TENANT} for private tenants
+     *  or null if this is not a tenant index
+     */
+    public String getTenant(final String indexOrAlias, final String kibanaIndex, final Set<String> configuredTenants) {
+        final TenantIndexName name = current(kibanaIndex).names.get(indexOrAlias);
+        return name == null ? null : tenantLookup(configuredTenants).tenantOf(name);
+    }
+
+    private State current(final String kibanaIndex) {
+        final State current = state;
+        final SortedMap<String, AliasOrIndex> lookup = clusterService.state().metaData().getAliasAndIndexLookup();
+
+        if (kibanaIndex.equals(current.kibanaIndex) && current.lookup == lookup) {
+            return current;
+        }
+
+        final State refreshed = refresh(current, kibanaIndex, lookup);
+        state = refreshed;
+        return refreshed;
+    }
+
+    private State refresh(final State previous, final String kibanaIndex, final SortedMap<String, AliasOrIndex> lookup) {
+        final boolean samePrefix = kibanaIndex.equals(previous.kibanaIndex);
+        final SortedMap<String, TenantIndexName> names = new TreeMap<>();
+
+        //'_' + 1 == '`', so this is the range of all names starting with kibanaIndex_
+        for (String indexOrAlias : lookup.subMap(kibanaIndex + "_", kibanaIndex + "`").keySet()) {
+            TenantIndexName name = samePrefix ? previous.names.get(indexOrAlias) : null;
+
+            if (name == null) {
+                name = parse(indexOrAlias, kibanaIndex);
+            }
+
+            if (name != null) {
+                names.put(indexOrAlias, name);
+            }
+        }
+
+        return new State(kibanaIndex, lookup, names);
+    }
+
+    private TenantIndexName parse(final String indexOrAlias, final String kibanaIndex) {
+        final String[] indexParts = indexOrAlias.split("_");
+
+        if (indexParts.length != 3 || !indexParts[0].equals(kibanaIndex)) {
+            return null;
+        }
+
+        try {
+            return new TenantIndexName(Integer.parseInt(indexParts[1]), indexParts[2]);
+        } catch (NumberFormatException e) {
+            log.warn("Index " + indexOrAlias + " looks like a SG tenant index but we cannot parse the hashcode so we ignore it.");
+            return null;
+        }
+    }
+
+    private TenantLookup tenantLookup(final Set<String> configuredTenants) {
+        TenantLookup lookup = tenantLookup;
+
+        //the configured tenants are the same instance until the configuration changes
+        if (lookup.tenants != configuredTenants) {
+            lookup = new TenantLookup(configuredTenants);
+            tenantLookup = lookup;
+        }
+
+        return lookup;
+    }
+
+    private static final class State {
+        private final String kibanaIndex;
+        private final SortedMap<String, AliasOrIndex> lookup;
+        private final SortedMap<String, TenantIndexName> names;
+
+        private State(String kibanaIndex, SortedMap<String, AliasOrIndex> lookup, SortedMap<String, TenantIndexName> names) {
+            this.kibanaIndex = kibanaIndex;
+            this.lookup = lookup;
+            this.names = names;
+        }
+    }
+
+    private static final class TenantIndexName {
+        private final String key;
+
+        private TenantIndexName(int hash, String sanitizedName) {
+            this.key = hash + "_" + sanitizedName;
+        }
+    }
+
+    private static final class TenantLookup {
+        private final Set<String> tenants;
+        private final Map<String, String> byKey;
+
+        private TenantLookup(final Set<String> tenants) {
+            this.tenants = tenants;
+            this.byKey = new HashMap<>(tenants.size());
+
+            for (String tenant : tenants) {
+                byKey.putIfAbsent(tenant.hashCode() + "_" + tenant.toLowerCase().replaceAll("[^a-z0-9]+", ""), tenant);
+            }
+        }
+
+        private String tenantOf(final TenantIndexName name) {
+            final String tenant = byKey.get(name.key);
+            return tenant == null ? PRIVATE_TENANT : tenant;
+        }
+    }
+}
@@ -16,7 +16,10 @@
  */
 package com.floragunn.searchguard.privileges;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -24,15 +27,22 @@ import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.MatchAllQueryBuilder;
 import org.elasticsearch.index.query.MatchNoneQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.TermsQueryBuilder;
+import org.elasticsearch.index.query.WildcardQueryBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
 
 import com.floragunn.searchguard.resolver.IndexResolverReplacer.Resolved;
 import com.floragunn.searchguard.sgconf.ConfigModel.SgRoles;
+import com.floragunn.searchguard.sgconf.PermittedIndexSet;
+import com.floragunn.searchguard.support.WildcardMatcher;
 import com.floragunn.searchguard.user.User;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 public class TermsAggregationEvaluator {
 
@@ -49,6 +59,10 @@ public class TermsAggregationEvaluator {
     
     private static final QueryBuilder NONE_QUERY = new MatchNoneQueryBuilder();
     
+    private static final QueryBuilder ALL_QUERY = new MatchAllQueryBuilder();
+
+    private final Cache<PermittedIndexSet, QueryBuilder> permittedIndicesQueries = CacheBuilder.newBuilder().weakKeys().maximumSize(256).build();
+
     public TermsAggregationEvaluator() {
     }
     
@@ -75,8 +89,12 @@ public class TermsAggregationEvaluator {
                            final Set<String> allPermittedIndices = sgRoles.getAllPermittedIndicesForKibana(resolved, user, READ_ACTIONS, resolver, clusterService);
                            if(allPermittedIndices == null || allPermittedIndices.isEmpty()) {
                                sr.source().query(NONE_QUERY);
+                           } else if(allPermittedIndices instanceof PermittedIndexSet) {
+                               //same instance as long as the roles and the cluster metadata do not change
+                               final PermittedIndexSet permittedIndexSet = (PermittedIndexSet) allPermittedIndices;
+                               sr.source().query(permittedIndicesQueries.get(permittedIndexSet, () -> permittedIndicesQuery(permittedIndexSet, sgRoles, user)));
                            } else {
-                               sr.source().query(new TermsQueryBuilder("_index", allPermittedIndices));
+                               sr.source().query(permittedIndicesQuery(allPermittedIndices, sgRoles, user));
                            }
                            
                            presponse.allowed = true;
@@ -92,4 +110,35 @@ public class TermsAggregationEvaluator {
         
         return presponse;
     }
+
+    /**
+     * Indices matched by a permitted wildcard pattern are covered by a wildcard query on _index,
+     * only the remaining ones (e.g. permitted through an alias) are listed in a terms query.
+     */
+    private static QueryBuilder permittedIndicesQuery(final Set<String> allPermittedIndices, final SgRoles sgRoles, final User user) {
+
+        final String[] patterns = sgRoles.getPermittedWildcardPatternsForKibana(user, READ_ACTIONS).toArray(new String[0]);
+
+        //match_all would also match indices created later on, so only the pattern * qualifies
+        if (Arrays.asList(patterns).contains("*")) {
+            return ALL_QUERY;
+        }
+
+        if (patterns.length == 0) {
+            return new TermsQueryBuilder("_index", allPermittedIndices);
+        }
+
+        final List<String> remaining = allPermittedIndices.stream().filter(i -> !WildcardMatcher.matchAny(patterns, i)).collect(Collectors.toList());
+        final BoolQueryBuilder query = new BoolQueryBuilder().minimumShouldMatch(1);
+
+        for (String pattern : patterns) {
+            query.should(new WildcardQueryBuilder("_index", pattern));
+        }
+
+        if (!remaining.isEmpty()) {
+            query.should(new TermsQueryBuilder("_index", remaining));
+        }
+
+        return query;
+    }
 }
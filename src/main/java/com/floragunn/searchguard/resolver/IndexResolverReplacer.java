@@ -18,13 +18,16 @@
 package com.floragunn.searchguard.resolver;
 
 import java.io.IOException;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -89,6 +92,7 @@ import org.elasticsearch.transport.TransportRequest;
 import com.floragunn.searchguard.SearchGuardPlugin;
 import com.floragunn.searchguard.configuration.ClusterInfoHolder;
 import com.floragunn.searchguard.configuration.ConfigurationChangeListener;
+import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.SnapshotRestoreHelper;
 import com.floragunn.searchguard.support.WildcardMatcher;
 import com.google.common.collect.Sets;
@@ -96,19 +100,59 @@ import com.google.common.collect.Sets;
 public final class IndexResolverReplacer implements ConfigurationChangeListener {
 
     private static final Set<String> NULL_SET = Sets.newHashSet((String)null);
-    private final Map<Class<?>, Method> typeCache = Collections.synchronizedMap(new HashMap<Class<?>, Method>(100));
-    private final Map<Class<?>, Method> typesCache = Collections.synchronizedMap(new HashMap<Class<?>, Method>(100));
+    //type() and types() accessors of request classes which are not handled explicitly, computed once per class
+    private static final ClassValue<TypeAccessor> TYPE_ACCESSORS = new ClassValue<TypeAccessor>() {
+        @Override
+        protected TypeAccessor computeValue(Class<?> requestClass) {
+            return new TypeAccessor(requestClass);
+        }
+    };
     private final Logger log = LogManager.getLogger(this.getClass());
     private final IndexNameExpressionResolver resolver;
     private final ClusterService clusterService;
     private final ClusterInfoHolder clusterInfoHolder;
     private volatile boolean respectRequestIndicesOptions = false;
+    //for 6.x single type indices, types are not resolved and every request is treated as being for all types
+    private final boolean typeSecurityDisabled;
 
-    public IndexResolverReplacer(IndexNameExpressionResolver resolver, ClusterService clusterService, ClusterInfoHolder clusterInfoHolder) {
+    public IndexResolverReplacer(IndexNameExpressionResolver resolver, ClusterService clusterService, ClusterInfoHolder clusterInfoHolder,
+            final Settings settings) {
         super();
         this.resolver = resolver;
         this.clusterService = clusterService;
         this.clusterInfoHolder = clusterInfoHolder;
+        this.typeSecurityDisabled = settings.getAsBoolean(ConfigConstants.SEARCHGUARD_DISABLE_TYPE_SECURITY, false);
+    }
+
+    private static final class TypeAccessor {
+        private static final MethodType TYPE = MethodType.methodType(String.class, Object.class);
+        private static final MethodType TYPES = MethodType.methodType(String[].class, Object.class);
+        private static final Logger log = LogManager.getLogger(TypeAccessor.class);
+
+        private final MethodHandle type;
+        private final MethodHandle types;
+
+        private TypeAccessor(final Class<?> requestClass) {
+            this.type = accessor(requestClass, "type", TYPE);
+            this.types = accessor(requestClass, "types", TYPES);
+        }
+
+        private static MethodHandle accessor(final Class<?> requestClass, final String name, final MethodType methodType) {
+            try {
+                final Method method = requestClass.getMethod(name);
+
+                if (method.getReturnType() != methodType.returnType()) {
+                    return null;
+                }
+
+                return MethodHandles.publicLookup().unreflect(method).asType(methodType);
+            } catch (NoSuchMethodException e) {
+                return null;
+            } catch (SecurityException | IllegalAccessException e) {
+                log.error("Cannot evaluate {}() for {} due to {}", name, requestClass, e, e);
+                return null;
+            }
+        }
     }
 
     private static final boolean isAllWithNoRemote(final String... requestedPatterns) {
@@ -296,7 +340,7 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
         final Class<?> requestClass = request.getClass();
         final Set<String> requestTypes = new HashSet<String>();
 
-        if (true) {
+        if (!typeSecurityDisabled) {
             if (request instanceof BulkShardRequest) {
                 BulkShardRequest bsr = (BulkShardRequest) request;
                 for (BulkItemRequest bir : bsr.items()) {
@@ -310,55 +354,27 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
                 requestTypes.add(((GetRequest) request).type());
             } else {
 
-                Method typeMethod = null;
-                if (typeCache.containsKey(requestClass)) {
-                    typeMethod = typeCache.get(requestClass);
-                } else {
-                    try {
-                        typeMethod = requestClass.getMethod("type");
-                        typeCache.put(requestClass, typeMethod);
-                    } catch (NoSuchMethodException e) {
-                        typeCache.put(requestClass, null);
-                    } catch (SecurityException e) {
-                        log.error("Cannot evaluate type() for {} due to {}", requestClass, e, e);
-                    }
-
-                }
+                final TypeAccessor accessor = TYPE_ACCESSORS.get(requestClass);
 
-                Method typesMethod = null;
-                if (typesCache.containsKey(requestClass)) {
-                    typesMethod = typesCache.get(requestClass);
-                } else {
+                if (accessor.type != null) {
                     try {
-                        typesMethod = requestClass.getMethod("types");
-                        typesCache.put(requestClass, typesMethod);
-                    } catch (NoSuchMethodException e) {
-                        typesCache.put(requestClass, null);
-                    } catch (SecurityException e) {
-                        log.error("Cannot evaluate types() for {} due to {}", requestClass, e, e);
-                    }
-
-                }
-
-                if (typeMethod != null) {
-                    try {
-                        String type = (String) typeMethod.invoke(request);
+                        final String type = (String) accessor.type.invokeExact(request);
                         if (type != null) {
                             requestTypes.add(type);
                         }
-                    } catch (Exception e) {
+                    } catch (Throwable e) {
                         log.error("Unable to invoke type() for {} due to", requestClass, e);
                     }
                 }
 
-                if (typesMethod != null) {
+                if (accessor.types != null) {
                     try {
-                        final String[] types = (String[]) typesMethod.invoke(request);
+                        final String[] types = (String[]) accessor.types.invokeExact(request);
 
                         if (types != null) {
                             requestTypes.addAll(Arrays.asList(types));
                         }
-                    } catch (Exception e) {
+                    } catch (Throwable e) {
                         log.error("Unable to invoke types() for {} due to", requestClass, e);
                     }
                 }
@@ -481,7 +497,11 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
          */
         private static final Set<String> All_SET = Collections.singleton("*");
         private static final long serialVersionUID = 1L;
+        private static final int LOCAL_ALL = 1;
+        private static final int EMPTY = 2;
+        private static final int HAS_REMOTE = 4;
         public final static Resolved _LOCAL_ALL = new Resolved(All_SET, All_SET, All_SET, All_SET, Collections.emptySet(), Collections.emptySet());
+        //all sets are immutable SortedStringSet instances which are handed out without copying
         private final Set<String> aliases;
         private final Set<String> indices;
         private final Set<String> allIndices;
@@ -490,53 +510,102 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
         private final Set<String> originalRequested;
         private final Set<String> remoteIndices;
 
-        private Resolved(final Set<String> aliases, final Set<String> indices, final Set<String> allIndices, 
-                final Set<String> types, final Set<String> originalRequested, final Set<String> remoteIndices) {
+        private transient final int hash;
+        private transient final int flags;
+
+        private Resolved(final Collection<String> aliases, final Collection<String> indices, final Collection<String> allIndices, 
+                final Collection<String> types, final Collection<String> originalRequested, final Collection<String> remoteIndices) {
             super();
-            this.aliases = aliases;
-            this.indices = indices;
-            this.allIndices = allIndices;
-            this.types = types;
-            this.originalRequested = originalRequested;
-            this.remoteIndices = remoteIndices;
-
-            if(!aliases.isEmpty() || !indices.isEmpty() || !allIndices.isEmpty()) {
-                if(types.isEmpty()) {
+            this.aliases = SortedStringSet.of(aliases);
+            this.indices = SortedStringSet.of(indices);
+            this.allIndices = SortedStringSet.of(allIndices);
+            this.types = SortedStringSet.of(types);
+            this.originalRequested = SortedStringSet.of(originalRequested);
+            this.remoteIndices = SortedStringSet.of(remoteIndices);
+
+            if(!this.aliases.isEmpty() || !this.indices.isEmpty() || !this.allIndices.isEmpty()) {
+                if(this.types.isEmpty()) {
                     throw new ElasticsearchException("Empty types for nonempty indices or aliases");
                 }
             }
+
+            this.hash = computeHashCode();
+            this.flags = computeFlags();
         }
 
-        public boolean isLocalAll() {
-            if(IndexResolverReplacer.isLocalAll(originalRequested==null?null:originalRequested.toArray(new String[0]))) {
-                return true;
+        public Resolved(final StreamInput in) throws IOException {
+            this(in.readList(StreamInput::readString), in.readList(StreamInput::readString), in.readList(StreamInput::readString),
+                    in.readList(StreamInput::readString), in.readList(StreamInput::readString), in.readList(StreamInput::readString));
+        }
+
+        private int computeHashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + aliases.hashCode();
+            result = prime * result + allIndices.hashCode();
+            result = prime * result + indices.hashCode();
+            result = prime * result + originalRequested.hashCode();
+            result = prime * result + remoteIndices.hashCode();
+            result = prime * result + types.hashCode();
+            return result;
+        }
+
+        private int computeFlags() {
+            int f = 0;
+
+            if(IndexResolverReplacer.isLocalAll(originalRequested.toArray(new String[0]))
+                    || (aliases.contains("*") && indices.contains("*") && allIndices.contains("*") && types.contains("*"))) {
+                f |= LOCAL_ALL;
             }
-            
-            return aliases.contains("*") && indices.contains("*") && allIndices.contains("*") && types.contains("*");
+
+            if(aliases.isEmpty() && indices.isEmpty() && allIndices.isEmpty() && remoteIndices.isEmpty()) {
+                f |= EMPTY;
+            }
+
+            if(!remoteIndices.isEmpty()) {
+                f |= HAS_REMOTE;
+            }
+
+            return f;
+        }
+
+        public boolean isLocalAll() {
+            return (flags & LOCAL_ALL) != 0;
+        }
+
+        /**
+         * @return true if neither local nor remote indices or aliases were resolved
+         */
+        public boolean isEmpty() {
+            return (flags & EMPTY) != 0;
+        }
+
+        public boolean hasRemoteIndices() {
+            return (flags & HAS_REMOTE) != 0;
         }
 
         public Set<String> getAliases() {
-            return Collections.unmodifiableSet(aliases);
+            return aliases;
         }
 
         public Set<String> getIndices() {
-            return Collections.unmodifiableSet(indices);
+            return indices;
         }
 
         public Set<String> getAllIndices() {
-            return Collections.unmodifiableSet(allIndices);
+            return allIndices;
         }
         
         public Set<String> getTypes() {
-            return Collections.unmodifiableSet(types);
+            return types;
         }
 
         public Set<String> getOriginalRequested() {
-            return Collections.unmodifiableSet(originalRequested);
+            return originalRequested;
         }
         
         public Set<String> getRemoteIndices() {
-            return Collections.unmodifiableSet(remoteIndices);
+            return remoteIndices;
         }
 
         @Override
@@ -547,15 +616,7 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
 
         @Override
         public int hashCode() {
-            final int prime = 31;
-            int result = 1;
-            result = prime * result + ((aliases == null) ? 0 : aliases.hashCode());
-            result = prime * result + ((allIndices == null) ? 0 : allIndices.hashCode());
-            result = prime * result + ((indices == null) ? 0 : indices.hashCode());
-            result = prime * result + ((originalRequested == null) ? 0 : originalRequested.hashCode());
-            result = prime * result + ((remoteIndices == null) ? 0 : remoteIndices.hashCode());
-            result = prime * result + ((types == null) ? 0 : types.hashCode());
-            return result;
+            return hash;
         }
 
         @Override
@@ -567,40 +628,27 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
             if (getClass() != obj.getClass())
                 return false;
             Resolved other = (Resolved) obj;
-            if (aliases == null) {
-                if (other.aliases != null)
-                    return false;
-            } else if (!aliases.equals(other.aliases))
+            if (hash != other.hash)
                 return false;
-            if (allIndices == null) {
-                if (other.allIndices != null)
-                    return false;
-            } else if (!allIndices.equals(other.allIndices))
+            if (!aliases.equals(other.aliases))
                 return false;
-            if (indices == null) {
-                if (other.indices != null)
-                    return false;
-            } else if (!indices.equals(other.indices))
+            if (!allIndices.equals(other.allIndices))
                 return false;
-            if (originalRequested == null) {
-                if (other.originalRequested != null)
-                    return false;
-            } else if (!originalRequested.equals(other.originalRequested))
+            if (!indices.equals(other.indices))
                 return false;
-            if (remoteIndices == null) {
-                if (other.remoteIndices != null)
-                    return false;
-            } else if (!remoteIndices.equals(other.remoteIndices))
+            if (!originalRequested.equals(other.originalRequested))
                 return false;
-            if (types == null) {
-                if (other.types != null)
-                    return false;
-            } else if (!types.equals(other.types))
+            if (!remoteIndices.equals(other.remoteIndices))
+                return false;
+            if (!types.equals(other.types))
                 return false;
             return true;
         }
 
-
+        //the sets are serialized as plain HashSets, rebuild the compact form and the derived fields
+        private Object readResolve() throws ObjectStreamException {
+            return new Resolved(aliases, indices, allIndices, types, originalRequested, remoteIndices);
+        }
 
         private static class Builder {
 
@@ -683,29 +731,18 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
                     types.add("*");
                 }
 
-                return new Resolved(new HashSet<String>(aliases), new HashSet<String>(indices), new HashSet<String>(allIndices), 
-                        new HashSet<String>(types), new HashSet<String>(originalRequested), new HashSet<String>(remoteIndices));
+                return new Resolved(aliases, indices, allIndices, types, originalRequested, remoteIndices);
             }
         }
 
-        public Resolved(final StreamInput in) throws IOException {
-            aliases = new HashSet<String>(in.readList(StreamInput::readString));
-            indices = new HashSet<String>(in.readList(StreamInput::readString));
-            allIndices = new HashSet<String>(in.readList(StreamInput::readString));
-            types = new HashSet<String>(in.readList(StreamInput::readString));
-            originalRequested = new HashSet<String>(in.readList(StreamInput::readString));
-            remoteIndices = new HashSet<String>(in.readList(StreamInput::readString));
-        }
-
-
         @Override
         public void writeTo(StreamOutput out) throws IOException {
-            out.writeStringCollection(new ArrayList<>(aliases));
-            out.writeStringCollection(new ArrayList<>(indices));
-            out.writeStringCollection(new ArrayList<>(allIndices));
-            out.writeStringCollection(new ArrayList<>(types));
-            out.writeStringCollection(new ArrayList<>(originalRequested));
-            out.writeStringCollection(new ArrayList<>(remoteIndices));
+            out.writeStringCollection(aliases);
+            out.writeStringCollection(indices);
+            out.writeStringCollection(allIndices);
+            out.writeStringCollection(types);
+            out.writeStringCollection(originalRequested);
+            out.writeStringCollection(remoteIndices);
         }
     }
 
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.resolver;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.floragunn.searchguard.support.StringPool;
+
+/**
+ * Immutable set of strings, backed by a sorted array of interned values with a precomputed hash code.
+ * Like the {@link HashSet} it replaces it may contain {@code null} (e.g. for {@code [null]} patterns), which sorts first.
+ */
+final class SortedStringSet extends AbstractSet<String> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    static final SortedStringSet EMPTY = new SortedStringSet(new String[0]);
+    private static final Comparator<String> ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    private final String[] values;
+    private final int hash;
+
+    private SortedStringSet(final String[] values) {
+        this.values = values;
+
+        int h = 0;
+        for (String value : values) {
+            h += value == null ? 0 : value.hashCode();
+        }
+        this.hash = h;
+    }
+
+    static SortedStringSet of(final Collection<String> collection) {
+        if (collection instanceof SortedStringSet) {
+            return (SortedStringSet) collection;
+        }
+
+        if (collection == null || collection.isEmpty()) {
+            return EMPTY;
+        }
+
+        final String[] values = collection.toArray(new String[collection.size()]);
+        Arrays.sort(values, ORDER);
+
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (size == 0 || ORDER.compare(values[i], values[size - 1]) != 0) {
+                values[size++] = values[i] == null ? null : StringPool.intern(values[i]);
+            }
+        }
+
+        return new SortedStringSet(size == values.length ? values : Arrays.copyOf(values, size));
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return (o == null || o instanceof String) && Arrays.binarySearch(values, (String) o, ORDER) >= 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < values.length;
+            }
+
+            @Override
+            public String next() {
+                if (next >= values.length) {
+                    throw new NoSuchElementException();
+                }
+                return values[next++];
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    @Override
+    public Object[] toArray() {
+        return values.clone();
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o == this) {
+            return true;
+        }
+
+        if (o instanceof SortedStringSet) {
+            final SortedStringSet other = (SortedStringSet) o;
+            return hash == other.hash && Arrays.equals(values, other.values);
+        }
+
+        return super.equals(o);
+    }
+
+    //keep the java serialized form a plain HashSet so that nodes without this class can read it
+    private Object writeReplace() throws ObjectStreamException {
+        return new HashSet<>(Arrays.asList(values));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.rest;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestResponse;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.rest.action.RestResponseListener;
+
+import com.floragunn.searchguard.action.stats.StatsAction;
+import com.floragunn.searchguard.action.stats.StatsNodeResponse;
+import com.floragunn.searchguard.action.stats.StatsRequest;
+import com.floragunn.searchguard.action.stats.StatsResponse;
+import com.floragunn.searchguard.configuration.ConfigurationStats;
+import com.floragunn.searchguard.support.LatencyHistogram;
+
+/**
+ * Renders the Search Guard stats of all nodes in the Prometheus text exposition format.
+ * Only registered if {@code searchguard.stats.prometheus.enabled} is set.
+ */
+public class SearchGuardPrometheusAction extends BaseRestHandler {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String LATENCY = "searchguard_stage_latency_microseconds";
+
+    public SearchGuardPrometheusAction(final Settings settings, final RestController controller) {
+        super(settings);
+        controller.registerHandler(GET, "/_searchguard/metrics", this);
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) throws IOException {
+        return channel -> client.executeLocally(StatsAction.INSTANCE, new StatsRequest(), new RestResponseListener<StatsResponse>(channel) {
+
+            @Override
+            public RestResponse buildResponse(StatsResponse response) throws Exception {
+                return new BytesRestResponse(RestStatus.OK, CONTENT_TYPE, render(response));
+            }
+        });
+    }
+
+    static String render(final StatsResponse response) {
+        final StringBuilder out = new StringBuilder();
+
+        out.append("# HELP ").append(LATENCY).append(" Latency of the Search Guard stages on the request path\n");
+        out.append("# TYPE ").append(LATENCY).append(" summary\n");
+
+        for (StatsNodeResponse node : response.getNodes()) {
+            if (node.getLatencyStats() == null) {
+                continue;
+            }
+
+            for (Map.Entry<String, Map<String, LatencyHistogram.Summary>> stage : node.getLatencyStats().getStages().entrySet()) {
+                for (Map.Entry<String, LatencyHistogram.Summary> prefix : stage.getValue().entrySet()) {
+                    final String labels = "node=\"" + escape(node.getNode().getName()) + "\",stage=\"" + stage.getKey() + "\",action=\""
+                            + escape(prefix.getKey()) + "\"";
+                    final LatencyHistogram.Summary summary = prefix.getValue();
+
+                    quantile(out, labels, "0.5", summary.getP50Micros());
+                    quantile(out, labels, "0.9", summary.getP90Micros());
+                    quantile(out, labels, "0.99", summary.getP99Micros());
+                    quantile(out, labels, "0.999", summary.getP999Micros());
+                    out.append(LATENCY).append("_sum{").append(labels).append("} ").append(summary.getSumMicros()).append('\n');
+                    out.append(LATENCY).append("_count{").append(labels).append("} ").append(summary.getCount()).append('\n');
+                }
+            }
+        }
+
+        out.append("# HELP searchguard_config_reloads_total Configuration reloads\n");
+        out.append("# TYPE searchguard_config_reloads_total counter\n");
+        for (StatsNodeResponse node : response.getNodes()) {
+            if (node.getConfigurationStats() != null) {
+                out.append("searchguard_config_reloads_total{node=\"").append(escape(node.getNode().getName())).append("\"} ")
+                        .append(node.getConfigurationStats().getReloads()).append('\n');
+            }
+        }
+
+        out.append("# HELP searchguard_config_reload_failures_total Failed configuration reloads\n");
+        out.append("# TYPE searchguard_config_reload_failures_total counter\n");
+        for (StatsNodeResponse node : response.getNodes()) {
+            if (node.getConfigurationStats() != null) {
+                out.append("searchguard_config_reload_failures_total{node=\"").append(escape(node.getNode().getName())).append("\"} ")
+                        .append(node.getConfigurationStats().getFailures()).append('\n');
+            }
+        }
+
+        out.append("# HELP searchguard_config_version Version of the active configuration document\n");
+        out.append("# TYPE searchguard_config_version gauge\n");
+        for (StatsNodeResponse node : response.getNodes()) {
+            if (node.getConfigurationStats() != null) {
+                for (Map.Entry<String, ConfigurationStats.TypeStats> type : node.getConfigurationStats().getTypes().entrySet()) {
+                    out.append("searchguard_config_version{node=\"").append(escape(node.getNode().getName())).append("\",type=\"")
+                            .append(type.getKey()).append("\"} ").append(type.getValue().getVersion()).append('\n');
+                }
+            }
+        }
+
+        return out.toString();
+    }
+
+    private static void quantile(final StringBuilder out, final String labels, final String quantile, final long value) {
+        out.append(LATENCY).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ").append(value).append('\n');
+    }
+
+    private static String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    @Override
+    public String getName() {
+        return "Search Guard Prometheus Metrics";
+    }
+
+}
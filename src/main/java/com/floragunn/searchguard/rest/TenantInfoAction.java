@@ -21,13 +21,12 @@ import static org.elasticsearch.rest.RestRequest.Method.GET;
 import static org.elasticsearch.rest.RestRequest.Method.POST;
 
 import java.io.IOException;
+import java.util.Map.Entry;
 import java.util.SortedMap;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.client.node.NodeClient;
-import org.elasticsearch.cluster.metadata.AliasOrIndex;
-import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.common.xcontent.XContentBuilder;
@@ -41,6 +40,7 @@ import org.elasticsearch.threadpool.ThreadPool;
 
 import com.floragunn.searchguard.configuration.AdminDNs;
 import com.floragunn.searchguard.privileges.PrivilegesEvaluator;
+import com.floragunn.searchguard.privileges.TenantIndexRegistry;
 import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.user.User;
 
@@ -49,15 +49,15 @@ public class TenantInfoAction extends BaseRestHandler {
     private final Logger log = LogManager.getLogger(this.getClass());
     private final PrivilegesEvaluator evaluator;
     private final ThreadContext threadContext;
-    private final ClusterService clusterService;
+    private final TenantIndexRegistry tenantIndexRegistry;
     private final AdminDNs adminDns;
 
     public TenantInfoAction(final Settings settings, final RestController controller, 
-    		final PrivilegesEvaluator evaluator, final ThreadPool threadPool, final ClusterService clusterService, final AdminDNs adminDns) {
+    		final PrivilegesEvaluator evaluator, final ThreadPool threadPool, final TenantIndexRegistry tenantIndexRegistry, final AdminDNs adminDns) {
         super(settings);
         this.threadContext = threadPool.getThreadContext();
         this.evaluator = evaluator;
-        this.clusterService = clusterService;
+        this.tenantIndexRegistry = tenantIndexRegistry;
         this.adminDns = adminDns;
         controller.registerHandler(GET, "/_searchguard/tenantinfo", this);
         controller.registerHandler(POST, "/_searchguard/tenantinfo", this);       
@@ -85,12 +85,10 @@ public class TenantInfoAction extends BaseRestHandler {
 
                     	builder.startObject();
 	
-                    	final SortedMap<String, AliasOrIndex> lookup = clusterService.state().metaData().getAliasAndIndexLookup();
-                    	for(final String indexOrAlias: lookup.keySet()) {
-                    		final String tenant = tenantNameForIndex(indexOrAlias);
-                    		if(tenant != null) {
-                    			builder.field(indexOrAlias, tenant);
-                    		}
+                    	final SortedMap<String, String> tenantIndices = tenantIndexRegistry.getTenantIndices(evaluator.kibanaIndex(),
+                    	        evaluator.getAllConfiguredTenantNames());
+                    	for(final Entry<String, String> tenantIndex: tenantIndices.entrySet()) {
+                    		builder.field(tenantIndex.getKey(), tenantIndex.getValue());
                     	}
 
 	                    builder.endObject();
@@ -115,36 +113,6 @@ public class TenantInfoAction extends BaseRestHandler {
         };
     }
     
-    private String tenantNameForIndex(String index) {
-    	String[] indexParts;
-    	if(index == null 
-    			|| (indexParts = index.split("_")).length != 3
-    			) {
-    		return null;
-    	}
-    	
-    	
-    	if(!indexParts[0].equals(evaluator.kibanaIndex())) {
-    		return null;
-    	}
-    	
-    	try {
-			final int expectedHash = Integer.parseInt(indexParts[1]);
-			final String sanitizedName = indexParts[2];
-			
-			for(String tenant: evaluator.getAllConfiguredTenantNames()) {
-				if(tenant.hashCode() == expectedHash && sanitizedName.equals(tenant.toLowerCase().replaceAll("[^a-z0-9]+",""))) {
-					return tenant;
-				}
-			}
-
-			return "__private__";
-		} catch (NumberFormatException e) {
-			log.warn("Index "+index+" looks like a SG tenant index but we cannot parse the hashcode so we ignore it.");
-			return null;
-		}
-    }
-
     @Override
     public String getName() {
         return "Tenant Info Action";
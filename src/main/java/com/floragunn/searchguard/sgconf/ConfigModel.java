@@ -39,12 +39,15 @@ import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.settings.Settings;
 
 import com.floragunn.searchguard.configuration.ActionGroupHolder;
-import com.floragunn.searchguard.configuration.ConfigurationChangeListener;
+import com.floragunn.searchguard.configuration.ConfigurationDiff;
+import com.floragunn.searchguard.configuration.RoleConfig;
+import com.floragunn.searchguard.configuration.TypedConfiguration;
 import com.floragunn.searchguard.resolver.IndexResolverReplacer.Resolved;
 import com.floragunn.searchguard.support.WildcardMatcher;
 import com.floragunn.searchguard.user.User;
@@ -53,36 +56,47 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 
-public class ConfigModel implements ConfigurationChangeListener {
+public class ConfigModel {
 
     protected final Logger log = LogManager.getLogger(this.getClass());
     private static final Set<String> IGNORED_TYPES = ImmutableSet.of("_dls_", "_fls_", "_masked_fields_");
-    private final ActionGroupHolder ah;
-    private SgRoles sgRoles = null;
 
-    public ConfigModel(final ActionGroupHolder ah) {
-        this.ah = ah;
-    }
+    /**
+     * Compile the roles with the given action groups resolved
+     *
+     * @param previous roles compiled from the previous version of the roles configuration, may be null
+     * @param diff changes since the previous version, may be null. If given together with the previous roles only the added
+     * and changed roles are compiled and all others are retained.
+     * @return the compiled roles or null if interrupted
+     */
+    public SgRoles compile(Settings rolesSettings, ActionGroupHolder ah, SgRoles previous, ConfigurationDiff diff) {
+        final Map<String, RoleConfig> roleConfigs = TypedConfiguration.roles(rolesSettings);
+
+        if (previous == null || diff == null || diff.isFull() || !TypedConfiguration.isDiffable(roleConfigs)) {
+            return reload(roleConfigs, ah, roleConfigs.keySet(), null);
+        }
 
-    @Override
-    public void onChange(Settings rolesSettings) {
-        final SgRoles tmp = reload(rolesSettings);
+        //only compile the roles which were added or changed and keep all others
+        final Set<String> rebuild = new HashSet<>(diff.getAdded());
+        rebuild.addAll(diff.getChanged());
 
-        if (tmp != null) {
-            sgRoles = tmp;
+        if (log.isDebugEnabled()) {
+            log.debug("Incrementally update roles: {}", diff);
         }
-    }
 
-    public SgRoles getSgRoles() {
-        return sgRoles;
+        return reload(roleConfigs, ah, rebuild, previous.without(diff.getAffected()));
     }
 
-    private SgRoles reload(Settings rolesSettings) {
+    /**
+     * @param roleNames the roles which should be compiled
+     * @param base already compiled roles which should be retained, may be null
+     */
+    private SgRoles reload(Map<String, RoleConfig> roleConfigs, ActionGroupHolder ah, Collection<String> roleNames, SgRoles base) {
 
         final Set<Future<SgRole>> futures = new HashSet<>(5000);
-        final ExecutorService execs = Executors.newFixedThreadPool(10);
+        final ExecutorService execs = Executors.newFixedThreadPool(Math.max(1, Math.min(10, roleNames.size())));
 
-        for (String sgRole : rolesSettings.names()) {
+        for (String sgRole : roleNames) {
 
             Future<SgRole> future = execs.submit(new Callable<SgRole>() {
 
@@ -90,56 +104,40 @@ public class ConfigModel implements ConfigurationChangeListener {
                 public SgRole call() throws Exception {
                     SgRole _sgRole = new SgRole(sgRole);
 
-                    final Settings sgRoleSettings = rolesSettings.getByPrefix(sgRole);
-                    if (!sgRoleSettings.names().isEmpty()) {
-                        final Set<String> permittedClusterActions = ah.resolvedActions(sgRoleSettings.getAsList(".cluster", Collections.emptyList()));
+                    final RoleConfig roleConfig = roleConfigs.get(sgRole);
+                    if (roleConfig != null) {
+                        final Set<String> permittedClusterActions = ah.resolvedActions(roleConfig.getCluster());
                         _sgRole.addClusterPerms(permittedClusterActions);
 
-                        Settings tenants = rolesSettings.getByPrefix(sgRole + ".tenants.");
+                        for (Entry<String, String> tenant : roleConfig.getTenants().entrySet()) {
 
-                        if (tenants != null) {
-                            for (String tenant : tenants.names()) {
+                            //if(tenant.equals(user.getName())) {
+                            //    continue;
+                            //}
 
-                                //if(tenant.equals(user.getName())) {
-                                //    continue;
+                            if ("RW".equalsIgnoreCase(tenant.getValue())) {
+                                _sgRole.addTenant(new Tenant(tenant.getKey(), true));
+                            } else {
+                                _sgRole.addTenant(new Tenant(tenant.getKey(), false));
+                                //if(_sgRole.tenants.stream().filter(t->t.tenant.equals(tenant)).count() > 0) { //RW outperforms RO
+                                //    _sgRole.addTenant(new Tenant(tenant, false));
                                 //}
-
-                                if ("RW".equalsIgnoreCase(tenants.get(tenant, "RO"))) {
-                                    _sgRole.addTenant(new Tenant(tenant, true));
-                                } else {
-                                    _sgRole.addTenant(new Tenant(tenant, false));
-                                    //if(_sgRole.tenants.stream().filter(t->t.tenant.equals(tenant)).count() > 0) { //RW outperforms RO
-                                    //    _sgRole.addTenant(new Tenant(tenant, false));
-                                    //}
-                                }
                             }
                         }
 
-                        final Map<String, Settings> permittedAliasesIndices = sgRoleSettings.getGroups(".indices");
+                        for (final Entry<String, RoleConfig.IndexConfig> permittedAliasesIndex : roleConfig.getIndices().entrySet()) {
 
-                        for (final String permittedAliasesIndex : permittedAliasesIndices.keySet()) {
-
-                            final String resolvedRole = sgRole;
-                            final String indexPattern = permittedAliasesIndex;
-
-                            final String dls = rolesSettings.get(resolvedRole + ".indices." + indexPattern + "._dls_");
-                            final List<String> fls = rolesSettings.getAsList(resolvedRole + ".indices." + indexPattern + "._fls_");
-                            final List<String> maskedFields = rolesSettings.getAsList(resolvedRole + ".indices." + indexPattern + "._masked_fields_");
+                            final String indexPattern = permittedAliasesIndex.getKey();
+                            final RoleConfig.IndexConfig indexConfig = permittedAliasesIndex.getValue();
 
                             IndexPattern _indexPattern = new IndexPattern(indexPattern);
-                            _indexPattern.setDlsQuery(dls);
-                            _indexPattern.addFlsFields(fls);
-                            _indexPattern.addMaskedFields(maskedFields);
-
-                            for (String type : permittedAliasesIndices.get(indexPattern).names()) {
+                            _indexPattern.setDlsQuery(indexConfig.getDls());
+                            _indexPattern.addFlsFields(indexConfig.getFls());
+                            _indexPattern.addMaskedFields(indexConfig.getMaskedFields());
 
-                                if (IGNORED_TYPES.contains(type)) {
-                                    continue;
-                                }
-
-                                TypePerm typePerm = new TypePerm(type);
-                                final List<String> perms = rolesSettings.getAsList(resolvedRole + ".indices." + indexPattern + "." + type);
-                                typePerm.addPerms(ah.resolvedActions(perms));
+                            for (Entry<String, List<String>> typePerms : indexConfig.getTypePermissions().entrySet()) {
+                                TypePerm typePerm = new TypePerm(typePerms.getKey());
+                                typePerm.addPerms(ah.resolvedActions(typePerms.getValue()));
                                 _indexPattern.addTypePerms(typePerm);
                             }
 
@@ -166,7 +164,12 @@ public class ConfigModel implements ConfigurationChangeListener {
         }
 
         try {
-            SgRoles _sgRoles = new SgRoles(futures.size());
+            SgRoles _sgRoles = new SgRoles(futures.size() + (base == null ? 0 : base.roles.size()));
+            if (base != null) {
+                for (SgRole sgRole : base.roles) {
+                    _sgRoles.addSgRole(sgRole);
+                }
+            }
             for (Future<SgRole> future : futures) {
                 _sgRoles.addSgRole(future.get());
             }
@@ -189,9 +192,17 @@ public class ConfigModel implements ConfigurationChangeListener {
         protected final Logger log = LogManager.getLogger(this.getClass());
 
         final Set<SgRole> roles;
+        private final PermittedIndicesCache permittedIndicesCache;
+        private Set<String> roleNames;
+        private Boolean userDependentPatterns;
 
         private SgRoles(int roleCount) {
+            this(roleCount, new PermittedIndicesCache());
+        }
+
+        private SgRoles(int roleCount, PermittedIndicesCache permittedIndicesCache) {
             roles = new HashSet<>(roleCount);
+            this.permittedIndicesCache = permittedIndicesCache;
         }
 
         private SgRoles addSgRole(SgRole sgRole) {
@@ -235,8 +246,18 @@ public class ConfigModel implements ConfigurationChangeListener {
             return Collections.unmodifiableSet(roles);
         }
 
-        public SgRoles filter(Set<String> keep) {
+        private SgRoles without(Set<String> remove) {
             final SgRoles retVal = new SgRoles(roles.size());
+            for (SgRole sgr : roles) {
+                if (!remove.contains(sgr.getName())) {
+                    retVal.addSgRole(sgr);
+                }
+            }
+            return retVal;
+        }
+
+        public SgRoles filter(Set<String> keep) {
+            final SgRoles retVal = new SgRoles(roles.size(), permittedIndicesCache);
             for (SgRole sgr : roles) {
                 if (keep.contains(sgr.getName())) {
                     retVal.addSgRole(sgr);
@@ -348,24 +369,137 @@ public class ConfigModel implements ConfigurationChangeListener {
 
         //kibana special only, terms eval
         public Set<String> getAllPermittedIndicesForKibana(Resolved resolved, User user, String[] actions, IndexNameExpressionResolver resolver, ClusterService cs) {
-            Set<String> retVal = new HashSet<>();
+
+            if (roles.isEmpty()) {
+                return Collections.emptySet();
+            }
+
+            final Set<String> permitted;
+
+            if (!hasUserDependentPatterns()) {
+                permitted = permittedIndicesCache.get(getRoleNames(), Resolved._LOCAL_ALL.getTypes(), actions, cs.state().metaData(),
+                        metaData -> reduce0(Resolved._LOCAL_ALL, user, actions, resolver, cs, metaData));
+            } else {
+                permitted = Collections.unmodifiableSet(reduce0(Resolved._LOCAL_ALL, user, actions, resolver, cs, cs.state().metaData()));
+            }
+
+            if (resolved.getRemoteIndices().isEmpty()) {
+                return permitted;
+            }
+
+            final Set<String> retVal = new HashSet<>(permitted);
+            retVal.addAll(resolved.getRemoteIndices());
+            return Collections.unmodifiableSet(retVal);
+        }
+
+        //kibana special only, terms eval: plain wildcard patterns which permit the actions on every index name they match
+        public Set<String> getPermittedWildcardPatternsForKibana(User user, String[] actions) {
+            final Set<String> retVal = new HashSet<>();
             for (SgRole sgr : roles) {
-                retVal.addAll(sgr.getAllResolvedPermittedIndices(Resolved._LOCAL_ALL, user, actions, resolver, cs));
-                retVal.addAll(resolved.getRemoteIndices());
+                for (IndexPattern p : sgr.ipatterns) {
+                    final String pattern = p.getUnresolvedIndexPattern(user);
+                    if (isPlainWildcard(pattern) && SgRole.permits(p, Resolved._LOCAL_ALL, actions)) {
+                        retVal.add(pattern);
+                    }
+                }
             }
             return Collections.unmodifiableSet(retVal);
         }
 
+        private static boolean isPlainWildcard(String pattern) {
+            return (pattern.indexOf('*') >= 0 || pattern.indexOf('?') >= 0) && !pattern.startsWith("/") && !pattern.startsWith("-")
+                    && !pattern.contains("${");
+        }
+
         //dnfof only
         public Set<String> reduce(Resolved resolved, User user, String[] actions, IndexNameExpressionResolver resolver, ClusterService cs) {
-            Set<String> retVal = new HashSet<>();
-            for (SgRole sgr : roles) {
-                retVal.addAll(sgr.getAllResolvedPermittedIndices(resolved, user, actions, resolver, cs));
+            final Set<String> retVal;
+
+            if (isAllIndicesRequest(resolved) && !hasUserDependentPatterns()) {
+                //the permitted indices do not depend on the user here, so they are the same for everyone with these roles
+                retVal = permittedIndicesCache.get(getRoleNames(), resolved.getTypes(), actions, cs.state().metaData(),
+                        metaData -> reduce0(resolved, user, actions, resolver, cs, metaData));
+            } else {
+                retVal = Collections.unmodifiableSet(reduce0(resolved, user, actions, resolver, cs, cs.state().metaData()));
             }
+
             if (log.isDebugEnabled()) {
                 log.debug("Reduced requested resolved indices {} to permitted indices {}.", resolved, retVal.toString());
             }
-            return Collections.unmodifiableSet(retVal);
+            return retVal;
+        }
+
+        //metaData provides the open indices for all indices requests, it is the one the cached ordinals are taken from
+        private Set<String> reduce0(Resolved resolved, User user, String[] actions, IndexNameExpressionResolver resolver, ClusterService cs,
+                MetaData metaData) {
+            Set<String> retVal = new HashSet<>();
+            for (SgRole sgr : roles) {
+                retVal.addAll(sgr.getAllResolvedPermittedIndices(resolved, user, actions, resolver, cs, metaData));
+            }
+            return retVal;
+        }
+
+        /**
+         * dnfof only, true if the request needs no rewrite because everything it can expand to when it is executed is permitted.
+         * Wildcards and aliases are expanded again at execution time, so they only qualify if the permission covers indices
+         * which do not exist yet.
+         */
+        public boolean coversRequest(Resolved resolved, Set<String> reduced, User user, String[] actions) {
+
+            if (resolved.hasRemoteIndices()) {
+                return false;
+            }
+
+            if (isAllIndicesRequest(resolved)) {
+                return permitsAllIndices(resolved, user, actions);
+            }
+
+            if (!resolved.getAliases().isEmpty() || !resolved.getAllIndices().containsAll(resolved.getOriginalRequested())) {
+                return false;
+            }
+
+            return reduced.containsAll(resolved.getAllIndices());
+        }
+
+        //true if a role permits the actions on the index pattern *, which covers also indices created later on
+        private boolean permitsAllIndices(Resolved resolved, User user, String[] actions) {
+            for (SgRole sgr : roles) {
+                for (IndexPattern p : sgr.ipatterns) {
+                    if ("*".equals(p.getUnresolvedIndexPattern(user)) && SgRole.permits(p, resolved, actions)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static boolean isAllIndicesRequest(Resolved resolved) {
+            return resolved.isLocalAll() || resolved.getAllIndices().contains("*") || resolved.getAllIndices().contains("_all");
+        }
+
+        private Set<String> getRoleNames() {
+            Set<String> names = roleNames;
+
+            if (names == null) {
+                names = new HashSet<>(roles.size());
+                for (SgRole sgr : roles) {
+                    names.add(sgr.getName());
+                }
+                roleNames = names = Collections.unmodifiableSet(names);
+            }
+
+            return names;
+        }
+
+        private boolean hasUserDependentPatterns() {
+            Boolean userDependent = userDependentPatterns;
+
+            if (userDependent == null) {
+                userDependent = roles.stream().anyMatch(r -> r.userDependentPatterns);
+                userDependentPatterns = userDependent;
+            }
+
+            return userDependent;
         }
 
         //return true on success
@@ -397,6 +531,8 @@ public class ConfigModel implements ConfigurationChangeListener {
         private final Set<Tenant> tenants = new HashSet<>();
         private final Set<IndexPattern> ipatterns = new HashSet<>();
         private final Set<String> clusterPerms = new HashSet<>();
+        //index patterns with user attribute substitutions
+        private boolean userDependentPatterns;
 
         private SgRole(String name) {
             super();
@@ -410,38 +546,26 @@ public class ConfigModel implements ConfigurationChangeListener {
         //get indices which are permitted for the given types and actions
         //dnfof + kibana special only
         private Set<String> getAllResolvedPermittedIndices(Resolved resolved, User user, String[] actions, IndexNameExpressionResolver resolver,
-                ClusterService cs) {
+                ClusterService cs, MetaData metaData) {
 
             final Set<String> retVal = new HashSet<>();
+            final boolean allIndicesRequest = SgRoles.isAllIndicesRequest(resolved);
             for (IndexPattern p : ipatterns) {
                 //what if we cannot resolve one (for create purposes)
-                boolean patternMatch = false;
-                final Set<TypePerm> tperms = p.getTypePerms();
-                for (TypePerm tp : tperms) {
-                    if (WildcardMatcher.matchAny(tp.typePattern, resolved.getTypes().toArray(new String[0]))) {
-                        patternMatch = WildcardMatcher.matchAll(tp.perms.toArray(new String[0]), actions);
-                    }
-                }
-                if (patternMatch) {
+                if (permits(p, resolved, actions)) {
                     //resolved but can contain patterns for nonexistent indices
                     final String[] permitted = p.getResolvedIndexPattern(user, resolver, cs); //maybe they do not exist
-                    final Set<String> res = new HashSet<>();
-                    if (!resolved.isLocalAll() && !resolved.getAllIndices().contains("*") && !resolved.getAllIndices().contains("_all")) {
-                        final Set<String> wanted = new HashSet<>(resolved.getAllIndices());
+                    if (!allIndicesRequest) {
                         //resolved but can contain patterns for nonexistent indices
-                        WildcardMatcher.wildcardRetainInSet(wanted, permitted);
-                        res.addAll(wanted);
+                        retainMatching(resolved.getAllIndices(), permitted, retVal);
                     } else {
                         //we want all indices so just return what's permitted
 
                         //#557
                         //final String[] allIndices = resolver.concreteIndexNames(cs.state(), IndicesOptions.lenientExpandOpen(), "*");
-                        final String[] allIndices = cs.state().metaData().getConcreteAllOpenIndices();
-                        final Set<String> wanted = new HashSet<>(Arrays.asList(allIndices));
-                        WildcardMatcher.wildcardRetainInSet(wanted, permitted);
-                        res.addAll(wanted);
+                        final String[] allIndices = metaData.getConcreteAllOpenIndices();
+                        retainMatching(Arrays.asList(allIndices), permitted, retVal);
                     }
-                    retVal.addAll(res);
                 }
             }
 
@@ -449,6 +573,25 @@ public class ConfigModel implements ConfigurationChangeListener {
             return Collections.unmodifiableSet(retVal);
         }
 
+        private static void retainMatching(Collection<String> wanted, String[] permitted, Set<String> retVal) {
+            for (String index : wanted) {
+                if (!retVal.contains(index) && WildcardMatcher.matchAny(permitted, index)) {
+                    retVal.add(index);
+                }
+            }
+        }
+
+        private static boolean permits(IndexPattern p, Resolved resolved, String[] actions) {
+            boolean patternMatch = false;
+            final Set<TypePerm> tperms = p.getTypePerms();
+            for (TypePerm tp : tperms) {
+                if (WildcardMatcher.matchAny(tp.typePattern, resolved.getTypes())) {
+                    patternMatch = WildcardMatcher.matchAll(tp.perms.toArray(new String[0]), actions);
+                }
+            }
+            return patternMatch;
+        }
+
         private SgRole addTenant(Tenant tenant) {
             if (tenant != null) {
                 this.tenants.add(tenant);
@@ -459,6 +602,7 @@ public class ConfigModel implements ConfigurationChangeListener {
         private SgRole addIndexPattern(IndexPattern indexPattern) {
             if (indexPattern != null) {
                 this.ipatterns.add(indexPattern);
+                this.userDependentPatterns |= indexPattern.indexPattern.contains("${");
             }
             return this;
         }
@@ -834,8 +978,7 @@ public class ConfigModel implements ConfigurationChangeListener {
 
     private static boolean impliesTypePerm(Set<IndexPattern> ipatterns, Resolved resolved, User user, String[] actions,
             IndexNameExpressionResolver resolver, ClusterService cs) {
-        Set<String> matchingIndex = new HashSet<>(resolved.getAllIndices());
-
+        //every requested index needs to be fully covered, so stop at the first one which is not
         for (String in : resolved.getAllIndices()) {
             //find index patterns who are matching
             Set<String> matchingActions = new HashSet<>(Arrays.asList(actions));
@@ -858,11 +1001,11 @@ public class ConfigModel implements ConfigurationChangeListener {
                 }
             }
 
-            if (matchingActions.isEmpty() && matchingTypes.isEmpty()) {
-                matchingIndex.remove(in);
+            if (!matchingActions.isEmpty() || !matchingTypes.isEmpty()) {
+                return false;
             }
         }
 
-        return matchingIndex.isEmpty();
+        return true;
     }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.sgconf;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable set of concrete open indices, backed by a bitset over the index ordinals of one metadata version.
+ */
+public final class PermittedIndexSet extends AbstractSet<String> {
+
+    private final IndexOrdinals ordinals;
+    private final BitSet bits;
+    private final int size;
+
+    private PermittedIndexSet(final IndexOrdinals ordinals, final BitSet bits) {
+        this.ordinals = ordinals;
+        this.bits = bits;
+        this.size = bits.cardinality();
+    }
+
+    static PermittedIndexSet of(final IndexOrdinals ordinals, final Set<String> indices) {
+        final BitSet bits = new BitSet(ordinals.names.length);
+
+        for (String index : indices) {
+            final Integer ordinal = ordinals.ordinals.get(index);
+
+            //indices which were created after the ordinals were taken are not known here
+            if (ordinal != null) {
+                bits.set(ordinal);
+            }
+        }
+
+        return new PermittedIndexSet(ordinals, bits);
+    }
+
+    /**
+     * @return true if every open index of the cluster is contained
+     */
+    public boolean containsAllOpenIndices() {
+        return size == ordinals.names.length;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        final Integer ordinal = ordinals.ordinals.get(o);
+        return ordinal != null && bits.get(ordinal);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return bits.stream().mapToObj(i -> ordinals.names[i]).iterator();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Ordinal table of the concrete open indices of one metadata version
+     */
+    static final class IndexOrdinals {
+        final long metaDataVersion;
+        private final String[] names;
+        private final Map<Object, Integer> ordinals;
+
+        IndexOrdinals(final long metaDataVersion, final String[] names) {
+            this.metaDataVersion = metaDataVersion;
+            this.names = names;
+            this.ordinals = new HashMap<>(names.length);
+
+            for (int i = 0; i < names.length; i++) {
+                ordinals.put(names[i], i);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.sgconf;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.cluster.metadata.MetaData;
+
+import com.floragunn.searchguard.sgconf.PermittedIndexSet.IndexOrdinals;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Permitted concrete open indices for requests on all indices, cached per effective role set, types,
+ * actions and metadata version. One instance is shared by a roles configuration and everything filtered from it.
+ */
+final class PermittedIndicesCache {
+
+    private final Cache<Key, PermittedIndexSet> cache = CacheBuilder.newBuilder().maximumSize(256).build();
+    private volatile IndexOrdinals ordinals;
+
+    PermittedIndexSet get(final Set<String> roleNames, final Set<String> types, final String[] actions, final MetaData metaData,
+            final Function<MetaData, Set<String>> permittedIndices) {
+        final IndexOrdinals ordinals = ordinals(metaData);
+
+        try {
+            //the permitted indices are computed from the same metadata as the ordinals so that no index is missing from the table
+            return cache.get(new Key(roleNames, types, actions, ordinals.metaDataVersion),
+                    () -> PermittedIndexSet.of(ordinals, permittedIndices.apply(metaData)));
+        } catch (ExecutionException e) {
+            throw ExceptionsHelper.convertToElastic(e);
+        }
+    }
+
+    private IndexOrdinals ordinals(final MetaData metaData) {
+        IndexOrdinals current = ordinals;
+
+        if (current == null || current.metaDataVersion != metaData.version()) {
+            current = new IndexOrdinals(metaData.version(), metaData.getConcreteAllOpenIndices());
+            ordinals = current;
+        }
+
+        return current;
+    }
+
+    private static final class Key {
+        private final Set<String> roleNames;
+        private final Set<String> types;
+        private final String[] actions;
+        private final long metaDataVersion;
+        private final int hashCode;
+
+        private Key(Set<String> roleNames, Set<String> types, String[] actions, long metaDataVersion) {
+            this.roleNames = roleNames;
+            this.types = types;
+            this.actions = actions;
+            this.metaDataVersion = metaDataVersion;
+            this.hashCode = 31 * (31 * (31 * roleNames.hashCode() + types.hashCode()) + Arrays.hashCode(actions)) + Long.hashCode(metaDataVersion);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            final Key other = (Key) obj;
+            return metaDataVersion == other.metaDataVersion && roleNames.equals(other.roleNames) && types.equals(other.types)
+                    && Arrays.equals(actions, other.actions);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.support;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * Sampled action trace. The node which first sees a request decides whether it is traced and propagates the
+ * decision as a single {@link ConfigConstants#SG_TRACE_ID_HEADER} header. Every node keeps the events of sampled
+ * requests in a bounded ring buffer which can be read with the _searchguard/trace API.
+ * <p>
+ * Tracing is active if {@link ConfigConstants#SEARCHGUARD_ACTION_TRACE_SAMPLE_RATE} is greater than zero
+ * or if the sg_action_trace logger is set to TRACE, in which case every request is sampled.
+ */
+public final class ActionTrace {
+
+    public static final String RESPONSE_HEADER = "X-Search-Guard-Trace-Id";
+    private static final String NOT_SAMPLED = "0";
+
+    private final Logger actionTraceLog = LogManager.getLogger("sg_action_trace");
+    private final double sampleRate;
+    private final AtomicReferenceArray<Event> events;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public ActionTrace(final Settings settings) {
+        this.sampleRate = Math.min(1d, settings.getAsDouble(ConfigConstants.SEARCHGUARD_ACTION_TRACE_SAMPLE_RATE, 0d));
+        this.events = new AtomicReferenceArray<>(Math.max(16, settings.getAsInt(ConfigConstants.SEARCHGUARD_ACTION_TRACE_BUFFER_SIZE, 1024)));
+    }
+
+    public boolean isEnabled() {
+        return sampleRate > 0 || actionTraceLog.isTraceEnabled();
+    }
+
+    /**
+     * Attaches a sampling decision to a request if it does not carry one yet.
+     *
+     * @return the trace id or null if the request is not traced
+     */
+    public String startOrContinue(final ThreadContext threadContext) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        final String traceId = threadContext.getHeader(ConfigConstants.SG_TRACE_ID_HEADER);
+
+        if (traceId == null) {
+            if (!sample()) {
+                threadContext.putHeader(ConfigConstants.SG_TRACE_ID_HEADER, NOT_SAMPLED);
+                return null;
+            }
+
+            final String newTraceId = newTraceId();
+            threadContext.putHeader(ConfigConstants.SG_TRACE_ID_HEADER, newTraceId);
+            threadContext.addResponseHeader(RESPONSE_HEADER, newTraceId);
+            return newTraceId;
+        }
+
+        return NOT_SAMPLED.equals(traceId) ? null : traceId;
+    }
+
+    /**
+     * @return the trace id of the current request or null if it is not traced
+     */
+    public String current(final ThreadContext threadContext) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        final String traceId = threadContext.getHeader(ConfigConstants.SG_TRACE_ID_HEADER);
+        return traceId == null || NOT_SAMPLED.equals(traceId) ? null : traceId;
+    }
+
+    public void record(final String traceId, final String stage, final String action, final String detail) {
+        if (traceId == null) {
+            return;
+        }
+
+        final long seq = sequence.getAndIncrement();
+        final Event event = new Event(seq, System.currentTimeMillis(), traceId, stage, action, Thread.currentThread().getName(), detail);
+        events.set((int) (seq % events.length()), event);
+
+        if (actionTraceLog.isTraceEnabled()) {
+            actionTraceLog.trace("{} {} {} -> {} {}", traceId, event.thread, stage, action, detail);
+        }
+    }
+
+    /**
+     * @param traceId only return events of this trace, all buffered events if null
+     */
+    public List<Event> getEvents(final String traceId) {
+        final List<Event> result = new ArrayList<>();
+
+        for (int i = 0; i < events.length(); i++) {
+            final Event event = events.get(i);
+            if (event != null && (traceId == null || traceId.equals(event.traceId))) {
+                result.add(event);
+            }
+        }
+
+        result.sort(Comparator.comparingLong(e -> e.sequence));
+        return result;
+    }
+
+    private boolean sample() {
+        return sampleRate >= 1d || actionTraceLog.isTraceEnabled() || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    private static String newTraceId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return Long.toHexString(id);
+    }
+
+    public static final class Event implements Writeable, ToXContentObject {
+
+        private final long sequence;
+        private final long timestamp;
+        private final String traceId;
+        private final String stage;
+        private final String action;
+        private final String thread;
+        private final String detail;
+
+        Event(long sequence, long timestamp, String traceId, String stage, String action, String thread, String detail) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.traceId = traceId;
+            this.stage = stage;
+            this.action = action;
+            this.thread = thread;
+            this.detail = detail;
+        }
+
+        public Event(StreamInput in) throws IOException {
+            sequence = in.readVLong();
+            timestamp = in.readLong();
+            traceId = in.readString();
+            stage = in.readString();
+            action = in.readOptionalString();
+            thread = in.readString();
+            detail = in.readOptionalString();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeVLong(sequence);
+            out.writeLong(timestamp);
+            out.writeString(traceId);
+            out.writeString(stage);
+            out.writeOptionalString(action);
+            out.writeString(thread);
+            out.writeOptionalString(detail);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.field("timestamp", timestamp);
+            builder.field("trace_id", traceId);
+            builder.field("stage", stage);
+            builder.field("action", action);
+            builder.field("thread", thread);
+            if (detail != null) {
+                builder.field("detail", detail);
+            }
+            builder.endObject();
+            return builder;
+        }
+
+        public String getTraceId() {
+            return traceId;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        public String getAction() {
+            return action;
+        }
+    }
+}
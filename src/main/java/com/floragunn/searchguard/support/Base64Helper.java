@@ -43,6 +43,10 @@ import com.google.common.io.BaseEncoding;
 public class Base64Helper {
 
     public static String serializeObject(final Serializable object) {
+        return BaseEncoding.base64().encode(serializeObjectToBytes(object));
+    }
+
+    public static byte[] serializeObjectToBytes(final Serializable object) {
 
         if (object == null) {
             throw new IllegalArgumentException("object must not be null");
@@ -52,8 +56,8 @@ public class Base64Helper {
             final ByteArrayOutputStream bos = new ByteArrayOutputStream();
             final ObjectOutputStream out = new ObjectOutputStream(bos);
             out.writeObject(object);
-            final byte[] bytes = bos.toByteArray();
-            return BaseEncoding.base64().encode(bytes);
+            out.flush();
+            return bos.toByteArray();
         } catch (final Exception e) {
             throw new ElasticsearchException(e.toString());
         }
@@ -65,11 +69,27 @@ public class Base64Helper {
             throw new IllegalArgumentException("string must not be null");
         }
 
+        final byte[] bytes;
+
+        try {
+            bytes = BaseEncoding.base64().decode(string);
+        } catch (final Exception e) {
+            throw new ElasticsearchException(e);
+        }
+
+        return deserializeObject(bytes);
+    }
+
+    public static Serializable deserializeObject(final byte[] bytes) {
+
+        if (bytes == null) {
+            throw new IllegalArgumentException("bytes must not be null");
+        }
+
         SafeObjectInputStream in = null;
 
         try {
-            final byte[] userr = BaseEncoding.base64().decode(string);
-            final ByteArrayInputStream bis = new ByteArrayInputStream(userr); //NOSONAR
+            final ByteArrayInputStream bis = new ByteArrayInputStream(bytes); //NOSONAR
             in = new SafeObjectInputStream(bis); //NOSONAR
             return (Serializable) in.readObject();
         } catch (final Exception e) {
@@ -52,6 +52,17 @@ public class ConfigConstants {
     
     public static final String SG_INITIAL_ACTION_CLASS_HEADER = SG_CONFIG_PREFIX+"initial_action_class_header";
 
+    /**
+     * Id of a sampled action trace, "0" marks a request which was not sampled
+     */
+    public static final String SG_TRACE_ID_HEADER = SG_CONFIG_PREFIX+"trace_id";
+
+    /**
+     * Security decision computed once per request by the action filter (see SecurityDecision)
+     */
+    public static final String SG_DECISION = SG_CONFIG_PREFIX+"decision";
+    public static final String SG_DECISION_HEADER = SG_CONFIG_PREFIX+"decision_header";
+
     /**
      * Set by SSL plugin for https requests only
      */
@@ -127,6 +138,12 @@ public class ConfigConstants {
     public static final String SEARCHGUARD_AUDIT_THREADPOOL_SIZE = "searchguard.audit.threadpool.size";
     public static final String SEARCHGUARD_AUDIT_THREADPOOL_MAX_QUEUE_LEN = "searchguard.audit.threadpool.max_queue_len";
     public static final String SEARCHGUARD_AUDIT_LOG_REQUEST_BODY = "searchguard.audit.log_request_body";
+    public static final String SEARCHGUARD_AUDIT_PIPELINE_ENABLED = "searchguard.audit.pipeline.enabled";
+    public static final String SEARCHGUARD_AUDIT_PIPELINE_BUFFER_SIZE = "searchguard.audit.pipeline.buffer_size";
+    public static final String SEARCHGUARD_AUDIT_PIPELINE_BATCH_SIZE = "searchguard.audit.pipeline.batch_size";
+    public static final String SEARCHGUARD_AUDIT_PIPELINE_FLUSH_INTERVAL_MS = "searchguard.audit.pipeline.flush_interval_ms";
+    public static final String SEARCHGUARD_AUDIT_PIPELINE_OVERFLOW_POLICY = "searchguard.audit.pipeline.overflow_policy";
+    public static final String SEARCHGUARD_AUDIT_PIPELINE_BLOCK_TIMEOUT_MS = "searchguard.audit.pipeline.block_timeout_ms";
     public static final String SEARCHGUARD_AUDIT_RESOLVE_INDICES = "searchguard.audit.resolve_indices";
     public static final String SEARCHGUARD_AUDIT_ENABLE_REST = "searchguard.audit.enable_rest";
     public static final String SEARCHGUARD_AUDIT_ENABLE_TRANSPORT = "searchguard.audit.enable_transport";
@@ -188,6 +205,17 @@ public class ConfigConstants {
     public static final String SEARCHGUARD_NODES_DN = "searchguard.nodes_dn";
     public static final String SEARCHGUARD_DISABLED = "searchguard.disabled";
     public static final String SEARCHGUARD_CACHE_TTL_MINUTES = "searchguard.cache.ttl_minutes";
+    public static final String SEARCHGUARD_CACHE_OFFHEAP_ENABLED = "searchguard.cache.offheap.enabled";
+    public static final String SEARCHGUARD_CACHE_OFFHEAP_MAX_SIZE_MB = "searchguard.cache.offheap.max_size_mb";
+    public static final String SEARCHGUARD_CACHE_OFFHEAP_HEAP_MAX_ENTRIES = "searchguard.cache.offheap.heap_max_entries";
+    public static final String SEARCHGUARD_AUTHC_PARALLEL_THREAD_POOL_SIZE = "searchguard.authc.parallel.thread_pool_size";
+    public static final String SEARCHGUARD_AUTHC_PARALLEL_QUEUE_SIZE = "searchguard.authc.parallel.queue_size";
+    public static final String SEARCHGUARD_CONFIG_SNAPSHOT_ENABLED = "searchguard.config_snapshot.enabled";
+    public static final String SEARCHGUARD_CONFIG_UPDATE_SHIP_CONFIGURATION = "searchguard.config_update.ship_configuration";
+    public static final String SEARCHGUARD_STATS_LATENCY_ENABLED = "searchguard.stats.latency.enabled";
+    public static final String SEARCHGUARD_STATS_PROMETHEUS_ENABLED = "searchguard.stats.prometheus.enabled";
+    public static final String SEARCHGUARD_ACTION_TRACE_SAMPLE_RATE = "searchguard.action_trace.sample_rate";
+    public static final String SEARCHGUARD_ACTION_TRACE_BUFFER_SIZE = "searchguard.action_trace.buffer_size";
     public static final String SEARCHGUARD_ALLOW_UNSAFE_DEMOCERTIFICATES = "searchguard.allow_unsafe_democertificates";
     public static final String SEARCHGUARD_ALLOW_DEFAULT_INIT_SGINDEX = "searchguard.allow_default_init_sgindex";
     public static final String SEARCHGUARD_BACKGROUND_INIT_IF_SGINDEX_NOT_EXIST = "searchguard.background_init_if_sgindex_not_exist";
@@ -220,7 +248,7 @@ public class ConfigConstants {
 
 
     //public static final String SEARCHGUARD_TRIBE_CLUSTERNAME = "searchguard.tribe.clustername";
-    //public static final String SEARCHGUARD_DISABLE_TYPE_SECURITY = "searchguard.disable_type_security";
+    public static final String SEARCHGUARD_DISABLE_TYPE_SECURITY = "searchguard.disable_type_security";
 
     // REST API
     public static final String SEARCHGUARD_RESTAPI_ROLES_ENABLED = "searchguard.restapi.roles_enabled";
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.support;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.elasticsearch.common.network.NetworkAddress;
+
+import com.google.common.collect.Multimap;
+import com.google.common.net.InetAddresses;
+
+/**
+ * Precompiled matcher for host patterns like they are used in the rolesmapping.
+ * <p/>
+ * IP literals, CIDR ranges (like 10.0.0.0/8 or fd00::/8) and IPv4 wildcards on octet boundaries (like 192.168.*) are stored
+ * in a binary prefix tree and matched against the raw address bytes. Hostnames are matched against a hash map (exact names)
+ * and precompiled regular expressions (wildcards and regex patterns). All other patterns are matched like with {@link WildcardMatcher}
+ * against the formatted IP address. As before, IP patterns are also compared to the hostname strings.
+ */
+public final class HostMatcher {
+
+    private static final Pattern IPV4_OCTET_WILDCARD = Pattern.compile("^(\\d{1,3}\\.){1,3}\\*$");
+
+    private final Node ipv4 = new Node();
+    private final Node ipv6 = new Node();
+    private final Map<String, List<String>> hostNames = new HashMap<>();
+    private final List<CompiledPattern> hostNamePatterns = new ArrayList<>();
+    private final List<CompiledPattern> addressPatterns = new ArrayList<>();
+    private final boolean empty;
+
+    /**
+     * @param patterns host patterns mapped to the values which should be returned if they match
+     */
+    public HostMatcher(final Multimap<String, String> patterns) {
+
+        for (final String pattern : patterns.keySet()) {
+            final Collection<String> values = patterns.get(pattern);
+
+            if (addPrefix(pattern, values)) {
+                //IP literals and wildcards were also matched against the hostname strings, which may be IP addresses themselves
+                if (IPV4_OCTET_WILDCARD.matcher(pattern).matches()) {
+                    hostNamePatterns.add(new CompiledPattern(pattern, values));
+                } else {
+                    hostNames.computeIfAbsent(pattern, k -> new ArrayList<>()).addAll(values);
+                }
+                continue;
+            }
+
+            if (WildcardMatcher.containsWildcard(pattern)) {
+                final CompiledPattern compiled = new CompiledPattern(pattern, values);
+                hostNamePatterns.add(compiled);
+                addressPatterns.add(compiled);
+            } else {
+                hostNames.computeIfAbsent(pattern, k -> new ArrayList<>()).addAll(values);
+            }
+        }
+
+        empty = patterns.isEmpty();
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Add the values of all patterns which match the given address to result
+     */
+    public void matchAddress(final InetAddress address, final Collection<String> result) {
+        if (address == null) {
+            return;
+        }
+
+        final byte[] bytes = address.getAddress();
+        Node node = address instanceof Inet4Address ? ipv4 : ipv6;
+        node.collect(result);
+
+        for (int i = 0; i < bytes.length * 8 && node != null; i++) {
+            node = ((bytes[i >> 3] >> (7 - (i & 7))) & 1) == 0 ? node.zero : node.one;
+
+            if (node != null) {
+                node.collect(result);
+            }
+        }
+
+        if (!addressPatterns.isEmpty()) {
+            //IPV4 or IPv6 (compressed and without scope identifiers)
+            final String formatted = NetworkAddress.format(address);
+
+            for (final CompiledPattern pattern : addressPatterns) {
+                pattern.match(formatted, result);
+            }
+        }
+    }
+
+    /**
+     * Add the values of all patterns which match the given hostname to result
+     */
+    public void matchHostName(final String hostName, final Collection<String> result) {
+        if (hostName == null) {
+            return;
+        }
+
+        final List<String> exact = hostNames.get(hostName);
+
+        if (exact != null) {
+            result.addAll(exact);
+        }
+
+        for (final CompiledPattern pattern : hostNamePatterns) {
+            pattern.match(hostName, result);
+        }
+    }
+
+    private boolean addPrefix(final String pattern, final Collection<String> values) {
+        String address = pattern;
+        int prefixLength = -1;
+
+        if (IPV4_OCTET_WILDCARD.matcher(pattern).matches()) {
+            final String[] octets = pattern.split("\\.");
+            prefixLength = (octets.length - 1) * 8;
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 4; i++) {
+                sb.append(i < octets.length - 1 ? octets[i] : "0");
+                if (i < 3) {
+                    sb.append('.');
+                }
+            }
+            address = sb.toString();
+        } else if (pattern.indexOf('/') > 0 && !pattern.startsWith("/")) {
+            final int slash = pattern.indexOf('/');
+            address = pattern.substring(0, slash);
+            try {
+                prefixLength = Integer.parseInt(pattern.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        if (!InetAddresses.isInetAddress(address)) {
+            return false;
+        }
+
+        final byte[] bytes = InetAddresses.forString(address).getAddress();
+
+        if (prefixLength < 0) {
+            prefixLength = bytes.length * 8;
+        }
+
+        if (prefixLength > bytes.length * 8) {
+            return false;
+        }
+
+        Node node = bytes.length == 4 ? ipv4 : ipv6;
+
+        for (int i = 0; i < prefixLength; i++) {
+            if (((bytes[i >> 3] >> (7 - (i & 7))) & 1) == 0) {
+                node = node.zero == null ? (node.zero = new Node()) : node.zero;
+            } else {
+                node = node.one == null ? (node.one = new Node()) : node.one;
+            }
+        }
+
+        if (node.values == null) {
+            node.values = new ArrayList<>();
+        }
+
+        node.values.addAll(values);
+        return true;
+    }
+
+    private static final class Node {
+        private Node zero;
+        private Node one;
+        private List<String> values;
+
+        void collect(final Collection<String> result) {
+            if (values != null) {
+                result.addAll(values);
+            }
+        }
+    }
+
+    private static final class CompiledPattern {
+        private final Pattern pattern;
+        private final Collection<String> values;
+
+        CompiledPattern(final String pattern, final Collection<String> values) {
+            this.values = values;
+
+            if (pattern.startsWith("/") && pattern.endsWith("/") && pattern.length() > 1) {
+                this.pattern = Pattern.compile("^" + pattern.substring(1, pattern.length() - 1) + "$");
+            } else {
+                final StringBuilder regex = new StringBuilder("^");
+                final StringBuilder literal = new StringBuilder();
+                for (final char c : pattern.toCharArray()) {
+                    if (c == '*' || c == '?') {
+                        if (literal.length() > 0) {
+                            regex.append(Pattern.quote(literal.toString()));
+                            literal.setLength(0);
+                        }
+                        regex.append(c == '*' ? ".*" : ".");
+                    } else {
+                        literal.append(c);
+                    }
+                }
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                }
+                this.pattern = Pattern.compile(regex.append('$').toString(), Pattern.DOTALL);
+            }
+        }
+
+        void match(final String candidate, final Collection<String> result) {
+            if (pattern.matcher(candidate).matches()) {
+                result.addAll(values);
+            }
+        }
+    }
+}
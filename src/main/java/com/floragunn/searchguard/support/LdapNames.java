@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.support;
+
+import java.util.Optional;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Node wide bounded cache of parsed distinguished names. Principals of the same few certificates are
+ * parsed on every request otherwise, strings which are no valid DN are remembered as well.
+ * <p>
+ * The returned {@link LdapName} instances are shared and must not be modified.
+ */
+public final class LdapNames {
+
+    static final int MAX_ENTRIES = 1000;
+
+    private static final Cache<String, Optional<LdapName>> CACHE = CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES).build();
+
+    private LdapNames() {
+    }
+
+    /**
+     * @return the parsed name or null if the value is null or not a valid DN
+     */
+    public static LdapName parse(final String dn) {
+        if (dn == null) {
+            return null;
+        }
+
+        Optional<LdapName> name = CACHE.getIfPresent(dn);
+
+        if (name == null) {
+            try {
+                name = Optional.of(new LdapName(dn));
+            } catch (InvalidNameException e) {
+                name = Optional.empty();
+            }
+            CACHE.put(dn, name);
+        }
+
+        return name.orElse(null);
+    }
+}
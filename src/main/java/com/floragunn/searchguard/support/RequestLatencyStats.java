@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.support;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * Latency histograms of the Search Guard stages on the request path, kept per stage and per action prefix.
+ * <p>
+ * Usage: {@code long start = stats.start(); ... stats.record(Stage.X, action, start);}
+ * If disabled by {@link ConfigConstants#SEARCHGUARD_STATS_LATENCY_ENABLED} both calls are no-ops.
+ */
+public final class RequestLatencyStats {
+
+    public enum Stage {
+        REST_FILTER("rest_filter"),
+        AUTHENTICATION("authentication"),
+        PRIVILEGES_EVALUATION("privileges_evaluation"),
+        DLS_FLS_EVALUATION("dls_fls_evaluation"),
+        INDEX_RESOLUTION("index_resolution"),
+        TRANSPORT_INTERCEPTOR("transport_interceptor");
+
+        private final String name;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /** Used for stages which are recorded before the action name is known */
+    public static final String REST = "rest";
+
+    private static final String OTHER = "other";
+    private static final String[] PREFIXES = new String[] { "indices:data/read", "indices:data/write", "indices:admin", "indices:monitor",
+            "cluster:admin", "cluster:monitor", "internal:", REST };
+
+    private static final RequestLatencyStats DISABLED = new RequestLatencyStats(false);
+
+    private final boolean enabled;
+    private final LatencyHistogram[][] histograms;
+
+    private RequestLatencyStats(boolean enabled) {
+        this.enabled = enabled;
+        this.histograms = new LatencyHistogram[Stage.values().length][PREFIXES.length + 1];
+
+        if (enabled) {
+            for (int i = 0; i < histograms.length; i++) {
+                for (int k = 0; k < histograms[i].length; k++) {
+                    histograms[i][k] = new LatencyHistogram();
+                }
+            }
+        }
+    }
+
+    public static RequestLatencyStats create(Settings settings) {
+        return settings.getAsBoolean(ConfigConstants.SEARCHGUARD_STATS_LATENCY_ENABLED, true) ? new RequestLatencyStats(true) : DISABLED;
+    }
+
+    public static RequestLatencyStats disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public void record(final Stage stage, final String action, final long startNanos) {
+        if (enabled) {
+            histograms[stage.ordinal()][prefixIndex(action)].record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        }
+    }
+
+    public Snapshot snapshot() {
+        final Snapshot snapshot = new Snapshot();
+
+        if (!enabled) {
+            return snapshot;
+        }
+
+        for (final Stage stage : Stage.values()) {
+            for (int k = 0; k < PREFIXES.length + 1; k++) {
+                final LatencyHistogram histogram = histograms[stage.ordinal()][k];
+
+                if (histogram.count() > 0) {
+                    snapshot.stages.computeIfAbsent(stage.getName(), s -> new TreeMap<>()).put(k < PREFIXES.length ? PREFIXES[k] : OTHER,
+                            histogram.summarize());
+                }
+            }
+        }
+
+        return snapshot;
+    }
+
+    private static int prefixIndex(final String action) {
+        if (action != null) {
+            for (int i = 0; i < PREFIXES.length; i++) {
+                if (action.startsWith(PREFIXES[i])) {
+                    return i;
+                }
+            }
+        }
+        return PREFIXES.length;
+    }
+
+    /**
+     * Detached summaries of all histograms which recorded at least one value, keyed by stage and action prefix
+     */
+    public static class Snapshot implements Writeable, ToXContentFragment {
+
+        private final Map<String, Map<String, LatencyHistogram.Summary>> stages = new TreeMap<>();
+
+        Snapshot() {
+
+        }
+
+        public Snapshot(StreamInput in) throws IOException {
+            final int size = in.readVInt();
+            for (int i = 0; i < size; i++) {
+                stages.put(in.readString(), new TreeMap<>(in.readMap(StreamInput::readString, LatencyHistogram.Summary::new)));
+            }
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeVInt(stages.size());
+            for (Map.Entry<String, Map<String, LatencyHistogram.Summary>> stage : stages.entrySet()) {
+                out.writeString(stage.getKey());
+                out.writeMap(stage.getValue(), StreamOutput::writeString, (o, v) -> v.writeTo(o));
+            }
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            for (Map.Entry<String, Map<String, LatencyHistogram.Summary>> stage : stages.entrySet()) {
+                builder.startObject(stage.getKey());
+                for (Map.Entry<String, LatencyHistogram.Summary> prefix : stage.getValue().entrySet()) {
+                    builder.field(prefix.getKey());
+                    prefix.getValue().toXContent(builder, params);
+                }
+                builder.endObject();
+            }
+            return builder;
+        }
+
+        public Map<String, Map<String, LatencyHistogram.Summary>> getStages() {
+            return stages;
+        }
+    }
+}
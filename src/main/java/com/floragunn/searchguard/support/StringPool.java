@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.support;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Node wide pool for strings which occur in a lot of users like role and attribute names.
+ * Strings are weakly referenced so that unused values can be garbage collected.
+ */
+public final class StringPool {
+
+    private static final Interner<String> POOL = Interners.newWeakInterner();
+
+    private StringPool() {
+    }
+
+    public static String intern(final String value) {
+        return value == null ? null : POOL.intern(value);
+    }
+}
@@ -27,11 +27,13 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Currency;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -64,16 +66,20 @@ import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
 import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
 import org.elasticsearch.action.admin.indices.stats.IndicesStatsRequest;
 import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.action.support.master.AcknowledgedResponse;
+import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.transport.NoNodeAvailableException;
 import org.elasticsearch.client.transport.TransportClient;
 import org.elasticsearch.cluster.health.ClusterHealthStatus;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.TransportAddress;
@@ -81,6 +87,7 @@ import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.common.xcontent.json.JsonXContent;
@@ -100,6 +107,7 @@ import com.floragunn.searchguard.action.licenseinfo.LicenseInfoResponse;
 import com.floragunn.searchguard.action.whoami.WhoAmIAction;
 import com.floragunn.searchguard.action.whoami.WhoAmIRequest;
 import com.floragunn.searchguard.action.whoami.WhoAmIResponse;
+import com.floragunn.searchguard.configuration.ConfigurationShards;
 import com.floragunn.searchguard.ssl.util.ExceptionUtils;
 import com.floragunn.searchguard.ssl.util.SSLConfigConstants;
 import com.floragunn.searchguard.support.ConfigConstants;
@@ -214,6 +222,8 @@ public class SearchGuardAdmin {
 
         options.addOption(Option.builder("rev").longOpt("resolve-env-vars").desc("Resolve/Substitute env vars in config with their value before uploading").build());
 
+        options.addOption(Option.builder("cs").longOpt("config-shards").hasArg().argName("number of shards").desc("Split roles, rolesmapping and internalusers into this number of documents so that changes only touch the affected ones (default: 0, one document per type). Nodes which do not support this would load empty configurations, so it is refused unless all nodes support it").build());
+
         
         //when adding new options also adjust validate(CommandLine line)
         
@@ -259,6 +269,7 @@ public class SearchGuardAdmin {
         final boolean promptForPassword;
         String explicitReplicas = null;
         final boolean resolveEnvVars;
+        final int configShards;
         
         CommandLineParser parser = new DefaultParser();
         try {
@@ -345,6 +356,8 @@ public class SearchGuardAdmin {
             
             resolveEnvVars = line.hasOption("rev");
             
+            configShards = parseConfigShards(line.getOptionValue("cs", "0"));
+            
         }
         catch( ParseException exp ) {
             System.out.println("ERR: Parsing failed.  Reason: " + exp.getMessage());
@@ -718,6 +731,10 @@ public class SearchGuardAdmin {
                 return (success?0:-1);
             }
             
+            if(configShards > 0 && !legacy && !checkConfigShardsSupported(nodesInfo)) {
+                return (-1);
+            }
+            
             boolean isCdAbs = new File(cd).isAbsolute();
              
             System.out.println("Populate config from "+(isCdAbs?cd:new File(".", cd).getCanonicalPath()));
@@ -733,7 +750,7 @@ public class SearchGuardAdmin {
                     return (-1);
                 }
                 
-                boolean success = uploadFile(tc, file, index, type, legacy, resolveEnvVars);
+                boolean success = uploadFile(tc, file, index, type, legacy, resolveEnvVars, configShards);
                 ConfigUpdateResponse cur = tc.execute(ConfigUpdateAction.INSTANCE, new ConfigUpdateRequest(new String[]{type})).actionGet();
                 
                 success = checkConfigUpdateResponse(cur, nodesInfo, 1) && success;
@@ -742,11 +759,11 @@ public class SearchGuardAdmin {
                 return (success?0:-1);
             }
 
-            boolean success = uploadFile(tc, cd+"sg_config.yml", index, "config", legacy, resolveEnvVars);
-            success = uploadFile(tc, cd+"sg_roles.yml", index, "roles", legacy, resolveEnvVars) && success;
-            success = uploadFile(tc, cd+"sg_roles_mapping.yml", index, "rolesmapping", legacy, resolveEnvVars) && success;
-            success = uploadFile(tc, cd+"sg_internal_users.yml", index, "internalusers", legacy, resolveEnvVars) && success;
-            success = uploadFile(tc, cd+"sg_action_groups.yml", index, "actiongroups", legacy, resolveEnvVars) && success;
+            boolean success = uploadFile(tc, cd+"sg_config.yml", index, "config", legacy, resolveEnvVars, configShards);
+            success = uploadFile(tc, cd+"sg_roles.yml", index, "roles", legacy, resolveEnvVars, configShards) && success;
+            success = uploadFile(tc, cd+"sg_roles_mapping.yml", index, "rolesmapping", legacy, resolveEnvVars, configShards) && success;
+            success = uploadFile(tc, cd+"sg_internal_users.yml", index, "internalusers", legacy, resolveEnvVars, configShards) && success;
+            success = uploadFile(tc, cd+"sg_action_groups.yml", index, "actiongroups", legacy, resolveEnvVars, configShards) && success;
             
             if(failFast && !success) {
                 System.out.println("ERR: cannot upload configuration, see errors above");
@@ -763,6 +780,26 @@ public class SearchGuardAdmin {
         // TODO audit changes to searchguard index
     }
 
+    private static boolean checkConfigShardsSupported(NodesInfoResponse nir) {
+        final List<String> unsupported = new ArrayList<>();
+        
+        for(NodeInfo ni: nir.getNodes()) {
+            //tribe clients do not load the configuration
+            if(ni.getSettings().get("tribe.name", null) == null
+                    && !"true".equals(ni.getNode().getAttributes().get(ConfigurationShards.NODE_ATTRIBUTE))) {
+                unsupported.add(ni.getNode().getName());
+            }
+        }
+        
+        if(!unsupported.isEmpty()) {
+            System.out.println("ERR: -cs requires all nodes to support sharded configuration documents, but these nodes do not: "+unsupported);
+            System.out.println("     They would load empty configurations. Upgrade all nodes first or omit -cs.");
+            return false;
+        }
+        
+        return true;
+    }
+
     private static boolean checkConfigUpdateResponse(ConfigUpdateResponse response, NodesInfoResponse nir, int expectedConfigCount) {
         
         int expectedNodeCount = 0;
@@ -799,7 +836,11 @@ public class SearchGuardAdmin {
         return success && !response.hasFailures();
     }
     
-    private static boolean uploadFile(final Client tc, final String filepath, final String index, final String _id, final boolean legacy, boolean resolveEnvVars) {
+    private static boolean uploadFile(final Client tc, final String filepath, final String index, final String _id, final boolean legacy, boolean resolveEnvVars, final int configShards) {
+        
+        if (configShards > 0 && !legacy && ConfigurationShards.SHARDABLE_TYPES.contains(_id)) {
+            return uploadShardedFile(tc, filepath, index, _id, resolveEnvVars, configShards);
+        }
         
         String type = "sg";
         String id = _id;
@@ -831,6 +872,42 @@ public class SearchGuardAdmin {
         return false;
     }
     
+    private static boolean uploadShardedFile(final Client tc, final String filepath, final String index, final String _id, boolean resolveEnvVars, final int configShards) {
+        
+        System.out.println("Will update 'sg/" + _id + "' with " + filepath+" ("+configShards+" shards)");
+
+        try {
+            final String content = Files.asCharSource(new File(filepath), StandardCharsets.UTF_8).read();
+            final BytesReference json = readXContent(resolveEnvVars?SgUtils.replaceEnvVars(content, Settings.EMPTY):content, XContentType.YAML);
+            final List<Map<String, Object>> shards = ConfigurationShards.split(XContentHelper.convertToMap(json, true, XContentType.JSON).v2(), configShards);
+            final BulkRequestBuilder bulk = tc.prepareBulk().setRefreshPolicy(RefreshPolicy.IMMEDIATE);
+            
+            for (int i = 0; i < shards.size(); i++) {
+                final String shardId = ConfigurationShards.shardId(_id, i);
+                //unchanged shards are a noop and keep their version, so nodes do not reload them
+                bulk.add(new UpdateRequest(index, "sg", shardId).doc(shardId, BytesReference.bytes(XContentFactory.jsonBuilder().map(shards.get(i))))
+                        .docAsUpsert(true).detectNoop(true));
+            }
+            
+            final BulkResponse bulkResponse = bulk.get();
+            
+            if (bulkResponse.hasFailures()) {
+                System.out.println("   FAIL: Configuration for '" + _id + "' failed because of " + bulkResponse.buildFailureMessage());
+                return false;
+            }
+            
+            //the base document is written last (and always bumps its version), so the shards it points to are complete
+            tc.index(new IndexRequest(index).type("sg").id(_id).setRefreshPolicy(RefreshPolicy.IMMEDIATE)
+                    .source(_id, BytesReference.bytes(XContentFactory.jsonBuilder().map(ConfigurationShards.meta(configShards))))).actionGet();
+            System.out.println("   SUCC: Configuration for '" + _id + "' created or updated");
+            return true;
+        } catch (Exception e) {
+            System.out.println("   FAIL: Configuration for '" + _id + "' failed because of " + e.toString());
+        }
+
+        return false;
+    }
+    
     private static boolean retrieveFile(final Client tc, final String filepath, final String index, final String _id, final boolean legacy) {
         
         String type = "sg";
@@ -852,7 +929,12 @@ public class SearchGuardAdmin {
                     return false;
                 }
                 
-                String yaml = convertToYaml(_id, response.getSourceAsBytesRef(), true);
+                String yaml = legacy ? null : convertShardedToYaml(tc, index, _id, response.getSourceAsBytesRef());
+                
+                if (yaml == null) {
+                    yaml = convertToYaml(_id, response.getSourceAsBytesRef(), true);
+                }
+
                 writer.write(yaml);
                 System.out.println("   SUCC: Configuration for '"+_id+"' stored in "+filepath);
                 return true;
@@ -886,6 +968,48 @@ public class SearchGuardAdmin {
         return retVal;
     }
     
+    /**
+     * @return the merged shards as YAML or null if the document is not sharded
+     */
+    private static String convertShardedToYaml(final Client tc, final String index, final String _id, BytesReference bytes) throws IOException {
+        
+        final Map<String, Object> base;
+        
+        try (XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY, SearchGuardDeprecationHandler.INSTANCE, bytes.streamInput())) {
+            parser.nextToken();
+            parser.nextToken();
+            parser.nextToken();
+            base = XContentHelper.convertToMap(new BytesArray(parser.binaryValue()), true, XContentType.JSON).v2();
+        }
+        
+        final Object meta = base.get(ConfigurationShards.META);
+        
+        if (!(meta instanceof Map) || !(((Map<?, ?>) meta).get("shards") instanceof Number)) {
+            return null;
+        }
+        
+        final int shards = ((Number) ((Map<?, ?>) meta).get("shards")).intValue();
+        
+        final Map<String, Object> merged = new LinkedHashMap<>(base);
+        merged.remove(ConfigurationShards.META);
+        
+        for (int i = 0; i < shards; i++) {
+            final String shardId = ConfigurationShards.shardId(_id, i);
+            final GetResponse shard = tc.get(new GetRequest(index).type("sg").id(shardId).realtime(true)).actionGet();
+            
+            if (shard.isExists() && !shard.isSourceEmpty()) {
+                try (XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY, SearchGuardDeprecationHandler.INSTANCE, shard.getSourceAsBytesRef().streamInput())) {
+                    parser.nextToken();
+                    parser.nextToken();
+                    parser.nextToken();
+                    merged.putAll(XContentHelper.convertToMap(new BytesArray(parser.binaryValue()), true, XContentType.JSON).v2());
+                }
+            }
+        }
+        
+        return Strings.toString(XContentFactory.yamlBuilder().prettyPrint().map(merged));
+    }
+    
     private static String convertToYaml(String type, BytesReference bytes, boolean prettyPrint) throws IOException {
         
         try (XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY, SearchGuardDeprecationHandler.INSTANCE, bytes.streamInput())) {
@@ -1038,6 +1162,22 @@ public class SearchGuardAdmin {
         //TODO add more validation rules
     }
     
+    private static int parseConfigShards(final String value) throws ParseException {
+        final int configShards;
+
+        try {
+            configShards = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ParseException("-cs must be a number but was '" + value + "'");
+        }
+
+        if (configShards < 0) {
+            throw new ParseException("-cs must not be negative");
+        }
+
+        return configShards;
+    }
+    
     private static String promptForPassword(String passwordName, String commandLineOption, String envVarName) throws Exception {
         final Console console = System.console();
         if(console == null) {
@@ -21,8 +21,6 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
-import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -53,14 +51,16 @@ import com.floragunn.searchguard.auth.BackendRegistry;
 import com.floragunn.searchguard.configuration.ClusterInfoHolder;
 import com.floragunn.searchguard.ssl.SslExceptionHandler;
 import com.floragunn.searchguard.ssl.transport.PrincipalExtractor;
+import com.floragunn.searchguard.support.ActionTrace;
 import com.floragunn.searchguard.support.Base64Helper;
 import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.support.RequestLatencyStats;
+import com.floragunn.searchguard.support.RequestLatencyStats.Stage;
 import com.floragunn.searchguard.user.User;
 import com.google.common.collect.Maps;
 
 public class SearchGuardInterceptor {
 
-    protected final Logger actionTrace = LogManager.getLogger("sg_action_trace");
     protected final Logger log = LogManager.getLogger(getClass());
     private BackendRegistry backendRegistry;
     private AuditLog auditLog;
@@ -71,6 +71,8 @@ public class SearchGuardInterceptor {
     private final Settings settings;
     private final SslExceptionHandler sslExceptionHandler;
     private final ClusterInfoHolder clusterInfoHolder;
+    private final RequestLatencyStats latencyStats;
+    private final ActionTrace trace;
 
     public SearchGuardInterceptor(final Settings settings,
             final ThreadPool threadPool, final BackendRegistry backendRegistry,
@@ -78,7 +80,9 @@ public class SearchGuardInterceptor {
             final InterClusterRequestEvaluator requestEvalProvider,
             final ClusterService cs,
             final SslExceptionHandler sslExceptionHandler,
-            final ClusterInfoHolder clusterInfoHolder) {
+            final ClusterInfoHolder clusterInfoHolder,
+            final RequestLatencyStats latencyStats,
+            final ActionTrace trace) {
         this.backendRegistry = backendRegistry;
         this.auditLog = auditLog;
         this.threadPool = threadPool;
@@ -88,17 +92,20 @@ public class SearchGuardInterceptor {
         this.settings = settings;
         this.sslExceptionHandler = sslExceptionHandler;
         this.clusterInfoHolder = clusterInfoHolder;
+        this.latencyStats = latencyStats;
+        this.trace = trace;
     }
 
     public <T extends TransportRequest> SearchGuardRequestHandler<T> getHandler(String action,
             TransportRequestHandler<T> actualHandler) {
         return new SearchGuardRequestHandler<T>(action, actualHandler, threadPool, backendRegistry, auditLog,
-                principalExtractor, requestEvalProvider, cs, sslExceptionHandler);
+                principalExtractor, requestEvalProvider, cs, sslExceptionHandler, trace);
     }
 
     public <T extends TransportResponse> void sendRequestDecorate(AsyncSender sender, Connection connection, String action,
             TransportRequest request, TransportRequestOptions options, TransportResponseHandler<T> handler) {
         
+        final long start = latencyStats.start();
         final Map<String, String> origHeaders0 = getThreadContext().getHeaders();
         final User user0 = getThreadContext().getTransient(ConfigConstants.SG_USER);
         final String origin0 = getThreadContext().getTransient(ConfigConstants.SG_ORIGIN);
@@ -127,7 +134,8 @@ public class SearchGuardInterceptor {
                     || k.equals(ConfigConstants.SG_FLS_FIELDS_HEADER)
                     || k.equals(ConfigConstants.SG_MASKED_FIELD_HEADER)
                     || (k.equals("_sg_source_field_context") && ! (request instanceof SearchRequest) && !(request instanceof GetRequest))
-                    || k.startsWith("_sg_trace")
+                    || k.equals(ConfigConstants.SG_TRACE_ID_HEADER)
+                    || k.equals(ConfigConstants.SG_DECISION_HEADER)
                     || k.startsWith(ConfigConstants.SG_INITIAL_ACTION_CLASS_HEADER)
                     || k.equals(Task.X_OPAQUE_ID)
                     )));
@@ -143,6 +151,13 @@ public class SearchGuardInterceptor {
                 headerMap.remove(ConfigConstants.SG_MASKED_FIELD_HEADER);
                 headerMap.remove(ConfigConstants.SG_FLS_FIELDS_HEADER);
             }
+
+            //the decision is only valid within this cluster
+            if (SearchGuardPlugin.GuiceHolder.getRemoteClusterService().isCrossClusterSearchEnabled() 
+                    && clusterInfoHolder.isInitialized()
+                    && !clusterInfoHolder.hasNode(connection.getNode())) {
+                headerMap.remove(ConfigConstants.SG_DECISION_HEADER);
+            }
             
             if (SearchGuardPlugin.GuiceHolder.getRemoteClusterService().isCrossClusterSearchEnabled() 
                   && clusterInfoHolder.isInitialized()
@@ -169,10 +184,10 @@ public class SearchGuardInterceptor {
 
             ensureCorrectHeaders(remoteAdress0, user0, origin0);
 
-            if(actionTrace.isTraceEnabled()) {
-                getThreadContext().putHeader("_sg_trace"+System.currentTimeMillis()+"#"+UUID.randomUUID().toString(), Thread.currentThread().getName()+" IC -> "+action+" "+getThreadContext().getHeaders().entrySet().stream().filter(p->!p.getKey().startsWith("_sg_trace")).collect(Collectors.toMap(p -> p.getKey(), p -> p.getValue())));
-            }
+            trace.record(trace.current(getThreadContext()), "IC", action, "node="+connection.getNode().getName());
 
+            //the send itself may execute a local request on this thread, so it is not part of the measurement
+            latencyStats.record(Stage.TRANSPORT_INTERCEPTOR, action, start);
             sender.sendRequest(connection, action, request, options, restoringHandler);
         }
     }
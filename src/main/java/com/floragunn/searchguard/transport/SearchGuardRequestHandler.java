@@ -20,11 +20,7 @@ package com.floragunn.searchguard.transport;
 import java.net.InetSocketAddress;
 import java.security.cert.X509Certificate;
 import java.util.Objects;
-import java.util.UUID;
-import java.util.stream.Collectors;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ElasticsearchSecurityException;
 import org.elasticsearch.action.bulk.BulkShardRequest;
@@ -42,11 +38,13 @@ import com.floragunn.searchguard.action.whoami.WhoAmIAction;
 import com.floragunn.searchguard.auditlog.AuditLog;
 import com.floragunn.searchguard.auditlog.AuditLog.Origin;
 import com.floragunn.searchguard.auth.BackendRegistry;
+import com.floragunn.searchguard.privileges.SecurityDecision;
 import com.floragunn.searchguard.ssl.SslExceptionHandler;
 import com.floragunn.searchguard.ssl.transport.PrincipalExtractor;
 import com.floragunn.searchguard.ssl.transport.SearchGuardSSLRequestHandler;
 import com.floragunn.searchguard.ssl.util.ExceptionUtils;
 import com.floragunn.searchguard.ssl.util.SSLRequestHelper;
+import com.floragunn.searchguard.support.ActionTrace;
 import com.floragunn.searchguard.support.Base64Helper;
 import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.HeaderHelper;
@@ -55,11 +53,11 @@ import com.google.common.base.Strings;
 
 public class SearchGuardRequestHandler<T extends TransportRequest> extends SearchGuardSSLRequestHandler<T> {
 
-    protected final Logger actionTrace = LogManager.getLogger("sg_action_trace");
     private final BackendRegistry backendRegistry;
     private final AuditLog auditLog;
     private final InterClusterRequestEvaluator requestEvalProvider;
     private final ClusterService cs;
+    private final ActionTrace trace;
 
     SearchGuardRequestHandler(String action,
             final TransportRequestHandler<T> actualHandler,
@@ -69,12 +67,14 @@ public class SearchGuardRequestHandler<T extends TransportRequest> extends Searc
             final PrincipalExtractor principalExtractor,
             final InterClusterRequestEvaluator requestEvalProvider,
             final ClusterService cs,
-            final SslExceptionHandler sslExceptionHandler) {
+            final SslExceptionHandler sslExceptionHandler,
+            final ActionTrace trace) {
         super(action, actualHandler, threadPool, principalExtractor, sslExceptionHandler);
         this.backendRegistry = backendRegistry;
         this.auditLog = auditLog;
         this.requestEvalProvider = requestEvalProvider;
         this.cs = cs;
+        this.trace = trace;
     }
 
     @Override
@@ -130,9 +130,9 @@ public class SearchGuardRequestHandler<T extends TransportRequest> extends Searc
                     getThreadContext().putTransient(ConfigConstants.SG_REMOTE_ADDRESS, new TransportAddress((InetSocketAddress) Base64Helper.deserializeObject(originalRemoteAddress)));
                 }
 
-                if(actionTrace.isTraceEnabled()) {
-                    getThreadContext().putHeader("_sg_trace"+System.currentTimeMillis()+"#"+UUID.randomUUID().toString(), Thread.currentThread().getName()+" DIR -> "+transportChannel.getChannelType()+" "+getThreadContext().getHeaders());
-                }
+                putDecision();
+
+                trace.record(trace.current(getThreadContext()), "DIR", task.getAction(), resolvedActionClass);
                 
                 putInitialActionClassHeader(initialActionClassValue, resolvedActionClass);
 
@@ -192,6 +192,10 @@ public class SearchGuardRequestHandler<T extends TransportRequest> extends Searc
                         getThreadContext().putTransient(ConfigConstants.SG_REMOTE_ADDRESS, request.remoteAddress());
                     }
 
+                    if(HeaderHelper.isInterClusterRequest(getThreadContext())) {
+                        putDecision();
+                    }
+
                 } else {
 
                     //this is a netty request from a non-server node (maybe also be internal: or a shard request)
@@ -250,9 +254,7 @@ public class SearchGuardRequestHandler<T extends TransportRequest> extends Searc
                     }
                 }
 
-                if(actionTrace.isTraceEnabled()) {
-                    getThreadContext().putHeader("_sg_trace"+System.currentTimeMillis()+"#"+UUID.randomUUID().toString(), Thread.currentThread().getName()+" NETTI -> "+transportChannel.getChannelType()+" "+getThreadContext().getHeaders().entrySet().stream().filter(p->!p.getKey().startsWith("_sg_trace")).collect(Collectors.toMap(p -> p.getKey(), p -> p.getValue())));
-                }
+                trace.record(trace.current(getThreadContext()), "NETTY", task.getAction(), resolvedActionClass);
 
                 
                 putInitialActionClassHeader(initialActionClassValue, resolvedActionClass);
@@ -261,9 +263,7 @@ public class SearchGuardRequestHandler<T extends TransportRequest> extends Searc
             }
         } finally {
 
-            if(actionTrace.isTraceEnabled()) {
-                getThreadContext().putHeader("_sg_trace"+System.currentTimeMillis()+"#"+UUID.randomUUID().toString(), Thread.currentThread().getName()+" FIN -> "+transportChannel.getChannelType()+" "+getThreadContext().getHeaders());
-            }
+            trace.record(trace.current(getThreadContext()), "FIN", task.getAction(), transportChannel.getChannelType());
 
             if(sgContext != null) {
                 sgContext.close();
@@ -271,6 +271,14 @@ public class SearchGuardRequestHandler<T extends TransportRequest> extends Searc
         }
     }
     
+    private void putDecision() {
+        final SecurityDecision decision = SecurityDecision.decode(getThreadContext().getHeader(ConfigConstants.SG_DECISION_HEADER));
+
+        if(decision != null) {
+            getThreadContext().putTransient(ConfigConstants.SG_DECISION, decision);
+        }
+    }
+
     private void putInitialActionClassHeader(String initialActionClassValue, String resolvedActionClass) {
         if(initialActionClassValue == null) {
             if(getThreadContext().getHeader(ConfigConstants.SG_INITIAL_ACTION_CLASS_HEADER) == null) {
@@ -31,6 +31,7 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
 
+import com.floragunn.searchguard.support.StringPool;
 import com.google.common.collect.Lists;
 
 /**
@@ -49,13 +50,14 @@ public class User implements Serializable, Writeable, CustomAttributesAware {
     private String requestedTenant;
     private Map<String, String> attributes = new HashMap<>();
     private boolean isInjected = false;
+    private transient volatile UserSnapshot snapshot;
 
     public User(final StreamInput in) throws IOException {
         super();
         name = in.readString();
-        roles.addAll(in.readList(StreamInput::readString));
+        addRoles(in.readList(StreamInput::readString));
         requestedTenant = in.readString();
-        attributes = in.readMap(StreamInput::readString, StreamInput::readString);
+        addAttributes(in.readMap(StreamInput::readString, StreamInput::readString));
     }
     
     /**
@@ -80,7 +82,7 @@ public class User implements Serializable, Writeable, CustomAttributesAware {
         }
         
         if(customAttributes != null) {
-            this.attributes.putAll(customAttributes.getAttributes());
+            this.addAttributes(customAttributes.getAttributes());
         }
 
     }
@@ -113,7 +115,8 @@ public class User implements Serializable, Writeable, CustomAttributesAware {
      * @param role The role
      */
     public final void addRole(final String role) {
-        this.roles.add(role);
+        this.roles.add(StringPool.intern(role));
+        this.snapshot = null;
     }
 
     /**
@@ -123,7 +126,10 @@ public class User implements Serializable, Writeable, CustomAttributesAware {
      */
     public final void addRoles(final Collection<String> roles) {
         if(roles != null) {
-            this.roles.addAll(roles);
+            for(final String role: roles) {
+                this.roles.add(StringPool.intern(role));
+            }
+            this.snapshot = null;
         }
     }
 
@@ -144,8 +150,23 @@ public class User implements Serializable, Writeable, CustomAttributesAware {
      */
     public final void addAttributes(final Map<String,String> attributes) {
         if(attributes != null) {
-            this.attributes.putAll(attributes);
+            for(final Map.Entry<String, String> attribute: attributes.entrySet()) {
+                this.attributes.put(StringPool.intern(attribute.getKey()), attribute.getValue());
+            }
+        }
+    }
+
+    /**
+     * Get a immutable and interned snapshot of the name and the roles of this user
+     * 
+     * @return The snapshot, the same instance is returned as long as the roles of this user do not change
+     */
+    public final UserSnapshot snapshot() {
+        UserSnapshot snapshot = this.snapshot;
+        if(snapshot == null) {
+            this.snapshot = snapshot = UserSnapshot.of(this);
         }
+        return snapshot;
     }
     
     public final String getRequestedTenant() {
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.user;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.floragunn.searchguard.support.StringPool;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Immutable and interned view of the identity of a {@link User} (name and backend roles) for the request path.
+ * <p/>
+ * Roles are kept as sorted and deduplicated array of pooled strings and the hash code is precomputed.
+ * Snapshots of equal principals are the same instance, so they can be compared and used as cache keys cheaply.
+ */
+public final class UserSnapshot {
+
+    private static final Interner<UserSnapshot> SNAPSHOTS = Interners.newWeakInterner();
+
+    private final String name;
+    private final String[] roles;
+    private final Set<String> roleSet;
+    private final int hash;
+
+    private UserSnapshot(final String name, final Collection<String> roles) {
+        this.name = StringPool.intern(name);
+
+        final TreeSet<String> sorted = new TreeSet<>();
+        for (final String role : roles) {
+            if (role != null) {
+                sorted.add(StringPool.intern(role));
+            }
+        }
+
+        this.roles = sorted.toArray(new String[0]);
+        this.roleSet = ImmutableSet.copyOf(this.roles);
+        this.hash = 31 * this.name.hashCode() + Arrays.hashCode(this.roles);
+    }
+
+    public static UserSnapshot of(final User user) {
+        return SNAPSHOTS.intern(new UserSnapshot(user.getName(), user.getRoles()));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The sorted backend roles, must not be modified
+     */
+    public String[] getRolesArray() {
+        return roles;
+    }
+
+    /**
+     * @return A immutable set of the backend roles
+     */
+    public Set<String> getRoles() {
+        return roleSet;
+    }
+
+    public boolean isUserInRole(final String role) {
+        return Arrays.binarySearch(roles, role) >= 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof UserSnapshot)) {
+            return false;
+        }
+        final UserSnapshot other = (UserSnapshot) obj;
+        return hash == other.hash && name.equals(other.name) && Arrays.equals(roles, other.roles);
+    }
+
+    @Override
+    public String toString() {
+        return "UserSnapshot [name=" + name + ", roles=" + Collections.unmodifiableList(Arrays.asList(roles)) + "]";
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.http.HttpStatus;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.floragunn.searchguard.test.DynamicSgConfig;
+import com.floragunn.searchguard.test.SingleClusterTest;
+import com.floragunn.searchguard.test.helper.rest.RestHelper;
+import com.floragunn.searchguard.test.helper.rest.RestHelper.HttpResponse;
+
+public class CacheTests extends SingleClusterTest {
+
+    private static final Pattern EVICTED = Pattern.compile("\"evicted\" : (-?\\d+)");
+
+    @Test
+    public void testEvictCache() throws Exception {
+        setup(Settings.EMPTY, new DynamicSgConfig(), Settings.EMPTY);
+
+        RestHelper rh = nonSslRestHelper();
+        HttpResponse res;
+        Assert.assertEquals(HttpStatus.SC_OK, rh.executeGetRequest("", encodeBasicHeader("nagilum", "nagilum")).getStatusCode());
+        Assert.assertEquals(HttpStatus.SC_OK, rh.executeGetRequest("", encodeBasicHeader("worf", "worf")).getStatusCode());
+
+        Assert.assertEquals(HttpStatus.SC_OK, (res = rh.executeDeleteRequest("_searchguard/cache?users=worf&pretty", encodeBasicHeader("nagilum", "nagilum"))).getStatusCode());
+        System.out.println(res.getBody());
+        //only the node which served the rest calls has worf in its caches
+        List<Integer> evicted = evicted(res);
+        Assert.assertEquals(clusterInfo.numNodes, evicted.size());
+        Assert.assertTrue(evicted.stream().mapToInt(Integer::intValue).sum() > 0);
+
+        Assert.assertEquals(HttpStatus.SC_OK, (res = rh.executeDeleteRequest("_searchguard/cache?users=worf&pretty", encodeBasicHeader("nagilum", "nagilum"))).getStatusCode());
+        evicted = evicted(res);
+        Assert.assertEquals(clusterInfo.numNodes, evicted.size());
+        for (Integer count : evicted) {
+            Assert.assertEquals(0, count.intValue());
+        }
+
+        Assert.assertEquals(HttpStatus.SC_OK, (res = rh.executeDeleteRequest("_searchguard/cache?pretty", encodeBasicHeader("nagilum", "nagilum"))).getStatusCode());
+        assertContains(res, "*\"evicted\" : -1*");
+
+        Assert.assertEquals(HttpStatus.SC_FORBIDDEN, rh.executeDeleteRequest("_searchguard/cache", encodeBasicHeader("worf", "worf")).getStatusCode());
+    }
+
+    private static List<Integer> evicted(HttpResponse res) {
+        final List<Integer> evicted = new ArrayList<>();
+        final Matcher matcher = EVICTED.matcher(res.getBody());
+        while (matcher.find()) {
+            evicted.add(Integer.parseInt(matcher.group(1)));
+        }
+        return evicted;
+    }
+}
@@ -290,6 +290,28 @@ public class HttpIntegrationTests extends SingleClusterTest {
         assertNotContains(res, "*\"compression\":\"true\"*");
     }
 
+    @Test
+    public void testHTTPParallelAuthentication() throws Exception {
+
+            setup(Settings.EMPTY, new DynamicSgConfig().setSgConfig("sg_config_parallel_auth.yml"), Settings.EMPTY, true);
+
+            RestHelper rh = nonSslRestHelper();
+
+            Assert.assertEquals(HttpStatus.SC_UNAUTHORIZED, rh.executeGetRequest("").getStatusCode());
+
+            for (int i = 0; i < 3; i++) {
+                //the internal domain has the lower order and wins
+                HttpResponse resc = rh.executeGetRequest("_searchguard/authinfo", encodeBasicHeader("worf", "worf"));
+                Assert.assertEquals(HttpStatus.SC_OK, resc.getStatusCode());
+                Assert.assertTrue(resc.getBody().contains("klingon"));
+
+                //internal domain fails, noop domain succeeds
+                resc = rh.executeGetRequest("_searchguard/authinfo", encodeBasicHeader("worf", "wrong"));
+                Assert.assertEquals(HttpStatus.SC_OK, resc.getStatusCode());
+                Assert.assertFalse(resc.getBody().contains("klingon"));
+            }
+    }
+
     @Test
     public void testHTTPAnon() throws Exception {
     
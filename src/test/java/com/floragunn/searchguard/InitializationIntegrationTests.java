@@ -158,6 +158,28 @@ public class InitializationIntegrationTests extends SingleClusterTest {
         }
     }
 
+    @Test
+    public void testConfigHotReloadShippedConfiguration() throws Exception {
+
+        setup(Settings.builder().put(ConfigConstants.SEARCHGUARD_CONFIG_UPDATE_SHIP_CONFIGURATION, true).build());
+        RestHelper rh = nonSslRestHelper();
+        Header spock = encodeBasicHeader("spock", "spock");
+
+        try (TransportClient tc = getInternalTransportClient()) {
+            tc.index(new IndexRequest("searchguard").type("sg").setRefreshPolicy(RefreshPolicy.IMMEDIATE).id("internalusers").source("internalusers", FileHelper.readYamlContent("sg_internal_users_spock_add_roles.yml"))).actionGet();
+            ConfigUpdateResponse cur = tc.execute(ConfigUpdateAction.INSTANCE, new ConfigUpdateRequest(new String[]{"internalusers"})).actionGet();
+            Assert.assertFalse(cur.hasFailures());
+            Assert.assertEquals(clusterInfo.numNodes, cur.getNodes().size());
+        }
+
+        for (Iterator<TransportAddress> iterator = clusterInfo.httpAdresses.iterator(); iterator.hasNext();) {
+            TransportAddress TransportAddress = (TransportAddress) iterator.next();
+            HttpResponse res = rh.executeRequest(new HttpGet("http://"+TransportAddress.getAddress()+":"+TransportAddress.getPort() + "/" + "_searchguard/authinfo?pretty=true"), spock);
+            Assert.assertTrue(res.getBody().contains("additionalrole1"));
+            Assert.assertTrue(res.getBody().contains("additionalrole2"));
+        }
+    }
+
     @Test
     public void testDefaultConfig() throws Exception {
         
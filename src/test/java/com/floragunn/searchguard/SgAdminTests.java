@@ -32,6 +32,7 @@ import com.floragunn.searchguard.test.SingleClusterTest;
 import com.floragunn.searchguard.test.helper.file.FileHelper;
 import com.floragunn.searchguard.test.helper.rest.RestHelper;
 import com.floragunn.searchguard.test.helper.rest.RestHelper.HttpResponse;
+import com.floragunn.searchguard.configuration.ConfigurationShards;
 import com.floragunn.searchguard.tools.SearchGuardAdmin;
 
 public class SgAdminTests extends SingleClusterTest {
@@ -69,6 +70,70 @@ public class SgAdminTests extends SingleClusterTest {
         assertNotContains(res, "*DOWN*");
     }
     
+    @Test
+    public void testSgAdminShardedConfig() throws Exception {
+        setup(Settings.EMPTY, null, Settings.EMPTY, false);
+        
+        final String prefix = getResourceFolder()==null?"":getResourceFolder()+"/";
+        
+        List<String> argsAsList = new ArrayList<>();
+        argsAsList.add("-ts");
+        argsAsList.add(FileHelper.getAbsoluteFilePathFromClassPath(prefix+"truststore.jks").toFile().getAbsolutePath());
+        argsAsList.add("-ks");
+        argsAsList.add(FileHelper.getAbsoluteFilePathFromClassPath(prefix+"kirk-keystore.jks").toFile().getAbsolutePath());
+        argsAsList.add("-p");
+        argsAsList.add(String.valueOf(clusterInfo.nodePort));
+        argsAsList.add("-cn");
+        argsAsList.add(clusterInfo.clustername);
+        argsAsList.add("-cd");
+        argsAsList.add(new File("./sgconfig").getAbsolutePath());
+        argsAsList.add("-cs");
+        argsAsList.add("4");
+        argsAsList.add("-nhnv");
+        
+        Assert.assertEquals(0, SearchGuardAdmin.execute(argsAsList.toArray(new String[0])));
+        
+        RestHelper rh = nonSslRestHelper();
+        HttpResponse res;
+        
+        Assert.assertEquals(HttpStatus.SC_OK, (res = rh.executeGetRequest("_searchguard/authinfo?pretty", encodeBasicHeader("admin", "admin"))).getStatusCode());
+        assertContains(res, "*all_access*");
+        
+        //second upload leaves the shards unchanged
+        Assert.assertEquals(0, SearchGuardAdmin.execute(argsAsList.toArray(new String[0])));
+        Assert.assertEquals(HttpStatus.SC_OK, (res = rh.executeGetRequest("_searchguard/authinfo?pretty", encodeBasicHeader("admin", "admin"))).getStatusCode());
+        assertContains(res, "*all_access*");
+    }
+    
+    @Test
+    public void testSgAdminShardedConfigRefusedIfNotAllNodesSupportIt() throws Exception {
+        //like a node of an older version which only reads the base document
+        setup(Settings.EMPTY, null, Settings.builder().put("node.attr." + ConfigurationShards.NODE_ATTRIBUTE, false).build(), false);
+        
+        final String prefix = getResourceFolder()==null?"":getResourceFolder()+"/";
+        
+        List<String> argsAsList = new ArrayList<>();
+        argsAsList.add("-ts");
+        argsAsList.add(FileHelper.getAbsoluteFilePathFromClassPath(prefix+"truststore.jks").toFile().getAbsolutePath());
+        argsAsList.add("-ks");
+        argsAsList.add(FileHelper.getAbsoluteFilePathFromClassPath(prefix+"kirk-keystore.jks").toFile().getAbsolutePath());
+        argsAsList.add("-p");
+        argsAsList.add(String.valueOf(clusterInfo.nodePort));
+        argsAsList.add("-cn");
+        argsAsList.add(clusterInfo.clustername);
+        argsAsList.add("-cd");
+        argsAsList.add(new File("./sgconfig").getAbsolutePath());
+        argsAsList.add("-cs");
+        argsAsList.add("4");
+        argsAsList.add("-nhnv");
+        
+        Assert.assertNotEquals(0, SearchGuardAdmin.execute(argsAsList.toArray(new String[0])));
+        
+        //without sharding the upload works
+        argsAsList.set(argsAsList.indexOf("4"), "0");
+        Assert.assertEquals(0, SearchGuardAdmin.execute(argsAsList.toArray(new String[0])));
+    }
+    
     @Test
     public void testSgAdminInvalidYml() throws Exception {
         setup(Settings.EMPTY, new DynamicSgConfig(), Settings.EMPTY, true);
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard;
+
+import org.apache.http.Header;
+import org.apache.http.HttpStatus;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.floragunn.searchguard.support.ActionTrace;
+import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.test.DynamicSgConfig;
+import com.floragunn.searchguard.test.SingleClusterTest;
+import com.floragunn.searchguard.test.helper.rest.RestHelper;
+import com.floragunn.searchguard.test.helper.rest.RestHelper.HttpResponse;
+
+public class StatsTests extends SingleClusterTest {
+
+    @Test
+    public void testConfigStats() throws Exception {
+        setup(Settings.EMPTY, new DynamicSgConfig(), Settings.EMPTY);
+
+        RestHelper rh = nonSslRestHelper();
+        HttpResponse res;
+
+        Assert.assertEquals(HttpStatus.SC_OK, (res = rh.executeGetRequest("_searchguard/stats?pretty", encodeBasicHeader("nagilum", "nagilum"))).getStatusCode());
+        System.out.println(res.getBody());
+        assertContains(res, "*\"reload\"*");
+        assertContains(res, "*\"rolesmapping\"*");
+        assertContains(res, "*\"reload/PrivilegesEvaluator\"*");
+        assertContains(res, "*\"ms_since_last_reload\"*");
+        assertNotContains(res, "*\"ms_since_last_reload\" : -1*");
+        assertContains(res, "*\"latency\"*");
+        assertContains(res, "*\"authentication\"*");
+        assertContains(res, "*\"privileges_evaluation\"*");
+        assertContains(res, "*\"cluster:monitor\"*");
+        assertContains(res, "*\"p99_micros\"*");
+    }
+
+    @Test
+    public void testPrometheusMetrics() throws Exception {
+        setup(Settings.builder().put(ConfigConstants.SEARCHGUARD_STATS_PROMETHEUS_ENABLED, true).build());
+
+        RestHelper rh = nonSslRestHelper();
+        HttpResponse res;
+
+        Assert.assertEquals(HttpStatus.SC_OK, rh.executeGetRequest("_searchguard/authinfo", encodeBasicHeader("nagilum", "nagilum")).getStatusCode());
+        Assert.assertEquals(HttpStatus.SC_OK, (res = rh.executeGetRequest("_searchguard/metrics", encodeBasicHeader("nagilum", "nagilum"))).getStatusCode());
+        System.out.println(res.getBody());
+        assertContains(res, "*# TYPE searchguard_stage_latency_microseconds summary*");
+        assertContains(res, "*searchguard_stage_latency_microseconds_count{node=*stage=\"rest_filter\",action=\"rest\"}*");
+        assertContains(res, "*quantile=\"0.99\"*");
+        assertContains(res, "*searchguard_config_reloads_total{node=*");
+    }
+
+    @Test
+    public void testActionTrace() throws Exception {
+        setup(Settings.builder().put(ConfigConstants.SEARCHGUARD_ACTION_TRACE_SAMPLE_RATE, 1.0).build());
+
+        RestHelper rh = nonSslRestHelper();
+        HttpResponse res;
+
+        Assert.assertEquals(HttpStatus.SC_OK, (res = rh.executeGetRequest("_search", encodeBasicHeader("nagilum", "nagilum"))).getStatusCode());
+
+        String traceId = null;
+        for (Header header : res.getHeaders()) {
+            if (ActionTrace.RESPONSE_HEADER.equalsIgnoreCase(header.getName())) {
+                traceId = header.getValue();
+            }
+        }
+        Assert.assertNotNull(traceId);
+
+        Assert.assertEquals(HttpStatus.SC_OK, (res = rh.executeGetRequest("_searchguard/trace/" + traceId + "?pretty", encodeBasicHeader("nagilum", "nagilum"))).getStatusCode());
+        System.out.println(res.getBody());
+        assertContains(res, "*\"trace_id\" : \"" + traceId + "\"*");
+        assertContains(res, "*\"stage\" : \"FILTER\"*");
+        assertContains(res, "*\"action\" : \"indices:data/read/search\"*");
+        assertNotContains(res, "*_sg_trace1*");
+        assertNotContains(res, "*nagilum*");
+    }
+
+    @Test
+    public void testPrometheusMetricsDisabledByDefault() throws Exception {
+        setup();
+
+        RestHelper rh = nonSslRestHelper();
+        Assert.assertNotEquals(HttpStatus.SC_OK, rh.executeGetRequest("_searchguard/metrics", encodeBasicHeader("nagilum", "nagilum")).getStatusCode());
+    }
+}
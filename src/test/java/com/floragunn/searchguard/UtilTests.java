@@ -21,7 +21,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.net.InetAddress;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.bouncycastle.crypto.generators.OpenBSDBCrypt;
 import org.elasticsearch.common.settings.Settings;
@@ -29,8 +33,11 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.support.HostMatcher;
 import com.floragunn.searchguard.support.SgUtils;
 import com.floragunn.searchguard.support.WildcardMatcher;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 
 public class UtilTests {
     
@@ -146,4 +153,47 @@ public class UtilTests {
             Assert.assertEquals("abv${env."+k+":-k182765ggh}xyz", SgUtils.replaceEnvVars("abv${env."+k+":-k182765ggh}xyz",settings));
         }
     }
+
+    @Test
+    public void testHostMatcher() throws Exception {
+        ListMultimap<String, String> hosts = ArrayListMultimap.create();
+        hosts.put("127.0.0.1", "local");
+        hosts.put("10.0.0.0/8", "ten");
+        hosts.put("192.168.*", "private");
+        hosts.put("fd00::/8", "ula");
+        hosts.put("*.example.com", "example");
+        hosts.put("host.local", "exact");
+        hosts.put("172.16.1?.*", "wildcard");
+
+        HostMatcher matcher = new HostMatcher(hosts);
+
+        Assert.assertEquals(set("local"), matchAddress(matcher, "127.0.0.1"));
+        Assert.assertEquals(set("ten"), matchAddress(matcher, "10.200.3.4"));
+        Assert.assertEquals(set(), matchAddress(matcher, "11.0.0.1"));
+        Assert.assertEquals(set("private"), matchAddress(matcher, "192.168.17.3"));
+        Assert.assertEquals(set("ula"), matchAddress(matcher, "fd12::1"));
+        Assert.assertEquals(set("wildcard"), matchAddress(matcher, "172.16.12.1"));
+
+        Set<String> result = new TreeSet<>();
+        matcher.matchHostName("www.example.com", result);
+        matcher.matchHostName("host.local", result);
+        Assert.assertEquals(set("example", "exact"), result);
+
+        //unresolved hostnames are IP strings
+        result = new TreeSet<>();
+        matcher.matchHostName("127.0.0.1", result);
+        matcher.matchHostName("192.168.1.1", result);
+        Assert.assertEquals(set("local", "private"), result);
+        Assert.assertTrue(new HostMatcher(ArrayListMultimap.create()).isEmpty());
+    }
+
+    private static Set<String> matchAddress(HostMatcher matcher, String address) throws Exception {
+        Set<String> result = new TreeSet<>();
+        matcher.matchAddress(InetAddress.getByName(address), result);
+        return result;
+    }
+
+    private static Set<String> set(String... values) {
+        return new TreeSet<>(Arrays.asList(values));
+    }
 }
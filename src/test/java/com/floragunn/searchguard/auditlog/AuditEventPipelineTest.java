@@ -0,0 +1,250 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.auditlog;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.floragunn.searchguard.auditlog.AuditEvent.Category;
+import com.floragunn.searchguard.auditlog.AuditLog.Origin;
+import com.floragunn.searchguard.support.ConfigConstants;
+
+public class AuditEventPipelineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBatchingBySize() throws Exception {
+        final CollectingSink sink = new CollectingSink();
+
+        try (AuditEventPipeline pipeline = new AuditEventPipeline(settings("drop", 64, 10, 60000), sink)) {
+            for (int i = 0; i < 30; i++) {
+                Assert.assertTrue(pipeline.submit(event(Category.GRANTED_PRIVILEGES)));
+            }
+
+            waitFor(() -> pipeline.getBatches() == 3);
+            Assert.assertEquals(30, sink.size());
+            Assert.assertEquals(30, pipeline.getWritten());
+            Assert.assertEquals(0, pipeline.getDropped());
+        }
+    }
+
+    @Test
+    public void testBatchingByTime() throws Exception {
+        final CollectingSink sink = new CollectingSink();
+
+        try (AuditEventPipeline pipeline = new AuditEventPipeline(settings("drop", 64, 1000, 50), sink)) {
+            pipeline.submit(event(Category.FAILED_LOGIN));
+            pipeline.submit(event(Category.FAILED_LOGIN));
+
+            waitFor(() -> pipeline.getBatches() == 1);
+            Assert.assertEquals(2, sink.size());
+        }
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        final BlockingSink sink = new BlockingSink();
+
+        try (AuditEventPipeline pipeline = new AuditEventPipeline(settings("drop", 8, 1, 0), sink)) {
+            //the consumer takes the first event and blocks in the sink
+            pipeline.submit(event(Category.FAILED_LOGIN));
+            Assert.assertTrue(sink.entered.await(10, TimeUnit.SECONDS));
+
+            int accepted = 0;
+            for (int i = 0; i < 20; i++) {
+                if (pipeline.submit(event(Category.FAILED_LOGIN))) {
+                    accepted++;
+                }
+            }
+
+            Assert.assertEquals(8, accepted);
+            Assert.assertEquals(12, pipeline.getDropped());
+            Assert.assertEquals(21, pipeline.getSubmitted());
+            sink.release.countDown();
+        }
+    }
+
+    @Test
+    public void testSampleKeepsSecurityEvents() throws Exception {
+        final BlockingSink sink = new BlockingSink();
+
+        try (AuditEventPipeline pipeline = new AuditEventPipeline(settings("sample", 8, 1, 0), sink)) {
+            pipeline.submit(event(Category.FAILED_LOGIN));
+            Assert.assertTrue(sink.entered.await(10, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 6; i++) {
+                Assert.assertTrue(pipeline.submit(event(Category.MISSING_PRIVILEGES)));
+            }
+
+            for (int i = 0; i < 100; i++) {
+                pipeline.submit(event(Category.GRANTED_PRIVILEGES));
+            }
+
+            Assert.assertTrue(pipeline.getSampledOut() > 0);
+            Assert.assertEquals(8, pipeline.getQueued());
+            sink.release.countDown();
+        }
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        final BlockingSink sink = new BlockingSink();
+        final AuditEventPipeline pipeline = new AuditEventPipeline(Settings.builder().put(settings("block", 4, 1, 0))
+                .put(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_BLOCK_TIMEOUT_MS, 60000).build(), sink);
+
+        pipeline.submit(event(Category.FAILED_LOGIN));
+        Assert.assertTrue(sink.entered.await(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(pipeline.submit(event(Category.FAILED_LOGIN)));
+        }
+
+        final Thread producer = new Thread(() -> pipeline.submit(event(Category.FAILED_LOGIN)));
+        producer.start();
+        producer.join(200);
+        Assert.assertTrue("producer should wait for space", producer.isAlive());
+
+        sink.release.countDown();
+        producer.join(10000);
+        Assert.assertFalse(producer.isAlive());
+
+        pipeline.close();
+        Assert.assertEquals(0, pipeline.getDropped());
+        Assert.assertEquals(6, pipeline.getWritten());
+    }
+
+    @Test
+    public void testBlockTimeout() throws Exception {
+        final BlockingSink sink = new BlockingSink();
+
+        try (AuditEventPipeline pipeline = new AuditEventPipeline(Settings.builder().put(settings("block", 4, 1, 0))
+                .put(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_BLOCK_TIMEOUT_MS, 50).build(), sink)) {
+            pipeline.submit(event(Category.FAILED_LOGIN));
+            Assert.assertTrue(sink.entered.await(10, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 4; i++) {
+                Assert.assertTrue(pipeline.submit(event(Category.FAILED_LOGIN)));
+            }
+
+            //falls back to drop once the wait is over
+            Assert.assertFalse(pipeline.submit(event(Category.FAILED_LOGIN)));
+            Assert.assertEquals(1, pipeline.getDropped());
+            sink.release.countDown();
+        }
+    }
+
+    @Test
+    public void testFileSink() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("audit").resolve("sg_audit.log");
+
+        try (AuditEventPipeline pipeline = new AuditEventPipeline(settings("drop", 64, 2, 10), new FileAuditEventSink(file))) {
+            pipeline.submit(new AuditEvent(Category.FAILED_LOGIN, Origin.REST, false, "nagilum", null, "/_search", null, "127.0.0.1", -1, null));
+            pipeline.submit(event(Category.GRANTED_PRIVILEGES));
+        }
+
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Assert.assertEquals(2, lines.size());
+        Assert.assertTrue(lines.get(0), lines.get(0).contains("\"category\":\"FAILED_LOGIN\""));
+        Assert.assertTrue(lines.get(0), lines.get(0).contains("\"effective_user\":\"nagilum\""));
+        Assert.assertTrue(lines.get(1), lines.get(1).contains("\"action\":\"indices:data/read/search\""));
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        final AuditEventFilter defaults = new AuditEventFilter(Settings.EMPTY);
+        Assert.assertTrue(defaults.accept(Category.FAILED_LOGIN, Origin.REST, "worf", "/_search"));
+        Assert.assertFalse(defaults.accept(Category.GRANTED_PRIVILEGES, Origin.TRANSPORT, "worf", "indices:data/read/search"));
+        Assert.assertFalse(defaults.accept(Category.AUTHENTICATED, Origin.REST, "worf", "/_search"));
+        Assert.assertFalse(defaults.accept(Category.MISSING_PRIVILEGES, Origin.TRANSPORT, "kibanaserver", "indices:data/read/search"));
+        Assert.assertTrue(defaults.accept(Category.COMPLIANCE_DOC_READ, null, null, null));
+
+        final AuditEventFilter custom = new AuditEventFilter(Settings.builder()
+                .putList(ConfigConstants.SEARCHGUARD_AUDIT_CONFIG_DISABLED_TRANSPORT_CATEGORIES, "NONE")
+                .put(ConfigConstants.SEARCHGUARD_AUDIT_ENABLE_REST, false)
+                .putList(ConfigConstants.SEARCHGUARD_AUDIT_IGNORE_REQUESTS, "indices:data/read/scroll*").build());
+        Assert.assertTrue(custom.accept(Category.GRANTED_PRIVILEGES, Origin.TRANSPORT, "worf", "indices:data/read/search"));
+        Assert.assertFalse(custom.accept(Category.GRANTED_PRIVILEGES, Origin.TRANSPORT, "worf", "indices:data/read/scroll/clear"));
+        Assert.assertFalse(custom.accept(Category.FAILED_LOGIN, Origin.REST, "worf", "/_search"));
+    }
+
+    private static Settings settings(String policy, int bufferSize, int batchSize, long flushIntervalMs) {
+        return Settings.builder().put(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_OVERFLOW_POLICY, policy)
+                .put(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_BUFFER_SIZE, bufferSize)
+                .put(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_BATCH_SIZE, batchSize)
+                .put(ConfigConstants.SEARCHGUARD_AUDIT_PIPELINE_FLUSH_INTERVAL_MS, flushIntervalMs).build();
+    }
+
+    private static AuditEvent event(Category category) {
+        return new AuditEvent(category, Origin.TRANSPORT, false, "worf", null, "indices:data/read/search", "SearchRequest", "127.0.0.1", 1, null);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 200 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertTrue(condition.getAsBoolean());
+    }
+
+    private static class CollectingSink implements AuditEventSink {
+
+        private final List<AuditEvent> events = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void store(List<AuditEvent> batch) {
+            events.addAll(batch);
+        }
+
+        int size() {
+            return events.size();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class BlockingSink implements AuditEventSink {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void store(List<AuditEvent> batch) throws InterruptedException {
+            entered.countDown();
+            release.await(30, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
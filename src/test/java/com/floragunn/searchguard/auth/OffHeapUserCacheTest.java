@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.floragunn.searchguard.user.User;
+
+public class OffHeapUserCacheTest {
+
+    @Test
+    public void simpleTest() throws Exception {
+        OffHeapUserCache<String> cache = new OffHeapUserCache<>(1024 * 1024, 1, TimeUnit.MINUTES);
+
+        User user = new User("worf", Arrays.asList("klingon", "starfleet"), null);
+        user.addAttributes(Collections.singletonMap("attr.ldap.dept", "security"));
+
+        assertTrue(cache.put("worf", user));
+        assertNull(cache.getIfPresent("spock"));
+
+        User cached = cache.getIfPresent("worf");
+        assertEquals("worf", cached.getName());
+        assertEquals(user.getRoles(), cached.getRoles());
+        assertEquals("security", cached.getCustomAttributesMap().get("attr.ldap.dept"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        assertEquals(1, cache.evict((k, v) -> v.isUserInRole("klingon")));
+        assertNull(cache.getIfPresent("worf"));
+        assertEquals(0, cache.sizeInBytes());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        OffHeapUserCache<String> cache = new OffHeapUserCache<>(200, 1, TimeUnit.MINUTES);
+
+        for (int i = 0; i < 50; i++) {
+            cache.put("user" + i, new User("user" + i, Arrays.asList("role"), null));
+        }
+
+        assertTrue(cache.sizeInBytes() <= 200);
+        assertTrue(cache.getEvictions() > 0);
+        assertNull(cache.getIfPresent("user0"));
+        assertEquals("user49", cache.getIfPresent("user49").getName());
+    }
+
+    @Test
+    public void testEvictionOrderAfterInvalidate() throws Exception {
+        OffHeapUserCache<String> probe = new OffHeapUserCache<>(1024, 1, TimeUnit.MINUTES);
+        probe.put("user0", new User("user0", Arrays.asList("role"), null));
+        //one entry per slab
+        final int entryBytes = (int) probe.sizeInBytes();
+        OffHeapUserCache<String> cache = new OffHeapUserCache<>(3 * entryBytes, entryBytes, 1, TimeUnit.MINUTES);
+
+        cache.put("user1", new User("user1", Arrays.asList("role"), null));
+        cache.put("user2", new User("user2", Arrays.asList("role"), null));
+        cache.put("user3", new User("user3", Arrays.asList("role"), null));
+        cache.invalidate("user1");
+        cache.put("user1", new User("user1", Arrays.asList("role"), null));
+        cache.put("user4", new User("user4", Arrays.asList("role"), null));
+
+        assertNull(cache.getIfPresent("user2"));
+        assertEquals("user1", cache.getIfPresent("user1").getName());
+        assertEquals("user3", cache.getIfPresent("user3").getName());
+        assertEquals("user4", cache.getIfPresent("user4").getName());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void testInvalidateAll() throws Exception {
+        OffHeapUserCache<String> cache = new OffHeapUserCache<>(1024, 1, TimeUnit.MINUTES);
+        cache.put("worf", new User("worf"));
+        cache.invalidateAll();
+        assertNull(cache.getIfPresent("worf"));
+        assertEquals(0, cache.sizeInBytes());
+
+        assertTrue(cache.put("worf", new User("worf")));
+        assertEquals("worf", cache.getIfPresent("worf").getName());
+        assertTrue(cache.sizeInBytes() > 0);
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        OffHeapUserCache<String> cache = new OffHeapUserCache<>(1024, 0, TimeUnit.MINUTES);
+        cache.put("worf", new User("worf"));
+        Thread.sleep(5);
+        assertNull(cache.getIfPresent("worf"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.configuration;
+
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.support.LdapNames;
+import com.floragunn.searchguard.user.User;
+
+public class AdminDNsTest {
+
+    private final AdminDNs adminDns = new AdminDNs(Settings.builder()
+            .putList(ConfigConstants.SEARCHGUARD_AUTHCZ_ADMIN_DN, "CN=kirk,OU=client,O=client,L=test,C=de")
+            .putList(ConfigConstants.SEARCHGUARD_AUTHCZ_IMPERSONATION_DN + ".CN=spock,OU=client,O=client,L=Test,C=DE", "worf", "nagi*")
+            .build());
+
+    @Test
+    public void testAdminVerdicts() {
+        for (int i = 0; i < 2; i++) {
+            //same verdicts from the cache on the second pass
+            Assert.assertTrue(adminDns.isAdminDN("CN=kirk,OU=client,O=client,L=test,C=de"));
+            Assert.assertTrue(adminDns.isAdminDN("cn=kirk, ou=client, o=client, l=test, c=de"));
+            Assert.assertFalse(adminDns.isAdminDN("CN=spock,OU=client,O=client,L=Test,C=DE"));
+            Assert.assertFalse(adminDns.isAdminDN("nagilum"));
+            Assert.assertFalse(adminDns.isAdminDN(null));
+            Assert.assertTrue(adminDns.isAdmin(new User("CN=kirk,OU=client,O=client,L=test,C=de")));
+        }
+    }
+
+    @Test
+    public void testImpersonationVerdicts() {
+        for (int i = 0; i < 2; i++) {
+            Assert.assertTrue(adminDns.isTransportImpersonationAllowed("CN=spock,OU=client,O=client,L=Test,C=DE", "worf"));
+            Assert.assertTrue(adminDns.isTransportImpersonationAllowed("CN=spock,OU=client,O=client,L=Test,C=DE", "nagilum"));
+            Assert.assertFalse(adminDns.isTransportImpersonationAllowed("CN=spock,OU=client,O=client,L=Test,C=DE", "picard"));
+            Assert.assertTrue(adminDns.isTransportImpersonationAllowed("CN=kirk,OU=client,O=client,L=test,C=de", "picard"));
+            Assert.assertFalse(adminDns.isTransportImpersonationAllowed("not a dn", "worf"));
+        }
+    }
+
+    @Test
+    public void testParsedNamesAreShared() {
+        Assert.assertSame(LdapNames.parse("CN=kirk,OU=client"), LdapNames.parse("CN=kirk,OU=client"));
+        Assert.assertNull(LdapNames.parse("not a dn"));
+        Assert.assertNull(LdapNames.parse(null));
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.configuration;
+
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+public class ConfigurationDiffTest {
+
+    @Test
+    public void testDiff() throws Exception {
+        final Settings previous = Settings.builder()
+                .putList("role_a.cluster", "CLUSTER_MONITOR")
+                .putList("role_b.cluster", "CLUSTER_ALL")
+                .put("role_c.tenants.t1", "RW")
+                .putList("group_d", "indices:data/read*")
+                .build();
+
+        final Settings current = Settings.builder()
+                .putList("role_a.cluster", "CLUSTER_MONITOR")
+                .putList("role_b.cluster", "CLUSTER_ALL", "CLUSTER_COMPOSITE_OPS")
+                .put("role_e.tenants.t1", "RO")
+                .putList("group_d", "indices:data/write*")
+                .build();
+
+        final ConfigurationDiff diff = ConfigurationDiff.compute(previous, current);
+        Assert.assertFalse(diff.isFull());
+        Assert.assertEquals(Sets.newHashSet("role_e"), diff.getAdded());
+        Assert.assertEquals(Sets.newHashSet("role_c"), diff.getRemoved());
+        Assert.assertEquals(Sets.newHashSet("role_b", "group_d"), diff.getChanged());
+        Assert.assertEquals(Sets.newHashSet("role_b", "role_c", "role_e", "group_d"), diff.getAffected());
+
+        Assert.assertTrue(ConfigurationDiff.compute(current, current).isEmpty());
+        Assert.assertTrue(ConfigurationDiff.compute(null, current).isFull());
+    }
+}
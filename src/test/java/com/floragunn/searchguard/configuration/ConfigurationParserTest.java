@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.configuration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.floragunn.searchguard.support.ConfigConstants;
+
+public class ConfigurationParserTest {
+
+    private static final String ROLES = "{"
+            + "\"role_a\":{\"cluster\":[\"CLUSTER_MONITOR\",\"indices:data/read/mget\"],"
+            + "\"indices\":{\"logs-*\":{\"*\":[\"READ\"],\"_dls_\":\"{\\\"term\\\":{\\\"a\\\":1}}\",\"_fls_\":[\"f1\",\"~f2\"]}},"
+            + "\"tenants\":{\"t1\":\"RW\",\"t2\":\"RO\"}},"
+            + "\"role_ab\":{\"cluster\":[\"CLUSTER_ALL\"],\"readonly\":true,\"priority\":5},"
+            + "\"group_c\":[\"indices:data/write*\"],"
+            + "\"role_env\":{\"cluster\":[\"${env.SG_DOES_NOT_EXIST_ENV_VAR:-CLUSTER_COMPOSITE_OPS}\"],"
+            + "\"tenants\":{\"${env.SG_DOES_NOT_EXIST_ENV_VAR:-env_tenant}\":\"RW\"}}"
+            + "}";
+
+    private static final String ROLES_MAPPING = "{"
+            + "\"_sg_meta\":{\"shards\":2},"
+            + "\"role_a\":{\"users\":[\"u1\",\"u*\"],\"backendroles\":\"br1\",\"hosts\":[\"*.example.com\"]},"
+            + "\"role_b\":{\"and_backendroles\":[\"br1\",\"br2\"]},"
+            + "\"role_empty\":{}"
+            + "}";
+
+    private static final String INTERNAL_USERS = "{"
+            + "\"admin\":{\"hash\":\"$2a$12$abc\",\"roles\":[\"admin\"],\"attributes\":{\"a\":\"1\",\"b\":2}},"
+            + "\"alias\":{\"hash\":\"$2a$12$def\",\"username\":\"${env.SG_DOES_NOT_EXIST_ENV_VAR:-aliased}\"}"
+            + "}";
+
+    @Test
+    public void testParseEqualsSettingsLoader() throws Exception {
+        final byte[] content = ROLES.getBytes(StandardCharsets.UTF_8);
+        final Settings disabled = Settings.builder().put(ConfigConstants.SEARCHGUARD_DISABLE_ENVVAR_REPLACEMENT, true).build();
+        final Settings expected = Settings.builder().loadFromSource(ROLES, XContentType.JSON).build();
+
+        Assert.assertEquals(expected, ConfigurationParser.parse(content, XContentType.JSON, disabled));
+        Assert.assertEquals(expected, ConfigurationParser.parse(content, XContentType.JSON, null));
+    }
+
+    @Test
+    public void testEnvVarsAreResolvedPerValue() throws Exception {
+        final Settings parsed = ConfigurationParser.parse(ROLES.getBytes(StandardCharsets.UTF_8), XContentType.JSON, Settings.EMPTY);
+        Assert.assertEquals("CLUSTER_COMPOSITE_OPS", parsed.getAsList("role_env.cluster").get(0));
+        Assert.assertEquals("RW", parsed.get("role_a.tenants.t1"));
+        Assert.assertEquals("RW", parsed.get("role_env.tenants.env_tenant"));
+        Assert.assertEquals(Settings.EMPTY, ConfigurationParser.parse(new byte[0], XContentType.JSON, Settings.EMPTY));
+    }
+
+    @Test
+    public void testGroups() throws Exception {
+        final Settings settings = ConfigurationParser.parse(ROLES.getBytes(StandardCharsets.UTF_8), XContentType.JSON, Settings.EMPTY);
+        final Map<String, Settings> groups = ConfigurationParser.groups(settings);
+
+        Assert.assertEquals(settings.names(), groups.keySet());
+        Assert.assertEquals(settings.getByPrefix("role_a.tenants."), groups.get("role_a").getByPrefix(".tenants."));
+        Assert.assertEquals(settings.getAsList("role_a.cluster"), groups.get("role_a").getAsList(".cluster"));
+        Assert.assertEquals(settings.getAsList("group_c"), groups.get("group_c").getAsList(""));
+        //no bleeding between entries sharing a prefix
+        Assert.assertEquals(settings.getAsList("role_ab.cluster"), groups.get("role_ab").getAsList(".cluster"));
+        Assert.assertNull(groups.get("role_a").get("b.readonly"));
+    }
+
+    @Test
+    public void testTypedRoles() throws Exception {
+        final byte[] content = ROLES.getBytes(StandardCharsets.UTF_8);
+        @SuppressWarnings("unchecked")
+        final Map<String, RoleConfig> roles = (Map<String, RoleConfig>) ConfigurationParser.parseTyped(ConfigConstants.CONFIGNAME_ROLES, content,
+                XContentType.JSON, Settings.EMPTY);
+
+        Assert.assertEquals(Arrays.asList("role_a", "role_ab", "role_env"), new ArrayList<>(roles.keySet()));
+        Assert.assertEquals(Arrays.asList("CLUSTER_MONITOR", "indices:data/read/mget"), roles.get("role_a").getCluster());
+
+        final RoleConfig.IndexConfig logs = roles.get("role_a").getIndices().get("logs-*");
+        Assert.assertEquals(Collections.singletonMap("*", Collections.singletonList("READ")), logs.getTypePermissions());
+        Assert.assertEquals("{\"term\":{\"a\":1}}", logs.getDls());
+        Assert.assertEquals(Arrays.asList("f1", "~f2"), logs.getFls());
+        Assert.assertTrue(logs.getMaskedFields().isEmpty());
+        Assert.assertEquals("RW", roles.get("role_a").getTenants().get("t1"));
+        Assert.assertEquals(Collections.singletonList("CLUSTER_COMPOSITE_OPS"), roles.get("role_env").getCluster());
+        Assert.assertEquals("RW", roles.get("role_env").getTenants().get("env_tenant"));
+
+        //the conversion of configurations which only exist as settings yields the same model
+        Assert.assertEquals(roles, TypedConfiguration.roles(ConfigurationParser.parse(content, XContentType.JSON, Settings.EMPTY)));
+        Assert.assertNull(ConfigurationParser.parseTyped(ConfigConstants.CONFIGNAME_CONFIG, content, XContentType.JSON, Settings.EMPTY));
+    }
+
+    @Test
+    public void testTypedRolesMapping() throws Exception {
+        final byte[] content = ROLES_MAPPING.getBytes(StandardCharsets.UTF_8);
+        @SuppressWarnings("unchecked")
+        final Map<String, RoleMappingConfig> mappings = (Map<String, RoleMappingConfig>) ConfigurationParser
+                .parseTyped(ConfigConstants.CONFIGNAME_ROLES_MAPPING, content, XContentType.JSON, Settings.EMPTY);
+
+        Assert.assertEquals(Arrays.asList("role_a", "role_b"), new ArrayList<>(mappings.keySet()));
+        Assert.assertEquals(Arrays.asList("u1", "u*"), mappings.get("role_a").getUsers());
+        Assert.assertEquals(Collections.singletonList("br1"), mappings.get("role_a").getBackendRoles());
+        Assert.assertEquals(Collections.singletonList("*.example.com"), mappings.get("role_a").getHosts());
+        Assert.assertEquals(Arrays.asList("br1", "br2"), mappings.get("role_b").getAndBackendRoles());
+        Assert.assertTrue(mappings.get("role_b").getUsers().isEmpty());
+
+        Assert.assertEquals(mappings, TypedConfiguration.rolesMapping(ConfigurationParser.parse(content, XContentType.JSON, Settings.EMPTY)));
+    }
+
+    @Test
+    public void testTypedInternalUsers() throws Exception {
+        final byte[] content = INTERNAL_USERS.getBytes(StandardCharsets.UTF_8);
+        @SuppressWarnings("unchecked")
+        final Map<String, InternalUserConfig> users = (Map<String, InternalUserConfig>) ConfigurationParser
+                .parseTyped(ConfigConstants.CONFIGNAME_INTERNAL_USERS, content, XContentType.JSON, Settings.EMPTY);
+
+        Assert.assertEquals("$2a$12$abc", users.get("admin").getHash());
+        Assert.assertNull(users.get("admin").getUsername());
+        Assert.assertEquals(Collections.singletonList("admin"), users.get("admin").getRoles());
+        Assert.assertEquals("1", users.get("admin").getAttributes().get("a"));
+        Assert.assertEquals("2", users.get("admin").getAttributes().get("b"));
+        Assert.assertEquals("aliased", users.get("alias").getUsername());
+        Assert.assertTrue(users.get("alias").getRoles().isEmpty());
+
+        Assert.assertEquals(users, TypedConfiguration.internalUsers(ConfigurationParser.parse(content, XContentType.JSON, Settings.EMPTY)));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.configuration;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LocalConfigurationSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("searchguard").resolve("sg_config.snapshot");
+        final LocalConfigurationSnapshot snapshot = new LocalConfigurationSnapshot(file, "mycluster", "searchguard");
+        Assert.assertNull(snapshot.read());
+
+        final Map<String, Tuple<Long, Settings>> config = new HashMap<>();
+        config.put("roles", new Tuple<Long, Settings>(3L, Settings.builder().putList("role_a.cluster", "CLUSTER_MONITOR").build()));
+        config.put("config", new Tuple<Long, Settings>(7L, Settings.builder().put("searchguard.dynamic.kibana.index", ".kibana").build()));
+        Assert.assertTrue(snapshot.write(config));
+
+        final Map<String, Tuple<Long, Settings>> read = snapshot.read();
+        Assert.assertEquals(config.keySet(), read.keySet());
+        Assert.assertEquals(3L, read.get("roles").v1().longValue());
+        Assert.assertEquals(config.get("roles").v2(), read.get("roles").v2());
+        Assert.assertEquals(config.get("config").v2(), read.get("config").v2());
+
+        Assert.assertNull(new LocalConfigurationSnapshot(file, "othercluster", "searchguard").read());
+        Assert.assertNull(new LocalConfigurationSnapshot(file, "mycluster", "otherindex").read());
+    }
+
+    @Test
+    public void testCorruptSnapshotIsIgnored() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("sg_config.snapshot");
+        final LocalConfigurationSnapshot snapshot = new LocalConfigurationSnapshot(file, "mycluster", "searchguard");
+
+        final Map<String, Tuple<Long, Settings>> config = new HashMap<>();
+        config.put("roles", new Tuple<Long, Settings>(1L, Settings.builder().putList("role_a.cluster", "CLUSTER_ALL").build()));
+        Assert.assertTrue(snapshot.write(config));
+
+        final byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x7f;
+        Files.write(file, bytes);
+        Assert.assertNull(snapshot.read());
+
+        Files.write(file, new byte[] { 1, 2, 3 });
+        Assert.assertNull(snapshot.read());
+    }
+}
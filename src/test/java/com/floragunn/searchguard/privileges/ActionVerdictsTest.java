@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.privileges;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ActionVerdictsTest {
+
+    @Test
+    public void testComputedOnce() {
+        final AtomicInteger computations = new AtomicInteger();
+        final ActionVerdicts verdicts = new ActionVerdicts(action -> {
+            computations.incrementAndGet();
+            return action.startsWith("cluster:") ? 1 : 0;
+        });
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(verdicts.is("cluster:monitor/health", 1));
+            Assert.assertFalse(verdicts.is("indices:data/read/search", 1));
+        }
+
+        Assert.assertEquals(2, computations.get());
+    }
+
+    @Test
+    public void testBounded() {
+        final AtomicInteger computations = new AtomicInteger();
+        final ActionVerdicts verdicts = new ActionVerdicts(action -> computations.incrementAndGet());
+
+        for (int i = 0; i < ActionVerdicts.MAX_ACTIONS; i++) {
+            verdicts.get("action" + i);
+        }
+
+        verdicts.get("one_too_many");
+        verdicts.get("one_too_many");
+        Assert.assertEquals(ActionVerdicts.MAX_ACTIONS + 2, computations.get());
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.privileges;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.elasticsearch.common.collect.Tuple;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.SetMultimapBuilder;
+
+public class CompiledTenantsTest {
+
+    private final CompiledTenants tenants;
+
+    public CompiledTenantsTest() {
+        final SetMultimap<String, Tuple<String, Boolean>> mm = SetMultimapBuilder.hashKeys().hashSetValues().build();
+        mm.put("sg_human_resources", new Tuple<>("human_resources", true));
+        mm.put("sg_human_resources", new Tuple<>("business", false));
+        mm.put("sg_business", new Tuple<>("business", true));
+        mm.put("sg_own", new Tuple<>("kirk", false));
+        tenants = new CompiledTenants(mm);
+    }
+
+    @Test
+    public void testMapTenants() {
+        final Map<String, Boolean> hr = tenants.mapTenants("kirk", Collections.singleton("sg_human_resources"));
+        Assert.assertEquals(3, hr.size());
+        Assert.assertTrue(hr.get("kirk"));
+        Assert.assertTrue(hr.get("human_resources"));
+        Assert.assertFalse(hr.get("business"));
+
+        //RW outperforms RO
+        final Map<String, Boolean> both = tenants.mapTenants("spock", new HashSet<>(Arrays.asList("sg_human_resources", "sg_business")));
+        Assert.assertTrue(both.get("business"));
+        Assert.assertTrue(both.get("spock"));
+
+        //private tenant is always RW
+        Assert.assertTrue(tenants.mapTenants("kirk", Collections.singleton("sg_own")).get("kirk"));
+        Assert.assertEquals(Collections.singletonMap("picard", true), tenants.mapTenants("picard", Collections.singleton("unknown")));
+    }
+
+    @Test
+    public void testAllTenants() {
+        Assert.assertEquals(new HashSet<>(Arrays.asList("human_resources", "business", "kirk")), tenants.getAllTenants());
+        Assert.assertTrue(CompiledTenants.EMPTY.getAllTenants().isEmpty());
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.privileges;
+
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SecurityDecisionTest {
+
+    @Test
+    public void testRoundTrip() {
+        final PrivilegesEvaluatorResponse response = new PrivilegesEvaluatorResponse();
+        response.queries = Collections.singletonMap("logs-*", Collections.singleton("{\"match_all\":{}}"));
+
+        final SecurityDecision decision = SecurityDecision.of(response);
+        Assert.assertFalse(decision.isAdminOrConfRequest());
+        Assert.assertTrue(decision.hasDls());
+        Assert.assertFalse(decision.hasFls());
+        Assert.assertFalse(decision.hasMasking());
+        Assert.assertTrue(decision.isRestricted());
+        Assert.assertEquals("4", decision.encode());
+
+        final SecurityDecision decoded = SecurityDecision.decode(decision.encode());
+        Assert.assertTrue(decoded.hasDls());
+        Assert.assertFalse(decoded.hasFls());
+        Assert.assertTrue(decoded.isRestricted());
+    }
+
+    @Test
+    public void testAdminAndConfRequest() {
+        Assert.assertTrue(SecurityDecision.decode(SecurityDecision.ADMIN_DECISION.encode()).isAdmin());
+        Assert.assertFalse(SecurityDecision.decode(SecurityDecision.ADMIN_DECISION.encode()).isRestricted());
+        Assert.assertTrue(SecurityDecision.decode(SecurityDecision.CONF_REQUEST_DECISION.encode()).isConfRequest());
+        Assert.assertFalse(SecurityDecision.decode(SecurityDecision.CONF_REQUEST_DECISION.encode()).isAdmin());
+    }
+
+    @Test
+    public void testMalformed() {
+        Assert.assertNull(SecurityDecision.decode(null));
+        Assert.assertNull(SecurityDecision.decode(""));
+        Assert.assertNull(SecurityDecision.decode("xyz"));
+        Assert.assertNull(SecurityDecision.decode("4;logs-1"));
+    }
+}
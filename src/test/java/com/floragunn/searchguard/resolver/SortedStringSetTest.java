@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.resolver;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.floragunn.searchguard.resolver.IndexResolverReplacer.Resolved;
+import com.floragunn.searchguard.support.Base64Helper;
+
+public class SortedStringSetTest {
+
+    @Test
+    public void testSetContract() {
+        final SortedStringSet set = SortedStringSet.of(Arrays.asList("logs-2", "logs-1", "logs-2", "metrics-1"));
+        final HashSet<String> expected = new HashSet<>(Arrays.asList("logs-1", "logs-2", "metrics-1"));
+        Assert.assertEquals(3, set.size());
+        Assert.assertTrue(set.contains("logs-1"));
+        Assert.assertFalse(set.contains("logs-3"));
+        Assert.assertFalse(set.contains(null));
+        Assert.assertEquals(expected, set);
+        Assert.assertEquals(set, expected);
+        Assert.assertEquals(expected.hashCode(), set.hashCode());
+        Assert.assertSame(set, SortedStringSet.of(set));
+        Assert.assertSame(SortedStringSet.EMPTY, SortedStringSet.of(new HashSet<>()));
+    }
+
+    @Test
+    public void testNull() {
+        final SortedStringSet set = SortedStringSet.of(Arrays.asList("b", null, "a", null));
+        final HashSet<String> expected = new HashSet<>(Arrays.asList("a", "b", null));
+        Assert.assertEquals(3, set.size());
+        Assert.assertTrue(set.contains(null));
+        Assert.assertTrue(set.contains("a"));
+        Assert.assertFalse(set.contains("x"));
+        Assert.assertEquals(expected, set);
+        Assert.assertEquals(set, expected);
+        Assert.assertEquals(expected.hashCode(), set.hashCode());
+
+        final SortedStringSet nullOnly = SortedStringSet.of(Arrays.asList((String) null));
+        Assert.assertTrue(nullOnly.contains(null));
+        Assert.assertFalse(nullOnly.contains("x"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        SortedStringSet.of(Arrays.asList("a", "b")).remove("a");
+    }
+
+    @Test
+    public void testResolvedSerialization() {
+        final Resolved resolved = (Resolved) Base64Helper.deserializeObject(Base64Helper.serializeObject(Resolved._LOCAL_ALL));
+        Assert.assertEquals(Resolved._LOCAL_ALL, resolved);
+        Assert.assertEquals(Resolved._LOCAL_ALL.hashCode(), resolved.hashCode());
+        Assert.assertTrue(resolved.isLocalAll());
+        Assert.assertFalse(resolved.hasRemoteIndices());
+        Assert.assertTrue(resolved.getAllIndices() instanceof SortedStringSet);
+    }
+}
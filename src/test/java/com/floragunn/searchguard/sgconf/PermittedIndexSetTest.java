@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.sgconf;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.floragunn.searchguard.sgconf.PermittedIndexSet.IndexOrdinals;
+
+public class PermittedIndexSetTest {
+
+    private final IndexOrdinals ordinals = new IndexOrdinals(7, new String[] { "logs-1", "logs-2", "metrics-1", "searchguard" });
+
+    @Test
+    public void testSubset() {
+        final PermittedIndexSet set = PermittedIndexSet.of(ordinals, new HashSet<>(Arrays.asList("logs-2", "logs-1", "unknown")));
+        Assert.assertEquals(2, set.size());
+        Assert.assertTrue(set.contains("logs-1"));
+        Assert.assertFalse(set.contains("metrics-1"));
+        Assert.assertFalse(set.contains("unknown"));
+        Assert.assertFalse(set.containsAllOpenIndices());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("logs-1", "logs-2")), new HashSet<>(set));
+        Assert.assertTrue(set.containsAll(Arrays.asList("logs-1", "logs-2")));
+    }
+
+    @Test
+    public void testAll() {
+        final PermittedIndexSet set = PermittedIndexSet.of(ordinals,
+                new HashSet<>(Arrays.asList("logs-1", "logs-2", "metrics-1", "searchguard")));
+        Assert.assertTrue(set.containsAllOpenIndices());
+        Assert.assertEquals(set, new HashSet<>(Arrays.asList("logs-1", "logs-2", "metrics-1", "searchguard")));
+    }
+}
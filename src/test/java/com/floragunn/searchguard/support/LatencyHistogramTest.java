@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015-2017 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.floragunn.searchguard.support;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBoundaries() {
+        for (long value : new long[] { 0, 1, 15, 16, 17, 31, 32, 33, 1000, 123456, 1L << 30, (1L << 40) - 1 }) {
+            final int index = LatencyHistogram.bucketIndex(value);
+            Assert.assertTrue(value + " above bucket " + index, value <= LatencyHistogram.highestEquivalentValue(index));
+            Assert.assertTrue(value + " below bucket " + index, index == 0 || value > LatencyHistogram.highestEquivalentValue(index - 1));
+        }
+
+        Assert.assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        final LatencyHistogram.Summary summary = histogram.summarize();
+        Assert.assertEquals(1000, summary.getCount());
+        Assert.assertEquals(500500, summary.getSumMicros());
+        Assert.assertEquals(1000, summary.getMaxMicros());
+        assertWithinError(500, summary.getP50Micros());
+        assertWithinError(900, summary.getP90Micros());
+        assertWithinError(990, summary.getP99Micros());
+        Assert.assertEquals(1000, summary.getP999Micros());
+    }
+
+    @Test
+    public void testEmpty() {
+        final LatencyHistogram.Summary summary = new LatencyHistogram().summarize();
+        Assert.assertEquals(0, summary.getCount());
+        Assert.assertEquals(0, summary.getP99Micros());
+    }
+
+    private static void assertWithinError(long expected, long actual) {
+        Assert.assertTrue("expected ~" + expected + " but was " + actual, actual >= expected && actual <= expected * 1.0625d);
+    }
+}